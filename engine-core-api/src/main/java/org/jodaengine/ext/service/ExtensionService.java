@@ -70,6 +70,15 @@ public interface ExtensionService extends Service {
      */
     <IExtension> void rebuildExtensionDatabase(@Nonnull Class<IExtension> extension);
     
+    /**
+     * Returns the version of the available extensions. It changes whenever the extensions
+     * might have changed, i.e. when the service is started or stopped or the extension database
+     * is rebuilt, so that extensions, which were loaded before, can be loaded anew.
+     * 
+     * @return the version
+     */
+    long getVersion();
+    
     /**
      * Returns any available extension type for the specified extension point.
      * 
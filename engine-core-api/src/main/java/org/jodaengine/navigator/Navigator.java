@@ -13,6 +13,7 @@ import org.jodaengine.navigator.schedule.Scheduler;
 import org.jodaengine.process.definition.ProcessDefinition;
 import org.jodaengine.process.definition.ProcessDefinitionID;
 import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstanceSummary;
 import org.jodaengine.process.token.Token;
 
 /**
@@ -102,6 +103,34 @@ public interface Navigator extends Service {
      */
     List<AbstractProcessInstance> getEndedInstances();
 
+    /**
+     * Gets the summaries of the ended instances, that this navigator no longer keeps (see
+     * {@link #getEndedInstances()}).
+     * 
+     * @return the summaries of the ended instances
+     */
+    List<ProcessInstanceSummary> getEndedInstanceSummaries();
+
+    /**
+     * Gets the number of running instances of the given process definition. This is cheaper than counting the
+     * {@link #getRunningInstances() running instances}.
+     * 
+     * @param definitionID
+     *            the id of the process definition
+     * @return the number of running instances
+     */
+    int getNumberOfRunningInstances(ProcessDefinitionID definitionID);
+
+    /**
+     * Gets the number of instances of the given process definition, that were processed by this navigator and have
+     * ended.
+     * 
+     * @param definitionID
+     *            the id of the process definition
+     * @return the number of ended instances
+     */
+    int getNumberOfEndedInstances(ProcessDefinitionID definitionID);
+
     /**
      * Cancel the given process instance. Stops all corresponding tokens as soon as possible and does some cleanup.
      * 
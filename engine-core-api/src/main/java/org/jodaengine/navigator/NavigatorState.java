@@ -11,6 +11,9 @@ public enum NavigatorState {
 
     STOPPED,
 
+    /** No new instances are started, but the tokens of the running instances are still executed. */
+    DRAINING,
+
     /** All process instances are finished at this moment (no running Instances). */
     IDLE
 }
@@ -1,6 +1,12 @@
 package org.jodaengine.navigator;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
 
 import org.codehaus.jackson.annotate.JsonProperty;
 
@@ -19,6 +25,10 @@ public final class NavigatorStatistic {
 
     private int numberOfExecutionThreads;
 
+    private Map<Integer, Integer> queueDepthPerPriority = new TreeMap<Integer, Integer>();
+
+    private List<StepProfile> stepProfiles = new ArrayList<StepProfile>();
+
     /**
      * Hidden constructor.
      */
@@ -49,6 +59,58 @@ public final class NavigatorStatistic {
         this.numberOfExecutionThreads = numberOfExecutionThreads;
     }
 
+    /**
+     * Constructor for schedulers that distinguish priorities.
+     * 
+     * @param numberOfFinishedInstances
+     *            the number of finished instances
+     * @param numberOfRunningInstances
+     *            the number of running instances
+     * @param navigatorIdle
+     *            whether the the navigator is idle
+     * @param numberOfExecutionThreads
+     *            number of execution threads
+     * @param queueDepthPerPriority
+     *            the number of scheduled tokens per priority
+     */
+    public NavigatorStatistic(@Nonnegative int numberOfFinishedInstances,
+                              @Nonnegative int numberOfRunningInstances,
+                              @Nonnegative int numberOfExecutionThreads,
+                              boolean navigatorIdle,
+                              @Nonnull Map<Integer, Integer> queueDepthPerPriority) {
+
+        this(numberOfFinishedInstances, numberOfRunningInstances, numberOfExecutionThreads, navigatorIdle);
+        this.queueDepthPerPriority = queueDepthPerPriority;
+    }
+
+    /**
+     * Constructor for navigators that profile the steps of the tokens.
+     * 
+     * @param numberOfFinishedInstances
+     *            the number of finished instances
+     * @param numberOfRunningInstances
+     *            the number of running instances
+     * @param navigatorIdle
+     *            whether the the navigator is idle
+     * @param numberOfExecutionThreads
+     *            number of execution threads
+     * @param queueDepthPerPriority
+     *            the number of scheduled tokens per priority
+     * @param stepProfiles
+     *            the latencies of the steps per node and phase
+     */
+    public NavigatorStatistic(@Nonnegative int numberOfFinishedInstances,
+                              @Nonnegative int numberOfRunningInstances,
+                              @Nonnegative int numberOfExecutionThreads,
+                              boolean navigatorIdle,
+                              @Nonnull Map<Integer, Integer> queueDepthPerPriority,
+                              @Nonnull List<StepProfile> stepProfiles) {
+
+        this(numberOfFinishedInstances, numberOfRunningInstances, numberOfExecutionThreads, navigatorIdle,
+            queueDepthPerPriority);
+        this.stepProfiles = stepProfiles;
+    }
+
     /**
      * Returns the number of finished instances.
      * 
@@ -92,4 +154,27 @@ public final class NavigatorStatistic {
 
         return numberOfExecutionThreads;
     }
+
+    /**
+     * Returns the number of scheduled tokens per priority. It is empty, if the scheduler does not distinguish
+     * priorities.
+     * 
+     * @return the number of scheduled tokens per priority
+     */
+    @JsonProperty
+    public Map<Integer, Integer> getQueueDepthPerPriority() {
+
+        return queueDepthPerPriority;
+    }
+
+    /**
+     * Returns the latencies of the steps per node and phase. It is empty, if the navigator does not profile the steps.
+     * 
+     * @return the step profiles
+     */
+    @JsonProperty
+    public List<StepProfile> getStepProfiles() {
+
+        return stepProfiles;
+    }
 }
@@ -0,0 +1,22 @@
+package org.jodaengine.navigator;
+
+/**
+ * The phases of a step of a token, which are profiled separately.
+ */
+public enum StepPhase {
+
+    /** The whole step, including the other phases and handing over the resulting tokens. */
+    STEP,
+
+    /** The incoming behaviour of the node, i.e. the join. */
+    JOIN,
+
+    /** The activity of the node. */
+    ACTIVITY,
+
+    /** The outgoing behaviour of the node, i.e. the split including the evaluation of the conditions. */
+    SPLIT,
+
+    /** The join and split listeners. */
+    LISTENERS
+}
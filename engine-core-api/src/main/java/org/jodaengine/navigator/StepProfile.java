@@ -0,0 +1,202 @@
+package org.jodaengine.navigator;
+
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+
+/**
+ * The latencies of one {@link StepPhase} of the steps executed on a node. All times are in nanoseconds; the percentiles
+ * are taken from a histogram and precise to about 6%.
+ */
+public final class StepProfile {
+
+    private ProcessDefinitionID definitionID;
+
+    private UUID nodeID;
+
+    private StepPhase phase;
+
+    private long count;
+
+    private long totalTime;
+
+    private long minTime;
+
+    private long maxTime;
+
+    private long medianTime;
+
+    private long percentile90Time;
+
+    private long percentile99Time;
+
+    /**
+     * Instantiates a new step profile.
+     *
+     * @param definitionID
+     *            the id of the process definition of the node, may be null
+     * @param nodeID
+     *            the id of the node
+     * @param phase
+     *            the profiled phase
+     * @param count
+     *            the number of recorded executions
+     * @param totalTime
+     *            the time all executions took
+     * @param minTime
+     *            the time of the fastest execution
+     * @param maxTime
+     *            the time of the slowest execution
+     * @param medianTime
+     *            the time half of the executions took at most
+     * @param percentile90Time
+     *            the time 90% of the executions took at most
+     * @param percentile99Time
+     *            the time 99% of the executions took at most
+     */
+    @JsonCreator
+    public StepProfile(@JsonProperty("definitionID") @Nullable ProcessDefinitionID definitionID,
+                       @JsonProperty("nodeID") @Nonnull UUID nodeID,
+                       @JsonProperty("phase") @Nonnull StepPhase phase,
+                       @JsonProperty("count") long count,
+                       @JsonProperty("totalTime") long totalTime,
+                       @JsonProperty("minTime") long minTime,
+                       @JsonProperty("maxTime") long maxTime,
+                       @JsonProperty("medianTime") long medianTime,
+                       @JsonProperty("percentile90Time") long percentile90Time,
+                       @JsonProperty("percentile99Time") long percentile99Time) {
+
+        this.definitionID = definitionID;
+        this.nodeID = nodeID;
+        this.phase = phase;
+        this.count = count;
+        this.totalTime = totalTime;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.medianTime = medianTime;
+        this.percentile90Time = percentile90Time;
+        this.percentile99Time = percentile99Time;
+    }
+
+    /**
+     * Gets the id of the process definition of the node.
+     *
+     * @return the id of the definition, or null if the node belongs to none
+     */
+    @JsonProperty
+    public ProcessDefinitionID getDefinitionID() {
+
+        return definitionID;
+    }
+
+    /**
+     * Gets the id of the node.
+     *
+     * @return the id
+     */
+    @JsonProperty
+    public UUID getNodeID() {
+
+        return nodeID;
+    }
+
+    /**
+     * Gets the profiled phase.
+     *
+     * @return the phase
+     */
+    @JsonProperty
+    public StepPhase getPhase() {
+
+        return phase;
+    }
+
+    /**
+     * Gets the number of recorded executions.
+     *
+     * @return the count
+     */
+    @JsonProperty
+    public long getCount() {
+
+        return count;
+    }
+
+    /**
+     * Gets the time all executions took.
+     *
+     * @return the time in nanoseconds
+     */
+    @JsonProperty
+    public long getTotalTime() {
+
+        return totalTime;
+    }
+
+    /**
+     * Gets the time of the fastest execution.
+     *
+     * @return the time in nanoseconds
+     */
+    @JsonProperty
+    public long getMinTime() {
+
+        return minTime;
+    }
+
+    /**
+     * Gets the time of the slowest execution.
+     *
+     * @return the time in nanoseconds
+     */
+    @JsonProperty
+    public long getMaxTime() {
+
+        return maxTime;
+    }
+
+    /**
+     * Gets the time half of the executions took at most.
+     *
+     * @return the time in nanoseconds
+     */
+    @JsonProperty
+    public long getMedianTime() {
+
+        return medianTime;
+    }
+
+    /**
+     * Gets the time 90% of the executions took at most.
+     *
+     * @return the time in nanoseconds
+     */
+    @JsonProperty
+    public long getPercentile90Time() {
+
+        return percentile90Time;
+    }
+
+    /**
+     * Gets the time 99% of the executions took at most.
+     *
+     * @return the time in nanoseconds
+     */
+    @JsonProperty
+    public long getPercentile99Time() {
+
+        return percentile99Time;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("StepProfile [node=%s, phase=%s, count=%d, median=%dns, p99=%dns]", nodeID, phase, count,
+            medianTime, percentile99Time);
+    }
+}
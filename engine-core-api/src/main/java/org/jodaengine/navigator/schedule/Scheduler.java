@@ -1,6 +1,7 @@
 package org.jodaengine.navigator.schedule;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.jodaengine.process.token.Token;
 
@@ -33,6 +34,31 @@ public interface Scheduler {
      */
     Token retrieve();
 
+    /**
+     * Retrive a processtoken in order to do your work on it. If there is none, wait until one is submitted or the
+     * timeout elapsed.
+     * 
+     * @param timeout
+     *            the maximum time to wait for a token
+     * @param unit
+     *            the unit of the timeout
+     * @return the process token or null, if no token could be retrieved in time
+     * @throws InterruptedException
+     *             thrown if the thread was interrupted while waiting
+     */
+    Token retrieve(long timeout, TimeUnit unit)
+    throws InterruptedException;
+
+    /**
+     * Retrive up to the given number of processtokens at once, so that a thread does not have to come back to the
+     * scheduler for every single token. The tokens are retrieved in the same order as by {@link #retrieve()}.
+     * 
+     * @param maxNumberOfTokens
+     *            the maximum number of tokens to retrieve
+     * @return the retrieved tokens, which is an empty list if there are none
+     */
+    List<Token> retrieveAll(int maxNumberOfTokens);
+
     /**
      * Checks if we got nothing to schedule.
      * 
@@ -1,5 +1,6 @@
 package org.jodaengine.process.instance;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -59,6 +60,29 @@ public abstract class AbstractProcessInstance implements Identifiable<UUID> {
     @JsonManagedReference
     public abstract List<Token> getAssignedTokens();
 
+    /**
+     * Gets the tokens of this instance that are currently on the given node. Unlike filtering
+     * {@link #getAssignedTokens()}, this does not depend on the number of tokens of the instance.
+     * 
+     * @param node
+     *            the node
+     * @return an unmodifiable view of the tokens on the node
+     */
+    public abstract Collection<Token> getTokensOnNode(Node node);
+
+    /**
+     * Tells the instance that one of its tokens moved to another node, so that {@link #getTokensOnNode(Node)} stays up
+     * to date. Tokens call this, whenever their current node changes.
+     * 
+     * @param token
+     *            the token
+     * @param previousNode
+     *            the node the token was on before
+     * @param newNode
+     *            the node the token is on now
+     */
+    public abstract void moveToken(Token token, Node previousNode, Node newNode);
+
     /**
      * Gets the definition this instance was created for.
      * 
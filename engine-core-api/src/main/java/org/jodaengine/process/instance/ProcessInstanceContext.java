@@ -3,6 +3,7 @@ package org.jodaengine.process.instance;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 import org.codehaus.jackson.annotate.JsonTypeInfo;
 import org.codehaus.jackson.annotate.JsonTypeInfo.As;
@@ -27,6 +28,27 @@ public interface ProcessInstanceContext {
      */
     void setSignaledControlFlow(ControlFlow c);
 
+    /**
+     * Signals that the declared {@link ControlFlow} has been taken and, if all incoming {@link ControlFlow}s of its
+     * destination are signaled then, removes one signal of each of them. Both happens atomically, so that tokens
+     * arriving concurrently at a parallel join activate it exactly once.
+     *
+     * @param controlFlow
+     *            the {@link ControlFlow} that is signaled
+     * @return the number of activations of the join, usually 0 or 1; it might be more, if the signals of concurrently
+     *         arriving tokens were left to this one
+     */
+    int joinControlFlow(ControlFlow controlFlow);
+
+    /**
+     * Gets the number of different incoming {@link ControlFlow}s of a node that are signaled.
+     *
+     * @param n
+     *            the node that the signaled {@link ControlFlow}s are checked for
+     * @return the number of signaled {@link ControlFlow}s
+     */
+    int getNumberOfSignaledControlFlows(Node n);
+
     /**
      * Gets all {@link ControlFlow}s that are incoming to a node and that have been signaled.
      * 
@@ -97,6 +119,16 @@ public interface ProcessInstanceContext {
     @JsonProperty
     Map<String, Object> getVariableMap();
 
+    /**
+     * Retrieves a snapshot of all defined variables. Taking it is cheap and does not block tokens setting variables
+     * concurrently. The snapshot is immutable and consistent: it contains the variables as they were at one point in
+     * time and does not change afterwards.
+     *
+     * @return an immutable {@link Map} with variableIds and variableValues
+     */
+    @JsonIgnore
+    Map<String, Object> getVariableSnapshot();
+
     /**
      * Sets a variable for a node that might be required by basically any token that belongs to the.
      * 
@@ -0,0 +1,99 @@
+package org.jodaengine.process.instance;
+
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+
+/**
+ * A compact record of a finished process instance. It is kept instead of the instance itself, once the navigator no
+ * longer retains the instance with its tokens and context.
+ */
+public final class ProcessInstanceSummary {
+
+    private UUID id;
+
+    private ProcessDefinitionID definitionID;
+
+    private long finishingTime;
+
+    private boolean cancelled;
+
+    /**
+     * Instantiates a new process instance summary.
+     *
+     * @param id
+     *            the id of the instance
+     * @param definitionID
+     *            the id of the process definition of the instance, may be null
+     * @param finishingTime
+     *            the time the instance finished, in milliseconds since the epoch
+     * @param cancelled
+     *            whether the instance was cancelled
+     */
+    @JsonCreator
+    public ProcessInstanceSummary(@JsonProperty("id") @Nonnull UUID id,
+                                  @JsonProperty("definitionID") @Nullable ProcessDefinitionID definitionID,
+                                  @JsonProperty("finishingTime") long finishingTime,
+                                  @JsonProperty("cancelled") boolean cancelled) {
+
+        this.id = id;
+        this.definitionID = definitionID;
+        this.finishingTime = finishingTime;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Gets the id of the instance.
+     *
+     * @return the id
+     */
+    @JsonProperty
+    public UUID getID() {
+
+        return id;
+    }
+
+    /**
+     * Gets the id of the process definition of the instance.
+     *
+     * @return the id of the definition, or null if the instance had none
+     */
+    @JsonProperty
+    public ProcessDefinitionID getDefinitionID() {
+
+        return definitionID;
+    }
+
+    /**
+     * Gets the time the instance finished.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    @JsonProperty
+    public long getFinishingTime() {
+
+        return finishingTime;
+    }
+
+    /**
+     * Checks if the instance was cancelled.
+     *
+     * @return true, if it was cancelled
+     */
+    @JsonProperty
+    public boolean isCancelled() {
+
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("ProcessInstanceSummary [id=%s, definition=%s]", id, definitionID);
+    }
+}
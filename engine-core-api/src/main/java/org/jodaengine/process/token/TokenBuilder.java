@@ -27,6 +27,14 @@ public interface TokenBuilder {
                  @Nullable ControlFlow lastTakenControlFlow,
                  @Nullable Token parentToken);
     
+    /**
+     * Takes back a token, which is not used anymore, as it was consumed by a join or ended. The builder may reuse it
+     * for one of the next tokens it creates, or simply ignore it.
+     *
+     * @param token the token
+     */
+    void recycle(@Nonnull Token token);
+    
     /**
      * Sets the nav.
      *
@@ -0,0 +1,22 @@
+package org.jodaengine.util;
+
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+/**
+ * This interface declares a generator for the IDs of frequently created entities, like tokens, process instances,
+ * worklist items and nodes.
+ *
+ * Implementations have to be thread-safe and must never return the same ID twice.
+ */
+public interface IdGenerator {
+
+    /**
+     * Generates a new ID.
+     * 
+     * @return the ID
+     */
+    @Nonnull
+    UUID nextId();
+}
@@ -1,7 +1,8 @@
 package org.jodaengine.ext;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Observable;
 
@@ -12,45 +13,114 @@ import org.jodaengine.ext.listener.Listenable;
  * This is the abstract representation for {@link Listenable} classes.
  * It provides required methods for registering the ObersverListener and
  * implements the observer pattern.
- * 
+ *
+ * Listeners are kept in an array, which is replaced whenever a listener is registered or deregistered. So notifying
+ * them via {@link #notifyListeners(Object)} neither locks nor allocates, unlike {@link Observable#notifyObservers()},
+ * and subclasses can skip creating events at all, if {@link #hasListeners()} is false.
+ *
  * @param <IListener> the extension implementation class implemented as observer
  */
 public abstract class AbstractListenable<IListener extends ObersverListener>
 extends Observable
 implements Listenable<IListener> {
-    
-    private List<IListener> listeners;
-    
+
+    private static final ObersverListener[] NO_LISTENERS = new ObersverListener[0];
+
+    private volatile ObersverListener[] listeners;
+
     /**
      * Default constructor.
      */
     public AbstractListenable() {
-        this.listeners = new ArrayList<IListener>();
+        this.listeners = NO_LISTENERS;
     }
-    
+
     @Override
-    public void registerListener(IListener listener) {
-        this.listeners.add(listener);
-        this.addObserver(listener);
+    public synchronized void registerListener(IListener listener) {
+
+        if (indexOf(listener) >= 0) {
+            return;
+        }
+
+        ObersverListener[] newListeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        newListeners[this.listeners.length] = listener;
+        this.listeners = newListeners;
     }
-    
+
     @Override
-    public void registerListeners(Collection<IListener> listeners) {
-        
+    public synchronized void registerListeners(Collection<IListener> listeners) {
+
         for (IListener listener: listeners) {
             registerListener(listener);
         }
     }
-    
+
     @Override
-    public void deregisterListener(IListener listener) {
-        this.listeners.remove(listener);
-        this.deleteObserver(listener);
+    public synchronized void deregisterListener(IListener listener) {
+
+        int i = indexOf(listener);
+        if (i < 0) {
+            return;
+        }
+
+        ObersverListener[] currentListeners = this.listeners;
+        ObersverListener[] newListeners = new ObersverListener[currentListeners.length - 1];
+        System.arraycopy(currentListeners, 0, newListeners, 0, i);
+        System.arraycopy(currentListeners, i + 1, newListeners, i, currentListeners.length - i - 1);
+        this.listeners = newListeners;
+    }
+
+    /**
+     * Deregisters all listeners, e.g. before an object is reused and gets its listeners anew.
+     */
+    protected synchronized void deregisterAllListeners() {
+
+        this.listeners = NO_LISTENERS;
     }
-    
+
+    @SuppressWarnings("unchecked")
     @JsonIgnore
     @Override
     public Collection<IListener> getListeners() {
-        return this.listeners;
+        return Collections.unmodifiableList((List<IListener>) (List<?>) Arrays.asList(this.listeners));
+    }
+
+    /**
+     * Checks if any listener is registered. Callers may use it to avoid creating an event nobody listens to.
+     *
+     * @return true, if there is at least one listener
+     */
+    protected boolean hasListeners() {
+        return this.listeners.length > 0;
+    }
+
+    /**
+     * Notifies all registered listeners of the event.
+     *
+     * @param event the event, which is passed as argument to {@link java.util.Observer#update(Observable, Object)}
+     */
+    protected void notifyListeners(Object event) {
+
+        ObersverListener[] currentListeners = this.listeners;
+        for (int i = 0; i < currentListeners.length; i++) {
+            currentListeners[i].update(this, event);
+        }
+    }
+
+    /**
+     * Finds a registered listener. Like {@link Observable}, a listener is registered at most once.
+     *
+     * @param listener the listener
+     * @return the index of the listener, or -1 if it is not registered
+     */
+    private int indexOf(IListener listener) {
+
+        ObersverListener[] currentListeners = this.listeners;
+        for (int i = 0; i < currentListeners.length; i++) {
+            if (currentListeners[i].equals(listener)) {
+                return i;
+            }
+        }
+        return -1;
     }
 }
@@ -25,4 +25,14 @@ implements ObersverListener, ActivityLifecycleListener {
                        @Nonnull Object event) {
         stateChanged((ActivityLifecycleChangeEvent) event);
     }
+    
+    /**
+     * Tells whether this listener keeps references to the tokens or events it is notified of. Tokens are only
+     * recycled (see {@link org.jodaengine.process.token.TokenPool}), if none of their listeners does so.
+     * 
+     * @return true, if the listener may keep references to tokens; false, if it only uses them while notified
+     */
+    public boolean keepsTokenReferences() {
+        return true;
+    }
 }
@@ -42,4 +42,9 @@ extends AbstractTokenListener {
     public void stateChanged(@Nonnull ActivityLifecycleChangeEvent event) {
         logger.info("ActivityLifecycle: {}", event);
     }
+    
+    @Override
+    public boolean keepsTokenReferences() {
+        return false;
+    }
 }
@@ -41,6 +41,8 @@ public class ExtensionServiceImpl implements ExtensionService {
     
     private boolean running = false;
     
+    private volatile long version = 0;
+    
     /**
      * Default constructor.
      */
@@ -68,6 +70,7 @@ public class ExtensionServiceImpl implements ExtensionService {
         createExtensionWebServiceSingletons();
         
         this.running = true;
+        this.version++;
     }
 
     @Override
@@ -83,6 +86,7 @@ public class ExtensionServiceImpl implements ExtensionService {
         logger.info("Stopping the ExtensionService");
         
         this.running = false;
+        this.version++;
         
         //
         // stop all loaded extension services
@@ -162,13 +166,19 @@ public class ExtensionServiceImpl implements ExtensionService {
     }
 
     @Override
-    public <IExtension> void rebuildExtensionDatabase(Class<IExtension> extension) {
+    public synchronized <IExtension> void rebuildExtensionDatabase(Class<IExtension> extension) {
         
         //
         // remove the list of extensions
         // it will automatically rebuild upon call of ExtensionService#getExtensions(...)
         //
         this.extensions.remove(extension);
+        this.version++;
+    }
+    
+    @Override
+    public long getVersion() {
+        return this.version;
     }
     
     @Override
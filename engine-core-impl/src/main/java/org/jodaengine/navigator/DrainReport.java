@@ -0,0 +1,107 @@
+package org.jodaengine.navigator;
+
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.token.Token;
+
+/**
+ * The Class DrainReport. It tells what was left, when the navigator was drained and stopped (see
+ * {@link NavigatorImpl#drain(long, java.util.concurrent.TimeUnit)}).
+ */
+public final class DrainReport {
+
+    private List<Token> unexecutedTokens;
+
+    private int numberOfExecutingSteps;
+
+    private List<Token> suspendedTokens;
+
+    private List<AbstractProcessInstance> runningInstances;
+
+    /**
+     * Instantiates a new drain report.
+     *
+     * @param unexecutedTokens
+     *            the tokens that were still waiting for their execution
+     * @param numberOfExecutingSteps
+     *            the number of steps that were still being executed
+     * @param suspendedTokens
+     *            the suspended tokens
+     * @param runningInstances
+     *            the instances that have not ended
+     */
+    public DrainReport(@Nonnull List<Token> unexecutedTokens,
+                       @Nonnegative int numberOfExecutingSteps,
+                       @Nonnull List<Token> suspendedTokens,
+                       @Nonnull List<AbstractProcessInstance> runningInstances) {
+
+        this.unexecutedTokens = unexecutedTokens;
+        this.numberOfExecutingSteps = numberOfExecutingSteps;
+        this.suspendedTokens = suspendedTokens;
+        this.runningInstances = runningInstances;
+    }
+
+    /**
+     * Checks if all tokens were executed in time. Suspended tokens and running instances waiting for them do not
+     * count, as they would not have been executed anyway.
+     *
+     * @return true, if nothing was abandoned
+     */
+    public boolean isComplete() {
+
+        return unexecutedTokens.isEmpty() && numberOfExecutingSteps == 0;
+    }
+
+    /**
+     * Gets the tokens that were not executed in time. They were taken from the scheduler, so that the caller can save
+     * them and submit them again later.
+     *
+     * @return the unexecuted tokens
+     */
+    public List<Token> getUnexecutedTokens() {
+
+        return unexecutedTokens;
+    }
+
+    /**
+     * Gets the number of steps that were still being executed, when the deadline was reached.
+     *
+     * @return the number of executing steps
+     */
+    public int getNumberOfExecutingSteps() {
+
+        return numberOfExecutingSteps;
+    }
+
+    /**
+     * Gets the tokens that are suspended, e.g. because they wait for a human task.
+     *
+     * @return the suspended tokens
+     */
+    public List<Token> getSuspendedTokens() {
+
+        return suspendedTokens;
+    }
+
+    /**
+     * Gets the instances that have not ended.
+     *
+     * @return the running instances
+     */
+    public List<AbstractProcessInstance> getRunningInstances() {
+
+        return runningInstances;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("DrainReport [unexecutedTokens=%d, executingSteps=%d, suspendedTokens=%d, "
+            + "runningInstances=%d]", unexecutedTokens.size(), numberOfExecutingSteps, suspendedTokens.size(),
+            runningInstances.size());
+    }
+}
@@ -0,0 +1,20 @@
+package org.jodaengine.navigator;
+
+import javax.annotation.Nonnull;
+
+import org.jodaengine.process.instance.AbstractProcessInstance;
+
+/**
+ * The Interface FinishedInstanceArchive. It receives the finished process instances, that the navigator no longer keeps
+ * in memory, e.g. to write them to a database or a file.
+ */
+public interface FinishedInstanceArchive {
+
+    /**
+     * Archives a finished process instance. The navigator drops its reference afterwards.
+     *
+     * @param instance
+     *            the instance
+     */
+    void archive(@Nonnull AbstractProcessInstance instance);
+}
@@ -0,0 +1,308 @@
+package org.jodaengine.navigator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstanceSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class FinishedInstanceRetention. It keeps the finished process instances of the navigator, but only as many and
+ * as long as configured. Every finished instance holds on to its tokens, its context and its definition, so keeping
+ * all of them lets the heap of a long-running engine grow without bound.
+ *
+ * Instances exceeding the limits are evicted in the order they finished. An evicted instance is handed to the
+ * {@link FinishedInstanceArchive}, if there is one, and replaced by a {@link ProcessInstanceSummary}. The number of
+ * summaries can be limited as well.
+ *
+ * By default, nothing is evicted.
+ */
+public class FinishedInstanceRetention {
+
+    /** Means that there is no limit. */
+    public static final int UNLIMITED = 0;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** The retained instances, indexed by their id. */
+    private ConcurrentMap<UUID, AbstractProcessInstance> instances;
+
+    /** The retained instances in the order they finished. */
+    private Queue<FinishedInstance> finishingOrder;
+
+    /** The summaries of the evicted instances, indexed by the id of the instance. */
+    private ConcurrentMap<UUID, ProcessInstanceSummary> summaries;
+
+    /** The ids of the summaries in the order they were created. */
+    private Queue<UUID> summaryOrder;
+
+    /** The number of all instances that finished, including the evicted ones. */
+    private AtomicInteger numberOfFinishedInstances;
+
+    private int maxNumberOfInstances;
+
+    private long maxAge;
+
+    private int maxNumberOfSummaries;
+
+    private FinishedInstanceArchive archive;
+
+    /**
+     * Instantiates a new retention, that keeps all finished instances.
+     */
+    public FinishedInstanceRetention() {
+
+        this.instances = new ConcurrentHashMap<UUID, AbstractProcessInstance>();
+        this.finishingOrder = new ConcurrentLinkedQueue<FinishedInstance>();
+        this.summaries = new ConcurrentHashMap<UUID, ProcessInstanceSummary>();
+        this.summaryOrder = new ConcurrentLinkedQueue<UUID>();
+        this.numberOfFinishedInstances = new AtomicInteger(0);
+        this.maxNumberOfInstances = UNLIMITED;
+        this.maxAge = UNLIMITED;
+        this.maxNumberOfSummaries = UNLIMITED;
+    }
+
+    /**
+     * Sets the maximum number of retained instances.
+     *
+     * @param maxNumberOfInstances
+     *            the maximum number, or {@link #UNLIMITED}
+     */
+    public void setMaxNumberOfInstances(@Nonnegative int maxNumberOfInstances) {
+
+        this.maxNumberOfInstances = maxNumberOfInstances;
+    }
+
+    /**
+     * Sets the time an instance is retained after it finished.
+     *
+     * @param maxAge
+     *            the time in milliseconds, or {@link #UNLIMITED}
+     */
+    public void setMaxAge(@Nonnegative long maxAge) {
+
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Sets the maximum number of summaries of evicted instances. The oldest summaries are dropped first.
+     *
+     * @param maxNumberOfSummaries
+     *            the maximum number, or {@link #UNLIMITED}
+     */
+    public void setMaxNumberOfSummaries(@Nonnegative int maxNumberOfSummaries) {
+
+        this.maxNumberOfSummaries = maxNumberOfSummaries;
+    }
+
+    /**
+     * Sets the archive, that receives the evicted instances.
+     *
+     * @param archive
+     *            the archive, or null to simply drop them
+     */
+    public void setArchive(@Nullable FinishedInstanceArchive archive) {
+
+        this.archive = archive;
+    }
+
+    /**
+     * Adds a finished instance and evicts the instances exceeding the limits.
+     *
+     * @param instance
+     *            the instance
+     */
+    public void add(@Nonnull AbstractProcessInstance instance) {
+
+        long now = System.currentTimeMillis();
+        if (instances.put(instance.getID(), instance) == null) {
+            numberOfFinishedInstances.incrementAndGet();
+            finishingOrder.offer(new FinishedInstance(instance, now));
+        }
+        evict(now);
+    }
+
+    /**
+     * Gets the retained instances in the order they finished.
+     *
+     * @return a snapshot of the retained instances
+     */
+    public List<AbstractProcessInstance> getInstances() {
+
+        evict(System.currentTimeMillis());
+
+        List<AbstractProcessInstance> retainedInstances = new ArrayList<AbstractProcessInstance>(instances.size());
+        for (FinishedInstance finishedInstance : finishingOrder) {
+            retainedInstances.add(finishedInstance.instance);
+        }
+        return retainedInstances;
+    }
+
+    /**
+     * Gets the summaries of the evicted instances in the order they were evicted.
+     *
+     * @return a snapshot of the summaries
+     */
+    public List<ProcessInstanceSummary> getSummaries() {
+
+        List<ProcessInstanceSummary> currentSummaries = new ArrayList<ProcessInstanceSummary>(summaries.size());
+        for (UUID id : summaryOrder) {
+            ProcessInstanceSummary summary = summaries.get(id);
+            if (summary != null) {
+                currentSummaries.add(summary);
+            }
+        }
+        return currentSummaries;
+    }
+
+    /**
+     * Gets the number of all instances that finished, including the evicted ones.
+     *
+     * @return the number of finished instances
+     */
+    public int getNumberOfFinishedInstances() {
+
+        return numberOfFinishedInstances.get();
+    }
+
+    /**
+     * Gets the number of retained instances.
+     *
+     * @return the number of retained instances
+     */
+    public int getNumberOfRetainedInstances() {
+
+        return instances.size();
+    }
+
+    /**
+     * Evicts the oldest instances, as long as they exceed a limit, and archives them. The archive is called after the
+     * instances were removed, so that a slow archive does not block other threads, whose instances finish meanwhile.
+     *
+     * @param now
+     *            the current time
+     */
+    private void evict(long now) {
+
+        List<AbstractProcessInstance> evictedInstances = removeExceedingInstances(now);
+        if (archive == null) {
+            return;
+        }
+        for (AbstractProcessInstance instance : evictedInstances) {
+            try {
+                archive.archive(instance);
+            } catch (RuntimeException e) {
+                logger.error("Archiving the process instance " + instance.getID() + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest instances, as long as they exceed a limit, and replaces them by their summaries. Only one
+     * thread removes instances at a time, so the head of the queue cannot change between looking at it and removing
+     * it.
+     *
+     * @param now
+     *            the current time
+     * @return the removed instances in the order they finished
+     */
+    private synchronized List<AbstractProcessInstance> removeExceedingInstances(long now) {
+
+        List<AbstractProcessInstance> removedInstances = new ArrayList<AbstractProcessInstance>();
+        FinishedInstance oldest;
+        while ((oldest = finishingOrder.peek()) != null && mustBeEvicted(oldest, now)) {
+            finishingOrder.poll();
+            AbstractProcessInstance instance = oldest.instance;
+            instances.remove(instance.getID());
+            addSummary(new ProcessInstanceSummary(instance.getID(), getDefinitionID(instance),
+                oldest.finishingTime, instance.isCancelled()));
+            removedInstances.add(instance);
+        }
+        return removedInstances;
+    }
+
+    /**
+     * Checks if the instance exceeds a limit.
+     *
+     * @param finishedInstance
+     *            the oldest retained instance
+     * @param now
+     *            the current time
+     * @return true, if it has to be evicted
+     */
+    private boolean mustBeEvicted(FinishedInstance finishedInstance, long now) {
+
+        if (maxNumberOfInstances != UNLIMITED && instances.size() > maxNumberOfInstances) {
+            return true;
+        }
+        return maxAge != UNLIMITED && now - finishedInstance.finishingTime > maxAge;
+    }
+
+    /**
+     * Adds the summary of an evicted instance and drops the oldest summaries exceeding the limit.
+     *
+     * @param summary
+     *            the summary
+     */
+    private void addSummary(ProcessInstanceSummary summary) {
+
+        summaries.put(summary.getID(), summary);
+        summaryOrder.offer(summary.getID());
+
+        while (maxNumberOfSummaries != UNLIMITED && summaries.size() > maxNumberOfSummaries) {
+            summaries.remove(summaryOrder.poll());
+        }
+    }
+
+    /**
+     * Gets the id of the process definition of an instance.
+     *
+     * @param instance
+     *            the instance
+     * @return the id of the definition, or null if the instance has got none
+     */
+    private static ProcessDefinitionID getDefinitionID(AbstractProcessInstance instance) {
+
+        if (instance.getDefinition() == null) {
+            return null;
+        }
+        return instance.getDefinition().getID();
+    }
+
+    /**
+     * A retained instance together with the time it finished.
+     */
+    private static final class FinishedInstance {
+
+        private final AbstractProcessInstance instance;
+
+        private final long finishingTime;
+
+        /**
+         * Instantiates a new finished instance.
+         *
+         * @param instance
+         *            the instance
+         * @param finishingTime
+         *            the time it finished
+         */
+        public FinishedInstance(AbstractProcessInstance instance, long finishingTime) {
+
+            this.instance = instance;
+            this.finishingTime = finishingTime;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.jodaengine.navigator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnegative;
+
+/**
+ * The Class LatencyHistogram counts latencies in buckets, whose width grows with the latency, like an HDR histogram:
+ * every power of two is divided into {@value #SUB_BUCKETS} buckets. So recording is a few atomic increments and the
+ * histogram has a fixed size, while percentiles are still precise to about 6% from nanoseconds to hours.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+
+    private static final int NUMBER_OF_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final double PERCENT = 100.0;
+
+    private final AtomicLongArray buckets;
+
+    private final AtomicLong count;
+
+    private final AtomicLong totalTime;
+
+    private final AtomicLong minTime;
+
+    private final AtomicLong maxTime;
+
+    /**
+     * Instantiates a new, empty latency histogram.
+     */
+    public LatencyHistogram() {
+
+        this.buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+        this.count = new AtomicLong(0);
+        this.totalTime = new AtomicLong(0);
+        this.minTime = new AtomicLong(Long.MAX_VALUE);
+        this.maxTime = new AtomicLong(0);
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param time
+     *            the latency in nanoseconds; negative values, e.g. due to a clock adjustment, are recorded as 0
+     */
+    public void record(long time) {
+
+        long value = Math.max(time, 0);
+        buckets.incrementAndGet(getBucket(value));
+        count.incrementAndGet();
+        totalTime.addAndGet(value);
+
+        long min = minTime.get();
+        while (value < min && !minTime.compareAndSet(min, value)) {
+            min = minTime.get();
+        }
+        long max = maxTime.get();
+        while (value > max && !maxTime.compareAndSet(max, value)) {
+            max = maxTime.get();
+        }
+    }
+
+    /**
+     * Gets the number of recorded latencies.
+     *
+     * @return the count
+     */
+    public long getCount() {
+
+        return count.get();
+    }
+
+    /**
+     * Gets the sum of all recorded latencies.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTotalTime() {
+
+        return totalTime.get();
+    }
+
+    /**
+     * Gets the smallest recorded latency.
+     *
+     * @return the time in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMinTime() {
+
+        long min = minTime.get();
+        if (min == Long.MAX_VALUE) {
+            return 0;
+        }
+        return min;
+    }
+
+    /**
+     * Gets the largest recorded latency.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getMaxTime() {
+
+        return maxTime.get();
+    }
+
+    /**
+     * Gets the latency, which the given percentage of the recorded latencies do not exceed. Latencies recorded
+     * concurrently may or may not be considered.
+     *
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, at most the largest recorded latency
+     */
+    public long getTimeAtPercentile(@Nonnegative double percentile) {
+
+        long total = 0;
+        long[] counts = new long[NUMBER_OF_BUCKETS];
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, PERCENT) / PERCENT * total));
+        long seen = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), getMaxTime());
+            }
+        }
+        return getMaxTime();
+    }
+
+    /**
+     * Gets the bucket of a latency. Values below {@value #SUB_BUCKETS} have a bucket each; above, the highest bit
+     * selects the power of two and the next {@value #SUB_BUCKET_BITS} bits the bucket within it.
+     *
+     * @param value
+     *            the latency, not negative
+     * @return the index of the bucket
+     */
+    static int getBucket(long value) {
+
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    /**
+     * Gets the largest latency, which falls into a bucket.
+     *
+     * @param bucket
+     *            the index of the bucket
+     * @return the latency
+     */
+    static long getUpperBound(int bucket) {
+
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = ((long) (SUB_BUCKETS + (bucket & SUB_BUCKET_MASK))) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -1,6 +1,16 @@
 package org.jodaengine.navigator;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.jodaengine.navigator.schedule.PartitionedScheduler;
 import org.jodaengine.navigator.schedule.Scheduler;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.token.AbstractToken;
 import org.jodaengine.process.token.Token;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +24,12 @@ public class NavigationThread extends Thread {
     /** The Constant SLEEPTIME defining the time a thread sleeps if it has got nothing to do. */
     private static final int SLEEPTIME = 1000;
 
+    /**
+     * The Constant WAITTIME defining the time a thread waits for a token at most, before it checks whether it should
+     * stop.
+     */
+    private static final int WAITTIME = 1000;
+
     /**
      * The to navigate Queue is common to all Navigation Threads. This is where they get the instances to work on from.
      */
@@ -22,13 +38,46 @@ public class NavigationThread extends Thread {
     /** The logger. */
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    /** The should stop. Indicates if the Thread should stop executing. See the doWork source for details. */
-    private boolean shouldStop = false;
+    /**
+     * The should stop. Indicates if the Thread should stop executing. See the doWork source for details. It is set by
+     * other threads, so it has to be volatile.
+     */
+    private volatile boolean shouldStop = false;
 
     private boolean threadDone;
 
+    /** Guards waiting, so that the thread is only interrupted to stop, while it waits for work. */
+    private final Object waitingLock = new Object();
+
+    /** Indicates if the thread waits for work, i.e. if it may be interrupted to stop. */
+    private boolean waiting;
+
+    /** Indicates if the thread waits on the scheduler for new tokens instead of sleeping if there is nothing to do. */
+    private boolean blockingRetrieval;
+
+    /** The navigator, that is told about every executed token. May be null. */
+    private NavigatorImpl navigator;
+
+    /** The maximum number of tokens, that are retrieved from the scheduler at once. */
+    private int batchSize;
+
+    /** The number of successors of a retrieved token, that are executed without the scheduler. */
+    private int runToCompletionBudget;
+
+    /** The tokens, that were retrieved from the scheduler, but are not executed yet. */
+    private Queue<Token> retrievedTokens;
+
+    /** The token, whose step is executed at the moment. */
+    private Token currentToken;
+
+    /** The successor of the current token, that is executed right after it. */
+    private Token nextToken;
+
+    /** The number of successors, that may still be executed without the scheduler. */
+    private int remainingBudget;
+
     /**
-     * Instantiates a new navigation thread.
+     * Instantiates a new navigation thread, which sleeps if there is nothing to do.
      * 
      * @param threadname
      *            the thread name
@@ -37,8 +86,38 @@ public class NavigationThread extends Thread {
      */
     public NavigationThread(String threadname, Scheduler scheduler) {
 
+        this(threadname, scheduler, null, false);
+    }
+
+    /**
+     * Instantiates a new navigation thread.
+     * 
+     * @param threadname
+     *            the thread name
+     * @param scheduler
+     *            the scheduler
+     * @param navigator
+     *            the navigator, which keeps track of the tokens that are not executed yet, may be null
+     * @param blockingRetrieval
+     *            if true, the thread waits on the scheduler for the next token, so that it is woken up as soon as a
+     *            token is submitted; otherwise it polls the scheduler and sleeps in between
+     */
+    public NavigationThread(String threadname,
+                            Scheduler scheduler,
+                            @Nullable NavigatorImpl navigator,
+                            boolean blockingRetrieval) {
+
         super(threadname);
         this.scheduler = scheduler;
+        this.navigator = navigator;
+        this.blockingRetrieval = blockingRetrieval;
+        this.batchSize = 1;
+        this.runToCompletionBudget = 0;
+        if (navigator != null) {
+            this.batchSize = Math.max(1, navigator.getBatchSize());
+            this.runToCompletionBudget = navigator.getRunToCompletionBudget();
+        }
+        this.retrievedTokens = new ArrayDeque<Token>(this.batchSize);
         logger.info("Navigator {} initialized", threadname);
         this.threadDone = false;
     }
@@ -50,8 +129,15 @@ public class NavigationThread extends Thread {
      */
     public void run() {
 
-        if (!threadDone) {
-            doWork();
+        try {
+            if (!threadDone) {
+                doWork();
+            }
+        } finally {
+            // the tokens in the lanes of this thread are adopted by the others
+            if (scheduler instanceof PartitionedScheduler) {
+                ((PartitionedScheduler) scheduler).releaseLanes();
+            }
         }
         logger.info("Navigator {} terminated", this.getName());
     }
@@ -67,6 +153,7 @@ public class NavigationThread extends Thread {
         while (true) {
             // TODO Das muss auf jeden fall verändert werden | English please whoever this was
             if (shouldStop) {
+                returnRetrievedTokens();
                 threadDone = true;
                 break;
             }
@@ -76,36 +163,265 @@ public class NavigationThread extends Thread {
             // This has to be an atomic operation on toNavigate, otherwise
             // an IndexOutOfBoundsException might occur
 
-            token = this.scheduler.retrieve();
+            try {
+                token = retrieveToken();
+            } catch (InterruptedException e) {
+                // we were woken up, so check whether we should stop
+                continue;
+            }
 
             if (token != null) {
-                // List<Token> instances;
-                // instances = null;
-                try {
-                    // the return value of executeStep are the nodes which shall be executed next
-                    // instances = token.executeStep();
-                    token.executeStep();
-                } catch (Exception e) {
+                StepExecutionPool pool = null;
+                if (navigator != null) {
+                    pool = navigator.getStepExecutionPool();
+                }
 
-                    e.printStackTrace();
+                if (pool == null) {
+                    runToCompletion(token);
+                } else {
+                    handOver(pool, token);
                 }
-                // submit all instances to be executed next to the scheduler
-                // scheduler.submitAll(instances);
-            } else {
+            } else if (!blockingRetrieval && startWaiting()) {
                 try {
                     // I simply couldn't take it anymore...
                     // logger.debug("Queue empty");
                     sleep(SLEEPTIME);
 
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    // we were woken up, so check whether we should stop
+                    logger.debug("Navigator {} was woken up", getName());
+                } finally {
+                    stopWaiting();
                 }
             }
         }
     }
 
     /**
-     * Sets the should stop.
+     * Hands the step of a token over to the pool. The pool may block the step for a while, so we do not wait for it,
+     * only for a place in its queue. If the pool does not take the token, e.g. because it is shut down, the token goes
+     * back to the scheduler.
+     * 
+     * @param pool
+     *            the pool
+     * @param token
+     *            the token
+     */
+    private void handOver(StepExecutionPool pool, Token token) {
+
+        boolean accepted = false;
+        try {
+            accepted = pool.execute(getDefinitionID(token), token, new StepExecution(token));
+        } catch (InterruptedException e) {
+            // we were woken up, so check whether we should stop
+            logger.debug("Navigator {} was interrupted while handing over a step", getName());
+        } catch (RuntimeException e) {
+            logger.error("A step could not be handed over to the step execution pool", e);
+        } finally {
+            if (!accepted) {
+                this.scheduler.submit(token);
+            }
+        }
+    }
+
+    /**
+     * Executes the step of the token and then the steps of its straight-line successors, until the token is
+     * suspended, split, or the run-to-completion budget is used up.
+     * 
+     * @param token
+     *            the token retrieved from the scheduler
+     */
+    private void runToCompletion(Token token) {
+
+        remainingBudget = runToCompletionBudget;
+        nextToken = token;
+        while (nextToken != null) {
+            currentToken = nextToken;
+            nextToken = null;
+            executeStep(currentToken);
+        }
+        currentToken = null;
+    }
+
+    /**
+     * Offers a token, which was just added as work token during a step executed by this thread, to be executed next by
+     * this thread instead of submitting it to the scheduler. This is only accepted for the token whose step is executed,
+     * i.e. if it took the single outgoing control flow of its node, and as long as the budget allows it.
+     * 
+     * Must only be called by this thread.
+     * 
+     * @param token
+     *            the token
+     * @return true, if the thread executes the token next; false, if it has to be submitted to the scheduler
+     */
+    boolean continueLocally(Token token) {
+
+        if (token != currentToken || nextToken != null || remainingBudget <= 0) {
+            return false;
+        }
+
+        remainingBudget--;
+        nextToken = token;
+        return true;
+    }
+
+    /**
+     * Gets the navigator of this thread.
+     * 
+     * @return the navigator, may be null
+     */
+    @Nullable
+    NavigatorImpl getNavigator() {
+
+        return navigator;
+    }
+
+    /**
+     * Executes a step of the token and tells the navigator about it.
+     * 
+     * @param token
+     *            the token
+     */
+    private void executeStep(Token token) {
+
+        StepProfiler profiler = null;
+        if (navigator != null) {
+            profiler = navigator.getStepProfiler();
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (profiler != null && token instanceof AbstractToken) {
+                ((AbstractToken) token).executeStep(profiler);
+            } else {
+                token.executeStep();
+            }
+        } catch (Exception e) {
+
+            e.printStackTrace();
+        } finally {
+            if (navigator != null) {
+                navigator.signalExecutedToken(token, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Gets the id of the process definition the token belongs to.
+     * 
+     * @param token
+     *            the token
+     * @return the id of the definition, or null if the token has got none
+     */
+    private ProcessDefinitionID getDefinitionID(Token token) {
+
+        AbstractProcessInstance instance = token.getInstance();
+        if (instance == null || instance.getDefinition() == null) {
+            return null;
+        }
+        return instance.getDefinition().getID();
+    }
+
+    /**
+     * A step of a token that is executed by the {@link StepExecutionPool}.
+     */
+    private class StepExecution implements Runnable {
+
+        private Token token;
+
+        /**
+         * Instantiates a new step execution.
+         * 
+         * @param token
+         *            the token
+         */
+        public StepExecution(Token token) {
+
+            this.token = token;
+        }
+
+        @Override
+        public void run() {
+
+            executeStep(token);
+        }
+    }
+
+    /**
+     * Retrieves the next token. Tokens are taken from the scheduler in batches, if the batch size is greater than one.
+     * If the scheduler is empty in blocking mode, this waits until a token is submitted, but not longer than
+     * {@link #WAITTIME}, so that the thread is still able to stop.
+     * 
+     * @return the token, or null if there is nothing to do
+     * @throws InterruptedException
+     *             thrown if the thread was interrupted while waiting
+     */
+    private Token retrieveToken()
+    throws InterruptedException {
+
+        if (!retrievedTokens.isEmpty()) {
+            return retrievedTokens.poll();
+        }
+
+        if (batchSize > 1) {
+            retrievedTokens.addAll(this.scheduler.retrieveAll(batchSize));
+            if (!retrievedTokens.isEmpty()) {
+                return retrievedTokens.poll();
+            }
+        }
+
+        if (!blockingRetrieval) {
+            return this.scheduler.retrieve();
+        }
+        if (!startWaiting()) {
+            return null;
+        }
+        try {
+            return this.scheduler.retrieve(WAITTIME, TimeUnit.MILLISECONDS);
+        } finally {
+            stopWaiting();
+        }
+    }
+
+    /**
+     * Marks the thread as waiting for work, so that it is interrupted, when it should stop.
+     * 
+     * @return true, if the thread may wait; false, if it should stop instead
+     */
+    private boolean startWaiting() {
+
+        synchronized (waitingLock) {
+            waiting = !shouldStop;
+            return waiting;
+        }
+    }
+
+    /**
+     * Marks the thread as working again. An interrupt to stop, that came too late to wake the thread up, is cleared,
+     * so that it does not hit the next step; the thread checks whether it should stop anyway.
+     */
+    private void stopWaiting() {
+
+        synchronized (waitingLock) {
+            waiting = false;
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Hands the tokens, that were retrieved but not executed, back to the scheduler, so that they are not lost when the
+     * thread stops.
+     */
+    private void returnRetrievedTokens() {
+
+        Token token;
+        while ((token = retrievedTokens.poll()) != null) {
+            this.scheduler.submit(token);
+        }
+    }
+
+    /**
+     * Sets the should stop. A thread, that waits for work, is woken up, so that it stops right away.
      * 
      * @param shouldStop
      *            the new should stop
@@ -113,5 +429,12 @@ public class NavigationThread extends Thread {
     public void setShouldStop(boolean shouldStop) {
 
         this.shouldStop = shouldStop;
+        if (shouldStop) {
+            synchronized (waitingLock) {
+                if (waiting) {
+                    interrupt();
+                }
+            }
+        }
     }
 }
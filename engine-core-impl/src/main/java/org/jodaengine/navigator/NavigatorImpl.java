@@ -2,7 +2,23 @@ package org.jodaengine.navigator;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
@@ -14,17 +30,33 @@ import org.jodaengine.bootstrap.Service;
 import org.jodaengine.eventmanagement.processevent.incoming.IncomingStartProcessEvent;
 import org.jodaengine.exception.DefinitionNotActivatedException;
 import org.jodaengine.exception.DefinitionNotFoundException;
+import org.jodaengine.exception.JodaEngineRuntimeException;
+import org.jodaengine.exception.ServiceUnavailableException;
 import org.jodaengine.exception.UnsupportedDefinitionException;
+import org.jodaengine.ext.AbstractExtensible;
 import org.jodaengine.ext.AbstractListenable;
 import org.jodaengine.ext.listener.AbstractNavigatorListener;
 import org.jodaengine.ext.listener.AbstractSchedulerListener;
+import org.jodaengine.ext.listener.RepositoryDeploymentListener;
 import org.jodaengine.ext.service.ExtensionService;
+import org.jodaengine.navigator.journal.Journal;
+import org.jodaengine.navigator.journal.JournalWriter;
+import org.jodaengine.navigator.journal.RecoveredInstance;
 import org.jodaengine.navigator.schedule.FIFOScheduler;
+import org.jodaengine.navigator.schedule.PartitionedScheduler;
+import org.jodaengine.navigator.schedule.PriorityScheduler;
 import org.jodaengine.navigator.schedule.Scheduler;
+import org.jodaengine.process.definition.NodeIndex;
 import org.jodaengine.process.definition.ProcessDefinitionID;
 import org.jodaengine.process.definition.ProcessDefinitionInside;
 import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.instance.ProcessInstanceStore;
+import org.jodaengine.process.instance.ProcessInstanceSummary;
+import org.jodaengine.process.structure.Node;
 import org.jodaengine.process.token.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The Class NavigatorImpl. Our Implementation of the {@link Navigator}.
@@ -34,6 +66,17 @@ Service {
 
     private static final int NUMBER_OF_NAVIGATOR_THREADS = 10;
 
+    /** The time between two checks whether a draining navigator has executed all tokens, in milliseconds. */
+    private static final long DRAIN_POLLING_TIME = 10;
+
+    /** The time in milliseconds a stopping navigator waits at most for the steps being executed. */
+    private static final long STOP_TIMEOUT = 5000;
+
+    /** The default time in milliseconds an instance has to wait, before its variables are evicted. */
+    public static final long DEFAULT_EVICTION_DELAY = 60000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     /**
      * Holds all the process tokens that are ready to be executed. Also implements some kind of scheduling algorithm.
      * (Tokens are the unit, which we use to schedule)
@@ -41,28 +84,101 @@ Service {
     private Scheduler scheduler;
 
     /**
-     * All the tokens that are suspended for some reason, for example because of a human task.
+     * All the tokens that are suspended for some reason, for example because of a human task. Indexed by their id.
      */
-    private List<Token> suspendedTokens;
+    private ConcurrentMap<UUID, Token> suspendedTokens;
+
+    /** The time in nanoseconds, when each suspended token was suspended last. Indexed by the id of the token. */
+    private ConcurrentMap<UUID, Long> suspensionTimes;
 
     /**
-     * All the process Instances (not tokens!) that are currently running for some reason.
+     * All the process Instances (not tokens!) that are currently running for some reason. Indexed by their id.
      */
-    private List<AbstractProcessInstance> runningInstances;
+    private ConcurrentMap<UUID, AbstractProcessInstance> runningInstances;
 
     /**
-     * All the process instances that finished i.e. that reached all their end events. Temporary until we can save them,
-     * the way they are implemented now, they eat up a huge amount of heap space, as they are the last reference to
-     * stuff the garbage collector would normally eat.
+     * All the process instances that finished i.e. that reached all their end events. The way they are implemented now,
+     * they eat up a huge amount of heap space, as they are the last reference to stuff the garbage collector would
+     * normally eat. So the retention only keeps as many of them as configured.
      */
-    private List<AbstractProcessInstance> finishedInstances;
+    private FinishedInstanceRetention finishedInstances;
+
+    /**
+     * The instances that ended. It tells addRunningInstance, that an instance ended before it was registered, and keeps
+     * an instance from being finished twice. The instances are only weakly referenced, so they are dropped with the
+     * retention of the finished instances.
+     */
+    private Set<AbstractProcessInstance> endedInstances;
+
+    /** The number of running instances per process definition. */
+    private ConcurrentMap<ProcessDefinitionID, AtomicInteger> runningInstancesPerDefinition;
+
+    /** The number of finished instances per process definition. */
+    private ConcurrentMap<ProcessDefinitionID, AtomicInteger> finishedInstancesPerDefinition;
 
     /** The execution threads. Yes our navigator is multi-threaded. Pretty awesome. */
-    private ArrayList<NavigationThread> executionThreads;
+    private List<NavigationThread> executionThreads;
+
+    /** If set, adjusts the number of execution threads to the load. */
+    private ThreadPoolController threadPoolController;
+
+    /** The time all steps took to execute, in nanoseconds. */
+    private AtomicLong stepExecutionTime;
+
+    /** The number of all executed steps. */
+    private AtomicLong numberOfExecutedSteps;
 
     private int navigatorThreads;
 
-    private NavigatorState state;
+    /** Indicates if idle navigator threads wait on the scheduler for new tokens instead of polling it. */
+    private boolean blockingRetrieval;
+
+    /** If set, the steps of the tokens are executed by this pool instead of the navigator threads. */
+    private StepExecutionPool stepExecutionPool;
+
+    /** Records the latencies of the steps, if set. */
+    private volatile StepProfiler stepProfiler;
+
+    /** If set, the state transitions of the instances are written to this journal, so they survive a crash. */
+    private Journal journal;
+
+    /** Writes to the journal, while the navigator is started. */
+    private volatile JournalWriter journalWriter;
+
+    /** Recovering from the journal and writing its snapshots exclude each other. */
+    private final Object journalLock = new Object();
+
+    /** The time between two snapshots of the journal in milliseconds, or 0 if no snapshots are taken. */
+    private long snapshotInterval;
+
+    /** Takes the snapshots of the journal, while the navigator is started. */
+    private ScheduledExecutorService snapshotTimer;
+
+    /** If set, the variables of instances, whose tokens all wait, are evicted to this store. */
+    private ProcessInstanceStore processInstanceStore;
+
+    /** The time in milliseconds an instance has to wait, before its variables are evicted. */
+    private long evictionDelay;
+
+    /** Evicts the variables of waiting instances, while the navigator is started. */
+    private ScheduledExecutorService evictionTimer;
+
+    /** The maximum number of tokens a navigator thread retrieves from the scheduler at once. */
+    private int batchSize;
+
+    /** The number of straight-line successors a navigator thread executes itself, without the scheduler. */
+    private int runToCompletionBudget;
+
+    /**
+     * The number of tokens that were handed to the scheduler, but are not completely executed yet. A token that is being
+     * executed is no longer scheduled, but the navigator is not idle until it is done.
+     */
+    private AtomicInteger numberOfPendingTokens;
+
+    private volatile NavigatorState state;
+
+    /** Indicates that the navigator is being drained and does not start new instances. */
+    private volatile boolean draining;
 
     private int counter;
 
@@ -84,7 +200,9 @@ Service {
     @Override
     public void removeTokenFromScheduler(Token t) {
 
-        this.scheduler.remove(t);
+        if (this.scheduler.remove(t)) {
+            numberOfPendingTokens.decrementAndGet();
+        }
 
     }
 
@@ -105,12 +223,23 @@ Service {
 
         this.state = NavigatorState.INIT;
         this.counter = 0;
+        this.numberOfPendingTokens = new AtomicInteger(0);
         this.navigatorThreads = numberOfThreads;
-
-        this.suspendedTokens = new ArrayList<Token>();
-        this.executionThreads = new ArrayList<NavigationThread>();
-        this.runningInstances = Collections.synchronizedList(new ArrayList<AbstractProcessInstance>());
-        this.finishedInstances = new ArrayList<AbstractProcessInstance>();
+        this.batchSize = 1;
+        this.runToCompletionBudget = 0;
+        this.evictionDelay = DEFAULT_EVICTION_DELAY;
+
+        this.suspendedTokens = new ConcurrentHashMap<UUID, Token>();
+        this.suspensionTimes = new ConcurrentHashMap<UUID, Long>();
+        this.executionThreads = new CopyOnWriteArrayList<NavigationThread>();
+        this.stepExecutionTime = new AtomicLong(0);
+        this.numberOfExecutedSteps = new AtomicLong(0);
+        this.runningInstances = new ConcurrentHashMap<UUID, AbstractProcessInstance>();
+        this.finishedInstances = new FinishedInstanceRetention();
+        this.endedInstances = Collections.synchronizedSet(Collections.newSetFromMap(
+            new WeakHashMap<AbstractProcessInstance, Boolean>()));
+        this.runningInstancesPerDefinition = new ConcurrentHashMap<ProcessDefinitionID, AtomicInteger>();
+        this.finishedInstancesPerDefinition = new ConcurrentHashMap<ProcessDefinitionID, AtomicInteger>();
 
         this.scheduler = scheduler;
         this.repository = repositoryService;
@@ -127,13 +256,34 @@ Service {
     @Override
     public void start(JodaEngineServices services) {
 
+        this.draining = false;
         loadExtensions(this.extensionService);
 
+        if (journal != null) {
+            journal.open();
+            journalWriter = new JournalWriter(journal);
+        }
+        if (processInstanceStore != null) {
+            removeOrphanedVariables(processInstanceStore);
+            evictionTimer = createTimer("Instance eviction");
+        }
+        if (stepExecutionPool != null) {
+            stepExecutionPool.start();
+        }
+
         // "Gentlemen, start your engines"
         for (int i = 0; i < navigatorThreads; i++) {
             addThread();
         }
+        if (threadPoolController != null) {
+            threadPoolController.start(this);
+        }
         changeState(NavigatorState.RUNNING);
+
+        if (journalWriter != null) {
+            recover();
+            startSnapshotTimer();
+        }
     }
 
     @Override
@@ -143,24 +293,70 @@ Service {
     }
 
     @Override
-    public void addThread() {
+    public synchronized void addThread() {
 
-        NavigationThread thread = new NavigationThread(String.format("NT %d", counter), scheduler);
+        if (scheduler instanceof PartitionedScheduler
+            && executionThreads.size() >= ((PartitionedScheduler) scheduler).getNumberOfLanes()) {
+            logger.warn("The navigator thread {} does not get a lane of the partitioned scheduler and stays idle.",
+                String.format("NT %d", counter));
+        }
+        NavigationThread thread = new NavigationThread(String.format("NT %d", counter), scheduler, this,
+            blockingRetrieval);
         thread.start();
         executionThreads.add(thread);
         counter++;
     }
 
+    /**
+     * Removes the execution thread that was added last. It stops after the step it is currently executing.
+     * 
+     * @return true, if a thread was removed; false, if there is none
+     */
+    public synchronized boolean removeThread() {
+
+        if (executionThreads.isEmpty()) {
+            return false;
+        }
+
+        NavigationThread thread = executionThreads.remove(executionThreads.size() - 1);
+        thread.setShouldStop(true);
+        return true;
+    }
+
+    /**
+     * Gets the number of execution threads.
+     * 
+     * @return the number of threads
+     */
+    public int getNumberOfThreads() {
+
+        return executionThreads.size();
+    }
+
+    /**
+     * Lets the given controller adjust the number of execution threads to the load. The controller is started and
+     * stopped together with the navigator.
+     * 
+     * @param threadPoolController
+     *            the controller, or null to keep the number of threads given at construction
+     */
+    public void setThreadPoolController(@Nullable ThreadPoolController threadPoolController) {
+
+        this.threadPoolController = threadPoolController;
+    }
+
     @Override
     public AbstractProcessInstance startProcessInstance(ProcessDefinitionID processID)
     throws DefinitionNotFoundException, DefinitionNotActivatedException, UnsupportedDefinitionException {
 
         // TODO use the variable repository here. This cannot be used in tests, as it requires the bootstrap to have
         // run first, but we definitely do not want to start the whole engine to test a simple feature.
+        checkAcceptsInstances();
         ProcessDefinitionInside definition = repository.getProcessDefinitionInside(processID);
         AbstractProcessInstance instance = definition.createProcessInstance(this);
 
-        runningInstances.add(instance);
+        addRunningInstance(instance);
+        syncJournal();
 
         return instance;
     }
@@ -170,14 +366,66 @@ Service {
                                                         IncomingStartProcessEvent processStartEvent)
     throws DefinitionNotFoundException {
 
+        checkAcceptsInstances();
         ProcessDefinitionInside definition = repository.getProcessDefinitionInside(processID);
         AbstractProcessInstance instance = definition.createProcessInstance(this, processStartEvent);
 
-        runningInstances.add(instance);
+        // the instantiation patterns may decide not to create an instance for the event
+        if (instance != null) {
+            addRunningInstance(instance);
+            syncJournal();
+        }
 
         return instance;
     }
 
+    /**
+     * Registers a process instance as running.
+     * 
+     * The first token of the instance is already submitted, when the instance is created. So the instance may even
+     * have ended before it is registered. Then it is finished right away.
+     * 
+     * @param instance
+     *            the instance
+     */
+    protected void addRunningInstance(@Nonnull AbstractProcessInstance instance) {
+
+        if (runningInstances.put(instance.getID(), instance) == null) {
+            getCounter(runningInstancesPerDefinition, getDefinitionID(instance)).incrementAndGet();
+        }
+
+        // whoever removes the ended instance from the running ones finishes it
+        if (endedInstances.contains(instance) && runningInstances.remove(instance.getID(), instance)) {
+            finishInstance(instance);
+        }
+    }
+
+    /**
+     * Waits until the state transitions written to the journal so far are durable, so that a started instance is not
+     * lost. Concurrent callers share a single sync of the journal; the steps of the tokens do not wait for it at all.
+     */
+    private void syncJournal() {
+
+        if (journalWriter != null) {
+            journal.sync();
+        }
+    }
+
+    /**
+     * Moves a formerly running instance to the finished ones.
+     * 
+     * @param instance
+     *            the instance
+     */
+    private void finishInstance(AbstractProcessInstance instance) {
+
+        finishedInstances.add(instance);
+
+        ProcessDefinitionID definitionID = getDefinitionID(instance);
+        getCounter(runningInstancesPerDefinition, definitionID).decrementAndGet();
+        getCounter(finishedInstancesPerDefinition, definitionID).incrementAndGet();
+    }
+
     // this method is for first testing only, as we do not have ProcessDefinitions yet
     // TODO make this method private as soon as it is not used anymore
     /**
@@ -188,25 +436,163 @@ Service {
      */
     public void startArbitraryInstance(Token token) {
 
-        scheduler.submit(token);
+        addWorkToken(token);
     }
 
     /**
-     * Stop the Navigator. So in fact you need to stop all the navigation threads.
+     * Stop the Navigator. So in fact you need to stop all the navigation threads. The steps being executed are waited
+     * for a while, before the journal is closed; steps, which take even longer, are not journaled anymore.
      */
     @Override
     public void stop() {
 
+        // like the tokens retrieved by the threads, the tokens waiting in the pool go back to the scheduler
+        for (Token token : stopExecution()) {
+            scheduler.submit(token);
+        }
+        try {
+            awaitExecution(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_TIMEOUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stopTimersAndJournal();
+        changeState(NavigatorState.STOPPED);
+    }
+
+    /**
+     * Stops the navigator gracefully. New instances are rejected at once, but the tokens of the running instances are
+     * still executed, until there is nothing left to do or the timeout elapsed. Then the navigator is stopped and the
+     * tokens that were not executed are taken from the scheduler and the step execution pool and reported, so that
+     * they can be saved.
+     * 
+     * @param timeout
+     *            the maximum time to wait for the tokens to be executed
+     * @param unit
+     *            the unit of the timeout
+     * @return the report of what was left
+     * @throws InterruptedException
+     *             thrown if the current thread was interrupted while waiting
+     */
+    public DrainReport drain(@Nonnegative long timeout, @Nonnull TimeUnit unit)
+    throws InterruptedException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.draining = true;
+        changeState(NavigatorState.DRAINING);
+
+        while (!isIdle() && System.nanoTime() < deadline) {
+            Thread.sleep(DRAIN_POLLING_TIME);
+        }
+
+        List<Token> unexecutedTokens = new ArrayList<Token>(stopExecution());
+        try {
+            // the threads hand back the tokens they retrieved but did not execute, when they stop
+            awaitExecution(Math.max(deadline, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_POLLING_TIME)));
+        } finally {
+            stopTimersAndJournal();
+            changeState(NavigatorState.STOPPED);
+        }
+
+        // the current thread is no navigator thread, so it takes the tokens of all lanes of a partitioned scheduler;
+        // steps, which are still executed, may add tokens later on
+        unexecutedTokens.addAll(scheduler.retrieveAll(Integer.MAX_VALUE));
+        int numberOfExecutingSteps = Math.max(0, numberOfPendingTokens.addAndGet(-unexecutedTokens.size()));
+
+        DrainReport report = new DrainReport(unexecutedTokens, numberOfExecutingSteps,
+            new ArrayList<Token>(suspendedTokens.values()), getRunningInstances());
+        logger.info("Navigator drained: {}", report);
+        return report;
+    }
+
+    /**
+     * Tells the navigation threads and the step execution pool to stop. They finish the steps they are executing.
+     * 
+     * @return the tokens, whose steps were waiting in the step execution pool and are not executed
+     */
+    private List<Token> stopExecution() {
+
+        if (threadPoolController != null) {
+            threadPoolController.stop();
+        }
         for (NavigationThread executionThread : executionThreads) {
             executionThread.setShouldStop(true);
         }
-        changeState(NavigatorState.STOPPED);
+        if (stepExecutionPool != null) {
+            return stepExecutionPool.shutdown();
+        }
+        return new ArrayList<Token>();
+    }
+
+    /**
+     * Waits for the navigation threads and the step execution pool to finish the steps they are executing.
+     * 
+     * @param deadline
+     *            the time as of {@link System#nanoTime()}, after which we do not wait anymore
+     * @throws InterruptedException
+     *             thrown if the current thread was interrupted while waiting
+     */
+    private void awaitExecution(long deadline)
+    throws InterruptedException {
+
+        for (NavigationThread executionThread : executionThreads) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            // a step might stop the navigator itself
+            if (remaining > 0 && executionThread != Thread.currentThread()) {
+                executionThread.join(remaining);
+            }
+        }
+        if (stepExecutionPool != null) {
+            stepExecutionPool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops the timers and closes the journal. Steps, which are still executed, do not write to the journal anymore.
+     */
+    private void stopTimersAndJournal() {
+
+        if (snapshotTimer != null) {
+            snapshotTimer.shutdown();
+            snapshotTimer = null;
+        }
+        if (evictionTimer != null) {
+            evictionTimer.shutdownNow();
+            evictionTimer = null;
+        }
+        synchronized (journalLock) {
+            if (journalWriter != null) {
+                journalWriter.close();
+                journalWriter = null;
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * Checks if new instances may be started.
+     */
+    private void checkAcceptsInstances() {
+
+        if (draining) {
+            throw new ServiceUnavailableException(Navigator.class);
+        }
+    }
+
+    /**
+     * Gets the number of tokens that were added as work tokens, but are not executed yet. This includes the tokens
+     * that are being executed at the moment.
+     * 
+     * @return the number of pending tokens
+     */
+    public int getNumberOfPendingTokens() {
+
+        return numberOfPendingTokens.get();
     }
 
     @Override
     public boolean isIdle() {
 
-        return this.scheduler.isEmpty();
+        return this.scheduler.isEmpty() && numberOfPendingTokens.get() == 0;
     }
 
     /**
@@ -218,8 +604,7 @@ Service {
     private void changeState(@Nonnull NavigatorState state) {
 
         this.state = state;
-        setChanged();
-        notifyObservers(this.state);
+        notifyListeners(this.state);
     }
 
     /**
@@ -243,36 +628,696 @@ Service {
         return scheduler;
     }
 
+    /**
+     * Defines how idle navigator threads wait for new tokens. It only affects threads that are added afterwards, so it
+     * should be set before the navigator is started.
+     * 
+     * @param blockingRetrieval
+     *            if true, idle threads wait on the {@link Scheduler} and are woken up as soon as a token is submitted;
+     *            if false, they poll the scheduler and sleep in between
+     */
+    public void setBlockingRetrieval(boolean blockingRetrieval) {
+
+        this.blockingRetrieval = blockingRetrieval;
+    }
+
+    /**
+     * Lets the given pool execute the steps of the tokens. The navigator threads then only retrieve the tokens from the
+     * {@link Scheduler} and hand them over, so a few of them suffice. Should be set before the navigator is started.
+     * 
+     * @param stepExecutionPool
+     *            the pool, or null to execute the steps on the navigator threads
+     */
+    public void setStepExecutionPool(@Nullable StepExecutionPool stepExecutionPool) {
+
+        this.stepExecutionPool = stepExecutionPool;
+    }
+
+    /**
+     * Gets the pool that executes the steps of the tokens.
+     * 
+     * @return the pool, or null if the navigator threads execute the steps
+     */
+    @Nullable
+    public StepExecutionPool getStepExecutionPool() {
+
+        return stepExecutionPool;
+    }
+
+    /**
+     * Lets the given profiler record how long the phases of the steps of the tokens take, per node. The recorded
+     * latencies are part of the {@link NavigatorStatistic}. Can be set and removed while the navigator is running.
+     * 
+     * @param stepProfiler
+     *            the profiler, or null to not profile the steps
+     */
+    public void setStepProfiler(@Nullable StepProfiler stepProfiler) {
+
+        this.stepProfiler = stepProfiler;
+
+        // the latencies of the nodes of a deleted definition are discarded with it
+        if (stepProfiler != null && repository instanceof AbstractExtensible) {
+            AbstractExtensible extensibleRepository = (AbstractExtensible) repository;
+            if (!extensibleRepository.getListeners(RepositoryDeploymentListener.class).contains(stepProfiler)) {
+                extensibleRepository.registerListeners(RepositoryDeploymentListener.class, stepProfiler);
+            }
+        }
+    }
+
+    /**
+     * Gets the profiler that records the latencies of the steps.
+     * 
+     * @return the profiler, or null if the steps are not profiled
+     */
+    @Nullable
+    public StepProfiler getStepProfiler() {
+
+        return stepProfiler;
+    }
+
+    /**
+     * Lets the navigator write the state transitions of the instances to the given journal, so that they can be
+     * {@link #recover() recovered} after a crash. The journal is opened, when the navigator is started.
+     * 
+     * @param journal
+     *            the journal, or null to keep the instances in memory only
+     */
+    public void setJournal(@Nullable Journal journal) {
+
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the journal of the navigator.
+     * 
+     * @return the journal, or null if there is none
+     */
+    public Journal getJournal() {
+
+        return journal;
+    }
+
+    /**
+     * Recovers the instances from the journal, which are not running anymore, e.g. because the engine crashed. This
+     * happens when the navigator is started, but process definitions are not persisted, so the instances of
+     * definitions, which are not deployed yet, are kept in the journal until this method is called again.
+     * 
+     * A recovered instance gets its variables back and a token on every node it had a token on. The tokens are
+     * executed again, so the step they were executing, suspended in or about to execute, is repeated. An activity,
+     * that suspended its token, e.g. a human task or a timer, is started anew.
+     * 
+     * @return the number of recovered instances
+     */
+    public int recover() {
+
+        synchronized (journalLock) {
+            JournalWriter writer = this.journalWriter;
+            if (writer == null) {
+                return 0;
+            }
+            return recover(writer);
+        }
+    }
+
+    /**
+     * Sets the time between two snapshots of the journal. A snapshot contains the state of all running instances, so
+     * the journal before it is deleted and does not have to be replayed, when the instances are recovered.
+     * 
+     * @param snapshotInterval
+     *            the time in milliseconds, or 0 to take no snapshots
+     */
+    public void setSnapshotInterval(@Nonnegative long snapshotInterval) {
+
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Writes a snapshot of the running instances and their suspended tokens to the journal and deletes the older
+     * segments of the journal. The navigator goes on executing the tokens meanwhile.
+     * 
+     * The worklist items and the intermediate events the instances wait for are not part of the snapshot. They belong
+     * to the suspended tokens, which are executed again, when the instances are recovered, and create them anew.
+     * 
+     * @return the number of instances in the snapshot
+     */
+    public int snapshot() {
+
+        synchronized (journalLock) {
+            JournalWriter writer = this.journalWriter;
+            if (writer == null) {
+                return 0;
+            }
+            int numberOfInstances = writer.snapshot(suspendedTokens.keySet());
+            logger.debug("A snapshot of {} process instances was written to the journal.", numberOfInstances);
+            return numberOfInstances;
+        }
+    }
+
+    /**
+     * Starts taking snapshots of the journal regularly, if an interval is set.
+     */
+    private void startSnapshotTimer() {
+
+        if (snapshotInterval <= 0) {
+            return;
+        }
+        snapshotTimer = createTimer("Journal snapshots");
+        snapshotTimer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+
+                try {
+                    snapshot();
+                } catch (JodaEngineRuntimeException e) {
+                    logger.error("The snapshot of the journal failed.", e);
+                }
+            }
+        }, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a timer with a single daemon thread.
+     * 
+     * @param name
+     *            the name of the thread
+     * @return the timer
+     */
+    private static ScheduledExecutorService createTimer(@Nonnull final String name) {
+
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Lets the navigator evict the variables of instances, whose tokens all wait, e.g. for a human task or a timer, to
+     * the given store, so that the heap does not grow with the number of waiting instances. The variables are loaded
+     * again, when a token of the instance is resumed. Should be set before the navigator is started.
+     * 
+     * @param processInstanceStore
+     *            the store, or null to keep all instances in memory
+     */
+    public void setProcessInstanceStore(@Nullable ProcessInstanceStore processInstanceStore) {
+
+        this.processInstanceStore = processInstanceStore;
+    }
+
+    /**
+     * Gets the store, to which the variables of waiting instances are evicted.
+     * 
+     * @return the store, or null if there is none
+     */
+    @Nullable
+    public ProcessInstanceStore getProcessInstanceStore() {
+
+        return processInstanceStore;
+    }
+
+    /**
+     * Sets the time an instance has to wait, before its variables are evicted. Short waits, e.g. for an automated
+     * task, are not worth writing the variables to the store.
+     * 
+     * @param evictionDelay
+     *            the time in milliseconds
+     */
+    public void setEvictionDelay(@Nonnegative long evictionDelay) {
+
+        this.evictionDelay = evictionDelay;
+    }
+
+    /**
+     * Evicts the variables of an instance to the store, if all its tokens are suspended.
+     * 
+     * @param instance
+     *            the instance
+     * @return true, if the variables were evicted
+     */
+    public boolean evict(@Nonnull AbstractProcessInstance instance) {
+
+        ProcessInstanceStore store = this.processInstanceStore;
+        if (store == null || !(instance instanceof ProcessInstance) || !isWaiting(instance)) {
+            return false;
+        }
+        ProcessInstance processInstance = (ProcessInstance) instance;
+        try {
+            if (!processInstance.evict(store)) {
+                return false;
+            }
+        } catch (JodaEngineRuntimeException e) {
+            logger.warn("The variables of the instance " + instance.getID() + " could not be evicted.", e);
+            return false;
+        }
+
+        // a token might have been resumed meanwhile, without finding the variables evicted yet
+        if (!isWaiting(instance)) {
+            processInstance.hydrate();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if all tokens of an instance are suspended.
+     * 
+     * @param instance
+     *            the instance
+     * @return true, if it has got tokens and all of them are suspended
+     */
+    private boolean isWaiting(@Nonnull AbstractProcessInstance instance) {
+
+        List<Token> tokens = instance.getAssignedTokens();
+        if (tokens.isEmpty()) {
+            return false;
+        }
+        for (Token token : tokens) {
+            if (!suspendedTokens.containsKey(token.getID())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the variables from the store, which do not belong to an evicted running instance. They are left behind,
+     * when the navigator stops while instances wait, as the instances are recovered from the journal or lost then.
+     * 
+     * @param store
+     *            the store
+     */
+    private void removeOrphanedVariables(@Nonnull ProcessInstanceStore store) {
+
+        int numberOfOrphans = 0;
+        try {
+            for (UUID instanceID : store.getInstanceIDs()) {
+                AbstractProcessInstance instance = runningInstances.get(instanceID);
+                if (instance instanceof ProcessInstance && ((ProcessInstance) instance).isEvicted()) {
+                    continue;
+                }
+                store.remove(instanceID);
+                numberOfOrphans++;
+            }
+        } catch (JodaEngineRuntimeException e) {
+            logger.warn("The orphaned variables could not be removed from the instance store.", e);
+        }
+        if (numberOfOrphans > 0) {
+            logger.info("The variables of {} instances, which are not running anymore, were removed from the store.",
+                numberOfOrphans);
+        }
+    }
+
+    /**
+     * Checks if all tokens of an instance have been suspended for the eviction delay since they were suspended last.
+     * 
+     * @param instance
+     *            the instance
+     * @return true, if it has got tokens and all of them are suspended long enough
+     */
+    private boolean isWaitingForEvictionDelay(@Nonnull AbstractProcessInstance instance) {
+
+        List<Token> tokens = instance.getAssignedTokens();
+        if (tokens.isEmpty()) {
+            return false;
+        }
+        long latestSuspensionTime = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(evictionDelay);
+        for (Token token : tokens) {
+            Long suspensionTime = suspensionTimes.get(token.getID());
+            if (suspensionTime == null || suspensionTime - latestSuspensionTime > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evicts the variables of the instance of a token after the eviction delay, if all of its tokens have been
+     * suspended that long then.
+     * 
+     * @param token
+     *            the suspended token
+     */
+    private void scheduleEviction(@Nonnull Token token) {
+
+        ScheduledExecutorService timer = this.evictionTimer;
+        final AbstractProcessInstance instance = token.getInstance();
+        if (timer == null || instance == null) {
+            return;
+        }
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+
+                    // the token might have been resumed and suspended again meanwhile
+                    if (isWaitingForEvictionDelay(instance)) {
+                        evict(instance);
+                    }
+                }
+            }, evictionDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the navigator is stopped
+        }
+    }
+
+    /**
+     * Loads the evicted variables of an instance back into memory.
+     * 
+     * @param instance
+     *            the instance, might be null
+     */
+    private void hydrate(@Nullable AbstractProcessInstance instance) {
+
+        if (instance instanceof ProcessInstance) {
+            ((ProcessInstance) instance).hydrate();
+        }
+    }
+
+    /**
+     * Recovers the instances from the journal. Must be called with the journal lock.
+     * 
+     * @param writer
+     *            the writer of the journal
+     * @return the number of recovered instances
+     */
+    private int recover(@Nonnull JournalWriter writer) {
+
+        Set<UUID> observedInstances = new HashSet<UUID>();
+        long segmentNumber = writer.roll(observedInstances);
+        Map<UUID, RecoveredInstance> instances = RecoveredInstance.read(journal, journal.getFilesBefore(segmentNumber));
+
+        int numberOfRecoveredInstances = 0;
+        for (RecoveredInstance recoveredInstance : instances.values()) {
+            if (recoveredInstance.isEnded() || observedInstances.contains(recoveredInstance.getInstanceID())) {
+                continue;
+            }
+            if (recoveredInstance.getDefinitionID() == null || recoveredInstance.getTokens().isEmpty()) {
+                logger.warn("The instance {} has been journaled incompletely and cannot be recovered.",
+                    recoveredInstance.getInstanceID());
+                continue;
+            }
+            if (restoreInstance(writer, recoveredInstance)) {
+                numberOfRecoveredInstances++;
+            }
+        }
+
+        // the recovered instances are written anew, so the older segments and snapshots are not needed anymore
+        journal.sync();
+        journal.truncate(segmentNumber);
+        logger.info("{} process instances were recovered from the journal.", numberOfRecoveredInstances);
+        return numberOfRecoveredInstances;
+    }
+
+    /**
+     * Restores an instance from the journal and executes its tokens.
+     * 
+     * @param writer
+     *            the writer of the journal
+     * @param recoveredInstance
+     *            the state of the instance read from the journal
+     * @return true, if the instance was restored; false, if it was carried over
+     */
+    private boolean restoreInstance(@Nonnull JournalWriter writer, @Nonnull RecoveredInstance recoveredInstance) {
+
+        ProcessDefinitionInside definition;
+        try {
+            if (repository == null) {
+                throw new DefinitionNotFoundException(recoveredInstance.getDefinitionID());
+            }
+            definition = repository.getProcessDefinitionInside(recoveredInstance.getDefinitionID());
+        } catch (DefinitionNotFoundException e) {
+            writer.carryOver(recoveredInstance);
+            return false;
+        }
+
+        NodeIndex nodeIndex = writer.getNodeIndex(definition);
+        List<Node> nodes = new ArrayList<Node>();
+        for (int index : recoveredInstance.getTokens().values()) {
+            Node node = nodeIndex.getNode(index);
+            if (node == null) {
+                logger.warn("The definition {} does not match the journaled instance {}, it is kept in the journal.",
+                    definition.getID(), recoveredInstance.getInstanceID());
+                writer.carryOver(recoveredInstance);
+                return false;
+            }
+            nodes.add(node);
+        }
+
+        ProcessInstance instance = new ProcessInstance(recoveredInstance.getInstanceID(), definition,
+            definition.createTokenBuilder(this, extensionService));
+        writer.observe(instance);
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = getClass().getClassLoader();
+        }
+        for (Map.Entry<String, Object> variable : recoveredInstance.decodeVariables(classLoader).entrySet()) {
+            instance.getContext().setVariable(variable.getKey(), variable.getValue());
+        }
+
+        List<Token> tokens = new ArrayList<Token>();
+        for (Node node : nodes) {
+            tokens.add(instance.createToken(node));
+        }
+        for (Token token : tokens) {
+            addWorkToken(token);
+        }
+        addRunningInstance(instance);
+        return true;
+    }
+
+    /**
+     * Sets the maximum number of tokens a navigator thread retrieves from the {@link Scheduler} at once. The thread
+     * executes them one after another before it returns to the scheduler, so a batch size greater than one reduces the
+     * contention on the scheduler, but retrieved tokens can no longer be taken by other, idle threads. It only affects
+     * threads that are added afterwards, so it should be set before the navigator is started.
+     * 
+     * @param batchSize
+     *            the batch size, 1 to retrieve the tokens one by one
+     */
+    public void setBatchSize(@Nonnegative int batchSize) {
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the maximum number of tokens a navigator thread retrieves from the {@link Scheduler} at once.
+     * 
+     * @return the batch size
+     */
+    public int getBatchSize() {
+
+        return batchSize;
+    }
+
+    /**
+     * Lets a navigator thread execute the straight-line successors of a token itself, i.e. as long as the token takes
+     * a single outgoing control flow and is not suspended. Such a token is not submitted to the {@link Scheduler}
+     * again, so the scheduler and its listeners do not see it, until the budget is used up. It only affects threads
+     * that are added afterwards, so it should be set before the navigator is started.
+     * 
+     * @param runToCompletionBudget
+     *            the number of successive steps a thread executes before the token goes back to the scheduler, 0 to
+     *            submit every token to the scheduler
+     */
+    public void setRunToCompletionBudget(@Nonnegative int runToCompletionBudget) {
+
+        this.runToCompletionBudget = runToCompletionBudget;
+    }
+
+    /**
+     * Gets the number of straight-line successors a navigator thread executes itself.
+     * 
+     * @return the run-to-completion budget
+     */
+    public int getRunToCompletionBudget() {
+
+        return runToCompletionBudget;
+    }
+
     @Override
     public void addWorkToken(Token t) {
 
+        JournalWriter writer = this.journalWriter;
+        if (writer != null && t.getInstance() != null) {
+            writer.observe(t.getInstance());
+        }
+
+        numberOfPendingTokens.incrementAndGet();
+
+        // a token that simply moves on is executed by the current navigator thread, if possible
+        Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof NavigationThread) {
+            NavigationThread navigationThread = (NavigationThread) currentThread;
+            if (navigationThread.getNavigator() == this && navigationThread.continueLocally(t)) {
+                return;
+            }
+        }
+
         scheduler.submit(t);
+    }
+
+    /**
+     * Signals that a navigation thread has executed a step of the given token. Tokens created during that step have
+     * already been added as work tokens.
+     * 
+     * @param token
+     *            the executed token
+     * @param executionTime
+     *            the time the step took, in nanoseconds
+     */
+    void signalExecutedToken(Token token, long executionTime) {
+
+        numberOfPendingTokens.decrementAndGet();
+        stepExecutionTime.addAndGet(executionTime);
+        numberOfExecutedSteps.incrementAndGet();
+    }
+
+    /**
+     * Gets the time all steps took to execute so far.
+     * 
+     * @return the time in nanoseconds
+     */
+    public long getStepExecutionTime() {
+
+        return stepExecutionTime.get();
+    }
+
+    /**
+     * Gets the number of steps executed so far.
+     * 
+     * @return the number of executed steps
+     */
+    public long getNumberOfExecutedSteps() {
 
+        return numberOfExecutedSteps.get();
     }
 
     @Override
     public void addSuspendToken(Token t) {
 
-        suspendedTokens.add(t);
+        suspensionTimes.put(t.getID(), System.nanoTime());
+        suspendedTokens.put(t.getID(), t);
+
+        JournalWriter writer = this.journalWriter;
+        if (writer != null) {
+            writer.tokenSuspended(t);
+        }
+        scheduleEviction(t);
     }
 
     @Override
     public void removeSuspendToken(Token t) {
 
-        suspendedTokens.remove(t);
+        suspendedTokens.remove(t.getID());
+        suspensionTimes.remove(t.getID());
 
+        JournalWriter writer = this.journalWriter;
+        if (writer != null) {
+            writer.tokenResumed(t);
+        }
+
+        // the token is about to continue, so its instance needs its variables
+        hydrate(t.getInstance());
     }
 
+    /**
+     * Gets the running instances. The returned list is a snapshot, so it is not changed by the navigator afterwards
+     * and changing it does not affect the navigator.
+     * 
+     * @return the running instances
+     */
     @Override
     public List<AbstractProcessInstance> getRunningInstances() {
 
-        return runningInstances;
+        return new ArrayList<AbstractProcessInstance>(runningInstances.values());
     }
 
+    /**
+     * Gets the ended instances. The returned list is a snapshot, so it is not changed by the navigator afterwards and
+     * changing it does not affect the navigator.
+     * 
+     * @return the ended instances
+     */
     @Override
     public List<AbstractProcessInstance> getEndedInstances() {
 
-        return finishedInstances;
+        return finishedInstances.getInstances();
+    }
+
+    @Override
+    public List<ProcessInstanceSummary> getEndedInstanceSummaries() {
+
+        return finishedInstances.getSummaries();
+    }
+
+    /**
+     * Defines how many of the ended instances are kept and what happens to the others. Ended instances that are
+     * already kept are not transferred.
+     * 
+     * @param finishedInstanceRetention
+     *            the retention
+     */
+    public void setFinishedInstanceRetention(@Nonnull FinishedInstanceRetention finishedInstanceRetention) {
+
+        this.finishedInstances = finishedInstanceRetention;
+    }
+
+    @Override
+    public int getNumberOfRunningInstances(ProcessDefinitionID definitionID) {
+
+        return getCounter(runningInstancesPerDefinition, definitionID).get();
+    }
+
+    @Override
+    public int getNumberOfEndedInstances(ProcessDefinitionID definitionID) {
+
+        return getCounter(finishedInstancesPerDefinition, definitionID).get();
+    }
+
+    /**
+     * Gets the instance counter of a process definition and creates it, if necessary.
+     * 
+     * @param counters
+     *            the counters per process definition
+     * @param definitionID
+     *            the id of the process definition, may be null
+     * @return the counter; for instances without a definition a counter that is not stored
+     */
+    private static AtomicInteger getCounter(ConcurrentMap<ProcessDefinitionID, AtomicInteger> counters,
+                                            @Nullable ProcessDefinitionID definitionID) {
+
+        if (definitionID == null) {
+            return new AtomicInteger(0);
+        }
+
+        AtomicInteger counter = counters.get(definitionID);
+        if (counter == null) {
+            AtomicInteger newCounter = new AtomicInteger(0);
+            counter = counters.putIfAbsent(definitionID, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Gets the id of the process definition of an instance.
+     * 
+     * @param instance
+     *            the instance
+     * @return the id of the definition, or null if the instance has got none
+     */
+    private static ProcessDefinitionID getDefinitionID(AbstractProcessInstance instance) {
+
+        if (instance.getDefinition() == null) {
+            return null;
+        }
+        return instance.getDefinition().getID();
     }
 
     @Override
@@ -286,14 +1331,23 @@ Service {
     @Override
     public void signalEndedProcessInstance(AbstractProcessInstance instance) {
 
-        boolean instanceContained = runningInstances.remove(instance);
+        JournalWriter writer = this.journalWriter;
+        if (writer != null) {
+            writer.instanceEnded(instance);
+        }
+
+        // e.g. a cancelled instance might still have its variables in the store
+        hydrate(instance);
 
+        // the mark tells addRunningInstance, that the instance ended before it was registered; an instance, which
+        // ended already, is not finished again
         // TODO maybe throw an exception if the instance provided is not in the running instances list?
-        if (instanceContained) {
-            finishedInstances.add(instance);
+        if (endedInstances.add(instance) && runningInstances.remove(instance.getID(), instance)) {
+            finishInstance(instance);
         }
 
-        if (runningInstances.isEmpty()) {
+        // a draining navigator stays draining, until the drain is over
+        if (runningInstances.isEmpty() && !draining) {
             changeState(NavigatorState.IDLE);
         }
 
@@ -302,10 +1356,21 @@ Service {
     @Override
     public final NavigatorStatistic getStatistics() {
 
-        final NavigatorStatistic stat = new NavigatorStatistic(getEndedInstances().size(),
-            getRunningInstances().size(), this.executionThreads.size(), isIdle());
+        // the lists of the instances are copies, so they are not used here
+        int numberOfFinishedInstances = finishedInstances.getNumberOfFinishedInstances();
+        Map<Integer, Integer> queueDepthPerPriority = new TreeMap<Integer, Integer>();
+        if (this.scheduler instanceof PriorityScheduler) {
+            queueDepthPerPriority = ((PriorityScheduler) this.scheduler).getQueueDepthPerPriority();
+        }
+
+        StepProfiler profiler = this.stepProfiler;
+        List<StepProfile> stepProfiles = new ArrayList<StepProfile>();
+        if (profiler != null) {
+            stepProfiles = profiler.getStepProfiles();
+        }
 
-        return stat;
+        return new NavigatorStatistic(numberOfFinishedInstances, runningInstances.size(),
+            this.executionThreads.size(), isIdle(), queueDepthPerPriority, stepProfiles);
     }
 
     /**
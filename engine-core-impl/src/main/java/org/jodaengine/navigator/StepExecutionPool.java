@@ -0,0 +1,440 @@
+package org.jodaengine.navigator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.token.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class StepExecutionPool. If the navigator uses this pool, the {@link NavigationThread}s do not execute the token
+ * steps themselves, but hand them over to a pool of threads that grows as needed. A token that blocks for a long time
+ * (e.g. a service task calling a remote system) then only blocks its own pool thread and not one of the few
+ * navigator threads. Idle pool threads are reused and terminate after a while.
+ *
+ * The number of steps that are executed at the same time can be limited per {@link ProcessDefinitionID}, so that the
+ * instances of a single definition cannot occupy an arbitrary number of threads. Steps exceeding the limit wait in a
+ * queue of their definition until a running step has finished. The queue is bounded; if it is full, the navigator
+ * thread handing over a step waits, so that the remaining tokens stay in the scheduler, where the
+ * {@link ThreadPoolController} sees them.
+ *
+ * When the pool is {@link #shutdown() shut down}, the tokens of the waiting steps are handed back, so that they are not
+ * lost.
+ */
+public class StepExecutionPool {
+
+    /** Means that the number of concurrently executed steps is not limited. */
+    public static final int UNLIMITED = 0;
+
+    /** The default number of steps, that may wait per definition. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+    /** The time a navigator thread waits for a place in a full queue, before it checks whether the pool is shut down. */
+    private static final long QUEUE_WAITING_TIME = 100;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private volatile ExecutorService executor;
+
+    private int defaultConcurrencyLimit;
+
+    private int queueCapacity;
+
+    /** The concurrency limits that differ from the default one. */
+    private ConcurrentMap<ProcessDefinitionID, Integer> concurrencyLimits;
+
+    /** The running and waiting steps per definition. */
+    private ConcurrentMap<ProcessDefinitionID, DefinitionSlot> slots;
+
+    /** Used for steps of tokens without a definition. */
+    private DefinitionSlot slotWithoutDefinition;
+
+    /** The tokens of steps, that the executor rejected; they are handed back on shutdown. */
+    private Queue<Token> rejectedTokens;
+
+    /** Steps are queued and started with the read lock; shutting down takes the write lock. */
+    private ReadWriteLock shutdownLock;
+
+    private volatile boolean shutdown;
+
+    /**
+     * Instantiates a new step execution pool without any concurrency limit.
+     */
+    public StepExecutionPool() {
+
+        this(UNLIMITED);
+    }
+
+    /**
+     * Instantiates a new step execution pool.
+     *
+     * @param defaultConcurrencyLimit
+     *            the number of steps of a single process definition that may be executed at the same time, unless
+     *            another limit is set for the definition; {@link #UNLIMITED} for no limit
+     */
+    public StepExecutionPool(@Nonnegative int defaultConcurrencyLimit) {
+
+        this(defaultConcurrencyLimit, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new step execution pool.
+     *
+     * @param defaultConcurrencyLimit
+     *            the number of steps of a single process definition that may be executed at the same time, unless
+     *            another limit is set for the definition; {@link #UNLIMITED} for no limit
+     * @param queueCapacity
+     *            the number of steps of a single process definition that may wait for a running step
+     */
+    public StepExecutionPool(@Nonnegative int defaultConcurrencyLimit, @Nonnegative int queueCapacity) {
+
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be at least 1.");
+        }
+        this.defaultConcurrencyLimit = defaultConcurrencyLimit;
+        this.queueCapacity = queueCapacity;
+        this.rejectedTokens = new ConcurrentLinkedQueue<Token>();
+        this.shutdownLock = new ReentrantReadWriteLock();
+        this.concurrencyLimits = new ConcurrentHashMap<ProcessDefinitionID, Integer>();
+        this.slots = new ConcurrentHashMap<ProcessDefinitionID, DefinitionSlot>();
+        this.slotWithoutDefinition = new DefinitionSlot(null);
+        this.executor = createExecutor();
+    }
+
+    /**
+     * Starts the pool again after a {@link #shutdown()}, e.g. because the navigator is restarted. A new pool is
+     * already started.
+     */
+    public void start() {
+
+        shutdownLock.writeLock().lock();
+        try {
+            if (shutdown) {
+                executor = createExecutor();
+                shutdown = false;
+            }
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Creates the executor, whose daemon threads execute the steps.
+     *
+     * @return the executor
+     */
+    private static ExecutorService createExecutor() {
+
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private AtomicInteger counter = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, String.format("NT step %d", counter.getAndIncrement()));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Limits the number of steps of the given process definition that may be executed at the same time. The limit
+     * applies to steps that are executed afterwards.
+     *
+     * @param definitionID
+     *            the id of the process definition
+     * @param limit
+     *            the maximum number of concurrently executed steps, or {@link #UNLIMITED}
+     */
+    public void setConcurrencyLimit(@Nonnull ProcessDefinitionID definitionID, @Nonnegative int limit) {
+
+        concurrencyLimits.put(definitionID, limit);
+    }
+
+    /**
+     * Gets the number of steps of the given process definition that may be executed at the same time.
+     *
+     * @param definitionID
+     *            the id of the process definition, may be null
+     * @return the limit, or {@link #UNLIMITED}
+     */
+    public int getConcurrencyLimit(@Nullable ProcessDefinitionID definitionID) {
+
+        if (definitionID == null) {
+            return defaultConcurrencyLimit;
+        }
+
+        Integer limit = concurrencyLimits.get(definitionID);
+        if (limit == null) {
+            return defaultConcurrencyLimit;
+        }
+        return limit;
+    }
+
+    /**
+     * Executes the step on a pool thread, as soon as the concurrency limit of the definition allows it. If the queue
+     * of the definition is full, this waits for a place in it.
+     *
+     * @param definitionID
+     *            the id of the process definition the step belongs to, may be null
+     * @param token
+     *            the token, whose step is executed
+     * @param step
+     *            the step
+     * @return true, if the step is executed or handed back by {@link #shutdown()}; false, if the pool is shut down
+     *         and the caller keeps the token
+     * @throws InterruptedException
+     *             thrown if the current thread was interrupted while waiting for a place in the queue; the caller
+     *             keeps the token
+     */
+    public boolean execute(@Nullable ProcessDefinitionID definitionID, @Nonnull Token token, @Nonnull Runnable step)
+    throws InterruptedException {
+
+        DefinitionSlot slot = getSlot(definitionID);
+        while (!slot.freePlaces.tryAcquire(QUEUE_WAITING_TIME, TimeUnit.MILLISECONDS)) {
+            if (shutdown) {
+                return false;
+            }
+        }
+
+        shutdownLock.readLock().lock();
+        try {
+            if (shutdown) {
+                slot.freePlaces.release();
+                return false;
+            }
+            slot.waitingSteps.offer(new WaitingStep(token, step));
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+        slot.dispatch();
+        return true;
+    }
+
+    /**
+     * Stops the pool. Steps that are already running are finished, waiting steps are not started anymore.
+     *
+     * @return the tokens of the waiting steps
+     */
+    public List<Token> shutdown() {
+
+        List<Token> waitingTokens = new ArrayList<Token>();
+        shutdownLock.writeLock().lock();
+        try {
+            shutdown = true;
+            executor.shutdown();
+            collectWaitingTokens(slotWithoutDefinition, waitingTokens);
+            for (DefinitionSlot slot : slots.values()) {
+                collectWaitingTokens(slot, waitingTokens);
+            }
+            Token token;
+            while ((token = rejectedTokens.poll()) != null) {
+                waitingTokens.add(token);
+            }
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+        return waitingTokens;
+    }
+
+    /**
+     * Waits until the running steps are finished after a {@link #shutdown()}.
+     *
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the unit of the timeout
+     * @return true, if all steps are finished; false, if the timeout elapsed before
+     * @throws InterruptedException
+     *             thrown if the current thread was interrupted while waiting
+     */
+    public boolean awaitTermination(@Nonnegative long timeout, @Nonnull TimeUnit unit)
+    throws InterruptedException {
+
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Takes the waiting steps of a slot. Must be called with the write lock.
+     *
+     * @param slot
+     *            the slot
+     * @param waitingTokens
+     *            the list, to which the tokens of the steps are added
+     */
+    private void collectWaitingTokens(@Nonnull DefinitionSlot slot, @Nonnull List<Token> waitingTokens) {
+
+        WaitingStep waitingStep;
+        while ((waitingStep = slot.waitingSteps.poll()) != null) {
+            slot.freePlaces.release();
+            waitingTokens.add(waitingStep.token);
+        }
+    }
+
+    /**
+     * Gets the slot of a process definition and creates it, if necessary.
+     *
+     * @param definitionID
+     *            the id of the process definition, may be null
+     * @return the slot
+     */
+    private DefinitionSlot getSlot(@Nullable ProcessDefinitionID definitionID) {
+
+        if (definitionID == null) {
+            return slotWithoutDefinition;
+        }
+
+        DefinitionSlot slot = slots.get(definitionID);
+        if (slot == null) {
+            DefinitionSlot newSlot = new DefinitionSlot(definitionID);
+            slot = slots.putIfAbsent(definitionID, newSlot);
+            if (slot == null) {
+                slot = newSlot;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Keeps track of the running and waiting steps of a process definition.
+     */
+    private class DefinitionSlot {
+
+        private ProcessDefinitionID definitionID;
+
+        private AtomicInteger runningSteps = new AtomicInteger(0);
+
+        private Queue<WaitingStep> waitingSteps = new ConcurrentLinkedQueue<WaitingStep>();
+
+        /** The number of steps, that may still be queued. */
+        private Semaphore freePlaces = new Semaphore(queueCapacity);
+
+        /**
+         * Instantiates a new slot.
+         *
+         * @param definitionID
+         *            the id of the process definition, may be null
+         */
+        public DefinitionSlot(@Nullable ProcessDefinitionID definitionID) {
+
+            this.definitionID = definitionID;
+        }
+
+        /**
+         * Starts as many waiting steps as the concurrency limit allows. After a shutdown, no step is started anymore.
+         */
+        public void dispatch() {
+
+            while (!waitingSteps.isEmpty() && tryAcquire()) {
+                shutdownLock.readLock().lock();
+                try {
+                    final WaitingStep waitingStep;
+                    if (shutdown || (waitingStep = waitingSteps.poll()) == null) {
+                        // the pool was shut down or another thread took the step in between
+                        runningSteps.decrementAndGet();
+                        continue;
+                    }
+                    freePlaces.release();
+                    start(waitingStep);
+                } finally {
+                    shutdownLock.readLock().unlock();
+                }
+            }
+        }
+
+        /**
+         * Starts a step on a pool thread. The executor is only shut down with the write lock, so it does not reject the
+         * step; if it does nevertheless, the token is kept and handed back on shutdown.
+         *
+         * @param waitingStep
+         *            the step
+         */
+        private void start(@Nonnull final WaitingStep waitingStep) {
+
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+
+                        try {
+                            waitingStep.step.run();
+                        } catch (RuntimeException e) {
+                            logger.error("Execution of a step failed", e);
+                        } finally {
+                            runningSteps.decrementAndGet();
+                            dispatch();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.error("A step was rejected, its token is handed back on shutdown", e);
+                runningSteps.decrementAndGet();
+                rejectedTokens.offer(waitingStep.token);
+            }
+        }
+
+        /**
+         * Reserves a place for a running step, if the limit allows it.
+         *
+         * @return true, if a step may be started
+         */
+        private boolean tryAcquire() {
+
+            int limit = getConcurrencyLimit(definitionID);
+            while (true) {
+                int running = runningSteps.get();
+                if (limit != UNLIMITED && running >= limit) {
+                    return false;
+                }
+                if (runningSteps.compareAndSet(running, running + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * A step, that waits to be started, and its token.
+     */
+    private static final class WaitingStep {
+
+        private final Token token;
+
+        private final Runnable step;
+
+        /**
+         * Instantiates a new waiting step.
+         *
+         * @param token
+         *            the token
+         * @param step
+         *            the step
+         */
+        private WaitingStep(Token token, Runnable step) {
+
+            this.token = token;
+            this.step = step;
+        }
+    }
+}
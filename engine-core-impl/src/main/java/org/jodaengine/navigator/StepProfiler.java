@@ -0,0 +1,220 @@
+package org.jodaengine.navigator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.RepositoryService;
+import org.jodaengine.deployment.Deployment;
+import org.jodaengine.ext.listener.RepositoryDeploymentListener;
+import org.jodaengine.process.definition.AbstractProcessArtifact;
+import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.structure.Node;
+
+/**
+ * The Class StepProfiler records how long the {@link StepPhase phases} of the steps of the tokens take, in a
+ * {@link LatencyHistogram} per node and phase. The results are part of the {@link NavigatorStatistic}.
+ *
+ * Profiling is enabled by setting a profiler on the {@link NavigatorImpl}. Without one, a token only checks for it once
+ * per phase, so profiling costs nothing, if it is not used.
+ *
+ * The navigator registers the profiler at the repository, so that the latencies of the nodes of a deleted definition
+ * are discarded with it.
+ */
+public class StepProfiler implements RepositoryDeploymentListener {
+
+    private static final double MEDIAN = 50;
+
+    private static final double PERCENTILE_90 = 90;
+
+    private static final double PERCENTILE_99 = 99;
+
+    private final ConcurrentMap<Node, NodeProfile> profiles;
+
+    /**
+     * Instantiates a new step profiler.
+     */
+    public StepProfiler() {
+
+        this.profiles = new ConcurrentHashMap<Node, NodeProfile>();
+    }
+
+    /**
+     * Records the time a phase of a step took.
+     *
+     * @param instance
+     *            the instance of the executed token; a token can be recycled during its step, so it is taken from the
+     *            token, when the step starts
+     * @param node
+     *            the node the token was on, when the step started
+     * @param phase
+     *            the phase
+     * @param time
+     *            the time in nanoseconds
+     */
+    public void record(@Nullable AbstractProcessInstance instance,
+                       @Nonnull Node node,
+                       @Nonnull StepPhase phase,
+                       long time) {
+
+        NodeProfile profile = profiles.get(node);
+        if (profile == null) {
+            NodeProfile newProfile = new NodeProfile(getDefinitionID(instance));
+            profile = profiles.putIfAbsent(node, newProfile);
+            if (profile == null) {
+                profile = newProfile;
+            }
+        }
+        profile.getHistogram(phase).record(time);
+    }
+
+    /**
+     * Gets the latencies recorded so far, per node and phase.
+     *
+     * @return the step profiles
+     */
+    public @Nonnull List<StepProfile> getStepProfiles() {
+
+        List<StepProfile> stepProfiles = new ArrayList<StepProfile>();
+        for (Map.Entry<Node, NodeProfile> entry : profiles.entrySet()) {
+            NodeProfile profile = entry.getValue();
+            for (StepPhase phase : StepPhase.values()) {
+                LatencyHistogram histogram = profile.histograms.get(phase.ordinal());
+                if (histogram == null || histogram.getCount() == 0) {
+                    continue;
+                }
+                stepProfiles.add(new StepProfile(profile.definitionID, entry.getKey().getID(), phase,
+                    histogram.getCount(), histogram.getTotalTime(), histogram.getMinTime(), histogram.getMaxTime(),
+                    histogram.getTimeAtPercentile(MEDIAN), histogram.getTimeAtPercentile(PERCENTILE_90),
+                    histogram.getTimeAtPercentile(PERCENTILE_99)));
+            }
+        }
+        return stepProfiles;
+    }
+
+    /**
+     * Discards all recorded latencies.
+     */
+    public void reset() {
+
+        profiles.clear();
+    }
+
+    /**
+     * Discards the latencies recorded for the nodes of a process definition.
+     *
+     * @param definitionID
+     *            the id of the definition
+     */
+    public void reset(@Nonnull ProcessDefinitionID definitionID) {
+
+        Iterator<NodeProfile> iterator = profiles.values().iterator();
+        while (iterator.hasNext()) {
+            if (definitionID.equals(iterator.next().definitionID)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public void definitionDeleted(RepositoryService repository, ProcessDefinition definition) {
+
+        // the repository hands out null, if the definition was not deployed
+        if (definition != null) {
+            reset(definition.getID());
+        }
+    }
+
+    @Override
+    public void definitionDeployed(RepositoryService repository, ProcessDefinition definition) {
+
+        // the nodes are profiled, when they are executed first
+    }
+
+    @Override
+    public void deploymentDeployed(RepositoryService repository, Deployment deployment) {
+
+        // only definitions are profiled
+    }
+
+    @Override
+    public void deploymentDeleted(RepositoryService repository, Deployment deployment) {
+
+        // only definitions are profiled
+    }
+
+    @Override
+    public void artifactDeployed(RepositoryService repository, AbstractProcessArtifact artifact) {
+
+        // only definitions are profiled
+    }
+
+    @Override
+    public void artifactDeleted(RepositoryService repository, AbstractProcessArtifact artifact) {
+
+        // only definitions are profiled
+    }
+
+    /**
+     * Gets the id of the process definition of an instance.
+     *
+     * @param instance
+     *            the instance, may be null
+     * @return the id of the definition, or null if there is none
+     */
+    private static @Nullable ProcessDefinitionID getDefinitionID(@Nullable AbstractProcessInstance instance) {
+
+        if (instance == null || instance.getDefinition() == null) {
+            return null;
+        }
+        return instance.getDefinition().getID();
+    }
+
+    /**
+     * The histograms of a node, one per phase. They are created, when the phase is recorded first.
+     */
+    private static class NodeProfile {
+
+        private final ProcessDefinitionID definitionID;
+
+        private final AtomicReferenceArray<LatencyHistogram> histograms;
+
+        /**
+         * Instantiates a new node profile.
+         *
+         * @param definitionID
+         *            the id of the process definition of the node
+         */
+        public NodeProfile(@Nullable ProcessDefinitionID definitionID) {
+
+            this.definitionID = definitionID;
+            this.histograms = new AtomicReferenceArray<LatencyHistogram>(StepPhase.values().length);
+        }
+
+        /**
+         * Gets the histogram of a phase, creating it if needed.
+         *
+         * @param phase
+         *            the phase
+         * @return the histogram
+         */
+        public LatencyHistogram getHistogram(StepPhase phase) {
+
+            LatencyHistogram histogram = histograms.get(phase.ordinal());
+            if (histogram == null) {
+                histograms.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+                histogram = histograms.get(phase.ordinal());
+            }
+            return histogram;
+        }
+    }
+}
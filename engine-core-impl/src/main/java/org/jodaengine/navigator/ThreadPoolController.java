@@ -0,0 +1,254 @@
+package org.jodaengine.navigator;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.jodaengine.navigator.schedule.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class ThreadPoolController. It periodically adjusts the number of {@link NavigationThread}s of a navigator to its
+ * load, within the configured bounds.
+ *
+ * At every check, the controller looks at the number of tokens waiting in the {@link Scheduler}, the share of the time
+ * the threads spent executing steps (their utilisation) and the average time of a step since the last check.
+ * <ul>
+ * <li>If tokens are waiting and either the threads are busy, or working off the waiting tokens would take longer than
+ * the maximum queue delay, the pool grows by half its size.</li>
+ * <li>If no token is waiting and the threads are mostly idle, the pool shrinks by one thread.</li>
+ * </ul>
+ * So bursts of tokens are handled quickly, while the pool only slowly returns to its minimum size afterwards.
+ */
+public class ThreadPoolController {
+
+    /** The default time between two checks, in milliseconds. */
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    /** The default maximum time tokens should wait in the scheduler, in milliseconds. */
+    public static final long DEFAULT_MAX_QUEUE_DELAY = 100;
+
+    /** The default utilisation above which the threads are considered busy. */
+    public static final double DEFAULT_HIGH_UTILISATION = 0.8;
+
+    /** The default utilisation below which the threads are considered idle. */
+    public static final double DEFAULT_LOW_UTILISATION = 0.2;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private int minNumberOfThreads;
+
+    private int maxNumberOfThreads;
+
+    private long interval;
+
+    private long maxQueueDelay;
+
+    private double highUtilisation;
+
+    private double lowUtilisation;
+
+    private NavigatorImpl navigator;
+
+    private ScheduledExecutorService timer;
+
+    /** The values at the last check, which the current values are compared with. */
+    private long lastCheckTime;
+
+    private long lastStepExecutionTime;
+
+    private long lastNumberOfExecutedSteps;
+
+    /** The average time of a step in nanoseconds, or 0 if no step was executed yet. */
+    private long averageStepTime;
+
+    /**
+     * Instantiates a new thread pool controller.
+     *
+     * @param minNumberOfThreads
+     *            the minimum number of navigator threads
+     * @param maxNumberOfThreads
+     *            the maximum number of navigator threads
+     */
+    public ThreadPoolController(@Nonnegative int minNumberOfThreads, @Nonnegative int maxNumberOfThreads) {
+
+        if (minNumberOfThreads < 1 || maxNumberOfThreads < minNumberOfThreads) {
+            throw new IllegalArgumentException("The bounds have to satisfy 1 <= min <= max.");
+        }
+
+        this.minNumberOfThreads = minNumberOfThreads;
+        this.maxNumberOfThreads = maxNumberOfThreads;
+        this.interval = DEFAULT_INTERVAL;
+        this.maxQueueDelay = DEFAULT_MAX_QUEUE_DELAY;
+        this.highUtilisation = DEFAULT_HIGH_UTILISATION;
+        this.lowUtilisation = DEFAULT_LOW_UTILISATION;
+    }
+
+    /**
+     * Sets the time between two checks.
+     *
+     * @param interval
+     *            the interval in milliseconds
+     */
+    public void setInterval(@Nonnegative long interval) {
+
+        this.interval = interval;
+    }
+
+    /**
+     * Sets the maximum time tokens should wait in the scheduler. If working off the waiting tokens would take longer,
+     * the pool grows.
+     *
+     * @param maxQueueDelay
+     *            the delay in milliseconds
+     */
+    public void setMaxQueueDelay(@Nonnegative long maxQueueDelay) {
+
+        this.maxQueueDelay = maxQueueDelay;
+    }
+
+    /**
+     * Sets the utilisation above which the threads are considered busy.
+     *
+     * @param highUtilisation
+     *            a value between 0 and 1
+     */
+    public void setHighUtilisation(double highUtilisation) {
+
+        this.highUtilisation = highUtilisation;
+    }
+
+    /**
+     * Sets the utilisation below which the threads are considered idle.
+     *
+     * @param lowUtilisation
+     *            a value between 0 and 1
+     */
+    public void setLowUtilisation(double lowUtilisation) {
+
+        this.lowUtilisation = lowUtilisation;
+    }
+
+    /**
+     * Starts to control the threads of the navigator.
+     *
+     * @param controlledNavigator
+     *            the navigator
+     */
+    public synchronized void start(@Nonnull NavigatorImpl controlledNavigator) {
+
+        this.navigator = controlledNavigator;
+        this.lastCheckTime = 0;
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "NT pool controller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+
+                try {
+                    adjust();
+                } catch (RuntimeException e) {
+                    logger.error("Adjusting the navigator threads failed", e);
+                }
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops controlling the threads. The navigator keeps its current threads.
+     */
+    public synchronized void stop() {
+
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * Checks the load of the navigator and adds or removes threads. The first check only enforces the bounds, as there
+     * is nothing to compare with yet.
+     */
+    synchronized void adjust() {
+
+        int numberOfThreads = navigator.getNumberOfThreads();
+        if (numberOfThreads < minNumberOfThreads) {
+            resize(numberOfThreads, minNumberOfThreads);
+            return;
+        }
+        if (numberOfThreads > maxNumberOfThreads) {
+            resize(numberOfThreads, maxNumberOfThreads);
+            return;
+        }
+
+        long now = System.nanoTime();
+        long stepExecutionTime = navigator.getStepExecutionTime();
+        long numberOfExecutedSteps = navigator.getNumberOfExecutedSteps();
+        long elapsedTime = now - lastCheckTime;
+        boolean firstCheck = lastCheckTime == 0;
+
+        long busyTime = stepExecutionTime - lastStepExecutionTime;
+        long steps = numberOfExecutedSteps - lastNumberOfExecutedSteps;
+        lastCheckTime = now;
+        lastStepExecutionTime = stepExecutionTime;
+        lastNumberOfExecutedSteps = numberOfExecutedSteps;
+
+        if (firstCheck || elapsedTime <= 0) {
+            return;
+        }
+
+        if (steps > 0) {
+            averageStepTime = busyTime / steps;
+        }
+        double utilisation = (double) busyTime / ((double) elapsedTime * numberOfThreads);
+        int waitingTokens = navigator.getScheduler().size();
+
+        if (waitingTokens > 0 && numberOfThreads < maxNumberOfThreads) {
+            // without any measured step we cannot estimate the delay, but the tokens are obviously not worked off
+            long queueDelay = Long.MAX_VALUE;
+            if (averageStepTime > 0) {
+                queueDelay = waitingTokens * averageStepTime / numberOfThreads;
+            }
+
+            if (utilisation >= highUtilisation || queueDelay > TimeUnit.MILLISECONDS.toNanos(maxQueueDelay)) {
+                int targetNumberOfThreads = Math.min(maxNumberOfThreads, numberOfThreads + (numberOfThreads + 1) / 2);
+                logger.debug("Growing to {} navigator threads, utilisation {}, {} waiting tokens",
+                    new Object[] {targetNumberOfThreads, utilisation, waitingTokens});
+                resize(numberOfThreads, targetNumberOfThreads);
+            }
+        } else if (waitingTokens == 0 && utilisation < lowUtilisation && numberOfThreads > minNumberOfThreads) {
+            logger.debug("Shrinking to {} navigator threads, utilisation {}", numberOfThreads - 1, utilisation);
+            resize(numberOfThreads, numberOfThreads - 1);
+        }
+    }
+
+    /**
+     * Adds or removes navigator threads.
+     *
+     * @param numberOfThreads
+     *            the current number of threads
+     * @param targetNumberOfThreads
+     *            the number of threads afterwards
+     */
+    private void resize(int numberOfThreads, int targetNumberOfThreads) {
+
+        for (int i = numberOfThreads; i < targetNumberOfThreads; i++) {
+            navigator.addThread();
+        }
+        for (int i = targetNumberOfThreads; i < numberOfThreads; i++) {
+            navigator.removeThread();
+        }
+    }
+}
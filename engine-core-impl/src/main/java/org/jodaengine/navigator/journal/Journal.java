@@ -0,0 +1,675 @@
+package org.jodaengine.navigator.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.jodaengine.exception.JodaEngineRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class Journal is an append-only log of records, written to memory-mapped segment files in a directory.
+ *
+ * Appending a record only copies it to the mapped segment, which survives a crash of the JVM, but not one of the
+ * operating system. To make records durable, a flusher thread forces the segment to the disk regularly and whenever
+ * somebody waits for it in {@link #sync(long)}. All records appended until then are forced at once (group commit), so
+ * waiting threads share the cost of a single force.
+ *
+ * A record consists of its length, its CRC32 checksum and its payload. A length of zero marks the end of a segment. A
+ * record that was only partially written when the engine crashed does not match its checksum, so it ends the segment
+ * as well. If a record does not fit into the current segment, a new segment is started.
+ *
+ * To keep the journal from growing forever, the state of all instances can be written to a {@link SnapshotWriter
+ * snapshot} now and then. A snapshot is numbered with the segment that was started right before it was taken, so the
+ * state is read from the latest snapshot and the segments from its number on. The segments and snapshots before it
+ * are {@link #truncate(long) deleted}.
+ */
+public class Journal {
+
+    /** The default size of a segment file, 64 MB. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** The default time between two forces of the segment, in milliseconds. */
+    public static final long DEFAULT_SYNC_INTERVAL = 50;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final File directory;
+
+    private int segmentSize;
+
+    private long syncInterval;
+
+    private long segmentNumber;
+
+    private RandomAccessFile segmentFile;
+
+    private MappedByteBuffer segment;
+
+    /** The sequence number of the last appended record. Guarded by this. */
+    private long appendedSequence;
+
+    private final Object syncLock;
+
+    /** The sequence number of the last record that was forced to the disk. Guarded by syncLock. */
+    private long syncedSequence;
+
+    /** The highest sequence number somebody is waiting for. Guarded by syncLock. */
+    private long requestedSequence;
+
+    private volatile boolean open;
+
+    private Thread flusher;
+
+    /**
+     * Instantiates a new journal. It is not written, until it is {@link #open() opened}.
+     *
+     * @param directory
+     *            the directory of the segment files; it is created, if necessary
+     */
+    public Journal(@Nonnull File directory) {
+
+        this.directory = directory;
+        this.segmentSize = DEFAULT_SEGMENT_SIZE;
+        this.syncInterval = DEFAULT_SYNC_INTERVAL;
+        this.syncLock = new Object();
+    }
+
+    /**
+     * Sets the size of the segment files. A record must fit into a single segment.
+     *
+     * @param segmentSize
+     *            the size in bytes
+     */
+    public void setSegmentSize(@Nonnegative int segmentSize) {
+
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Sets the maximum time appended records are not forced to the disk, if nobody waits for them.
+     *
+     * @param syncInterval
+     *            the time in milliseconds
+     */
+    public void setSyncInterval(@Nonnegative long syncInterval) {
+
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Gets the directory of the segment files.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+
+        return directory;
+    }
+
+    /**
+     * Opens the journal. Records are always appended to a new segment, the existing segments are left as they are, so
+     * that they can be {@link #replay(List, RecordHandler) replayed}.
+     */
+    public synchronized void open() {
+
+        if (open) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new JodaEngineRuntimeException("The journal directory " + directory + " cannot be created.");
+        }
+
+        List<File> segments = getSegments();
+        if (!segments.isEmpty()) {
+            segmentNumber = getNumber(segments.get(segments.size() - 1));
+        }
+        List<File> snapshots = getSnapshots();
+        if (!snapshots.isEmpty()) {
+            segmentNumber = Math.max(segmentNumber, getNumber(snapshots.get(snapshots.size() - 1)));
+        }
+        startSegment();
+        open = true;
+
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                flush();
+            }
+        }, "Journal flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Checks if the journal is open.
+     *
+     * @return true, if it is open
+     */
+    public boolean isOpen() {
+
+        return open;
+    }
+
+    /**
+     * Appends a record. It is not durable, until it is {@link #sync(long) synced}.
+     *
+     * @param payload
+     *            the record
+     * @return the sequence number of the record
+     */
+    public synchronized long append(@Nonnull byte[] payload) {
+
+        if (!open) {
+            throw new JodaEngineRuntimeException("The journal is not open.");
+        }
+        if (HEADER_SIZE + payload.length > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("The record of " + payload.length
+                + " bytes does not fit into a journal segment.");
+        }
+
+        // the rest of a segment is zero, so there is always an end mark behind the last record
+        if (segment.remaining() < HEADER_SIZE + payload.length + HEADER_SIZE) {
+            closeSegment();
+            startSegment();
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        int position = segment.position();
+        segment.position(position + HEADER_SIZE);
+        segment.put(payload);
+        segment.putInt(position + 4, (int) checksum.getValue());
+        // the length comes last, so a record is never visible before its payload is written
+        segment.putInt(position, payload.length);
+
+        return ++appendedSequence;
+    }
+
+    /**
+     * Waits until the record with the given sequence number, and all before it, are forced to the disk.
+     *
+     * @param sequence
+     *            the sequence number returned by {@link #append(byte[])}
+     */
+    public void sync(long sequence) {
+
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            requestedSequence = Math.max(requestedSequence, sequence);
+            syncLock.notifyAll();
+            try {
+                while (syncedSequence < sequence && open) {
+                    syncLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits until all records appended so far are forced to the disk.
+     */
+    public void sync() {
+
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        sync(sequence);
+    }
+
+    /**
+     * Starts a new segment. The records appended afterwards go to the new segment.
+     *
+     * @return the number of the new segment
+     */
+    public synchronized long roll() {
+
+        if (!open) {
+            throw new JodaEngineRuntimeException("The journal is not open.");
+        }
+        closeSegment();
+        startSegment();
+        return segmentNumber;
+    }
+
+    /**
+     * Gets the segments before the given one.
+     *
+     * @param number
+     *            the number of the segment
+     * @return the older segments, oldest first
+     */
+    public @Nonnull List<File> getSegmentsBefore(long number) {
+
+        List<File> olderSegments = new ArrayList<File>();
+        for (File file : getSegments()) {
+            if (getNumber(file) < number) {
+                olderSegments.add(file);
+            }
+        }
+        return olderSegments;
+    }
+
+    /**
+     * Gets the files, from which the state before the given segment is read: the latest snapshot before it, if there
+     * is one, and the segments from the number of that snapshot on.
+     *
+     * @param number
+     *            the number of the segment
+     * @return the files, oldest first
+     */
+    public @Nonnull List<File> getFilesBefore(long number) {
+
+        File latestSnapshot = null;
+        for (File snapshot : getSnapshots()) {
+            if (getNumber(snapshot) < number) {
+                latestSnapshot = snapshot;
+            }
+        }
+
+        List<File> files = new ArrayList<File>();
+        if (latestSnapshot != null) {
+            files.add(latestSnapshot);
+        }
+        for (File segment : getSegmentsBefore(number)) {
+            if (latestSnapshot == null || getNumber(segment) >= getNumber(latestSnapshot)) {
+                files.add(segment);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Starts to write a snapshot. It replaces the segments before the given one, when it is committed and the journal
+     * is {@link #truncate(long) truncated}.
+     *
+     * @param number
+     *            the number of the segment, whose records are not part of the snapshot
+     * @return the writer of the snapshot
+     */
+    public @Nonnull SnapshotWriter createSnapshot(long number) {
+
+        return new SnapshotWriter(new File(directory, String.format("%s%010d%s", SNAPSHOT_PREFIX, number,
+            SNAPSHOT_SUFFIX)));
+    }
+
+    /**
+     * Deletes the segments and snapshots, which are not needed anymore, because the state before the given segment
+     * can be read from a later snapshot or segment.
+     *
+     * @param number
+     *            the number of the segment, from which on the files are kept
+     */
+    public void truncate(long number) {
+
+        List<File> files = getSegmentsBefore(number);
+        for (File snapshot : getSnapshots()) {
+            if (getNumber(snapshot) < number) {
+                files.add(snapshot);
+            }
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                logger.warn("The journal file {} could not be deleted.", file);
+            }
+        }
+    }
+
+    /**
+     * Forces the records to the disk and closes the journal.
+     */
+    public void close() {
+
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            closeSegment();
+            open = false;
+        }
+        synchronized (syncLock) {
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * Gets the segment files in the directory, oldest first.
+     *
+     * @return the segment files
+     */
+    public @Nonnull List<File> getSegments() {
+
+        return listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Gets the committed snapshots in the directory, oldest first.
+     *
+     * @return the snapshots
+     */
+    public @Nonnull List<File> getSnapshots() {
+
+        return listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Gets the numbered files with the given prefix and suffix in the directory.
+     *
+     * @param prefix
+     *            the prefix of the file names
+     * @param suffix
+     *            the suffix of the file names
+     * @return the files, ordered by their number
+     */
+    private List<File> listFiles(final String prefix, final String suffix) {
+
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+
+                return file.isFile() && file.getName().startsWith(prefix) && file.getName().endsWith(suffix);
+            }
+        });
+        if (files == null) {
+            return new ArrayList<File>();
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file, File otherFile) {
+
+                long number = getNumber(file);
+                long otherNumber = getNumber(otherFile);
+                return number < otherNumber ? -1 : (number == otherNumber ? 0 : 1);
+            }
+        });
+        return new ArrayList<File>(Arrays.asList(files));
+    }
+
+    /**
+     * Reads the records of the given segments and snapshots in the order they were appended.
+     *
+     * @param segments
+     *            the segments and snapshots, oldest first
+     * @param handler
+     *            the handler, which gets the records
+     */
+    public void replay(@Nonnull List<File> segments, @Nonnull RecordHandler handler) {
+
+        for (File file : segments) {
+            RandomAccessFile input = null;
+            try {
+                input = new RandomAccessFile(file, "r");
+                MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+                while (buffer.remaining() >= HEADER_SIZE) {
+                    int length = buffer.getInt();
+                    int expectedChecksum = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining()) {
+                        break;
+                    }
+
+                    byte[] payload = new byte[length];
+                    buffer.get(payload);
+                    CRC32 checksum = new CRC32();
+                    checksum.update(payload);
+                    if ((int) checksum.getValue() != expectedChecksum) {
+                        logger.warn("The journal file {} ends with a torn record.", file);
+                        break;
+                    }
+                    handler.handle(payload);
+                }
+            } catch (IOException e) {
+                throw new JodaEngineRuntimeException("The journal segment " + file + " cannot be read.", e);
+            } finally {
+                closeQuietly(input);
+            }
+        }
+    }
+
+    /**
+     * Maps a new segment file. Must be called with the lock of the journal.
+     */
+    private void startSegment() {
+
+        segmentNumber++;
+        File file = new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+        try {
+            segmentFile = new RandomAccessFile(file, "rw");
+            segmentFile.setLength(segmentSize);
+            segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            closeQuietly(segmentFile);
+            throw new JodaEngineRuntimeException("The journal segment " + file + " cannot be created.", e);
+        }
+    }
+
+    /**
+     * Forces the current segment to the disk and closes its file. Must be called with the lock of the journal.
+     */
+    private void closeSegment() {
+
+        segment.force();
+        closeQuietly(segmentFile);
+        synchronized (syncLock) {
+            syncedSequence = appendedSequence;
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * Forces the appended records to the disk, whenever somebody waits for them or the sync interval elapsed. Runs in
+     * the flusher thread, until the journal is closed.
+     */
+    private void flush() {
+
+        while (open) {
+            synchronized (syncLock) {
+                if (requestedSequence <= syncedSequence) {
+                    try {
+                        syncLock.wait(syncInterval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+            long sequence;
+            MappedByteBuffer currentSegment;
+            synchronized (this) {
+                if (!open) {
+                    return;
+                }
+                sequence = appendedSequence;
+                currentSegment = segment;
+            }
+
+            // the records appended in the meantime are forced, too, but they are not reported yet
+            currentSegment.force();
+            synchronized (syncLock) {
+                syncedSequence = Math.max(syncedSequence, sequence);
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of a segment or snapshot file.
+     *
+     * @param file
+     *            the file
+     * @return the number
+     */
+    private static long getNumber(File file) {
+
+        String name = file.getName();
+        String prefix = SEGMENT_PREFIX;
+        if (name.startsWith(SNAPSHOT_PREFIX)) {
+            prefix = SNAPSHOT_PREFIX;
+        }
+        return Long.parseLong(name.substring(prefix.length(), name.lastIndexOf('.')));
+    }
+
+    /**
+     * Closes a file, ignoring failures.
+     *
+     * @param file
+     *            the file, may be null
+     */
+    private void closeQuietly(RandomAccessFile file) {
+
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.warn("A journal file could not be closed.", e);
+        }
+    }
+
+    /**
+     * The Class SnapshotWriter writes a snapshot of the journal. The records are written to a temporary file, which
+     * becomes the snapshot, when it is committed, so there are only complete snapshots. The records of a snapshot are
+     * written like those of a segment.
+     */
+    public final class SnapshotWriter {
+
+        private final File file;
+
+        private final File temporaryFile;
+
+        private final FileOutputStream fileOutput;
+
+        private final DataOutputStream output;
+
+        /**
+         * Instantiates a new snapshot writer.
+         *
+         * @param file
+         *            the file of the snapshot
+         */
+        private SnapshotWriter(@Nonnull File file) {
+
+            this.file = file;
+            this.temporaryFile = new File(file.getPath() + TEMPORARY_SUFFIX);
+            try {
+                this.fileOutput = new FileOutputStream(temporaryFile);
+            } catch (IOException e) {
+                throw new JodaEngineRuntimeException("The journal snapshot " + file + " cannot be created.", e);
+            }
+            this.output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+        }
+
+        /**
+         * Writes a record to the snapshot.
+         *
+         * @param payload
+         *            the record
+         */
+        public void write(@Nonnull byte[] payload) {
+
+            CRC32 checksum = new CRC32();
+            checksum.update(payload);
+            try {
+                output.writeInt(payload.length);
+                output.writeInt((int) checksum.getValue());
+                output.write(payload);
+            } catch (IOException e) {
+                abort();
+                throw new JodaEngineRuntimeException("The journal snapshot " + file + " cannot be written.", e);
+            }
+        }
+
+        /**
+         * Forces the snapshot to the disk and makes it visible.
+         */
+        public void commit() {
+
+            try {
+                output.writeInt(0);
+                output.flush();
+                fileOutput.getFD().sync();
+                output.close();
+            } catch (IOException e) {
+                abort();
+                throw new JodaEngineRuntimeException("The journal snapshot " + file + " cannot be written.", e);
+            }
+            if (!temporaryFile.renameTo(file)) {
+                abort();
+                throw new JodaEngineRuntimeException("The journal snapshot " + file + " cannot be committed.");
+            }
+        }
+
+        /**
+         * Discards the snapshot.
+         */
+        public void abort() {
+
+            try {
+                output.close();
+            } catch (IOException e) {
+                logger.warn("The journal snapshot " + file + " could not be closed.", e);
+            }
+            if (temporaryFile.exists() && !temporaryFile.delete()) {
+                logger.warn("The journal snapshot {} could not be deleted.", temporaryFile);
+            }
+        }
+
+        /**
+         * Gets the file of the snapshot.
+         *
+         * @return the file
+         */
+        public File getFile() {
+
+            return file;
+        }
+    }
+
+    /**
+     * Handles the records of a journal, when it is replayed.
+     */
+    public interface RecordHandler {
+
+        /**
+         * Handles a record.
+         *
+         * @param payload
+         *            the record
+         */
+        void handle(@Nonnull byte[] payload);
+    }
+}
@@ -0,0 +1,392 @@
+package org.jodaengine.navigator.journal;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.exception.JodaEngineRuntimeException;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+
+/**
+ * The Class JournalRecord is a state transition of a process instance, as it is written to the {@link Journal}.
+ *
+ * The value of a variable is kept as it was encoded, so that a record can be read and written again without the
+ * classes of the value.
+ */
+public final class JournalRecord {
+
+    /**
+     * The types of the records.
+     */
+    public enum Type {
+        /** The instance was started. Carries the id of its process definition. */
+        INSTANCE_STARTED,
+        /** The instance ended. */
+        INSTANCE_ENDED,
+        /** A token was added to the instance or moved to another node. Carries the token and the node. */
+        TOKEN_PLACED,
+        /** A token was removed from the instance. Carries the token. */
+        TOKEN_REMOVED,
+        /** A token was suspended, e.g. by a human task. Carries the token. */
+        TOKEN_SUSPENDED,
+        /** A suspended token was resumed. Carries the token. */
+        TOKEN_RESUMED,
+        /** A variable was set. Carries its name and encoded value, which is null, if the variable was removed. */
+        VARIABLE_SET
+    }
+
+    private static final int NO_VALUE = -1;
+
+    private static final Type[] TYPES = Type.values();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int UUID_SIZE = 16;
+
+    private static final int INT_SIZE = 4;
+
+    private final Type type;
+
+    private final UUID instanceID;
+
+    private final ProcessDefinitionID definitionID;
+
+    private final UUID tokenID;
+
+    private final int nodeIndex;
+
+    private final String name;
+
+    private final byte[] value;
+
+    /**
+     * Instantiates a new journal record.
+     *
+     * @param type
+     *            the type
+     * @param instanceID
+     *            the id of the instance
+     * @param definitionID
+     *            the id of the process definition, only for started instances
+     * @param tokenID
+     *            the id of the token, only for token records
+     * @param nodeIndex
+     *            the index of the node in the {@link NodeIndex} of the definition, only for placed tokens
+     * @param name
+     *            the name of the variable, only for variable records
+     * @param value
+     *            the encoded value of the variable, only for variable records
+     */
+    private JournalRecord(Type type,
+                          UUID instanceID,
+                          ProcessDefinitionID definitionID,
+                          UUID tokenID,
+                          int nodeIndex,
+                          String name,
+                          byte[] value) {
+
+        this.type = type;
+        this.instanceID = instanceID;
+        this.definitionID = definitionID;
+        this.tokenID = tokenID;
+        this.nodeIndex = nodeIndex;
+        this.name = name;
+        this.value = value;
+    }
+
+    /**
+     * Creates the record of a started instance.
+     *
+     * @param instanceID
+     *            the id of the instance
+     * @param definitionID
+     *            the id of its process definition
+     * @return the record
+     */
+    public static JournalRecord instanceStarted(@Nonnull UUID instanceID, @Nonnull ProcessDefinitionID definitionID) {
+
+        return new JournalRecord(Type.INSTANCE_STARTED, instanceID, definitionID, null, 0, null, null);
+    }
+
+    /**
+     * Creates the record of an ended instance.
+     *
+     * @param instanceID
+     *            the id of the instance
+     * @return the record
+     */
+    public static JournalRecord instanceEnded(@Nonnull UUID instanceID) {
+
+        return new JournalRecord(Type.INSTANCE_ENDED, instanceID, null, null, 0, null, null);
+    }
+
+    /**
+     * Creates the record of a token that was placed on a node.
+     *
+     * @param instanceID
+     *            the id of the instance
+     * @param tokenID
+     *            the id of the token
+     * @param nodeIndex
+     *            the index of the node in the {@link NodeIndex} of the definition
+     * @return the record
+     */
+    public static JournalRecord tokenPlaced(@Nonnull UUID instanceID, @Nonnull UUID tokenID, int nodeIndex) {
+
+        return new JournalRecord(Type.TOKEN_PLACED, instanceID, null, tokenID, nodeIndex, null, null);
+    }
+
+    /**
+     * Creates the record of a token that was removed, suspended or resumed.
+     *
+     * @param type
+     *            {@link Type#TOKEN_REMOVED}, {@link Type#TOKEN_SUSPENDED} or {@link Type#TOKEN_RESUMED}
+     * @param instanceID
+     *            the id of the instance
+     * @param tokenID
+     *            the id of the token
+     * @return the record
+     */
+    public static JournalRecord tokenChanged(@Nonnull Type type, @Nonnull UUID instanceID, @Nonnull UUID tokenID) {
+
+        if (type != Type.TOKEN_REMOVED && type != Type.TOKEN_SUSPENDED && type != Type.TOKEN_RESUMED) {
+            throw new IllegalArgumentException("The type " + type + " does not belong to a token change.");
+        }
+        return new JournalRecord(type, instanceID, null, tokenID, 0, null, null);
+    }
+
+    /**
+     * Creates the record of a variable that was set.
+     *
+     * @param instanceID
+     *            the id of the instance
+     * @param name
+     *            the name of the variable
+     * @param value
+     *            the encoded value, null if the variable was removed
+     * @return the record
+     */
+    public static JournalRecord variableSet(@Nonnull UUID instanceID, @Nonnull String name, @Nullable byte[] value) {
+
+        return new JournalRecord(Type.VARIABLE_SET, instanceID, null, null, 0, name, value);
+    }
+
+    /**
+     * Reads a record, that was written with {@link #toBytes()}.
+     *
+     * @param payload
+     *            the bytes
+     * @return the record
+     */
+    public static JournalRecord fromBytes(@Nonnull byte[] payload) {
+
+        ByteBuffer input = ByteBuffer.wrap(payload);
+        try {
+            Type type = TYPES[input.get()];
+            UUID instanceID = readUUID(input);
+            switch (type) {
+                case INSTANCE_STARTED:
+                    String identifier = readString(input);
+                    int version = input.getInt();
+                    return instanceStarted(instanceID, new ProcessDefinitionID(identifier, version));
+                case INSTANCE_ENDED:
+                    return instanceEnded(instanceID);
+                case TOKEN_PLACED:
+                    UUID tokenID = readUUID(input);
+                    return tokenPlaced(instanceID, tokenID, input.getInt());
+                case VARIABLE_SET:
+                    String variableName = readString(input);
+                    int length = input.getInt();
+                    byte[] variableValue = null;
+                    if (length != NO_VALUE) {
+                        variableValue = new byte[length];
+                        input.get(variableValue);
+                    }
+                    return variableSet(instanceID, variableName, variableValue);
+                default:
+                    return tokenChanged(type, instanceID, readUUID(input));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new JodaEngineRuntimeException("A journal record is corrupt.", e);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new JodaEngineRuntimeException("A journal record has got an unknown type.", e);
+        }
+    }
+
+    /**
+     * Writes the record. It is written to an array of its exact size, as it is written for every step of a token.
+     *
+     * @return the bytes
+     */
+    public byte[] toBytes() {
+
+        byte[] identifier = null;
+        byte[] encodedName = null;
+        int size = 1 + UUID_SIZE;
+        switch (type) {
+            case INSTANCE_STARTED:
+                identifier = definitionID.getIdentifier().getBytes(UTF_8);
+                size += INT_SIZE + identifier.length + INT_SIZE;
+                break;
+            case INSTANCE_ENDED:
+                break;
+            case TOKEN_PLACED:
+                size += UUID_SIZE + INT_SIZE;
+                break;
+            case VARIABLE_SET:
+                encodedName = name.getBytes(UTF_8);
+                size += INT_SIZE + encodedName.length + INT_SIZE;
+                if (value != null) {
+                    size += value.length;
+                }
+                break;
+            default:
+                size += UUID_SIZE;
+                break;
+        }
+
+        byte[] bytes = new byte[size];
+        ByteBuffer output = ByteBuffer.wrap(bytes);
+        output.put((byte) type.ordinal());
+        writeUUID(output, instanceID);
+        switch (type) {
+            case INSTANCE_STARTED:
+                output.putInt(identifier.length).put(identifier);
+                output.putInt(definitionID.getVersion());
+                break;
+            case INSTANCE_ENDED:
+                break;
+            case TOKEN_PLACED:
+                writeUUID(output, tokenID);
+                output.putInt(nodeIndex);
+                break;
+            case VARIABLE_SET:
+                output.putInt(encodedName.length).put(encodedName);
+                if (value == null) {
+                    output.putInt(NO_VALUE);
+                } else {
+                    output.putInt(value.length).put(value);
+                }
+                break;
+            default:
+                writeUUID(output, tokenID);
+                break;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the type.
+     *
+     * @return the type
+     */
+    public Type getType() {
+
+        return type;
+    }
+
+    /**
+     * Gets the id of the instance.
+     *
+     * @return the id
+     */
+    public UUID getInstanceID() {
+
+        return instanceID;
+    }
+
+    /**
+     * Gets the id of the process definition of a started instance.
+     *
+     * @return the id, or null for other records
+     */
+    public ProcessDefinitionID getDefinitionID() {
+
+        return definitionID;
+    }
+
+    /**
+     * Gets the id of the token.
+     *
+     * @return the id, or null for records of instances and variables
+     */
+    public UUID getTokenID() {
+
+        return tokenID;
+    }
+
+    /**
+     * Gets the index of the node a token was placed on. Nodes get new ids, whenever their definition is deployed, so
+     * they are identified by their position in the definition.
+     *
+     * @return the index in the {@link NodeIndex} of the definition
+     */
+    public int getNodeIndex() {
+
+        return nodeIndex;
+    }
+
+    /**
+     * Gets the name of the variable.
+     *
+     * @return the name, or null for other records
+     */
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Gets the encoded value of the variable.
+     *
+     * @return the value, or null if the variable was removed
+     */
+    public byte[] getValue() {
+
+        return value;
+    }
+
+    /**
+     * Writes a UUID.
+     *
+     * @param output
+     *            the output
+     * @param id
+     *            the UUID
+     */
+    private static void writeUUID(ByteBuffer output, UUID id) {
+
+        output.putLong(id.getMostSignificantBits());
+        output.putLong(id.getLeastSignificantBits());
+    }
+
+    /**
+     * Reads a UUID.
+     *
+     * @param input
+     *            the input
+     * @return the UUID
+     */
+    private static UUID readUUID(ByteBuffer input) {
+
+        return new UUID(input.getLong(), input.getLong());
+    }
+
+    /**
+     * Reads a string, that was written as its length and its UTF-8 bytes.
+     *
+     * @param input
+     *            the input
+     * @return the string
+     */
+    private static String readString(ByteBuffer input) {
+
+        byte[] bytes = new byte[input.getInt()];
+        input.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
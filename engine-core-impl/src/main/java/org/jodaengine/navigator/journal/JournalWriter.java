@@ -0,0 +1,455 @@
+package org.jodaengine.navigator.journal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.exception.JodaEngineRuntimeException;
+import org.jodaengine.process.definition.NodeIndex;
+import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.instance.ProcessInstanceObserver;
+import org.jodaengine.process.instance.ValueCodec;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.token.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class JournalWriter writes the state transitions of the process instances it observes to a {@link Journal}.
+ *
+ * An instance is observed from the moment it is {@link #observe(AbstractProcessInstance) handed} to the writer. Its
+ * state at that moment is written as well, so the records of an instance always start with its complete state.
+ * Records are appended to the journal in the order the changes were made, but the writer does not wait until they are
+ * durable; that is what the flusher of the journal is for.
+ *
+ * A {@link #snapshot(Set) snapshot} writes the state of all observed instances again, so that the older records can be
+ * deleted. The instances are not stopped for it: a new segment is started first, so every change made while their
+ * state is read is also written to the new segment, which is replayed on top of the snapshot.
+ *
+ * Once the writer is {@link #close() closed}, it stops observing the instances and ignores the changes, which are
+ * still made by steps running after the navigator stopped, instead of appending them to a closed journal.
+ */
+public class JournalWriter implements ProcessInstanceObserver {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Journal journal;
+
+    /** The observed instances, which did not end yet, by their id. Changed with the lock of the journal only. */
+    private final ConcurrentMap<UUID, AbstractProcessInstance> liveInstances;
+
+    /** The instances, which could not be recovered, but must be kept in the journal. */
+    private final ConcurrentMap<UUID, RecoveredInstance> carriedOverInstances;
+
+    private final ConcurrentMap<ProcessDefinition, NodeIndex> nodeIndices;
+
+    /** Indicates if the writer is closed. Changed with the lock of the journal only. */
+    private boolean closed;
+
+    /**
+     * Instantiates a new journal writer.
+     *
+     * @param journal
+     *            the open journal
+     */
+    public JournalWriter(@Nonnull Journal journal) {
+
+        this.journal = journal;
+        this.liveInstances = new ConcurrentHashMap<UUID, AbstractProcessInstance>();
+        this.carriedOverInstances = new ConcurrentHashMap<UUID, RecoveredInstance>();
+        this.nodeIndices = new ConcurrentHashMap<ProcessDefinition, NodeIndex>();
+    }
+
+    /**
+     * Starts to observe an instance, if it is not observed yet, and writes its current state. Instances without a
+     * process definition cannot be recovered, so they are not observed.
+     *
+     * @param instance
+     *            the instance
+     * @return true, if the instance was not observed before
+     */
+    public boolean observe(@Nonnull AbstractProcessInstance instance) {
+
+        if (!(instance instanceof ProcessInstance) || instance.getDefinition() == null) {
+            return false;
+        }
+        ProcessInstance processInstance = (ProcessInstance) instance;
+        if (processInstance.getObserver() != null) {
+            return false;
+        }
+
+        // the state is written with the lock of the journal, so no change is written before the state it changed
+        synchronized (journal) {
+            if (closed || !processInstance.attachObserver(this)) {
+                return false;
+            }
+            liveInstances.put(instance.getID(), instance);
+            for (JournalRecord record : getState(instance, null)) {
+                appendRecord(record, instance);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes that an instance ended.
+     *
+     * @param instance
+     *            the instance
+     */
+    public void instanceEnded(@Nonnull AbstractProcessInstance instance) {
+
+        synchronized (journal) {
+            if (liveInstances.remove(instance.getID()) != null && !closed) {
+                journal.append(JournalRecord.instanceEnded(instance.getID()).toBytes());
+            }
+        }
+    }
+
+    /**
+     * Writes that a token was suspended.
+     *
+     * @param token
+     *            the token
+     */
+    public void tokenSuspended(@Nonnull Token token) {
+
+        appendTokenChange(JournalRecord.Type.TOKEN_SUSPENDED, token);
+    }
+
+    /**
+     * Writes that a suspended token was resumed.
+     *
+     * @param token
+     *            the token
+     */
+    public void tokenResumed(@Nonnull Token token) {
+
+        appendTokenChange(JournalRecord.Type.TOKEN_RESUMED, token);
+    }
+
+    @Override
+    public void tokenPlaced(AbstractProcessInstance instance, Token token, Node node) {
+
+        JournalRecord record = createTokenRecord(instance, token, node);
+        if (record != null) {
+            append(record.toBytes());
+        }
+    }
+
+    @Override
+    public void tokenRemoved(AbstractProcessInstance instance, Token token) {
+
+        append(JournalRecord.tokenChanged(JournalRecord.Type.TOKEN_REMOVED, instance.getID(), token.getID()).toBytes());
+    }
+
+    @Override
+    public void variableSet(AbstractProcessInstance instance, String name, Object value) {
+
+        JournalRecord record = createVariableRecord(instance, name, value);
+        if (record != null) {
+            synchronized (journal) {
+                if (!closed) {
+                    appendRecord(record, instance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a new segment of the journal to recover the instances from the older segments. The instances observed
+     * at that moment are handed out, too; their records in the older segments are outdated. The instances, which were
+     * carried over, are forgotten, as they are read from the older segments again.
+     *
+     * @param observedInstances
+     *            the set, to which the ids of the observed instances are added
+     * @return the number of the new segment
+     */
+    public long roll(@Nonnull Set<UUID> observedInstances) {
+
+        synchronized (journal) {
+            checkOpen();
+            long segmentNumber = journal.roll();
+            observedInstances.addAll(liveInstances.keySet());
+            carriedOverInstances.clear();
+            return segmentNumber;
+        }
+    }
+
+    /**
+     * Writes the state of an instance, which could not be recovered, again, so that it is kept, when its old records
+     * are deleted.
+     *
+     * @param instance
+     *            the recovered instance
+     */
+    public void carryOver(@Nonnull RecoveredInstance instance) {
+
+        synchronized (journal) {
+            checkOpen();
+            carriedOverInstances.put(instance.getInstanceID(), instance);
+            for (JournalRecord record : instance.toRecords()) {
+                journal.append(record.toBytes());
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the observed and the carried over instances and deletes the segments it replaces. Only
+     * starting a new segment blocks the instances; their state is read while they go on.
+     *
+     * @param suspendedTokens
+     *            the ids of the suspended tokens
+     * @return the number of instances in the snapshot
+     */
+    public int snapshot(@Nonnull Set<UUID> suspendedTokens) {
+
+        long segmentNumber;
+        List<AbstractProcessInstance> instances;
+        List<RecoveredInstance> carriedOver;
+        synchronized (journal) {
+            checkOpen();
+            segmentNumber = journal.roll();
+            instances = new ArrayList<AbstractProcessInstance>(liveInstances.values());
+            carriedOver = new ArrayList<RecoveredInstance>(carriedOverInstances.values());
+        }
+
+        Journal.SnapshotWriter snapshot = journal.createSnapshot(segmentNumber);
+        for (AbstractProcessInstance instance : instances) {
+            for (JournalRecord record : getState(instance, suspendedTokens)) {
+                snapshot.write(record.toBytes());
+            }
+        }
+        for (RecoveredInstance instance : carriedOver) {
+            for (JournalRecord record : instance.toRecords()) {
+                snapshot.write(record.toBytes());
+            }
+        }
+        snapshot.commit();
+
+        journal.truncate(segmentNumber);
+        return instances.size() + carriedOver.size();
+    }
+
+    /**
+     * Closes the writer. The observed instances are detached, so that their changes are not written anymore, and the
+     * changes, which are made meanwhile, are dropped. The journal itself is not closed.
+     */
+    public void close() {
+
+        synchronized (journal) {
+            closed = true;
+            for (AbstractProcessInstance instance : liveInstances.values()) {
+                ((ProcessInstance) instance).detachObserver(this);
+            }
+            liveInstances.clear();
+            carriedOverInstances.clear();
+        }
+    }
+
+    /**
+     * Appends a record to the journal, unless the writer is closed.
+     *
+     * @param record
+     *            the record
+     */
+    private void append(@Nonnull byte[] record) {
+
+        synchronized (journal) {
+            if (!closed) {
+                journal.append(record);
+            }
+        }
+    }
+
+    /**
+     * Appends a record of an instance to the journal. A record, that does not fit into a segment, e.g. of a variable
+     * holding a document, is skipped like a value, that cannot be encoded, so that setting the variable does not fail.
+     * Must be called with the lock of the journal.
+     *
+     * @param record
+     *            the record
+     * @param instance
+     *            the instance
+     */
+    private void appendRecord(@Nonnull JournalRecord record, @Nonnull AbstractProcessInstance instance) {
+
+        try {
+            journal.append(record.toBytes());
+        } catch (IllegalArgumentException e) {
+            logger.warn("A record of the instance " + instance.getID() + " is too large to be journaled.", e);
+        }
+    }
+
+    /**
+     * Checks that the writer is not closed. Must be called with the lock of the journal.
+     */
+    private void checkOpen() {
+
+        if (closed) {
+            throw new JodaEngineRuntimeException("The journal writer is closed.");
+        }
+    }
+
+    /**
+     * Gets the index of the nodes of a definition.
+     *
+     * @param definition
+     *            the definition
+     * @return the index
+     */
+    public @Nonnull NodeIndex getNodeIndex(@Nonnull ProcessDefinition definition) {
+
+        NodeIndex index = nodeIndices.get(definition);
+        if (index == null) {
+            NodeIndex newIndex = new NodeIndex(definition);
+            index = nodeIndices.putIfAbsent(definition, newIndex);
+            if (index == null) {
+                index = newIndex;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the journal.
+     *
+     * @return the journal
+     */
+    public Journal getJournal() {
+
+        return journal;
+    }
+
+    /**
+     * Gets the records, which lead to the current state of an instance.
+     *
+     * @param instance
+     *            the instance
+     * @param suspendedTokens
+     *            the ids of the suspended tokens, null if no token is suspended
+     * @return the records
+     */
+    private List<JournalRecord> getState(@Nonnull AbstractProcessInstance instance,
+                                         @Nullable Set<UUID> suspendedTokens) {
+
+        List<JournalRecord> records = new ArrayList<JournalRecord>();
+        records.add(JournalRecord.instanceStarted(instance.getID(), instance.getDefinition().getID()));
+        for (Map.Entry<String, Object> variable : instance.getContext().getVariableSnapshot().entrySet()) {
+            JournalRecord record = createVariableRecord(instance, variable.getKey(), variable.getValue());
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        for (Token token : instance.getAssignedTokens()) {
+            Node node = token.getCurrentNode();
+            JournalRecord record = null;
+            if (node != null) {
+                record = createTokenRecord(instance, token, node);
+            }
+            if (record != null) {
+                records.add(record);
+                if (suspendedTokens != null && suspendedTokens.contains(token.getID())) {
+                    records.add(JournalRecord.tokenChanged(JournalRecord.Type.TOKEN_SUSPENDED, instance.getID(),
+                        token.getID()));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Creates the record of a token, that was placed on a node.
+     *
+     * @param instance
+     *            the instance
+     * @param token
+     *            the token
+     * @param node
+     *            the node
+     * @return the record, or null if the node does not belong to the definition of the instance
+     */
+    private JournalRecord createTokenRecord(@Nonnull AbstractProcessInstance instance,
+                                            @Nonnull Token token,
+                                            @Nonnull Node node) {
+
+        int nodeIndex = getNodeIndex(instance.getDefinition()).indexOf(node);
+        if (nodeIndex < 0) {
+            logger.warn("The node {} does not belong to the definition of the instance {}, the token {} cannot be"
+                + " journaled.", new Object[] {node, instance.getID(), token.getID()});
+            return null;
+        }
+        return JournalRecord.tokenPlaced(instance.getID(), token.getID(), nodeIndex);
+    }
+
+    /**
+     * Creates the record of a variable, that was set.
+     *
+     * @param instance
+     *            the instance
+     * @param name
+     *            the name of the variable
+     * @param value
+     *            the value, null if the variable was removed
+     * @return the record, or null if the value cannot be encoded
+     */
+    private JournalRecord createVariableRecord(@Nonnull AbstractProcessInstance instance,
+                                               @Nonnull String name,
+                                               @Nullable Object value) {
+
+        byte[] encodedValue = null;
+        if (value != null) {
+            if (!ValueCodec.canEncode(value)) {
+                logger.warn("The variable {} of the instance {} is not serializable and cannot be journaled.", name,
+                    instance.getID());
+                return null;
+            }
+            try {
+                encodedValue = ValueCodec.encode(value);
+            } catch (IOException e) {
+                logger.warn("The variable " + name + " of the instance " + instance.getID()
+                    + " cannot be journaled.", e);
+                return null;
+            }
+        }
+        return JournalRecord.variableSet(instance.getID(), name, encodedValue);
+    }
+
+    /**
+     * Writes a change of a token, if its instance is observed.
+     *
+     * @param type
+     *            the type of the change
+     * @param token
+     *            the token
+     */
+    private void appendTokenChange(@Nonnull JournalRecord.Type type, @Nonnull Token token) {
+
+        AbstractProcessInstance instance = token.getInstance();
+        if (instance != null && isObserved(instance)) {
+            append(JournalRecord.tokenChanged(type, instance.getID(), token.getID()).toBytes());
+        }
+    }
+
+    /**
+     * Checks if an instance is observed by this writer.
+     *
+     * @param instance
+     *            the instance
+     * @return true, if it is observed
+     */
+    private boolean isObserved(@Nullable AbstractProcessInstance instance) {
+
+        return instance instanceof ProcessInstance && ((ProcessInstance) instance).getObserver() == this;
+    }
+}
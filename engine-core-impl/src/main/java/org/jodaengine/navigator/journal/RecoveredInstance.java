@@ -0,0 +1,244 @@
+package org.jodaengine.navigator.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.instance.ValueCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class RecoveredInstance is the last state of a process instance, as it was read from the {@link Journal}.
+ */
+public class RecoveredInstance {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecoveredInstance.class);
+
+    private final UUID instanceID;
+
+    private ProcessDefinitionID definitionID;
+
+    /** The indices of the nodes of the tokens, indexed by the ids of the tokens. */
+    private final Map<UUID, Integer> tokens;
+
+    /** The suspended tokens, created with the first one, as most instances have got none. */
+    private Set<UUID> suspendedTokens;
+
+    /** The encoded values of the variables, created with the first one. */
+    private Map<String, byte[]> variables;
+
+    private boolean ended;
+
+    /**
+     * Instantiates a new recovered instance without any state.
+     *
+     * @param instanceID
+     *            the id of the instance
+     */
+    public RecoveredInstance(@Nonnull UUID instanceID) {
+
+        this.instanceID = instanceID;
+        this.tokens = new LinkedHashMap<UUID, Integer>(2);
+    }
+
+    /**
+     * Reads the instances from the given segments of a journal.
+     *
+     * @param journal
+     *            the journal
+     * @param segments
+     *            the segments, oldest first
+     * @return the instances, indexed by their id, in the order they appear first
+     */
+    public static @Nonnull Map<UUID, RecoveredInstance> read(@Nonnull Journal journal, @Nonnull List<File> segments) {
+
+        final Map<UUID, RecoveredInstance> instances = new LinkedHashMap<UUID, RecoveredInstance>();
+        journal.replay(segments, new Journal.RecordHandler() {
+            @Override
+            public void handle(byte[] payload) {
+
+                JournalRecord record = JournalRecord.fromBytes(payload);
+                RecoveredInstance instance = instances.get(record.getInstanceID());
+                if (instance == null) {
+                    instance = new RecoveredInstance(record.getInstanceID());
+                    instances.put(record.getInstanceID(), instance);
+                }
+                instance.apply(record);
+            }
+        });
+        return instances;
+    }
+
+    /**
+     * Applies a record to the state of the instance.
+     *
+     * @param record
+     *            the record
+     */
+    public void apply(@Nonnull JournalRecord record) {
+
+        switch (record.getType()) {
+            case INSTANCE_STARTED:
+                definitionID = record.getDefinitionID();
+                break;
+            case INSTANCE_ENDED:
+                ended = true;
+                break;
+            case TOKEN_PLACED:
+                tokens.put(record.getTokenID(), record.getNodeIndex());
+                break;
+            case TOKEN_REMOVED:
+                tokens.remove(record.getTokenID());
+                getSuspendedTokens().remove(record.getTokenID());
+                break;
+            case TOKEN_SUSPENDED:
+                if (suspendedTokens == null) {
+                    suspendedTokens = new HashSet<UUID>(2);
+                }
+                suspendedTokens.add(record.getTokenID());
+                break;
+            case TOKEN_RESUMED:
+                getSuspendedTokens().remove(record.getTokenID());
+                break;
+            case VARIABLE_SET:
+                if (record.getValue() != null) {
+                    if (variables == null) {
+                        variables = new LinkedHashMap<String, byte[]>();
+                    }
+                    variables.put(record.getName(), record.getValue());
+                } else if (variables != null) {
+                    variables.remove(record.getName());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Gets the records, which lead to the current state of the instance.
+     *
+     * @return the records
+     */
+    public @Nonnull List<JournalRecord> toRecords() {
+
+        List<JournalRecord> records = new ArrayList<JournalRecord>();
+        if (definitionID != null) {
+            records.add(JournalRecord.instanceStarted(instanceID, definitionID));
+        }
+        for (Map.Entry<String, byte[]> variable : getVariables().entrySet()) {
+            records.add(JournalRecord.variableSet(instanceID, variable.getKey(), variable.getValue()));
+        }
+        for (Map.Entry<UUID, Integer> token : tokens.entrySet()) {
+            records.add(JournalRecord.tokenPlaced(instanceID, token.getKey(), token.getValue()));
+            if (getSuspendedTokens().contains(token.getKey())) {
+                records.add(JournalRecord.tokenChanged(JournalRecord.Type.TOKEN_SUSPENDED, instanceID,
+                    token.getKey()));
+            }
+        }
+        if (ended) {
+            records.add(JournalRecord.instanceEnded(instanceID));
+        }
+        return records;
+    }
+
+    /**
+     * Decodes the values of the variables. Variables, whose values cannot be decoded, are left out.
+     *
+     * @param classLoader
+     *            the class loader for the classes of serialized values
+     * @return the variables
+     */
+    public @Nonnull Map<String, Object> decodeVariables(@Nonnull ClassLoader classLoader) {
+
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, byte[]> variable : getVariables().entrySet()) {
+            try {
+                values.put(variable.getKey(), ValueCodec.decode(variable.getValue(), classLoader));
+            } catch (IOException e) {
+                LOGGER.warn("The variable {} of the instance {} is corrupt.", variable.getKey(), instanceID);
+            } catch (ClassNotFoundException e) {
+                LOGGER.warn("The variable {} of the instance {} has got an unknown class.", variable.getKey(),
+                    instanceID);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the id of the instance.
+     *
+     * @return the id
+     */
+    public UUID getInstanceID() {
+
+        return instanceID;
+    }
+
+    /**
+     * Gets the id of the process definition of the instance.
+     *
+     * @return the id, or null if the start of the instance was not read
+     */
+    public ProcessDefinitionID getDefinitionID() {
+
+        return definitionID;
+    }
+
+    /**
+     * Gets the nodes of the tokens of the instance.
+     *
+     * @return the indices of the nodes in the {@link NodeIndex} of the definition, indexed by the ids of the tokens
+     */
+    public Map<UUID, Integer> getTokens() {
+
+        return tokens;
+    }
+
+    /**
+     * Gets the tokens, which were suspended.
+     *
+     * @return the ids of the tokens
+     */
+    public Set<UUID> getSuspendedTokens() {
+
+        if (suspendedTokens == null) {
+            return Collections.emptySet();
+        }
+        return suspendedTokens;
+    }
+
+    /**
+     * Gets the encoded values of the variables of the instance.
+     *
+     * @return the values, indexed by the names of the variables
+     */
+    public Map<String, byte[]> getVariables() {
+
+        if (variables == null) {
+            return Collections.emptyMap();
+        }
+        return variables;
+    }
+
+    /**
+     * Checks if the instance ended.
+     *
+     * @return true, if it ended
+     */
+    public boolean isEnded() {
+
+        return ended;
+    }
+}
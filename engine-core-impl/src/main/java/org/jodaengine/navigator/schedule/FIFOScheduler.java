@@ -1,8 +1,10 @@
 package org.jodaengine.navigator.schedule;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.jodaengine.ext.AbstractListenable;
 import org.jodaengine.ext.listener.AbstractSchedulerListener;
@@ -29,8 +31,11 @@ public class FIFOScheduler extends AbstractListenable<AbstractSchedulerListener>
     @Override
     public void submit(Token p) {
 
-        changed(new SchedulerEvent(SchedulerAction.SUBMIT, p, processtokens.size()));
-        processtokens.add(p);
+        changed(SchedulerAction.SUBMIT, p, processtokens.size());
+        synchronized (this.processtokens) {
+            processtokens.add(p);
+            processtokens.notify();
+        }
     }
 
     @Override
@@ -43,10 +48,45 @@ public class FIFOScheduler extends AbstractListenable<AbstractSchedulerListener>
             removedToken = processtokens.remove(0);
             
         }
-        changed(new SchedulerEvent(SchedulerAction.RETRIEVE, removedToken, processtokens.size()));
+        changed(SchedulerAction.RETRIEVE, removedToken, processtokens.size());
+        return removedToken;
+    }
+
+    @Override
+    public Token retrieve(long timeout, TimeUnit unit)
+    throws InterruptedException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Token removedToken;
+        synchronized (this.processtokens) {
+            while (this.processtokens.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.processtokens, remaining);
+            }
+            removedToken = processtokens.remove(0);
+        }
+        changed(SchedulerAction.RETRIEVE, removedToken, processtokens.size());
         return removedToken;
     }
     
+    @Override
+    public List<Token> retrieveAll(int maxNumberOfTokens) {
+
+        List<Token> removedTokens = new ArrayList<Token>();
+        synchronized (this.processtokens) {
+            while (removedTokens.size() < maxNumberOfTokens && !this.processtokens.isEmpty()) {
+                removedTokens.add(processtokens.remove(0));
+            }
+        }
+        for (Token removedToken : removedTokens) {
+            changed(SchedulerAction.RETRIEVE, removedToken, processtokens.size());
+        }
+        return removedTokens;
+    }
+
     @Override
     public boolean isEmpty() {
         return this.processtokens.isEmpty();
@@ -54,17 +94,27 @@ public class FIFOScheduler extends AbstractListenable<AbstractSchedulerListener>
 
     @Override
     public void submitAll(List<Token> listOfTokens) {
-        this.processtokens.addAll(listOfTokens);  
+        synchronized (this.processtokens) {
+            this.processtokens.addAll(listOfTokens);
+            this.processtokens.notifyAll();
+        }
     }
     
     /**
      * We changed, tell everybody now!.
      *
-     * @param event the event
+     * @param action
+     *            the action
+     * @param token
+     *            the token
+     * @param size
+     *            the number of tokens
      */
-    private void changed(SchedulerEvent event) {
-        setChanged();
-        notifyObservers(event);
+    private void changed(SchedulerAction action, Token token, int size) {
+
+        if (hasListeners()) {
+            notifyListeners(new SchedulerEvent(action, token, size));
+        }
     }
 
     @Override
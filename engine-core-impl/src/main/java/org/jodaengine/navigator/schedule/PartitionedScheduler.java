@@ -0,0 +1,375 @@
+package org.jodaengine.navigator.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnegative;
+
+import org.jodaengine.ext.AbstractListenable;
+import org.jodaengine.ext.listener.AbstractSchedulerListener;
+import org.jodaengine.navigator.NavigationThread;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.token.Token;
+
+/**
+ * The Class PartitionedScheduler. The tokens are distributed among a fixed number of lanes by hashing the id of their
+ * process instance, so all tokens of one instance end up in the same lane. Every lane is owned by exactly one thread,
+ * which is the only one retrieving tokens from it.
+ *
+ * As a consequence, the tokens of a process instance are retrieved one after another by the same navigator thread,
+ * with the instance's data staying in the caches of that thread. This does not make the instance's steps mutually
+ * exclusive, though: tokens that are resumed directly (e.g. after a human task) are executed by the resuming thread,
+ * and with a {@link org.jodaengine.navigator.StepExecutionPool} the steps of blocking activities run on the threads of
+ * the pool, concurrently to the other steps of the instance.
+ *
+ * A {@link NavigationThread} claims a free lane, when it retrieves tokens for the first time, and releases its lanes,
+ * when it stops. Lanes without a living owner, e.g. because there are fewer threads than lanes, are adopted by threads
+ * that have nothing else to do; a token submitted to such a lane wakes up a waiting thread. A thread, that finds all
+ * lanes owned, gets no lane and stays idle, e.g. one added by the
+ * {@link org.jodaengine.navigator.ThreadPoolController} beyond the number of lanes. So the number of lanes should
+ * match the (maximum) number of navigator threads; the navigator warns about threads without a lane.
+ *
+ * Other threads, e.g. one draining the navigator after its threads stopped, never claim a lane. They take the tokens
+ * of any lane, regardless of its owner.
+ */
+public class PartitionedScheduler extends AbstractListenable<AbstractSchedulerListener> implements Scheduler {
+
+    /** The lanes; the tokens of a process instance always go to the same lane. */
+    private List<BlockingQueue<Token>> lanes;
+
+    /** The thread owning each lane. */
+    private AtomicReferenceArray<Thread> owners;
+
+    /** The lanes owned by the current thread. */
+    private ThreadLocal<OwnedLanes> ownedLanes;
+
+    /** The number of all submitted tokens. */
+    private AtomicInteger numberOfTokens;
+
+    /** The threads waiting for tokens; one of them is woken up for a token in a lane without a living owner. */
+    private Queue<Thread> waitingThreads;
+
+    /** The lane, at which threads without lanes start looking for tokens. */
+    private AtomicInteger nextLane;
+
+    /**
+     * Instantiates a new partitioned scheduler.
+     *
+     * @param numberOfLanes
+     *            the number of lanes, should be the number of navigator threads
+     */
+    public PartitionedScheduler(@Nonnegative int numberOfLanes) {
+
+        if (numberOfLanes < 1) {
+            throw new IllegalArgumentException("The scheduler needs at least one lane.");
+        }
+
+        this.lanes = new ArrayList<BlockingQueue<Token>>(numberOfLanes);
+        for (int i = 0; i < numberOfLanes; i++) {
+            this.lanes.add(new LinkedBlockingQueue<Token>());
+        }
+        this.owners = new AtomicReferenceArray<Thread>(numberOfLanes);
+        this.numberOfTokens = new AtomicInteger(0);
+        this.waitingThreads = new ConcurrentLinkedQueue<Thread>();
+        this.nextLane = new AtomicInteger(0);
+        this.ownedLanes = new ThreadLocal<OwnedLanes>() {
+            @Override
+            protected OwnedLanes initialValue() {
+
+                return new OwnedLanes();
+            }
+        };
+    }
+
+    /**
+     * Determines the lane of a token by the id of its process instance.
+     *
+     * @param token
+     *            the token
+     * @return the index of the lane
+     */
+    private int laneOf(Token token) {
+
+        AbstractProcessInstance instance = token.getInstance();
+        if (instance == null || instance.getID() == null) {
+            return 0;
+        }
+
+        UUID id = instance.getID();
+        return (id.hashCode() & Integer.MAX_VALUE) % lanes.size();
+    }
+
+    @Override
+    public void submit(Token p) {
+
+        int lane = laneOf(p);
+        int size = numberOfTokens.getAndIncrement();
+        changed(SchedulerAction.SUBMIT, p, size);
+        lanes.get(lane).offer(p);
+
+        // wake up the owner, in case it is waiting for tokens, or somebody who adopts the lane
+        Thread owner = owners.get(lane);
+        if (owner != null && owner.isAlive()) {
+            LockSupport.unpark(owner);
+        } else {
+            Thread waitingThread = waitingThreads.peek();
+            if (waitingThread != null) {
+                LockSupport.unpark(waitingThread);
+            }
+        }
+    }
+
+    @Override
+    public Token retrieve() {
+
+        Token token;
+        if (Thread.currentThread() instanceof NavigationThread) {
+            OwnedLanes owned = ownedLanes.get();
+            token = owned.poll();
+            if (token == null && adoptLanes(owned)) {
+                token = owned.poll();
+            }
+        } else {
+            token = pollAnyLane();
+        }
+
+        if (token == null) {
+            return null;
+        }
+
+        int size = numberOfTokens.decrementAndGet();
+        changed(SchedulerAction.RETRIEVE, token, size);
+        return token;
+    }
+
+    @Override
+    public Token retrieve(long timeout, TimeUnit unit)
+    throws InterruptedException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Token token = retrieve();
+        if (token != null) {
+            return token;
+        }
+
+        // submitters unpark the owner of the lane or a waiting thread, so there is no need for a lock; the thread is
+        // registered before it looks again, so that no submitter misses it
+        Thread current = Thread.currentThread();
+        waitingThreads.offer(current);
+        try {
+            while ((token = retrieve()) == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waitingThreads.remove(current);
+        }
+        return token;
+    }
+
+    /**
+     * Gets the number of lanes. Navigator threads beyond this number do not get a lane.
+     *
+     * @return the number of lanes
+     */
+    public int getNumberOfLanes() {
+
+        return lanes.size();
+    }
+
+    /**
+     * Releases the lanes of the current thread, e.g. because the navigator thread stops. If they hold tokens, a
+     * waiting thread is woken up to adopt them.
+     */
+    public void releaseLanes() {
+
+        OwnedLanes owned = ownedLanes.get();
+        Thread current = Thread.currentThread();
+        boolean holdsTokens = false;
+        for (int lane : owned.indices) {
+            owners.compareAndSet(lane, current, null);
+            holdsTokens |= !lanes.get(lane).isEmpty();
+        }
+        ownedLanes.remove();
+
+        Thread waitingThread = waitingThreads.peek();
+        if (holdsTokens && waitingThread != null) {
+            LockSupport.unpark(waitingThread);
+        }
+    }
+
+    /**
+     * Retrieves a token of any lane without claiming it. The lanes are visited round robin.
+     *
+     * @return the token or null, if all lanes are empty
+     */
+    private Token pollAnyLane() {
+
+        int start = nextLane.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < lanes.size(); i++) {
+            Token token = lanes.get((start + i) % lanes.size()).poll();
+            if (token != null) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lets the current navigator thread adopt lanes without a living owner. A thread without any lane claims the first free one,
+     * otherwise only lanes holding tokens are adopted.
+     *
+     * @param owned
+     *            the lanes of the current thread
+     * @return true, if a lane was adopted
+     */
+    private boolean adoptLanes(OwnedLanes owned) {
+
+        boolean adopted = false;
+        Thread current = Thread.currentThread();
+
+        for (int i = 0; i < lanes.size(); i++) {
+            Thread owner = owners.get(i);
+            if (owner != null && owner.isAlive()) {
+                continue;
+            }
+
+            if (!owned.isEmpty() && lanes.get(i).isEmpty()) {
+                continue;
+            }
+
+            if (owners.compareAndSet(i, owner, current)) {
+                owned.add(i);
+                adopted = true;
+            }
+        }
+        return adopted;
+    }
+
+    @Override
+    public List<Token> retrieveAll(int maxNumberOfTokens) {
+
+        List<Token> tokens = new ArrayList<Token>();
+        Token token;
+        while (tokens.size() < maxNumberOfTokens && (token = retrieve()) != null) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return numberOfTokens.get() == 0;
+    }
+
+    @Override
+    public void submitAll(List<Token> listOfTokens) {
+
+        for (Token token : listOfTokens) {
+            submit(token);
+        }
+    }
+
+    @Override
+    public int size() {
+
+        return numberOfTokens.get();
+    }
+
+    @Override
+    public boolean remove(Token token) {
+
+        if (lanes.get(laneOf(token)).remove(token)) {
+            numberOfTokens.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void releaseLock(Token token) {
+
+        // the lanes make locks unnecessary
+    }
+
+    /**
+     * We changed, tell everybody now! The event is only created, if somebody is listening.
+     *
+     * @param action
+     *            the action
+     * @param token
+     *            the token
+     * @param size
+     *            the number of tokens
+     */
+    private void changed(SchedulerAction action, Token token, int size) {
+
+        if (hasListeners()) {
+            notifyListeners(new SchedulerEvent(action, token, size));
+        }
+    }
+
+    /**
+     * The lanes owned by a single thread. They are visited round robin, so that no lane starves.
+     */
+    private class OwnedLanes {
+
+        private List<Integer> indices = new ArrayList<Integer>();
+
+        private int next = 0;
+
+        /**
+         * Adds a lane.
+         *
+         * @param lane
+         *            the index of the lane
+         */
+        public void add(int lane) {
+
+            indices.add(lane);
+        }
+
+        /**
+         * Checks if no lane is owned.
+         *
+         * @return true, if no lane is owned
+         */
+        public boolean isEmpty() {
+
+            return indices.isEmpty();
+        }
+
+        /**
+         * Retrieves the next token of the owned lanes.
+         *
+         * @return the token or null, if all owned lanes are empty
+         */
+        public Token poll() {
+
+            for (int i = 0; i < indices.size(); i++) {
+                next = (next + 1) % indices.size();
+                Token token = lanes.get(indices.get(next)).poll();
+                if (token != null) {
+                    return token;
+                }
+            }
+            return null;
+        }
+    }
+}
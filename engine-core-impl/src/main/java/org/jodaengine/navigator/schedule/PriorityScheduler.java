@@ -0,0 +1,378 @@
+package org.jodaengine.navigator.schedule;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nullable;
+
+import org.jodaengine.ext.AbstractListenable;
+import org.jodaengine.ext.listener.AbstractSchedulerListener;
+import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.token.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class PriorityScheduler. It retrieves urgent tokens first, so that interactive processes are not delayed by
+ * batch loads.
+ *
+ * The urgency of a token is defined by the following attributes, which are looked up at the token first and then at
+ * the {@link ProcessDefinition} of its instance:
+ * <ul>
+ * <li>{@value #PRIORITY_ATTRIBUTE}: an integer, the higher the more urgent; tokens without a priority have priority
+ * {@value #DEFAULT_PRIORITY}</li>
+ * <li>{@value #DEADLINE_ATTRIBUTE}: at a token, the point in time (a {@link Date} or milliseconds since the epoch) the
+ * token should be executed by; at a definition, the number of milliseconds after the submission</li>
+ * </ul>
+ *
+ * Every token is given a target time, which is the time of its submission, brought forward by the aging interval for
+ * every priority level, or its deadline, if that is earlier. Tokens are retrieved in order of their target times. As
+ * new tokens get later target times, a token of low priority is overtaken by a limited number of tokens only and does
+ * not starve.
+ */
+public class PriorityScheduler extends AbstractListenable<AbstractSchedulerListener> implements Scheduler {
+
+    /** The name of the priority attribute. */
+    public static final String PRIORITY_ATTRIBUTE = "priority";
+
+    /** The name of the deadline attribute. */
+    public static final String DEADLINE_ATTRIBUTE = "deadline";
+
+    /** The priority of tokens without a priority attribute. */
+    public static final int DEFAULT_PRIORITY = 0;
+
+    /** The default time a token with priority n + 1 is preferred to a token with priority n, in milliseconds. */
+    public static final long DEFAULT_AGING_INTERVAL = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** The process tokens we would like to schedule, ordered by their target time. */
+    private PriorityBlockingQueue<ScheduledToken> processtokens;
+
+    /** The number of scheduled tokens per priority. */
+    private ConcurrentMap<Integer, AtomicInteger> queueDepths;
+
+    /** Keeps tokens with the same target time in FIFO order. */
+    private AtomicLong sequence;
+
+    private long agingInterval;
+
+    /**
+     * Instantiates a new priority scheduler with the default aging interval.
+     */
+    public PriorityScheduler() {
+
+        this(DEFAULT_AGING_INTERVAL);
+    }
+
+    /**
+     * Instantiates a new priority scheduler.
+     *
+     * @param agingInterval
+     *            the time in milliseconds a token is preferred to tokens with a priority lower by one
+     */
+    public PriorityScheduler(@Nonnegative long agingInterval) {
+
+        this.agingInterval = agingInterval;
+        this.processtokens = new PriorityBlockingQueue<ScheduledToken>();
+        this.queueDepths = new ConcurrentHashMap<Integer, AtomicInteger>();
+        this.sequence = new AtomicLong(0);
+    }
+
+    @Override
+    public void submit(Token p) {
+
+        long now = System.currentTimeMillis();
+        int priority = getPriority(p);
+        long targetTime = now - priority * agingInterval;
+
+        Long deadline = getDeadline(p, now);
+        if (deadline != null && deadline < targetTime) {
+            targetTime = deadline;
+        }
+
+        changed(SchedulerAction.SUBMIT, p, processtokens.size());
+        getQueueDepth(priority).incrementAndGet();
+        processtokens.offer(new ScheduledToken(p, priority, targetTime, sequence.getAndIncrement()));
+    }
+
+    @Override
+    public Token retrieve() {
+
+        return retrieved(processtokens.poll());
+    }
+
+    @Override
+    public Token retrieve(long timeout, TimeUnit unit)
+    throws InterruptedException {
+
+        return retrieved(processtokens.poll(timeout, unit));
+    }
+
+    @Override
+    public List<Token> retrieveAll(int maxNumberOfTokens) {
+
+        List<ScheduledToken> scheduledTokens = new ArrayList<ScheduledToken>();
+        processtokens.drainTo(scheduledTokens, maxNumberOfTokens);
+
+        List<Token> tokens = new ArrayList<Token>(scheduledTokens.size());
+        for (ScheduledToken scheduledToken : scheduledTokens) {
+            tokens.add(retrieved(scheduledToken));
+        }
+        return tokens;
+    }
+
+    /**
+     * Does the bookkeeping for a retrieved token.
+     *
+     * @param scheduledToken
+     *            the retrieved token, may be null
+     * @return the token or null, if nothing was retrieved
+     */
+    private Token retrieved(@Nullable ScheduledToken scheduledToken) {
+
+        if (scheduledToken == null) {
+            return null;
+        }
+
+        getQueueDepth(scheduledToken.priority).decrementAndGet();
+        changed(SchedulerAction.RETRIEVE, scheduledToken.token, processtokens.size());
+        return scheduledToken.token;
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return processtokens.isEmpty();
+    }
+
+    @Override
+    public void submitAll(List<Token> listOfTokens) {
+
+        for (Token token : listOfTokens) {
+            submit(token);
+        }
+    }
+
+    @Override
+    public int size() {
+
+        return processtokens.size();
+    }
+
+    @Override
+    public boolean remove(Token token) {
+
+        Iterator<ScheduledToken> iterator = processtokens.iterator();
+        while (iterator.hasNext()) {
+            ScheduledToken scheduledToken = iterator.next();
+            if (scheduledToken.token.equals(token)) {
+                iterator.remove();
+                getQueueDepth(scheduledToken.priority).decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void releaseLock(Token token) {
+
+        // there are no locks
+    }
+
+    /**
+     * Gets the number of scheduled tokens per priority. Priorities that were used before, but have no tokens at the
+     * moment, are reported with zero tokens.
+     *
+     * @return the queue depth per priority, sorted by priority
+     */
+    public SortedMap<Integer, Integer> getQueueDepthPerPriority() {
+
+        SortedMap<Integer, Integer> depths = new TreeMap<Integer, Integer>();
+        for (Map.Entry<Integer, AtomicInteger> entry : queueDepths.entrySet()) {
+            depths.put(entry.getKey(), entry.getValue().get());
+        }
+        return depths;
+    }
+
+    /**
+     * Gets the counter of scheduled tokens for the priority and creates it, if necessary.
+     *
+     * @param priority
+     *            the priority
+     * @return the counter
+     */
+    private AtomicInteger getQueueDepth(int priority) {
+
+        AtomicInteger depth = queueDepths.get(priority);
+        if (depth == null) {
+            AtomicInteger newDepth = new AtomicInteger(0);
+            depth = queueDepths.putIfAbsent(priority, newDepth);
+            if (depth == null) {
+                depth = newDepth;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Gets the priority of a token.
+     *
+     * @param token
+     *            the token
+     * @return the priority
+     */
+    private int getPriority(Token token) {
+
+        Object priority = token.getAttribute(PRIORITY_ATTRIBUTE);
+        if (priority == null) {
+            priority = getDefinitionAttribute(token, PRIORITY_ATTRIBUTE);
+        }
+
+        if (priority instanceof Number) {
+            return ((Number) priority).intValue();
+        }
+        if (priority instanceof String) {
+            try {
+                return Integer.parseInt((String) priority);
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring the invalid priority {} of {}", priority, token);
+            }
+        }
+        return DEFAULT_PRIORITY;
+    }
+
+    /**
+     * Gets the deadline of a token.
+     *
+     * @param token
+     *            the token
+     * @param now
+     *            the time of the submission
+     * @return the deadline in milliseconds since the epoch, or null if the token has got none
+     */
+    private Long getDeadline(Token token, long now) {
+
+        Object deadline = token.getAttribute(DEADLINE_ATTRIBUTE);
+        if (deadline instanceof Date) {
+            return ((Date) deadline).getTime();
+        }
+        if (deadline instanceof Number) {
+            return ((Number) deadline).longValue();
+        }
+
+        // the deadline of a definition is relative to the submission
+        deadline = getDefinitionAttribute(token, DEADLINE_ATTRIBUTE);
+        if (deadline instanceof Number) {
+            return now + ((Number) deadline).longValue();
+        }
+        return null;
+    }
+
+    /**
+     * Gets an attribute of the process definition the token belongs to.
+     *
+     * @param token
+     *            the token
+     * @param attributeKey
+     *            the name of the attribute
+     * @return the value of the attribute, or null if there is none
+     */
+    private Object getDefinitionAttribute(Token token, String attributeKey) {
+
+        AbstractProcessInstance instance = token.getInstance();
+        if (instance == null || instance.getDefinition() == null) {
+            return null;
+        }
+        return instance.getDefinition().getAttribute(attributeKey);
+    }
+
+    /**
+     * We changed, tell everybody now!.
+     *
+     * @param action
+     *            the action
+     * @param token
+     *            the token
+     * @param size
+     *            the number of tokens
+     */
+    private void changed(SchedulerAction action, Token token, int size) {
+
+        if (hasListeners()) {
+            notifyListeners(new SchedulerEvent(action, token, size));
+        }
+    }
+
+    /**
+     * A scheduled token together with the information needed to order it.
+     */
+    private static final class ScheduledToken implements Comparable<ScheduledToken> {
+
+        private final Token token;
+
+        private final int priority;
+
+        private final long targetTime;
+
+        private final long sequenceNumber;
+
+        /**
+         * Instantiates a new scheduled token.
+         *
+         * @param token
+         *            the token
+         * @param priority
+         *            the priority
+         * @param targetTime
+         *            the time the token should be executed by
+         * @param sequenceNumber
+         *            the sequence number
+         */
+        public ScheduledToken(Token token, int priority, long targetTime, long sequenceNumber) {
+
+            this.token = token;
+            this.priority = priority;
+            this.targetTime = targetTime;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public int compareTo(ScheduledToken other) {
+
+            if (targetTime != other.targetTime) {
+                return targetTime < other.targetTime ? -1 : 1;
+            }
+            if (sequenceNumber != other.sequenceNumber) {
+                return sequenceNumber < other.sequenceNumber ? -1 : 1;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+
+            return object instanceof ScheduledToken && ((ScheduledToken) object).sequenceNumber == sequenceNumber;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return (int) (sequenceNumber ^ (sequenceNumber >>> Integer.SIZE));
+        }
+    }
+}
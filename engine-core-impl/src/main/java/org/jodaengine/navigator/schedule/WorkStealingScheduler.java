@@ -0,0 +1,248 @@
+package org.jodaengine.navigator.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnegative;
+
+import org.jodaengine.ext.AbstractListenable;
+import org.jodaengine.ext.listener.AbstractSchedulerListener;
+import org.jodaengine.process.token.Token;
+
+/**
+ * The Class WorkStealingScheduler. Instead of one shared, synchronized list (see {@link FIFOScheduler}) every thread
+ * working with this scheduler gets its own lock-free queue. Tokens are submitted to the queue of the submitting thread
+ * and retrieved from it again. A thread, whose queue is empty, steals tokens from the queues of the other threads.
+ *
+ * This way the navigator threads rarely compete for the same queue, so that handing tokens over scales with the number
+ * of threads. Within a single queue the tokens are retrieved in FIFO order, across queues there is no global order.
+ */
+public class WorkStealingScheduler extends AbstractListenable<AbstractSchedulerListener> implements Scheduler {
+
+    /** The queues, one per thread (if there are more threads than queues, some threads share a queue). */
+    private List<Queue<Token>> queues;
+
+    /** The number of all submitted tokens. It is incremented before and decremented after touching a queue. */
+    private AtomicInteger numberOfTokens;
+
+    /** Used to distribute the threads equally among the queues. */
+    private AtomicInteger nextQueue;
+
+    /** The index of the queue that belongs to the current thread. */
+    private ThreadLocal<Integer> homeQueue;
+
+    /** Only taken by threads that wait for tokens and by submitters, if there are waiting threads. */
+    private Lock idleLock;
+
+    /** Signaled, if a token was submitted. */
+    private Condition tokenSubmitted;
+
+    /** The number of threads waiting for a token. */
+    private AtomicInteger numberOfWaitingThreads;
+
+    /**
+     * Instantiates a new work stealing scheduler with one queue per available processor.
+     */
+    public WorkStealingScheduler() {
+
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Instantiates a new work stealing scheduler.
+     *
+     * @param numberOfQueues
+     *            the number of queues, usually the number of navigator threads
+     */
+    public WorkStealingScheduler(@Nonnegative int numberOfQueues) {
+
+        if (numberOfQueues < 1) {
+            throw new IllegalArgumentException("The scheduler needs at least one queue.");
+        }
+
+        this.queues = new ArrayList<Queue<Token>>(numberOfQueues);
+        for (int i = 0; i < numberOfQueues; i++) {
+            this.queues.add(new ConcurrentLinkedQueue<Token>());
+        }
+
+        this.numberOfTokens = new AtomicInteger(0);
+        this.nextQueue = new AtomicInteger(0);
+        this.idleLock = new ReentrantLock();
+        this.tokenSubmitted = idleLock.newCondition();
+        this.numberOfWaitingThreads = new AtomicInteger(0);
+        this.homeQueue = new ThreadLocal<Integer>() {
+            @Override
+            protected Integer initialValue() {
+
+                return (nextQueue.getAndIncrement() & Integer.MAX_VALUE) % queues.size();
+            }
+        };
+    }
+
+    @Override
+    public void submit(Token p) {
+
+        int size = numberOfTokens.getAndIncrement();
+        changed(SchedulerAction.SUBMIT, p, size);
+        queues.get(homeQueue.get()).offer(p);
+        signalWaitingThread();
+    }
+
+    @Override
+    public Token retrieve() {
+
+        int home = homeQueue.get();
+        Token token = queues.get(home).poll();
+
+        if (token == null) {
+            token = steal(home);
+        }
+
+        if (token == null) {
+            return null;
+        }
+
+        int size = numberOfTokens.decrementAndGet();
+        changed(SchedulerAction.RETRIEVE, token, size);
+        return token;
+    }
+
+    @Override
+    public Token retrieve(long timeout, TimeUnit unit)
+    throws InterruptedException {
+
+        Token token = retrieve();
+        if (token != null) {
+            return token;
+        }
+
+        long remaining = unit.toNanos(timeout);
+        idleLock.lock();
+        try {
+            // the counter has to be incremented before we look again, otherwise a submitter might miss us
+            numberOfWaitingThreads.incrementAndGet();
+            try {
+                while ((token = retrieve()) == null) {
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    remaining = tokenSubmitted.awaitNanos(remaining);
+                }
+            } finally {
+                numberOfWaitingThreads.decrementAndGet();
+            }
+        } finally {
+            idleLock.unlock();
+        }
+        return token;
+    }
+
+    /**
+     * Wakes up a thread waiting for tokens, if there is any. Submitters only take the lock, if somebody is waiting.
+     */
+    private void signalWaitingThread() {
+
+        if (numberOfWaitingThreads.get() == 0) {
+            return;
+        }
+
+        idleLock.lock();
+        try {
+            tokenSubmitted.signal();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * Steals a token from the queues of the other threads. The victims are visited in order, starting with the
+     * neighbour of the thief.
+     *
+     * @param home
+     *            the queue of the thief
+     * @return the stolen token or null, if all the other queues are empty
+     */
+    private Token steal(int home) {
+
+        for (int i = 1; i < queues.size(); i++) {
+            Token token = queues.get((home + i) % queues.size()).poll();
+            if (token != null) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Token> retrieveAll(int maxNumberOfTokens) {
+
+        List<Token> tokens = new ArrayList<Token>();
+        Token token;
+        while (tokens.size() < maxNumberOfTokens && (token = retrieve()) != null) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return numberOfTokens.get() == 0;
+    }
+
+    @Override
+    public void submitAll(List<Token> listOfTokens) {
+
+        for (Token token : listOfTokens) {
+            submit(token);
+        }
+    }
+
+    @Override
+    public int size() {
+
+        return numberOfTokens.get();
+    }
+
+    @Override
+    public boolean remove(Token token) {
+
+        for (Queue<Token> queue : queues) {
+            if (queue.remove(token)) {
+                numberOfTokens.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void releaseLock(Token token) {
+
+        // there are no locks
+    }
+
+    /**
+     * We changed, tell everybody now! The event is only created, if somebody is listening.
+     *
+     * @param action
+     *            the action
+     * @param token
+     *            the token
+     * @param size
+     *            the number of tokens
+     */
+    private void changed(SchedulerAction action, Token token, int size) {
+
+        if (hasListeners()) {
+            notifyListeners(new SchedulerEvent(action, token, size));
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package org.jodaengine.node.activity.custom;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.jodaengine.node.activity.AbstractActivity;
 import org.jodaengine.process.instance.ProcessInstanceContext;
+import org.jodaengine.process.instance.VariableDeclaring;
 import org.jodaengine.process.token.AbstractToken;
 
 
@@ -12,7 +19,8 @@ import org.jodaengine.process.token.AbstractToken;
  * As the name indicates, an activity that adds any number of summands and stores the result.
  */
 public class AddContextNumbersAndStoreActivity
-extends AbstractActivity {
+extends AbstractActivity
+implements VariableDeclaring {
 
     /** Summands. */
     private String[] summands;
@@ -46,4 +54,13 @@ extends AbstractActivity {
 
         context.setVariable(resultVariableName, result);
     }
+
+    @JsonIgnore
+    @Override
+    public Collection<String> getDeclaredVariableNames() {
+
+        List<String> names = new ArrayList<String>(Arrays.asList(summands));
+        names.add(resultVariableName);
+        return names;
+    }
 }
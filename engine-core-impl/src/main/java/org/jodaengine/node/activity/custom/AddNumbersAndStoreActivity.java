@@ -1,11 +1,16 @@
 package org.jodaengine.node.activity.custom;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import javax.annotation.Nonnull;
 
 import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 import org.jodaengine.node.activity.AbstractActivity;
 import org.jodaengine.process.instance.ProcessInstanceContext;
+import org.jodaengine.process.instance.VariableDeclaring;
 import org.jodaengine.process.token.AbstractToken;
 
 
@@ -14,7 +19,8 @@ import org.jodaengine.process.token.AbstractToken;
  * As the name indicates, an activity that adds any number of summands and stores the result.
  */
 public class AddNumbersAndStoreActivity
-extends AbstractActivity {
+extends AbstractActivity
+implements VariableDeclaring {
 
     /** Summands. */
     private int[] summands;
@@ -46,4 +52,11 @@ extends AbstractActivity {
         ProcessInstanceContext context = token.getInstance().getContext();
         context.setVariable(resultVariableName, String.valueOf(result));
     }
+
+    @JsonIgnore
+    @Override
+    public Collection<String> getDeclaredVariableNames() {
+
+        return Collections.singleton(resultVariableName);
+    }
 }
@@ -2,9 +2,13 @@ package org.jodaengine.node.activity.custom;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.jodaengine.node.activity.AbstractActivity;
 import org.jodaengine.process.instance.ProcessInstanceContext;
+import org.jodaengine.process.instance.VariableDeclaring;
 import org.jodaengine.process.token.AbstractToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,7 +22,7 @@ import org.slf4j.LoggerFactory;
  * It uses the Java Message Digest class which supports the following cipher algorithms: MD2 MD5 SHA-1: The Secure Hash
  * Algorithm, as defined in Secure Hash Standard, NIST FIPS 180-1. SHA-256 SHA-384 SHA-512 DSA RSA and many more ;-)
  */
-public class HashComputationActivity extends AbstractActivity {
+public class HashComputationActivity extends AbstractActivity implements VariableDeclaring {
 
     private static final String DEFAULT_ALGORITHM = "SHA1";
 
@@ -100,4 +104,10 @@ public class HashComputationActivity extends AbstractActivity {
         }
     }
 
+    @JsonIgnore
+    @Override
+    public Collection<String> getDeclaredVariableNames() {
+
+        return Collections.singleton(variableName);
+    }
 }
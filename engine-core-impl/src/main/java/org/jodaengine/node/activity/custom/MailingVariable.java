@@ -1,5 +1,7 @@
 package org.jodaengine.node.activity.custom;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Properties;
 
 import javax.annotation.Nonnull;
@@ -10,8 +12,10 @@ import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.jodaengine.node.activity.AbstractActivity;
 import org.jodaengine.process.instance.ProcessInstanceContext;
+import org.jodaengine.process.instance.VariableDeclaring;
 import org.jodaengine.process.token.AbstractToken;
 
 
@@ -20,7 +24,8 @@ import org.jodaengine.process.token.AbstractToken;
  * value from the process instance.
  */
 public class MailingVariable
-extends AbstractActivity {
+extends AbstractActivity
+implements VariableDeclaring {
 
     private static String host = "localhost";
     // CHECKSTYLE:OFF
@@ -106,4 +111,10 @@ extends AbstractActivity {
         return properties;
     }
 
+    @JsonIgnore
+    @Override
+    public Collection<String> getDeclaredVariableNames() {
+
+        return Collections.singleton(variableName);
+    }
 }
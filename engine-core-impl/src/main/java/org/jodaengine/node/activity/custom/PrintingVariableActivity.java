@@ -1,7 +1,12 @@
 package org.jodaengine.node.activity.custom;
 
+import java.util.Collection;
+import java.util.Collections;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.jodaengine.node.activity.AbstractActivity;
 import org.jodaengine.process.instance.ProcessInstanceContext;
+import org.jodaengine.process.instance.VariableDeclaring;
 import org.jodaengine.process.token.AbstractToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,7 +17,8 @@ import org.slf4j.LoggerFactory;
  * Prints out a variable value which the activity gets in its constructor.
  */
 public class PrintingVariableActivity
-extends AbstractActivity {
+extends AbstractActivity
+implements VariableDeclaring {
 
     private String variableName;
     
@@ -34,4 +40,11 @@ extends AbstractActivity {
         ProcessInstanceContext context = token.getInstance().getContext();
         logger.info("Variable {}={}", variableName, context.getVariable(variableName));
     }
+
+    @JsonIgnore
+    @Override
+    public Collection<String> getDeclaredVariableNames() {
+
+        return Collections.singleton(variableName);
+    }
 }
@@ -12,14 +12,35 @@ import org.jodaengine.process.token.Token;
  */
 public class AndJoinBehaviour extends AbstractIncomingBehaviour {
     
+    /**
+     * Signals the path of the token and checks, whether all paths are ready, in one atomic step. Checking it via
+     * {@link #joinable(Token, Node)} afterwards would let two concurrently arriving tokens both perform the join.
+     * 
+     * {@inheritDoc}
+     */
     @Override
     public Collection<Token> join(Token token) {
         ProcessInstanceContext context = token.getInstance().getContext();
         
         // We have an AND Join, so we have to wait until all paths are ready.
         // The following line states, that the path with the current token is ready.
-        context.setSignaledControlFlow(token.getLastTakenControlFlow());
-        return super.join(token);
+        int activations = context.joinControlFlow(token.getLastTakenControlFlow());
+        
+        Collection<Token> newTokens = new LinkedList<Token>();
+        if (activations == 0) {
+            // remove the token because we don't need it later on. The path was already signaled.
+            token.getInstance().removeToken(token);
+            return newTokens;
+        }
+        
+        newTokens.add(token);
+        
+        // tokens that arrived concurrently might have left their activation to this one
+        for (int i = 1; i < activations; i++) {
+            newTokens.add(token.getInstance().createToken(token.getCurrentNode(), token.getLastTakenControlFlow(),
+                null));
+        }
+        return newTokens;
     }
 
     @Override
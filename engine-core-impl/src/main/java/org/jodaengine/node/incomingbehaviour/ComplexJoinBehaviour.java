@@ -2,9 +2,7 @@ package org.jodaengine.node.incomingbehaviour;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.jodaengine.node.outgoingbehaviour.ComplexGatewayState;
 import org.jodaengine.process.instance.ProcessInstanceContext;
@@ -44,21 +42,19 @@ public class ComplexJoinBehaviour extends AbstractIncomingBehaviour {
     public boolean joinable(Token token, Node node) {
         //TODO Use node instead of getCurrentNode, Ask Thorben if this is ok!
         ProcessInstanceContext context = token.getInstance().getContext();
-        List<ControlFlow> signaledControlFlows = context.getSignaledControlFlows(token.getCurrentNode());
-
-        // make a set to ignore doubled entries, etc.
-        Set<ControlFlow> singaledControlFlowsSet = new HashSet<ControlFlow>(signaledControlFlows);
+        // doubled entries are ignored
+        int numberOfSignaledControlFlows = context.getNumberOfSignaledControlFlows(token.getCurrentNode());
         ComplexGatewayState state = getGatewayState(context, token.getCurrentNode());
 
         switch (state) {
             case WAITING_FOR_START:
-                if (singaledControlFlowsSet.size() >= triggerNumber) {
+                if (numberOfSignaledControlFlows >= triggerNumber) {
                     return true;
                 }
                 break;
 
             case WAITING_FOR_RESET:
-                if (singaledControlFlowsSet.size() == token.getCurrentNode().getIncomingControlFlows().size()) {
+                if (numberOfSignaledControlFlows == token.getCurrentNode().getIncomingControlFlows().size()) {
                     return true;
                 }
                 break;
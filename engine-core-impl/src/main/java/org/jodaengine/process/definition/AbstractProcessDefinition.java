@@ -10,16 +10,21 @@ import org.jodaengine.eventmanagement.EventSubscriptionManagement;
 import org.jodaengine.eventmanagement.processevent.incoming.IncomingStartProcessEvent;
 import org.jodaengine.exception.DefinitionNotActivatedException;
 import org.jodaengine.exception.UnsupportedDefinitionException;
+import org.jodaengine.ext.service.ExtensionService;
 import org.jodaengine.navigator.NavigatorInside;
 import org.jodaengine.process.activation.ProcessDeActivationPattern;
 import org.jodaengine.process.activation.ProcessDefinitionActivationPatternContext;
 import org.jodaengine.process.activation.ProcessDefinitionActivationPatternContextImpl;
 import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.VariableLayout;
 import org.jodaengine.process.instantiation.InstantiationPatternContext;
 import org.jodaengine.process.instantiation.InstantiationPatternContextImpl;
 import org.jodaengine.process.instantiation.ProcessInstantiationPattern;
 import org.jodaengine.process.instantiation.StartProcessInstantiationPattern;
+import org.jodaengine.process.instantiation.pattern.AbstractProcessInstantiationPattern;
 import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.token.TokenBuilder;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +54,12 @@ public abstract class AbstractProcessDefinition implements ProcessDefinitionInsi
 
     protected boolean activated = false;
 
+    @JsonIgnore
+    private volatile VariableLayout variableLayout;
+
+    @JsonIgnore
+    private volatile NodeIndex nodeIndex;
+
     /**
      * Default instantiation.
      * 
@@ -188,6 +199,17 @@ public abstract class AbstractProcessDefinition implements ProcessDefinitionInsi
         return firstInstantiationPattern.createProcessInstance(patternContext);
     }
 
+    @Override
+    public TokenBuilder createTokenBuilder(NavigatorInside navigator, ExtensionService extensionService) {
+
+        // the start pattern shares its extension plan and token pool with the instances it creates
+        if (firstInstantiationPattern instanceof AbstractProcessInstantiationPattern) {
+            return ((AbstractProcessInstantiationPattern) firstInstantiationPattern).createTokenBuilder(navigator,
+                extensionService);
+        }
+        return new BpmnTokenBuilder(navigator, extensionService);
+    }
+
     @Override
     public void activate(EventSubscriptionManagement eventManager) {
 
@@ -195,6 +217,9 @@ public abstract class AbstractProcessDefinition implements ProcessDefinitionInsi
             this);
         firstActivationPattern.activateProcessDefinition(patternContext);
 
+        // the nodes do not change anymore, so the variables can be laid out once for all instances
+        this.variableLayout = VariableLayout.compile(this);
+        this.nodeIndex = new NodeIndex(this);
         this.activated = true;
     }
 
@@ -208,6 +233,30 @@ public abstract class AbstractProcessDefinition implements ProcessDefinitionInsi
         this.activated = false;
     }
 
+    @JsonIgnore
+    @Override
+    public VariableLayout getVariableLayout() {
+
+        VariableLayout layout = this.variableLayout;
+        if (layout == null) {
+            layout = VariableLayout.compile(this);
+            this.variableLayout = layout;
+        }
+        return layout;
+    }
+
+    @JsonIgnore
+    @Override
+    public NodeIndex getNodeIndex() {
+
+        NodeIndex index = this.nodeIndex;
+        if (index == null) {
+            index = new NodeIndex(this);
+            this.nodeIndex = index;
+        }
+        return index;
+    }
+
     @Override
     public int hashCode() {
 
@@ -0,0 +1,107 @@
+package org.jodaengine.process.definition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.process.structure.ControlFlow;
+import org.jodaengine.process.structure.Node;
+
+/**
+ * The Class NodeIndex numbers the nodes of a process definition. The nodes are numbered in the order they are reached
+ * from the start nodes, following the control flows in their given order. So the same definition numbers its nodes
+ * the same way, whenever it is deployed, although its nodes get new ids.
+ */
+public final class NodeIndex {
+
+    private final List<Node> nodes;
+
+    private final Map<Node, Integer> indices;
+
+    /**
+     * Instantiates a new index of the nodes of a definition.
+     *
+     * @param definition
+     *            the definition
+     */
+    public NodeIndex(@Nonnull ProcessDefinition definition) {
+
+        this.nodes = new ArrayList<Node>();
+        this.indices = new HashMap<Node, Integer>();
+
+        Queue<Node> nodesToVisit = new LinkedList<Node>(definition.getStartNodes());
+        while (!nodesToVisit.isEmpty()) {
+            Node node = nodesToVisit.poll();
+            if (indices.containsKey(node)) {
+                continue;
+            }
+            indices.put(node, nodes.size());
+            nodes.add(node);
+            for (ControlFlow controlFlow : node.getOutgoingControlFlows()) {
+                nodesToVisit.add(controlFlow.getDestination());
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the nodes of a definition. Definitions, which are deployed, keep their index.
+     *
+     * @param definition
+     *            the definition
+     * @return the index
+     */
+    public static @Nonnull NodeIndex of(@Nonnull ProcessDefinition definition) {
+
+        if (definition instanceof ProcessDefinitionInside) {
+            return ((ProcessDefinitionInside) definition).getNodeIndex();
+        }
+        return new NodeIndex(definition);
+    }
+
+    /**
+     * Gets the index of a node.
+     *
+     * @param node
+     *            the node
+     * @return the index, or -1 if the node does not belong to the definition
+     */
+    public int indexOf(@Nonnull Node node) {
+
+        Integer index = indices.get(node);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * Gets the node with the given index.
+     *
+     * @param index
+     *            the index
+     * @return the node, or null if there is no such node
+     */
+    public @Nullable Node getNode(int index) {
+
+        if (index < 0 || index >= nodes.size()) {
+            return null;
+        }
+        return nodes.get(index);
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+
+        return nodes.size();
+    }
+}
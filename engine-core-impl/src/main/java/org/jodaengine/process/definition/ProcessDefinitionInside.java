@@ -9,9 +9,12 @@ import org.jodaengine.eventmanagement.processevent.incoming.IncomingStartProcess
 import org.jodaengine.exception.DefinitionNotActivatedException;
 import org.jodaengine.exception.IllegalStarteventException;
 import org.jodaengine.exception.UnsupportedDefinitionException;
+import org.jodaengine.ext.service.ExtensionService;
 import org.jodaengine.navigator.NavigatorInside;
 import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.VariableLayout;
 import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.token.TokenBuilder;
 
 /**
  * Extends the ProcessDefinitionInterface so that it provides more methods for the internal classes.
@@ -83,4 +86,33 @@ public interface ProcessDefinitionInside extends ProcessDefinition {
      * 
      */
     void deactivate(EventSubscriptionManagement eventManager);
+
+    /**
+     * Gets the layout of the process variables declared by this definition, which is shared by all its instances.
+     * 
+     * @return the variable layout
+     */
+    @JsonIgnore
+    VariableLayout getVariableLayout();
+
+    /**
+     * Gets the index of the nodes of this definition, which numbers them the same way on every deployment.
+     * 
+     * @return the node index
+     */
+    @JsonIgnore
+    NodeIndex getNodeIndex();
+
+    /**
+     * Creates the builder for the tokens of an instance of this definition, which is not created by this definition,
+     * e.g. an instance recovered from the journal. The tokens are built like those of the instances created by this
+     * definition.
+     * 
+     * @param navigator
+     *            the navigator executing the tokens
+     * @param extensionService
+     *            the {@link ExtensionService} providing the extensions of the tokens, may be null
+     * @return the token builder
+     */
+    TokenBuilder createTokenBuilder(NavigatorInside navigator, ExtensionService extensionService);
 }
@@ -0,0 +1,178 @@
+package org.jodaengine.process.instance;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import org.jodaengine.process.token.Token;
+
+/**
+ * The Class ConcurrentTokenSet holds the tokens assigned to a {@link ProcessInstance}. Tokens of an instance are
+ * created and removed by several navigator threads at once, so adding, removing and checking for a token is
+ * thread-safe and does not depend on the number of tokens. Tokens are compared by identity, as they do not override
+ * {@link Object#equals(Object)}.
+ *
+ * It is exposed as a {@link java.util.List} for compatibility with {@link AbstractProcessInstance#getAssignedTokens()}.
+ * The tokens are kept in the order they were added, so positions, iteration, {@link #equals(Object)} and
+ * {@link #hashCode()} follow that order like in any other list. A token is contained only once: {@link #add(Token)}
+ * rejects a token that is contained already, {@link #addIfAbsent(Token)} ignores it. Iterating is weakly consistent:
+ * it never fails because of concurrent modifications and may or may not see tokens that were added or removed
+ * meanwhile. Positional access iterates up to the position, so it should not be used in loops.
+ */
+public class ConcurrentTokenSet extends AbstractList<Token> {
+
+    /** The position of every token in the order of the tokens. */
+    private final ConcurrentMap<Token, Long> positions;
+
+    /** The tokens in the order they were added. */
+    private final ConcurrentNavigableMap<Long, Token> orderedTokens;
+
+    private final AtomicLong nextPosition;
+
+    /**
+     * Instantiates a new, empty token set.
+     */
+    public ConcurrentTokenSet() {
+
+        this.positions = new ConcurrentHashMap<Token, Long>();
+        this.orderedTokens = new ConcurrentSkipListMap<Long, Token>();
+        this.nextPosition = new AtomicLong(0);
+    }
+
+    /**
+     * Appends the token, if it is not contained yet.
+     *
+     * @param token
+     *            the token
+     * @return true, if the token was added; false, if it is contained already
+     */
+    public boolean addIfAbsent(@Nonnull Token token) {
+
+        Long position = nextPosition.getAndIncrement();
+        if (positions.putIfAbsent(token, position) != null) {
+            return false;
+        }
+        orderedTokens.put(position, token);
+
+        // the token might have been removed, before it was ordered
+        if (!position.equals(positions.get(token))) {
+            orderedTokens.remove(position, token);
+        }
+        return true;
+    }
+
+    /**
+     * Appends the token.
+     *
+     * @param token
+     *            the token
+     * @return true
+     * @throws IllegalArgumentException
+     *             thrown if the token is contained already, as a token is contained only once
+     */
+    @Override
+    public boolean add(Token token) {
+
+        if (!addIfAbsent(token)) {
+            throw new IllegalArgumentException("The token " + token + " is contained already.");
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object token) {
+
+        Long position = positions.remove(token);
+        if (position == null) {
+            return false;
+        }
+        orderedTokens.remove(position);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object token) {
+
+        return positions.containsKey(token);
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+
+        final Iterator<Map.Entry<Long, Token>> entries = orderedTokens.entrySet().iterator();
+        return new Iterator<Token>() {
+
+            private Map.Entry<Long, Token> current;
+
+            @Override
+            public boolean hasNext() {
+
+                return entries.hasNext();
+            }
+
+            @Override
+            public Token next() {
+
+                current = entries.next();
+                return current.getValue();
+            }
+
+            @Override
+            public void remove() {
+
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                positions.remove(current.getValue(), current.getKey());
+                orderedTokens.remove(current.getKey(), current.getValue());
+                current = null;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+
+        return positions.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return positions.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+
+        for (Token token : positions.keySet()) {
+            remove(token);
+        }
+    }
+
+    @Override
+    public Token get(int index) {
+
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+
+        Iterator<Token> iterator = orderedTokens.values().iterator();
+        try {
+            for (int i = 0; i < index; i++) {
+                iterator.next();
+            }
+            return iterator.next();
+        } catch (NoSuchElementException e) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+    }
+}
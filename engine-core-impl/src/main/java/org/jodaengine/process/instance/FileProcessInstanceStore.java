@@ -0,0 +1,216 @@
+package org.jodaengine.process.instance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.exception.JodaEngineRuntimeException;
+
+/**
+ * The Class FileProcessInstanceStore is the embedded {@link ProcessInstanceStore}. It keeps the variables of every
+ * instance in a file of their own, named after the instance. The files are spread over subdirectories by a hash of
+ * the id, so that no directory gets too large. The characters of the id would not do, as time-ordered ids start with
+ * a timestamp and end with bits, that are the same for all ids of an engine.
+ *
+ * The variables are written with Java serialization, so they must be serializable. A file is written completely
+ * before it replaces the previous one, so a crash never leaves a partially written file behind. Classes are resolved
+ * with the context class loader of the loading thread first, as the variables may be instances of classes, that were
+ * deployed with a process definition.
+ */
+public class FileProcessInstanceStore implements ProcessInstanceStore {
+
+    private static final String FILE_SUFFIX = ".vars";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /** The files are spread over 256 subdirectories. */
+    private static final int SUBDIRECTORY_MASK = 0xFF;
+
+    private static final int SUBDIRECTORY_HASH_SHIFT = 16;
+
+    private final File directory;
+
+    /**
+     * Instantiates a new store in the given directory, which is created, if it does not exist.
+     *
+     * @param directory
+     *            the directory
+     */
+    public FileProcessInstanceStore(@Nonnull File directory) {
+
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the directory of the store.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+
+        return directory;
+    }
+
+    @Override
+    public void store(@Nonnull UUID instanceID, @Nonnull Map<String, Object> variables) {
+
+        File file = getFile(instanceID);
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new JodaEngineRuntimeException("The directory " + parent + " could not be created.");
+        }
+
+        File temporaryFile = new File(parent, file.getName() + TEMPORARY_SUFFIX);
+        try {
+            ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(
+                temporaryFile)));
+            try {
+                output.writeObject(new HashMap<String, Object>(variables));
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            temporaryFile.delete();
+            throw new JodaEngineRuntimeException("The variables of the instance " + instanceID
+                + " could not be stored.", e);
+        }
+
+        // renaming does not replace an existing file on every platform
+        if (!temporaryFile.renameTo(file) && !(file.delete() && temporaryFile.renameTo(file))) {
+            temporaryFile.delete();
+            throw new JodaEngineRuntimeException("The variables of the instance " + instanceID
+                + " could not be stored in " + file + ".");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public @Nullable Map<String, Object> load(@Nonnull UUID instanceID) {
+
+        File file = getFile(instanceID);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            ObjectInputStream input = new ContextObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                return (Map<String, Object>) input.readObject();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new JodaEngineRuntimeException("The variables of the instance " + instanceID
+                + " could not be loaded.", e);
+        } catch (ClassNotFoundException e) {
+            throw new JodaEngineRuntimeException("The variables of the instance " + instanceID
+                + " could not be loaded.", e);
+        }
+    }
+
+    @Override
+    public void remove(@Nonnull UUID instanceID) {
+
+        File file = getFile(instanceID);
+        if (file.exists() && !file.delete()) {
+            throw new JodaEngineRuntimeException("The variables of the instance " + instanceID
+                + " could not be removed from " + file + ".");
+        }
+    }
+
+    @Override
+    public @Nonnull Set<UUID> getInstanceIDs() {
+
+        Set<UUID> instanceIDs = new HashSet<UUID>();
+        File[] subdirectories = directory.listFiles();
+        if (subdirectories == null) {
+            return instanceIDs;
+        }
+        for (File subdirectory : subdirectories) {
+            File[] files = subdirectory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.endsWith(FILE_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    instanceIDs.add(UUID.fromString(name.substring(0, name.length() - FILE_SUFFIX.length())));
+                } catch (IllegalArgumentException e) {
+                    // not written by the store
+                    continue;
+                }
+            }
+        }
+        return instanceIDs;
+    }
+
+    /**
+     * Gets the file of the variables of an instance.
+     *
+     * @param instanceID
+     *            the id of the instance
+     * @return the file
+     */
+    private File getFile(@Nonnull UUID instanceID) {
+
+        // the low bits of the hash contain the sequence number and the milliseconds of time-ordered ids
+        int hash = instanceID.hashCode();
+        String subdirectoryName = String.format("%02x", (hash ^ (hash >>> SUBDIRECTORY_HASH_SHIFT))
+            & SUBDIRECTORY_MASK);
+        File subdirectory = new File(directory, subdirectoryName);
+        String name = instanceID.toString();
+        return new File(subdirectory, name + FILE_SUFFIX);
+    }
+
+    /**
+     * An object input stream, which resolves classes with the context class loader of the current thread first.
+     */
+    private static class ContextObjectInputStream extends ObjectInputStream {
+
+        /**
+         * Instantiates a new object input stream.
+         *
+         * @param input
+         *            the input
+         * @throws IOException
+         *             thrown if the stream header cannot be read
+         */
+        ContextObjectInputStream(InputStream input)
+        throws IOException {
+
+            super(input);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass description)
+        throws IOException, ClassNotFoundException {
+
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(description.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default resolution
+                }
+            }
+            return super.resolveClass(description);
+        }
+    }
+}
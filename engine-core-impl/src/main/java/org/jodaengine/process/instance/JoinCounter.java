@@ -0,0 +1,254 @@
+package org.jodaengine.process.instance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import javax.annotation.Nonnull;
+
+import org.jodaengine.process.structure.ControlFlow;
+
+/**
+ * The Class JoinCounter. It counts, how often each incoming {@link ControlFlow} of a single node has been signaled,
+ * without locking. This way, tokens of the same instance that are executed by different threads may arrive at a join
+ * concurrently.
+ *
+ * Per control flow, the first pending signal is kept as a flag, all further ones in a backlog. The counter of set flags
+ * tells in O(1), how many different control flows are signaled. When a signal sets the last missing flag, the join is
+ * activated: all flags are cleared and refilled from the backlogs. Signals that arrive at a flag that is currently set
+ * wait in the backlog and are moved to the flag by the thread that clears it, so no signal is lost and every
+ * activation is performed by exactly one thread.
+ */
+public class JoinCounter {
+
+    private static final AtomicIntegerFieldUpdater<Slot> FLAG = AtomicIntegerFieldUpdater.newUpdater(Slot.class,
+        "flag");
+
+    private static final AtomicIntegerFieldUpdater<Slot> BACKLOG = AtomicIntegerFieldUpdater.newUpdater(Slot.class,
+        "backlog");
+
+    private final ConcurrentMap<ControlFlow, Slot> slots;
+
+    private final Queue<Slot> slotsInSignalingOrder;
+
+    private final AtomicInteger numberOfSetFlags;
+
+    /**
+     * Instantiates a new join counter.
+     */
+    public JoinCounter() {
+
+        this.slots = new ConcurrentHashMap<ControlFlow, Slot>();
+        this.slotsInSignalingOrder = new ConcurrentLinkedQueue<Slot>();
+        this.numberOfSetFlags = new AtomicInteger();
+    }
+
+    /**
+     * Signals the control flow.
+     *
+     * @param controlFlow
+     *            the control flow
+     */
+    public void signal(@Nonnull ControlFlow controlFlow) {
+
+        Slot slot = getSlot(controlFlow);
+        BACKLOG.incrementAndGet(slot);
+        moveBacklogToFlag(slot, 0);
+    }
+
+    /**
+     * Signals the control flow. Whenever this makes the given number of control flows signaled, one signal of each of
+     * them is consumed.
+     *
+     * @param controlFlow
+     *            the control flow
+     * @param numberOfIncomingControlFlows
+     *            the number of control flows that have to be signaled for an activation
+     * @return the number of activations performed by the calling thread; usually 0 or 1, but it may perform the
+     *         activations of signals that concurrently waited in a backlog, too
+     */
+    public int signalAndJoin(@Nonnull ControlFlow controlFlow, int numberOfIncomingControlFlows) {
+
+        Slot slot = getSlot(controlFlow);
+        BACKLOG.incrementAndGet(slot);
+        return moveBacklogToFlag(slot, numberOfIncomingControlFlows);
+    }
+
+    /**
+     * Gets the number of different control flows that are signaled.
+     *
+     * @return the number of signaled control flows
+     */
+    public int getNumberOfSignaledControlFlows() {
+
+        return Math.max(numberOfSetFlags.get(), 0);
+    }
+
+    /**
+     * Gets the signaled control flows. A control flow is contained as often as it is signaled, the control flows are
+     * ordered by their first signal.
+     *
+     * @return the signaled control flows
+     */
+    public List<ControlFlow> getSignaledControlFlows() {
+
+        List<ControlFlow> signaledControlFlows = new ArrayList<ControlFlow>();
+        for (Slot slot : slotsInSignalingOrder) {
+            int count = slot.flag + slot.backlog;
+            for (int i = 0; i < count; i++) {
+                signaledControlFlows.add(slot.controlFlow);
+            }
+        }
+        return signaledControlFlows;
+    }
+
+    /**
+     * Removes one signal of the control flow, if it is signaled.
+     *
+     * @param controlFlow
+     *            the control flow
+     */
+    public void removeOnce(@Nonnull ControlFlow controlFlow) {
+
+        Slot slot = slots.get(controlFlow);
+        if (slot == null) {
+            return;
+        }
+
+        while (true) {
+            int backlog = slot.backlog;
+            if (backlog > 0) {
+                if (BACKLOG.compareAndSet(slot, backlog, backlog - 1)) {
+                    return;
+                }
+            } else if (FLAG.compareAndSet(slot, 1, 0)) {
+                numberOfSetFlags.decrementAndGet();
+                moveBacklogToFlag(slot, 0);
+                return;
+            } else if (slot.flag == 0 && slot.backlog == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes all signals of the control flow.
+     *
+     * @param controlFlow
+     *            the control flow
+     */
+    public void removeAll(@Nonnull ControlFlow controlFlow) {
+
+        Slot slot = slots.get(controlFlow);
+        if (slot == null) {
+            return;
+        }
+
+        BACKLOG.set(slot, 0);
+        if (FLAG.compareAndSet(slot, 1, 0)) {
+            numberOfSetFlags.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the slot of a control flow, creating it on its first signal.
+     *
+     * @param controlFlow
+     *            the control flow
+     * @return the slot
+     */
+    private Slot getSlot(ControlFlow controlFlow) {
+
+        Slot slot = slots.get(controlFlow);
+        if (slot == null) {
+            Slot newSlot = new Slot(controlFlow);
+            slot = slots.putIfAbsent(controlFlow, newSlot);
+            if (slot == null) {
+                slot = newSlot;
+                slotsInSignalingOrder.add(newSlot);
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Moves signals from the backlog to the flag of a slot, as long as the flag is cleared.
+     *
+     * @param slot
+     *            the slot
+     * @param numberOfIncomingControlFlows
+     *            the number of set flags, which activates the join; 0, if the join is never activated automatically
+     * @return the number of performed activations
+     */
+    private int moveBacklogToFlag(Slot slot, int numberOfIncomingControlFlows) {
+
+        int activations = 0;
+        while (true) {
+            int backlog = slot.backlog;
+
+            // if the flag is set, the thread that clears it will take care of the backlog
+            if (backlog == 0 || slot.flag == 1) {
+                return activations;
+            }
+            if (!BACKLOG.compareAndSet(slot, backlog, backlog - 1)) {
+                continue;
+            }
+            if (!FLAG.compareAndSet(slot, 0, 1)) {
+                BACKLOG.incrementAndGet(slot);
+                continue;
+            }
+            if (numberOfSetFlags.incrementAndGet() == numberOfIncomingControlFlows
+                && numberOfIncomingControlFlows > 0) {
+                activations += 1 + activate(numberOfIncomingControlFlows);
+            }
+        }
+    }
+
+    /**
+     * Consumes one signal of each control flow, after all flags have been set.
+     *
+     * @param numberOfIncomingControlFlows
+     *            the number of incoming control flows
+     * @return the number of further activations, which were caused by backlogged signals
+     */
+    private int activate(int numberOfIncomingControlFlows) {
+
+        // Account for the cleared flags first, so that only flags that are set again count for the next activation.
+        numberOfSetFlags.addAndGet(-numberOfIncomingControlFlows);
+
+        int activations = 0;
+        for (Slot slot : slotsInSignalingOrder) {
+            FLAG.set(slot, 0);
+            activations += moveBacklogToFlag(slot, numberOfIncomingControlFlows);
+        }
+        return activations;
+    }
+
+    /**
+     * The signals of one control flow.
+     */
+    private static final class Slot {
+
+        private final ControlFlow controlFlow;
+
+        volatile int flag;
+
+        volatile int backlog;
+
+        /**
+         * Instantiates a new slot.
+         *
+         * @param controlFlow
+         *            the control flow
+         */
+        private Slot(ControlFlow controlFlow) {
+
+            this.controlFlow = controlFlow;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.jodaengine.process.instance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.exception.JodaEngineRuntimeException;
+
+/**
+ * The Class OffHeapStorage. It keeps large process variables, e.g. documents, mail bodies or uploaded forms, outside
+ * the heap, so that they are not copied and traversed by the garbage collector during the lifetime of an instance.
+ *
+ * Byte arrays, strings and {@link ByteBuffer}s, which take at least the threshold of bytes, are copied into a direct
+ * buffer or, if a directory is given, into a memory-mapped file. The context reads them back as they were set; a
+ * {@link ByteBuffer} is read as a read-only view of the stored bytes without copying them. The memory is released,
+ * when the value is not referenced anymore and its buffer is garbage collected.
+ *
+ * Contexts are created without access to the engine's services, so the storage is kept statically like the
+ * {@link org.jodaengine.util.IdGenerators}. By default, all variables are kept on the heap.
+ */
+public class OffHeapStorage {
+
+    /** Keeps all variables on the heap. */
+    public static final OffHeapStorage DISABLED = new OffHeapStorage(0);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Every character of a string takes two bytes on the heap. */
+    private static final int BYTES_PER_CHAR = 2;
+
+    private static volatile OffHeapStorage defaultStorage = DISABLED;
+
+    private final int threshold;
+
+    private final File directory;
+
+    /**
+     * Instantiates a storage, which keeps large variables in direct buffers.
+     *
+     * @param threshold
+     *            the size in bytes, from which on variables are kept outside the heap; 0 to keep all on the heap
+     */
+    public OffHeapStorage(int threshold) {
+
+        this(threshold, null);
+    }
+
+    /**
+     * Instantiates a storage, which keeps large variables in memory-mapped files. The files are deleted right after
+     * they are mapped, so the operating system can page out the variables, but they do not survive a restart.
+     *
+     * @param threshold
+     *            the size in bytes, from which on variables are kept outside the heap; 0 to keep all on the heap
+     * @param directory
+     *            the directory of the mapped files, or null to use direct buffers
+     */
+    public OffHeapStorage(int threshold, @Nullable File directory) {
+
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The threshold cannot be negative.");
+        }
+        this.threshold = threshold;
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the storage used by all contexts.
+     *
+     * @return the storage
+     */
+    public static @Nonnull OffHeapStorage getDefault() {
+
+        return defaultStorage;
+    }
+
+    /**
+     * Replaces the storage used by all contexts. Variables, which are set already, stay where they are.
+     *
+     * @param storage
+     *            the new storage
+     */
+    public static void setDefault(@Nonnull OffHeapStorage storage) {
+
+        if (storage == null) {
+            throw new NullPointerException("The off-heap storage cannot be null.");
+        }
+        defaultStorage = storage;
+    }
+
+    /**
+     * Gets the size in bytes, from which on variables are kept outside the heap.
+     *
+     * @return the threshold, 0 if all variables are kept on the heap
+     */
+    public int getThreshold() {
+
+        return threshold;
+    }
+
+    /**
+     * Gets the directory of the memory-mapped files.
+     *
+     * @return the directory, or null if direct buffers are used
+     */
+    public @Nullable File getDirectory() {
+
+        return directory;
+    }
+
+    /**
+     * Stores a variable value outside the heap, if it is large enough.
+     *
+     * @param value
+     *            the value
+     * @return an {@link OffHeapValue} keeping the value, or the value itself if it stays on the heap
+     */
+    Object store(@Nullable Object value) {
+
+        if (threshold == 0 || value == null) {
+            return value;
+        }
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            if (bytes.length >= threshold) {
+                return copy(ByteBuffer.wrap(bytes), OffHeapValue.Kind.BYTES);
+            }
+        } else if (value instanceof String) {
+            String string = (String) value;
+            if ((long) string.length() * BYTES_PER_CHAR >= threshold) {
+                return copy(UTF_8.encode(string), OffHeapValue.Kind.STRING);
+            }
+        } else if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) value;
+            if (buffer.remaining() >= threshold) {
+                return copy(buffer.duplicate(), OffHeapValue.Kind.BUFFER);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Copies bytes outside the heap.
+     *
+     * @param bytes
+     *            the bytes from the position to the limit of the buffer
+     * @param kind
+     *            the type of the value
+     * @return the value
+     */
+    OffHeapValue copy(@Nonnull ByteBuffer bytes, @Nonnull OffHeapValue.Kind kind) {
+
+        ByteBuffer buffer = allocate(bytes.remaining());
+        buffer.put(bytes);
+        buffer.flip();
+        return new OffHeapValue(buffer.asReadOnlyBuffer(), kind);
+    }
+
+    /**
+     * Allocates a buffer outside the heap.
+     *
+     * @param size
+     *            the size in bytes
+     * @return the buffer
+     */
+    private ByteBuffer allocate(int size) {
+
+        if (directory == null) {
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                throw new IOException("The directory " + directory + " cannot be created.");
+            }
+            File file = File.createTempFile("variable", ".bin", directory);
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(size);
+                return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                randomAccessFile.close();
+                // the mapping stays valid, but the file cannot be deleted on every platform while it is mapped
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new JodaEngineRuntimeException("A variable of " + size + " bytes cannot be mapped into "
+                + directory + ".", e);
+        }
+    }
+}
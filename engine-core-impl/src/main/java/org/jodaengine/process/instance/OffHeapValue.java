@@ -0,0 +1,168 @@
+package org.jodaengine.process.instance;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A variable value, whose bytes are kept outside the heap by the {@link OffHeapStorage}. The context keeps it instead
+ * of the value and gives out the value again, when the variable is read.
+ *
+ * It is serialized with its bytes, e.g. when the variables are evicted, and stored outside the heap again, when it is
+ * deserialized.
+ */
+final class OffHeapValue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int HASH_MULTIPLIER = 31;
+
+    /**
+     * The types of values, which are kept outside the heap.
+     */
+    enum Kind {
+        /** A byte array, which is copied, when it is read. */
+        BYTES,
+        /** A string, which is decoded from UTF-8, when it is read. */
+        STRING,
+        /** A {@link ByteBuffer}, which is read as a read-only view without copying the bytes. */
+        BUFFER
+    }
+
+    private final transient ByteBuffer buffer;
+
+    private final Kind kind;
+
+    /**
+     * Instantiates a new off-heap value.
+     *
+     * @param buffer
+     *            the read-only buffer outside the heap, from its position to its limit
+     * @param kind
+     *            the type of the value
+     */
+    OffHeapValue(@Nonnull ByteBuffer buffer, @Nonnull Kind kind) {
+
+        this.buffer = buffer;
+        this.kind = kind;
+    }
+
+    /**
+     * Gets a read-only view of the bytes. The view shares the bytes outside the heap.
+     *
+     * @return the buffer
+     */
+    @Nonnull ByteBuffer getBuffer() {
+
+        return buffer.duplicate();
+    }
+
+    /**
+     * Gets the value as it was set.
+     *
+     * @return a copy of the byte array, the string or a read-only view of the buffer
+     */
+    @Nonnull Object getValue() {
+
+        switch (kind) {
+            case BYTES:
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                return bytes;
+            case STRING:
+                return UTF_8.decode(buffer.duplicate()).toString();
+            default:
+                return buffer.duplicate();
+        }
+    }
+
+    /**
+     * Gets the number of bytes kept outside the heap.
+     *
+     * @return the size
+     */
+    int size() {
+
+        return buffer.remaining();
+    }
+
+    /**
+     * Compares the values by their type and bytes, as the value read is a new copy every time.
+     *
+     * @param object
+     *            the other object
+     * @return true, if it is an off-heap value of the same type with the same bytes
+     */
+    @Override
+    public boolean equals(Object object) {
+
+        if (!(object instanceof OffHeapValue)) {
+            return false;
+        }
+        OffHeapValue value = (OffHeapValue) object;
+        return kind == value.kind && buffer.equals(value.buffer);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return kind.hashCode() * HASH_MULTIPLIER + buffer.hashCode();
+    }
+
+    /**
+     * Serializes the bytes instead of the buffer.
+     *
+     * @return the serialized form
+     */
+    private Object writeReplace() {
+
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new SerializedForm(bytes, kind);
+    }
+
+    /**
+     * The serialized form of an {@link OffHeapValue}.
+     */
+    private static final class SerializedForm implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] bytes;
+
+        private final Kind kind;
+
+        /**
+         * Instantiates a new serialized form.
+         *
+         * @param bytes
+         *            the bytes
+         * @param kind
+         *            the type of the value
+         */
+        private SerializedForm(byte[] bytes, Kind kind) {
+
+            this.bytes = bytes;
+            this.kind = kind;
+        }
+
+        /**
+         * Stores the bytes outside the heap again. The current {@link OffHeapStorage} is used, even if it would keep
+         * the value on the heap, so that the context does not have to unwrap it.
+         *
+         * @return the value
+         * @throws ObjectStreamException
+         *             not thrown
+         */
+        private Object readResolve()
+        throws ObjectStreamException {
+
+            return OffHeapStorage.getDefault().copy(ByteBuffer.wrap(bytes), kind);
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package org.jodaengine.process.instance;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nonnull;
 
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.definition.ProcessDefinitionInside;
 import org.jodaengine.process.structure.ControlFlow;
 import org.jodaengine.process.structure.Node;
 import org.jodaengine.process.token.Token;
 import org.jodaengine.process.token.TokenBuilder;
+import org.jodaengine.util.IdGenerators;
 
 
 /**
@@ -22,13 +28,19 @@ public class ProcessInstance extends AbstractProcessInstance {
     protected ProcessDefinition definition;
     protected ProcessInstanceContext context;
     protected UUID id;
-    protected List<Token> assignedTokens;
+    protected ConcurrentTokenSet assignedTokens;
+
+    @JsonIgnore
+    private final ConcurrentMap<Node, Set<Token>> tokensByNode = new ConcurrentHashMap<Node, Set<Token>>();
 
     //should be ignored for serialization
     @JsonIgnore
     protected TokenBuilder builder;
     
     protected boolean cancelled;
+
+    @JsonIgnore
+    private volatile ProcessInstanceObserver observer;
     
     /**
      * Hidden constructor.
@@ -43,10 +55,22 @@ public class ProcessInstance extends AbstractProcessInstance {
      */
     public ProcessInstance(ProcessDefinition definition, @Nonnull TokenBuilder builder) {
         
+        this(IdGenerators.nextId(), definition, builder);
+    }
+
+    /**
+     * Instantiates an instance with a given id, e.g. to restore an instance that existed before.
+     *
+     * @param id the id of the instance
+     * @param definition the process definition of this instance
+     * @param builder the builder to create specific tokens
+     */
+    public ProcessInstance(@Nonnull UUID id, ProcessDefinition definition, @Nonnull TokenBuilder builder) {
+        
         this.definition = definition;
-        this.id = UUID.randomUUID();
-        this.assignedTokens = new ArrayList<Token>();
-        this.context = new ProcessInstanceContextImpl();
+        this.id = id;
+        this.assignedTokens = new ConcurrentTokenSet();
+        this.context = new ProcessInstanceContextImpl(getVariableLayout(definition));
         this.cancelled = false;
 
         //if(builder == null) {
@@ -68,10 +92,105 @@ public class ProcessInstance extends AbstractProcessInstance {
         this.builder = builder;
     }
 
+    /**
+     * Lets an observer watch the changes of the tokens and variables of this instance. There is only one observer per
+     * instance, it cannot be replaced.
+     *
+     * @param newObserver the observer
+     * @return true, if the observer was attached; false, if there already was one
+     */
+    public synchronized boolean attachObserver(@Nonnull ProcessInstanceObserver newObserver) {
+
+        if (observer != null) {
+            return false;
+        }
+        if (context instanceof ProcessInstanceContextImpl) {
+            ((ProcessInstanceContextImpl) context).setObserver(newObserver, this);
+        }
+        observer = newObserver;
+        return true;
+    }
+
+    /**
+     * Stops an observer from watching the changes of this instance.
+     *
+     * @param oldObserver the observer
+     * @return true, if the observer was detached; false, if it did not watch this instance
+     */
+    public synchronized boolean detachObserver(@Nonnull ProcessInstanceObserver oldObserver) {
+
+        if (observer != oldObserver) {
+            return false;
+        }
+        if (context instanceof ProcessInstanceContextImpl) {
+            ((ProcessInstanceContextImpl) context).removeObserver();
+        }
+        observer = null;
+        return true;
+    }
+
+    /**
+     * Gets the observer watching the changes of this instance.
+     *
+     * @return the observer, or null if there is none
+     */
+    @JsonIgnore
+    public ProcessInstanceObserver getObserver() {
+
+        return observer;
+    }
+
+    /**
+     * Evicts the variables of this instance to a store, e.g. while all its tokens wait. The tokens stay in memory, as
+     * they are referred to by worklist items and timers. The variables are loaded again, when they are changed or
+     * the instance is {@link #hydrate() hydrated}; reading them loads them without keeping them.
+     *
+     * @param store the store
+     * @return true, if the variables were evicted; false, if they already were or cannot be evicted
+     */
+    public boolean evict(@Nonnull ProcessInstanceStore store) {
+
+        if (!(context instanceof ProcessInstanceContextImpl)) {
+            return false;
+        }
+        return ((ProcessInstanceContextImpl) context).evictVariables(store, id);
+    }
+
+    /**
+     * Loads the evicted variables of this instance back into memory and removes them from the store.
+     *
+     * @return true, if the variables were evicted
+     */
+    public boolean hydrate() {
+
+        if (!(context instanceof ProcessInstanceContextImpl)) {
+            return false;
+        }
+        return ((ProcessInstanceContextImpl) context).hydrateVariables();
+    }
+
+    /**
+     * Checks if the variables of this instance are evicted.
+     *
+     * @return true, if they are kept in a store
+     */
+    @JsonIgnore
+    public boolean isEvicted() {
+
+        return context instanceof ProcessInstanceContextImpl && ((ProcessInstanceContextImpl) context).isEvicted();
+    }
+
     @Override
     public void addToken(Token token) {
         
-        this.assignedTokens.add(token);
+        if (this.assignedTokens.addIfAbsent(token)) {
+            indexToken(token, token.getCurrentNode());
+
+            ProcessInstanceObserver currentObserver = observer;
+            if (currentObserver != null && token.getCurrentNode() != null) {
+                currentObserver.tokenPlaced(this, token, token.getCurrentNode());
+            }
+        }
     }
 
     @Override
@@ -86,6 +205,30 @@ public class ProcessInstance extends AbstractProcessInstance {
         return assignedTokens;
     }
 
+    @Override
+    public Collection<Token> getTokensOnNode(Node node) {
+
+        Set<Token> tokensOnNode = tokensByNode.get(node);
+        if (tokensOnNode == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(tokensOnNode);
+    }
+
+    @Override
+    public void moveToken(Token token, Node previousNode, Node newNode) {
+
+        // only tokens that are assigned to this instance are indexed
+        if (previousNode != null && unindexToken(token, previousNode)) {
+            indexToken(token, newNode);
+
+            ProcessInstanceObserver currentObserver = observer;
+            if (currentObserver != null && newNode != null) {
+                currentObserver.tokenPlaced(this, token, newNode);
+            }
+        }
+    }
+
     @Override
     public ProcessDefinition getDefinition() {
         
@@ -101,8 +244,14 @@ public class ProcessInstance extends AbstractProcessInstance {
     @Override
     public void removeToken(Token token) {
 
-        this.assignedTokens.remove(token);
+        if (this.assignedTokens.remove(token)) {
+            unindexToken(token, token.getCurrentNode());
 
+            ProcessInstanceObserver currentObserver = observer;
+            if (currentObserver != null) {
+                currentObserver.tokenRemoved(this, token);
+            }
+        }
     }
 
     @Override
@@ -117,13 +266,11 @@ public class ProcessInstance extends AbstractProcessInstance {
         cancelled = true;
         
         // Cancel all ongoing executions
-        synchronized (assignedTokens) {
-            for (Token tokenToCancel : assignedTokens) {
-                tokenToCancel.cancelExecution();
-            }
-            assignedTokens.clear();
+        for (Token tokenToCancel : assignedTokens) {
+            tokenToCancel.cancelExecution();
         }
-        
+        assignedTokens.clear();
+        tokensByNode.clear();
 
     }
 
@@ -143,8 +290,69 @@ public class ProcessInstance extends AbstractProcessInstance {
                              ControlFlow lastTakenControlFlow,
                              Token parentToken) {
         Token token = builder.create(startNode, lastTakenControlFlow, parentToken);
-        assignedTokens.add(token);
+        addToken(token);
         return token;
     }
-    
+
+    /**
+     * Gets the variable layout of a definition.
+     * 
+     * @param definition
+     *            the definition
+     * @return the variable layout, which is empty for definitions not providing one
+     */
+    private static VariableLayout getVariableLayout(ProcessDefinition definition) {
+
+        if (definition instanceof ProcessDefinitionInside) {
+            VariableLayout layout = ((ProcessDefinitionInside) definition).getVariableLayout();
+            if (layout != null) {
+                return layout;
+            }
+        }
+        return VariableLayout.EMPTY;
+    }
+
+    /**
+     * Adds a token to the index of tokens by node.
+     * 
+     * @param token
+     *            the token
+     * @param node
+     *            the node the token is on
+     */
+    private void indexToken(Token token, Node node) {
+
+        if (node == null) {
+            return;
+        }
+        Set<Token> tokensOnNode = tokensByNode.get(node);
+        if (tokensOnNode == null) {
+            Set<Token> newTokensOnNode = Collections.newSetFromMap(new ConcurrentHashMap<Token, Boolean>());
+            tokensOnNode = tokensByNode.putIfAbsent(node, newTokensOnNode);
+            if (tokensOnNode == null) {
+                tokensOnNode = newTokensOnNode;
+            }
+        }
+        tokensOnNode.add(token);
+    }
+
+    /**
+     * Removes a token from the index of tokens by node. The set of the node is kept, as tokens will probably reach it
+     * again.
+     * 
+     * @param token
+     *            the token
+     * @param node
+     *            the node the token is on
+     * @return true, if the token was indexed for the node
+     */
+    private boolean unindexToken(Token token, Node node) {
+
+        if (node == null) {
+            return false;
+        }
+        Set<Token> tokensOnNode = tokensByNode.get(node);
+        return tokensOnNode != null && tokensOnNode.remove(token);
+    }
+
 }
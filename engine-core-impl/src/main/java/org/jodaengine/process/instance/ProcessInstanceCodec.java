@@ -0,0 +1,1070 @@
+package org.jodaengine.process.instance;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.exception.JodaEngineRuntimeException;
+import org.jodaengine.forms.AbstractForm;
+import org.jodaengine.forms.Form;
+import org.jodaengine.node.activity.ActivityState;
+import org.jodaengine.process.definition.AbstractProcessArtifact;
+import org.jodaengine.process.definition.NodeIndex;
+import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.structure.ControlFlow;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.token.AbstractToken;
+import org.jodaengine.process.token.BpmnToken;
+import org.jodaengine.process.token.Token;
+import org.jodaengine.process.token.TokenBuilder;
+import org.jodaengine.resource.AbstractResource;
+import org.jodaengine.resource.ResourceType;
+import org.jodaengine.resource.worklist.AbstractWorklistItem;
+import org.jodaengine.resource.worklist.WorklistItemImpl;
+import org.jodaengine.resource.worklist.WorklistItemState;
+
+/**
+ * The Class ProcessInstanceCodec encodes process instances, their tokens and contexts and worklist items into a
+ * compact binary form and decodes them again, e.g. to keep them on disk or to hand them to another engine.
+ *
+ * The encoding knows the structure of what it encodes, so it writes no class names and needs no reflection. Nodes are
+ * written as their position in the {@link NodeIndex} of the definition and control flows as their position among the
+ * control flows of a node, so they are found again in another deployment of the same definition. Counts and positions
+ * are written as variable-length integers. Variable values are written by the {@link ValueCodec}.
+ *
+ * Process and node variables must be serializable. The internal variables and attributes of a token, which are not,
+ * e.g. the events an activity waits for, are left out; the activity creates them again, when it is executed again.
+ * References to definitions, forms and resources are written as their ids and resolved by a {@link Resolver}, when
+ * they are decoded. Errors are thrown as {@link JodaEngineRuntimeException}s.
+ */
+public class ProcessInstanceCodec {
+
+    /** The version of the encoding, written at the beginning of every encoded instance and worklist item. */
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ActivityState[] ACTIVITY_STATES = ActivityState.values();
+
+    private static final WorklistItemState[] ITEM_STATES = WorklistItemState.values();
+
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
+
+    private static final int VARINT_PAYLOAD_BITS = 7;
+
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+
+    private static final int VARINT_CONTINUATION_BIT = 0x80;
+
+    private static final int MAX_VARINT_SHIFT = 28;
+
+    private static final int UUID_SIZE = 16;
+
+    private final Resolver resolver;
+
+    /**
+     * Resolves the references of the encoded objects, when they are decoded.
+     */
+    public interface Resolver {
+
+        /**
+         * Gets a deployed process definition.
+         *
+         * @param definitionID
+         *            the id of the definition
+         * @return the definition, or null if it is not deployed
+         */
+        @Nullable ProcessDefinition getDefinition(@Nonnull ProcessDefinitionID definitionID);
+
+        /**
+         * Creates the builder for the tokens of a decoded instance.
+         *
+         * @return the token builder
+         */
+        @Nonnull TokenBuilder createTokenBuilder();
+
+        /**
+         * Gets a form of a process definition.
+         *
+         * @param formID
+         *            the id of the form
+         * @param definitionID
+         *            the id of the definition
+         * @return the form, or null if there is no such form
+         */
+        @Nullable AbstractForm getForm(@Nonnull String formID, @Nonnull ProcessDefinitionID definitionID);
+
+        /**
+         * Gets a resource.
+         *
+         * @param type
+         *            the type of the resource
+         * @param resourceID
+         *            the id of the resource
+         * @return the resource, or null if there is no such resource
+         */
+        @Nullable AbstractResource<?> getResource(@Nonnull ResourceType type, @Nonnull UUID resourceID);
+    }
+
+    /**
+     * Instantiates a new codec.
+     *
+     * @param resolver
+     *            the resolver of the references of decoded objects
+     */
+    public ProcessInstanceCodec(@Nonnull Resolver resolver) {
+
+        this.resolver = resolver;
+    }
+
+    /**
+     * Encodes an instance with its variables and tokens. Only instances of a definition can be encoded.
+     *
+     * @param instance
+     *            the instance
+     * @return the bytes
+     */
+    public @Nonnull byte[] encodeInstance(@Nonnull AbstractProcessInstance instance) {
+
+        Output output = new Output();
+        output.writeByte(FORMAT_VERSION);
+        writeInstance(output, instance);
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes an instance. Its definition must be deployed.
+     *
+     * @param bytes
+     *            the bytes written by {@link #encodeInstance(AbstractProcessInstance)}
+     * @return the instance
+     */
+    public @Nonnull ProcessInstance decodeInstance(@Nonnull byte[] bytes) {
+
+        try {
+            Input input = new Input(bytes);
+            input.readVersion();
+            return readInstance(input);
+        } catch (BufferUnderflowException e) {
+            throw new JodaEngineRuntimeException("The encoded process instance is truncated.", e);
+        }
+    }
+
+    /**
+     * Encodes a token. Its node must belong to the definition of its instance.
+     *
+     * @param token
+     *            the token
+     * @return the bytes
+     */
+    public @Nonnull byte[] encodeToken(@Nonnull Token token) {
+
+        Output output = new Output();
+        writeToken(output, token, getNodeIndex(token.getInstance()));
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes a token and adds it to an instance of the definition it was encoded with. Its parent is only restored,
+     * if the instance has got it.
+     *
+     * @param bytes
+     *            the bytes written by {@link #encodeToken(Token)}
+     * @param instance
+     *            the instance
+     * @return the token
+     */
+    public @Nonnull Token decodeToken(@Nonnull byte[] bytes, @Nonnull AbstractProcessInstance instance) {
+
+        Map<UUID, Token> tokens = new HashMap<UUID, Token>();
+        for (Token token : instance.getAssignedTokens()) {
+            tokens.put(token.getID(), token);
+        }
+        try {
+            return readToken(new Input(bytes), instance, getNodeIndex(instance), tokens);
+        } catch (BufferUnderflowException e) {
+            throw new JodaEngineRuntimeException("The encoded token is truncated.", e);
+        }
+    }
+
+    /**
+     * Encodes the variables and the state of the joins of a context.
+     *
+     * @param context
+     *            the context
+     * @param definition
+     *            the definition of the instance of the context
+     * @return the bytes
+     */
+    public @Nonnull byte[] encodeContext(@Nonnull ProcessInstanceContext context,
+                                         @Nonnull ProcessDefinition definition) {
+
+        Output output = new Output();
+        writeContext(output, context, NodeIndex.of(definition));
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes the variables and the state of the joins of a context into another context.
+     *
+     * @param bytes
+     *            the bytes written by {@link #encodeContext(ProcessInstanceContext, ProcessDefinition)}
+     * @param context
+     *            the context to put them into
+     * @param definition
+     *            the definition of the instance of the context
+     */
+    public void decodeContext(@Nonnull byte[] bytes,
+                              @Nonnull ProcessInstanceContext context,
+                              @Nonnull ProcessDefinition definition) {
+
+        try {
+            readContext(new Input(bytes), context, NodeIndex.of(definition));
+        } catch (BufferUnderflowException e) {
+            throw new JodaEngineRuntimeException("The encoded context is truncated.", e);
+        }
+    }
+
+    /**
+     * Encodes a worklist item. Its form must be deployed with the definition of its instance.
+     *
+     * @param item
+     *            the worklist item
+     * @return the bytes
+     */
+    public @Nonnull byte[] encodeWorklistItem(@Nonnull AbstractWorklistItem item) {
+
+        Output output = new Output();
+        output.writeByte(FORMAT_VERSION);
+        output.writeUUID(item.getID());
+        output.writeString(item.getSubject());
+        output.writeString(item.getDescription());
+        output.writeVarInt(item.getStatus() == null ? 0 : item.getStatus().ordinal() + 1);
+        output.writeUUID(item.getCorrespondingToken().getID());
+
+        Form form = item.getForm();
+        if (form == null) {
+            output.writeString(null);
+        } else if (form instanceof AbstractProcessArtifact) {
+            output.writeString(((AbstractProcessArtifact) form).getID());
+        } else {
+            throw new JodaEngineRuntimeException("The form of the worklist item " + item.getID()
+                + " is not deployed and cannot be encoded.");
+        }
+
+        Set<AbstractResource<?>> resources = item.getAssignedResources();
+        if (resources == null) {
+            output.writeVarInt(0);
+        } else {
+            output.writeVarInt(resources.size() + 1);
+            for (AbstractResource<?> resource : resources) {
+                output.writeVarInt(resource.getType().ordinal());
+                output.writeUUID(resource.getID());
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes a worklist item of a token of the given instance.
+     *
+     * @param bytes
+     *            the bytes written by {@link #encodeWorklistItem(AbstractWorklistItem)}
+     * @param instance
+     *            the instance, which has got the token of the item
+     * @return the worklist item
+     */
+    public @Nonnull AbstractWorklistItem decodeWorklistItem(@Nonnull byte[] bytes,
+                                                            @Nonnull AbstractProcessInstance instance) {
+
+        try {
+            Input input = new Input(bytes);
+            input.readVersion();
+            UUID itemID = input.readUUID();
+            String subject = input.readString();
+            String description = input.readString();
+            int status = input.readVarInt();
+            UUID tokenID = input.readUUID();
+            String formID = input.readString();
+            int numberOfResources = input.readVarInt();
+
+            Token token = null;
+            for (Token assignedToken : instance.getAssignedTokens()) {
+                if (assignedToken.getID().equals(tokenID)) {
+                    token = assignedToken;
+                }
+            }
+            if (token == null) {
+                throw new JodaEngineRuntimeException("The token " + tokenID + " of the worklist item " + itemID
+                    + " does not belong to the instance " + instance.getID() + ".");
+            }
+
+            AbstractForm form = null;
+            if (formID != null) {
+                ProcessDefinitionID definitionID = instance.getDefinition().getID();
+                form = resolver.getForm(formID, definitionID);
+                if (form == null) {
+                    throw new JodaEngineRuntimeException("The form " + formID + " of the worklist item " + itemID
+                        + " is not deployed with the definition " + definitionID + ".");
+                }
+            }
+
+            Set<AbstractResource<?>> resources = null;
+            if (numberOfResources > 0) {
+                resources = new HashSet<AbstractResource<?>>();
+                for (int i = 1; i < numberOfResources; i++) {
+                    ResourceType type = RESOURCE_TYPES[input.readIndex(RESOURCE_TYPES.length)];
+                    UUID resourceID = input.readUUID();
+                    AbstractResource<?> resource = resolver.getResource(type, resourceID);
+                    if (resource == null) {
+                        throw new JodaEngineRuntimeException("The resource " + resourceID + " of the worklist item "
+                            + itemID + " does not exist.");
+                    }
+                    resources.add(resource);
+                }
+            }
+
+            WorklistItemImpl item = new WorklistItemImpl(itemID, subject, description, form, resources, token);
+            if (status > 0) {
+                item.setStatus(ITEM_STATES[input.checkIndex(status - 1, ITEM_STATES.length)]);
+            }
+            return item;
+        } catch (BufferUnderflowException e) {
+            throw new JodaEngineRuntimeException("The encoded worklist item is truncated.", e);
+        }
+    }
+
+    /**
+     * Writes an instance.
+     *
+     * @param output
+     *            the output
+     * @param instance
+     *            the instance
+     */
+    private void writeInstance(@Nonnull Output output, @Nonnull AbstractProcessInstance instance) {
+
+        NodeIndex nodeIndex = getNodeIndex(instance);
+        ProcessDefinitionID definitionID = instance.getDefinition().getID();
+        output.writeUUID(instance.getID());
+        output.writeString(definitionID.getIdentifier());
+        output.writeVarInt(definitionID.getVersion());
+        output.writeBoolean(instance.isCancelled());
+        writeContext(output, instance.getContext(), nodeIndex);
+
+        List<Token> tokens = parentsFirst(instance.getAssignedTokens());
+        output.writeVarInt(tokens.size());
+        for (Token token : tokens) {
+            writeToken(output, token, nodeIndex);
+        }
+    }
+
+    /**
+     * Reads an instance.
+     *
+     * @param input
+     *            the input
+     * @return the instance
+     */
+    private ProcessInstance readInstance(@Nonnull Input input) {
+
+        UUID instanceID = input.readUUID();
+        String identifier = input.readString();
+        int version = input.readVarInt();
+        ProcessDefinitionID definitionID = new ProcessDefinitionID(identifier, version);
+        ProcessDefinition definition = resolver.getDefinition(definitionID);
+        if (definition == null) {
+            throw new JodaEngineRuntimeException("The definition " + definitionID + " of the instance " + instanceID
+                + " is not deployed.");
+        }
+
+        ProcessInstance instance = new ProcessInstance(instanceID, definition, resolver.createTokenBuilder());
+        instance.cancelled = input.readBoolean();
+        NodeIndex nodeIndex = NodeIndex.of(definition);
+        readContext(input, instance.getContext(), nodeIndex);
+
+        int numberOfTokens = input.readVarInt();
+        Map<UUID, Token> tokens = new HashMap<UUID, Token>();
+        for (int i = 0; i < numberOfTokens; i++) {
+            Token token = readToken(input, instance, nodeIndex, tokens);
+            tokens.put(token.getID(), token);
+        }
+        return instance;
+    }
+
+    /**
+     * Writes a token.
+     *
+     * @param output
+     *            the output
+     * @param token
+     *            the token
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     */
+    private void writeToken(@Nonnull Output output, @Nonnull Token token, @Nonnull NodeIndex nodeIndex) {
+
+        output.writeUUID(token.getID());
+        writeNode(output, token.getCurrentNode(), nodeIndex);
+        writeControlFlow(output, token.getLastTakenControlFlow(), nodeIndex);
+
+        Token parentToken = token.getParentToken();
+        output.writeBoolean(parentToken != null);
+        if (parentToken != null) {
+            output.writeUUID(parentToken.getID());
+        }
+
+        ActivityState state = token.getCurrentActivityState();
+        output.writeVarInt(state == null ? 0 : state.ordinal() + 1);
+        writeVariables(output, token.getAllInternalVariables(), false);
+        writeVariables(output, token.getAttributes(), false);
+    }
+
+    /**
+     * Reads a token and adds it to its instance.
+     *
+     * @param input
+     *            the input
+     * @param instance
+     *            the instance
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     * @param tokens
+     *            the tokens of the instance by their id, to find the parent token
+     * @return the token
+     */
+    private Token readToken(@Nonnull Input input,
+                            @Nonnull AbstractProcessInstance instance,
+                            @Nonnull NodeIndex nodeIndex,
+                            @Nonnull Map<UUID, Token> tokens) {
+
+        UUID tokenID = input.readUUID();
+        Node node = readNode(input, nodeIndex);
+        ControlFlow lastTakenControlFlow = readControlFlow(input, nodeIndex);
+        Token parentToken = null;
+        if (input.readBoolean()) {
+            parentToken = tokens.get(input.readUUID());
+        }
+        int state = input.readVarInt();
+        Map<String, Object> internalVariables = readVariables(input);
+        Map<String, Object> attributes = readVariables(input);
+
+        Token token = instance.getBuilder().create(node, lastTakenControlFlow, parentToken);
+        if (!(token instanceof AbstractToken)) {
+            throw new JodaEngineRuntimeException("The token " + tokenID + " cannot be decoded, as its builder creates"
+                + " tokens, whose id cannot be restored.");
+        }
+        ((AbstractToken) token).restoreID(tokenID);
+        if (state > 0 && token instanceof BpmnToken) {
+            ((BpmnToken) token).restoreActivityState(ACTIVITY_STATES[input.checkIndex(state - 1,
+                ACTIVITY_STATES.length)]);
+        }
+        for (Map.Entry<String, Object> variable : internalVariables.entrySet()) {
+            token.setInternalVariable(variable.getKey(), variable.getValue());
+        }
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            token.setAttribute(attribute.getKey(), attribute.getValue());
+        }
+        instance.addToken(token);
+        return token;
+    }
+
+    /**
+     * Writes the variables and the state of the joins of a context.
+     *
+     * @param output
+     *            the output
+     * @param context
+     *            the context
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     */
+    private void writeContext(@Nonnull Output output,
+                              @Nonnull ProcessInstanceContext context,
+                              @Nonnull NodeIndex nodeIndex) {
+
+        writeVariables(output, context.getVariableSnapshot(), true);
+
+        // the signaled control flows of a join are written as their positions among its incoming control flows
+        List<Integer> joiningNodes = new ArrayList<Integer>();
+        for (int i = 0; i < nodeIndex.size(); i++) {
+            if (context.getNumberOfSignaledControlFlows(nodeIndex.getNode(i)) > 0) {
+                joiningNodes.add(i);
+            }
+        }
+        output.writeVarInt(joiningNodes.size());
+        for (int index : joiningNodes) {
+            Node node = nodeIndex.getNode(index);
+            List<ControlFlow> incomingControlFlows = node.getIncomingControlFlows();
+            List<ControlFlow> signaledControlFlows = context.getSignaledControlFlows(node);
+            writeNode(output, node, nodeIndex);
+            output.writeVarInt(signaledControlFlows.size());
+            for (ControlFlow controlFlow : signaledControlFlows) {
+                output.writeVarInt(incomingControlFlows.indexOf(controlFlow));
+            }
+        }
+
+        Map<Node, ? extends Map<String, Object>> nodeVariables = Collections.emptyMap();
+        if (context instanceof ProcessInstanceContextImpl) {
+            nodeVariables = ((ProcessInstanceContextImpl) context).getAllNodeVariables();
+        }
+        List<Node> nodesWithVariables = new ArrayList<Node>();
+        for (Map.Entry<Node, ? extends Map<String, Object>> variables : nodeVariables.entrySet()) {
+            if (!variables.getValue().isEmpty()) {
+                nodesWithVariables.add(variables.getKey());
+            }
+        }
+        output.writeVarInt(nodesWithVariables.size());
+        for (Node node : nodesWithVariables) {
+            writeNode(output, node, nodeIndex);
+            writeVariables(output, nodeVariables.get(node), true);
+        }
+    }
+
+    /**
+     * Reads the variables and the state of the joins of a context into a context.
+     *
+     * @param input
+     *            the input
+     * @param context
+     *            the context
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     */
+    private void readContext(@Nonnull Input input,
+                             @Nonnull ProcessInstanceContext context,
+                             @Nonnull NodeIndex nodeIndex) {
+
+        for (Map.Entry<String, Object> variable : readVariables(input).entrySet()) {
+            context.setVariable(variable.getKey(), variable.getValue());
+        }
+
+        int numberOfJoiningNodes = input.readVarInt();
+        for (int i = 0; i < numberOfJoiningNodes; i++) {
+            Node node = readExistingNode(input, nodeIndex);
+            List<ControlFlow> incomingControlFlows = node.getIncomingControlFlows();
+            int numberOfSignaledControlFlows = input.readVarInt();
+            for (int j = 0; j < numberOfSignaledControlFlows; j++) {
+                int position = input.readIndex(incomingControlFlows.size());
+                context.setSignaledControlFlow(incomingControlFlows.get(position));
+            }
+        }
+
+        int numberOfNodesWithVariables = input.readVarInt();
+        for (int i = 0; i < numberOfNodesWithVariables; i++) {
+            Node node = readExistingNode(input, nodeIndex);
+            for (Map.Entry<String, Object> variable : readVariables(input).entrySet()) {
+                context.setNodeVariable(node, variable.getKey(), variable.getValue());
+            }
+        }
+    }
+
+    /**
+     * Writes variables.
+     *
+     * @param output
+     *            the output
+     * @param variables
+     *            the variables
+     * @param required
+     *            whether all variables must be written; otherwise those, that cannot be encoded, are left out
+     */
+    private static void writeVariables(@Nonnull Output output,
+                                       @Nullable Map<String, Object> variables,
+                                       boolean required) {
+
+        if (variables == null || variables.isEmpty()) {
+            output.writeVarInt(0);
+            return;
+        }
+
+        Map<String, byte[]> encodedVariables = new LinkedHashMap<String, byte[]>();
+        for (Map.Entry<String, Object> variable : variables.entrySet()) {
+            if (variable.getValue() == null) {
+                continue;
+            }
+            byte[] value = encodeValue(variable.getKey(), variable.getValue(), required);
+            if (value != null) {
+                encodedVariables.put(variable.getKey(), value);
+            }
+        }
+        output.writeVarInt(encodedVariables.size());
+        for (Map.Entry<String, byte[]> variable : encodedVariables.entrySet()) {
+            output.writeString(variable.getKey());
+            output.writeBytes(variable.getValue());
+        }
+    }
+
+    /**
+     * Encodes the value of a variable.
+     *
+     * @param name
+     *            the name of the variable
+     * @param value
+     *            the value
+     * @param required
+     *            whether the value must be encoded
+     * @return the encoded value, or null if it cannot be encoded and is not required
+     */
+    private static byte[] encodeValue(@Nonnull String name, @Nonnull Object value, boolean required) {
+
+        if (!ValueCodec.canEncode(value)) {
+            if (required) {
+                throw new JodaEngineRuntimeException("The variable " + name + " is not serializable and cannot be"
+                    + " encoded.");
+            }
+            return null;
+        }
+        try {
+            return ValueCodec.encode(value);
+        } catch (IOException e) {
+            if (required) {
+                throw new JodaEngineRuntimeException("The variable " + name + " cannot be encoded.", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads variables.
+     *
+     * @param input
+     *            the input
+     * @return the variables
+     */
+    private static Map<String, Object> readVariables(@Nonnull Input input) {
+
+        int numberOfVariables = input.readVarInt();
+        if (numberOfVariables == 0) {
+            return Collections.emptyMap();
+        }
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = ProcessInstanceCodec.class.getClassLoader();
+        }
+
+        Map<String, Object> variables = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < numberOfVariables; i++) {
+            String name = input.readString();
+            byte[] value = input.readBytes();
+            try {
+                variables.put(name, ValueCodec.decode(value, classLoader));
+            } catch (IOException e) {
+                throw new JodaEngineRuntimeException("The variable " + name + " cannot be decoded.", e);
+            } catch (ClassNotFoundException e) {
+                throw new JodaEngineRuntimeException("The variable " + name + " cannot be decoded.", e);
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Writes a node as its position in the index, or 0 if there is none.
+     *
+     * @param output
+     *            the output
+     * @param node
+     *            the node, might be null
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     */
+    private static void writeNode(@Nonnull Output output, @Nullable Node node, @Nonnull NodeIndex nodeIndex) {
+
+        if (node == null) {
+            output.writeVarInt(0);
+            return;
+        }
+        int index = nodeIndex.indexOf(node);
+        if (index < 0) {
+            throw new JodaEngineRuntimeException("The node " + node + " does not belong to the definition and cannot"
+                + " be encoded.");
+        }
+        output.writeVarInt(index + 1);
+    }
+
+    /**
+     * Reads a node written by {@link #writeNode(Output, Node, NodeIndex)}.
+     *
+     * @param input
+     *            the input
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     * @return the node, or null if none was written
+     */
+    private static Node readNode(@Nonnull Input input, @Nonnull NodeIndex nodeIndex) {
+
+        int index = input.readIndex(nodeIndex.size() + 1);
+        if (index == 0) {
+            return null;
+        }
+        return nodeIndex.getNode(index - 1);
+    }
+
+    /**
+     * Reads a node, which must have been written.
+     *
+     * @param input
+     *            the input
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     * @return the node
+     */
+    private static Node readExistingNode(@Nonnull Input input, @Nonnull NodeIndex nodeIndex) {
+
+        Node node = readNode(input, nodeIndex);
+        if (node == null) {
+            throw new JodaEngineRuntimeException("The encoded node is missing.");
+        }
+        return node;
+    }
+
+    /**
+     * Writes a control flow as its source node and its position among the control flows leaving it.
+     *
+     * @param output
+     *            the output
+     * @param controlFlow
+     *            the control flow, might be null
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     */
+    private static void writeControlFlow(@Nonnull Output output,
+                                         @Nullable ControlFlow controlFlow,
+                                         @Nonnull NodeIndex nodeIndex) {
+
+        if (controlFlow == null) {
+            output.writeVarInt(0);
+            return;
+        }
+        Node source = controlFlow.getSource();
+        writeNode(output, source, nodeIndex);
+        output.writeVarInt(source.getOutgoingControlFlows().indexOf(controlFlow));
+    }
+
+    /**
+     * Reads a control flow written by {@link #writeControlFlow(Output, ControlFlow, NodeIndex)}.
+     *
+     * @param input
+     *            the input
+     * @param nodeIndex
+     *            the index of the nodes of the definition
+     * @return the control flow, or null if none was written
+     */
+    private static ControlFlow readControlFlow(@Nonnull Input input, @Nonnull NodeIndex nodeIndex) {
+
+        Node source = readNode(input, nodeIndex);
+        if (source == null) {
+            return null;
+        }
+        List<ControlFlow> outgoingControlFlows = source.getOutgoingControlFlows();
+        return outgoingControlFlows.get(input.readIndex(outgoingControlFlows.size()));
+    }
+
+    /**
+     * Gets the index of the nodes of the definition of an instance.
+     *
+     * @param instance
+     *            the instance
+     * @return the index
+     */
+    private static NodeIndex getNodeIndex(@Nullable AbstractProcessInstance instance) {
+
+        if (instance == null || instance.getDefinition() == null) {
+            throw new JodaEngineRuntimeException("Only instances of a process definition can be encoded.");
+        }
+        return NodeIndex.of(instance.getDefinition());
+    }
+
+    /**
+     * Orders tokens, so that the parent of a token comes before it, if it is one of the tokens, too.
+     *
+     * @param tokens
+     *            the tokens
+     * @return the ordered tokens
+     */
+    private static List<Token> parentsFirst(@Nonnull List<Token> tokens) {
+
+        Map<Token, Boolean> written = new IdentityHashMap<Token, Boolean>();
+        for (Token token : tokens) {
+            written.put(token, Boolean.FALSE);
+        }
+        List<Token> orderedTokens = new ArrayList<Token>(written.size());
+        for (Token token : tokens) {
+            List<Token> ancestors = new ArrayList<Token>();
+            for (Token ancestor = token; Boolean.FALSE.equals(written.get(ancestor));
+                ancestor = ancestor.getParentToken()) {
+                written.put(ancestor, Boolean.TRUE);
+                ancestors.add(ancestor);
+            }
+            Collections.reverse(ancestors);
+            orderedTokens.addAll(ancestors);
+        }
+        return orderedTokens;
+    }
+
+    /**
+     * A growing array of bytes, which the encoded objects are written to.
+     */
+    private static final class Output {
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+        private int size = 0;
+
+        /**
+         * Writes a byte.
+         *
+         * @param value
+         *            the byte
+         */
+        private void writeByte(int value) {
+
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        /**
+         * Writes a boolean.
+         *
+         * @param value
+         *            the boolean
+         */
+        private void writeBoolean(boolean value) {
+
+            writeByte(value ? 1 : 0);
+        }
+
+        /**
+         * Writes a non-negative integer in as few bytes as needed, seven bits per byte.
+         *
+         * @param value
+         *            the integer
+         */
+        private void writeVarInt(int value) {
+
+            if (value < 0) {
+                throw new JodaEngineRuntimeException("The number " + value + " cannot be encoded.");
+            }
+            int remaining = value;
+            while (remaining > VARINT_PAYLOAD_MASK) {
+                writeByte((remaining & VARINT_PAYLOAD_MASK) | VARINT_CONTINUATION_BIT);
+                remaining >>>= VARINT_PAYLOAD_BITS;
+            }
+            writeByte(remaining);
+        }
+
+        /**
+         * Writes a UUID.
+         *
+         * @param uuid
+         *            the UUID
+         */
+        private void writeUUID(@Nonnull UUID uuid) {
+
+            ensureCapacity(UUID_SIZE);
+            ByteBuffer.wrap(bytes, size, UUID_SIZE).putLong(uuid.getMostSignificantBits())
+            .putLong(uuid.getLeastSignificantBits());
+            size += UUID_SIZE;
+        }
+
+        /**
+         * Writes a string as its length plus one, 0 if it is null, and its UTF-8 bytes.
+         *
+         * @param value
+         *            the string, might be null
+         */
+        private void writeString(@Nullable String value) {
+
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] encodedValue = value.getBytes(UTF_8);
+            writeVarInt(encodedValue.length + 1);
+            ensureCapacity(encodedValue.length);
+            System.arraycopy(encodedValue, 0, bytes, size, encodedValue.length);
+            size += encodedValue.length;
+        }
+
+        /**
+         * Writes an array of bytes and its length.
+         *
+         * @param value
+         *            the bytes
+         */
+        private void writeBytes(@Nonnull byte[] value) {
+
+            writeVarInt(value.length);
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        /**
+         * Gets the bytes written so far.
+         *
+         * @return the bytes
+         */
+        private byte[] toByteArray() {
+
+            return Arrays.copyOf(bytes, size);
+        }
+
+        /**
+         * Grows the array, if the given number of bytes does not fit into it.
+         *
+         * @param length
+         *            the number of bytes to write
+         */
+        private void ensureCapacity(int length) {
+
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+    }
+
+    /**
+     * The encoded bytes of an object, which are read in the order they were written.
+     */
+    private static final class Input {
+
+        private final ByteBuffer buffer;
+
+        /**
+         * Instantiates a new input.
+         *
+         * @param bytes
+         *            the bytes
+         */
+        private Input(@Nonnull byte[] bytes) {
+
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        /**
+         * Reads the version of the encoding and checks, that it is known.
+         */
+        private void readVersion() {
+
+            byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                throw new JodaEngineRuntimeException("The encoding version " + version + " is not supported.");
+            }
+        }
+
+        /**
+         * Reads a boolean.
+         *
+         * @return the boolean
+         */
+        private boolean readBoolean() {
+
+            return buffer.get() != 0;
+        }
+
+        /**
+         * Reads an integer written by {@link Output#writeVarInt(int)}.
+         *
+         * @return the integer
+         */
+        private int readVarInt() {
+
+            int value = 0;
+            for (int shift = 0; shift <= MAX_VARINT_SHIFT; shift += VARINT_PAYLOAD_BITS) {
+                int nextByte = buffer.get();
+                value |= (nextByte & VARINT_PAYLOAD_MASK) << shift;
+                if ((nextByte & VARINT_CONTINUATION_BIT) == 0) {
+                    return value;
+                }
+            }
+            throw new JodaEngineRuntimeException("The encoded number is too long.");
+        }
+
+        /**
+         * Reads a position, which must be less than the given size.
+         *
+         * @param size
+         *            the number of valid positions
+         * @return the position
+         */
+        private int readIndex(int size) {
+
+            return checkIndex(readVarInt(), size);
+        }
+
+        /**
+         * Checks, that a decoded position is less than the given size.
+         *
+         * @param index
+         *            the position
+         * @param size
+         *            the number of valid positions
+         * @return the position
+         */
+        private int checkIndex(int index, int size) {
+
+            if (index < 0 || index >= size) {
+                throw new JodaEngineRuntimeException("The encoded position " + index + " is out of range, there are"
+                    + " only " + size + " positions. The definition might have changed.");
+            }
+            return index;
+        }
+
+        /**
+         * Reads a UUID.
+         *
+         * @return the UUID
+         */
+        private UUID readUUID() {
+
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+
+        /**
+         * Reads a string written by {@link Output#writeString(String)}.
+         *
+         * @return the string, might be null
+         */
+        private String readString() {
+
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            byte[] value = new byte[length - 1];
+            buffer.get(value);
+            return new String(value, UTF_8);
+        }
+
+        /**
+         * Reads an array of bytes written by {@link Output#writeBytes(byte[])}.
+         *
+         * @return the bytes
+         */
+        private byte[] readBytes() {
+
+            byte[] value = new byte[readVarInt()];
+            buffer.get(value);
+            return value;
+        }
+    }
+}
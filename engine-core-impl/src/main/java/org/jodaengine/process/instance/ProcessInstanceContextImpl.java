@@ -1,19 +1,42 @@
 package org.jodaengine.process.instance;
 
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jodaengine.exception.JodaEngineRuntimeException;
 import org.jodaengine.process.structure.ControlFlow;
 import org.jodaengine.process.structure.Node;
+import org.jodaengine.util.PersistentHashMap;
 
 /**
  * The Class ProcessInstanceContextImpl.
+ *
+ * Variables declared by the process definition are kept in the slots of its {@link VariableLayout}, all other
+ * variables in a {@link PersistentHashMap}. Both are immutable and replaced together on every change, so a snapshot of
+ * the variables is just the current reference and writers never block on readers. Node variables are kept in a
+ * concurrent map per node.
+ *
+ * The variables can be {@link #evictVariables(ProcessInstanceStore, UUID) evicted} to a {@link ProcessInstanceStore},
+ * while the instance waits. Reading them then loads them from the store without keeping them; changing them loads them
+ * back into the context.
+ *
+ * Large values are kept outside the heap by the default {@link OffHeapStorage} and given out again, when they are read.
  */
 public class ProcessInstanceContextImpl implements ProcessInstanceContext {
 
@@ -21,108 +44,421 @@ public class ProcessInstanceContextImpl implements ProcessInstanceContext {
 
     private static final int MAGIC_HASH_CONSTANT_ONE = 7;
 
+    /** Stands for the variables, while they are kept in the store. */
+    private static final Variables EVICTED = new Variables(new Object[0], PersistentHashMap.<String, Object> empty());
+
+    @JsonIgnore
+    private ConcurrentMap<Node, JoinCounter> waitingControlFlows;
+
+    @JsonIgnore
+    private final VariableLayout layout;
+
+    @JsonIgnore
+    private final AtomicReference<Variables> variableState;
+
+    @JsonIgnore
+    private volatile ConcurrentMap<Node, ConcurrentMap<String, Object>> nodeVariables;
+
+    @JsonIgnore
+    private volatile ProcessInstanceObserver observer;
+
+    @JsonIgnore
+    private AbstractProcessInstance observedInstance;
+
+    /** The store keeping the variables, while they are evicted. */
     @JsonIgnore
-    private Map<Node, List<ControlFlow>> waitingControlFlows;
+    private ProcessInstanceStore store;
 
-    private Map<String, Object> contextVariables;
-    private Map<String, Object> nodeVariables;
+    @JsonIgnore
+    private UUID storedInstanceID;
 
     /**
-     * Instantiates a new process instance context impl.
+     * Instantiates a new process instance context impl, which keeps all variables in a map.
      */
     public ProcessInstanceContextImpl() {
 
-        waitingControlFlows = new HashMap<Node, List<ControlFlow>>();
+        this(VariableLayout.EMPTY);
+    }
+
+    /**
+     * Instantiates a new process instance context impl.
+     * 
+     * @param layout
+     *            the variable layout of the process definition
+     */
+    public ProcessInstanceContextImpl(@Nonnull VariableLayout layout) {
+
+        this.waitingControlFlows = new ConcurrentHashMap<Node, JoinCounter>();
+        this.layout = layout;
+        this.variableState = new AtomicReference<Variables>(new Variables(new Object[layout.size()],
+            PersistentHashMap.<String, Object> empty()));
     }
 
     @Override
     public void setSignaledControlFlow(ControlFlow t) {
 
-        List<ControlFlow> tmpList;
-        if (waitingControlFlows.get(t.getDestination()) != null) {
-            tmpList = waitingControlFlows.get(t.getDestination());
+        getJoinCounter(t.getDestination()).signal(t);
+    }
 
-        } else {
-            tmpList = new ArrayList<ControlFlow>();
-            waitingControlFlows.put(t.getDestination(), tmpList);
-        }
-        tmpList.add(t);
+    @Override
+    public int joinControlFlow(ControlFlow controlFlow) {
 
+        Node node = controlFlow.getDestination();
+        return getJoinCounter(node).signalAndJoin(controlFlow, node.getIncomingControlFlows().size());
     }
 
     @Override
     public List<ControlFlow> getSignaledControlFlows(Node n) {
 
-        return waitingControlFlows.get(n);
+        JoinCounter counter = waitingControlFlows.get(n);
+        if (counter == null) {
+            return null;
+        }
+        return counter.getSignaledControlFlows();
+    }
+
+    @Override
+    public int getNumberOfSignaledControlFlows(Node n) {
+
+        JoinCounter counter = waitingControlFlows.get(n);
+        if (counter == null) {
+            return 0;
+        }
+        return counter.getNumberOfSignaledControlFlows();
     }
 
     @Override
     public boolean allIncomingControlFlowsSignaled(Node n) {
 
-        List<ControlFlow> signaledControlFlows = waitingControlFlows.get(n);
+        JoinCounter counter = waitingControlFlows.get(n);
 
-        // If there are no waiting {@link ControlFlow}s yet, the list might not be initialized yet
-        if (signaledControlFlows == null) {
+        // If there are no waiting {@link ControlFlow}s yet, the counter might not be initialized yet
+        if (counter == null) {
             return false;
         }
-        List<ControlFlow> incomingControlFlows = n.getIncomingControlFlows();
-        return signaledControlFlows.containsAll(incomingControlFlows);
+
+        // the signaled control flows lead to the node, so they are a subset of its incoming control flows
+        return counter.getNumberOfSignaledControlFlows() >= n.getIncomingControlFlows().size();
     }
 
     @Override
     public void removeSignaledControlFlows(Node node) {
 
-        List<ControlFlow> signaledControlFlows = waitingControlFlows.get(node);
-        List<ControlFlow> incomingControlFlows = node.getIncomingControlFlows();
-        removeSubset(signaledControlFlows, incomingControlFlows);
-
+        JoinCounter counter = waitingControlFlows.get(node);
+        if (counter == null) {
+            return;
+        }
+        for (ControlFlow controlFlow : node.getIncomingControlFlows()) {
+            counter.removeOnce(controlFlow);
+        }
     }
 
     /**
-     * Removes the subset.
+     * Gets the counter of signaled {@link ControlFlow}s of a node, creating it if needed.
      * 
-     * @param superList
-     *            the super list
-     * @param subList
-     *            the sub list
+     * @param node
+     *            the node
+     * @return the join counter
      */
-    private void removeSubset(List<ControlFlow> superList, List<ControlFlow> subList) {
-
-        for (ControlFlow t : subList) {
-            superList.remove(t);
+    private JoinCounter getJoinCounter(Node node) {
+
+        JoinCounter counter = waitingControlFlows.get(node);
+        if (counter == null) {
+            JoinCounter newCounter = new JoinCounter();
+            counter = waitingControlFlows.putIfAbsent(node, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
         }
+        return counter;
     }
 
+    /**
+     * Gets a view of the variables. Reading it reads a snapshot, writing to it sets the variables.
+     *
+     * {@inheritDoc}
+     */
     @Override
     public Map<String, Object> getVariableMap() {
 
-        return getInstanceVariables();
+        return new VariableMapView();
     }
 
+    @Override
+    public Map<String, Object> getVariableSnapshot() {
+
+        return new VariableSnapshot(layout, readVariables());
+    }
+
+    /**
+     * Sets the variable. Setting a variable to null removes it. Large byte arrays, strings and {@link ByteBuffer}s are
+     * copied outside the heap, if the default {@link OffHeapStorage} says so.
+     *
+     * The variables are replaced as a whole by compare-and-set, so that a writer never waits for readers or other
+     * writers; if a concurrent writer came first, the change is simply applied to its variables again.
+     *
+     * {@inheritDoc}
+     */
     @Override
     public void setVariable(String name, Object value) {
 
-        getInstanceVariables().put(name, value);
+        int slot = layout.getSlot(name);
+        Object storedValue = OffHeapStorage.getDefault().store(value);
+        Variables current;
+        Variables changed;
+        do {
+            current = currentVariables();
+            if (slot >= 0) {
+                changed = current.withSlot(slot, storedValue);
+            } else {
+                changed = current.withOther(name, storedValue);
+            }
+        } while (changed != current && !variableState.compareAndSet(current, changed));
+
+        ProcessInstanceObserver currentObserver = observer;
+        if (currentObserver != null && changed != current) {
+            currentObserver.variableSet(observedInstance, name, value);
+        }
+    }
+
+    /**
+     * Lets an observer watch the variables of this context. Only to be called by the instance owning the context.
+     *
+     * @param newObserver
+     *            the observer
+     * @param instance
+     *            the instance owning the context
+     */
+    void setObserver(@Nonnull ProcessInstanceObserver newObserver, @Nonnull AbstractProcessInstance instance) {
+
+        this.observedInstance = instance;
+        this.observer = newObserver;
+    }
+
+    /**
+     * Stops the observer from watching the variables of this context. Only to be called by the instance owning the
+     * context.
+     */
+    void removeObserver() {
+
+        this.observer = null;
+    }
+
+    /**
+     * Evicts the variables to a store. They are only evicted, if they are not changed meanwhile; otherwise the stored
+     * copy is removed again and the variables stay in memory.
+     *
+     * @param newStore
+     *            the store
+     * @param instanceID
+     *            the id, under which the variables are stored
+     * @return true, if the variables were evicted; false, if they were evicted already or changed meanwhile
+     */
+    synchronized boolean evictVariables(@Nonnull ProcessInstanceStore newStore, @Nonnull UUID instanceID) {
+
+        Variables current = variableState.get();
+        if (current == EVICTED) {
+            return false;
+        }
+        newStore.store(instanceID, toMap(current));
+        this.store = newStore;
+        this.storedInstanceID = instanceID;
+        if (!variableState.compareAndSet(current, EVICTED)) {
+            newStore.remove(instanceID);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Loads evicted variables back into the context and removes them from the store.
+     *
+     * @return true, if the variables were evicted
+     */
+    boolean hydrateVariables() {
+
+        if (variableState.get() != EVICTED) {
+            return false;
+        }
+        return loadVariables() != null;
+    }
+
+    /**
+     * Checks if the variables are evicted.
+     *
+     * @return true, if they are kept in the store
+     */
+    boolean isEvicted() {
+
+        return variableState.get() == EVICTED;
+    }
+
+    /**
+     * Gets the current variables to change them, loading them back into the context, if they are evicted.
+     *
+     * @return the variables
+     */
+    private Variables currentVariables() {
+
+        Variables current = variableState.get();
+        while (current == EVICTED) {
+            Variables loaded = loadVariables();
+            if (loaded != null) {
+                return loaded;
+            }
+            current = variableState.get();
+        }
+        return current;
+    }
+
+    /**
+     * Gets the current variables to read them. Evicted variables are loaded from the store, but stay evicted.
+     *
+     * @return the variables
+     */
+    private Variables readVariables() {
+
+        Variables current = variableState.get();
+        if (current != EVICTED) {
+            return current;
+        }
+        synchronized (this) {
+            current = variableState.get();
+            if (current != EVICTED) {
+                return current;
+            }
+            return toVariables(load());
+        }
+    }
+
+    /**
+     * Loads the evicted variables back into the context.
+     *
+     * @return the loaded variables, or null if they were not evicted anymore
+     */
+    private synchronized Variables loadVariables() {
+
+        if (variableState.get() != EVICTED) {
+            return null;
+        }
+        Variables loaded = toVariables(load());
+
+        // only this method replaces evicted variables and it holds the lock, so no writer can come first
+        variableState.set(loaded);
+        store.remove(storedInstanceID);
+        store = null;
+        storedInstanceID = null;
+        return loaded;
+    }
+
+    /**
+     * Loads the evicted variables from the store. Must be called with the lock of this context.
+     *
+     * @return the stored variables
+     */
+    private Map<String, Object> load() {
+
+        Map<String, Object> stored = store.load(storedInstanceID);
+        if (stored == null) {
+            throw new JodaEngineRuntimeException("The evicted variables of the instance " + storedInstanceID
+                + " are missing in the store.");
+        }
+        return stored;
+    }
+
+    /**
+     * Puts variables into a map as they are kept, so that values outside the heap are stored with their bytes.
+     *
+     * @param variables
+     *            the variables
+     * @return the map
+     */
+    private Map<String, Object> toMap(@Nonnull Variables variables) {
+
+        Map<String, Object> map = new HashMap<String, Object>(variables.others);
+        for (int i = 0; i < variables.slots.length; i++) {
+            if (variables.slots[i] != null) {
+                map.put(layout.getName(i), variables.slots[i]);
+            }
+        }
+        return map;
+    }
 
+    /**
+     * Puts variables into the slots of the layout of this context.
+     *
+     * @param variables
+     *            the variables
+     * @return the variables of this context
+     */
+    private Variables toVariables(@Nonnull Map<String, Object> variables) {
+
+        Object[] slots = new Object[layout.size()];
+        PersistentHashMap<String, Object> others = PersistentHashMap.empty();
+        for (Map.Entry<String, Object> variable : variables.entrySet()) {
+            int slot = layout.getSlot(variable.getKey());
+            if (slot >= 0) {
+                slots[slot] = variable.getValue();
+            } else {
+                others = others.plus(variable.getKey(), variable.getValue());
+            }
+        }
+        return new Variables(slots, others);
     }
 
     @Override
     public Object getVariable(String name) {
 
-        return getInstanceVariables().get(name);
+        return toValue(getStoredVariable(name));
     }
 
     /**
-     * Gets the instance variables.
-     * 
-     * @return the instance variables
+     * Gets a read-only view of the bytes of a variable, which is kept outside the heap. The view shares the bytes, so
+     * large documents can be read or written to a channel without copying them onto the heap.
+     *
+     * @param name
+     *            the variable name
+     * @return the buffer, or null if the variable is not set or kept on the heap
+     */
+    public @Nullable ByteBuffer getVariableBuffer(String name) {
+
+        Object value = getStoredVariable(name);
+        if (value instanceof OffHeapValue) {
+            return ((OffHeapValue) value).getBuffer();
+        }
+        return null;
+    }
+
+    /**
+     * Gets a variable as it is kept in the context.
+     *
+     * @param name
+     *            the variable name
+     * @return the value or its {@link OffHeapValue}
+     */
+    private Object getStoredVariable(String name) {
+
+        int slot = layout.getSlot(name);
+        Variables current = readVariables();
+        if (slot >= 0) {
+            return current.slots[slot];
+        }
+        return current.others.get(name);
+    }
+
+    /**
+     * Gives out a value kept in the context.
+     *
+     * @param storedValue
+     *            the value or its {@link OffHeapValue}
+     * @return the value as it was set
      */
-    private Map<String, Object> getInstanceVariables() {
+    private static Object toValue(@Nullable Object storedValue) {
 
-        if (contextVariables == null) {
-            contextVariables = Collections.synchronizedMap(new HashMap<String, Object>());
+        if (storedValue instanceof OffHeapValue) {
+            return ((OffHeapValue) storedValue).getValue();
         }
-        return contextVariables;
+        return storedValue;
     }
 
     @Override
@@ -131,7 +467,7 @@ public class ProcessInstanceContextImpl implements ProcessInstanceContext {
         if (object instanceof ProcessInstanceContextImpl) {
             ProcessInstanceContextImpl context = (ProcessInstanceContextImpl) object;
 
-            if (getInstanceVariables().equals(context.getInstanceVariables())) {
+            if (toMap(readVariables()).equals(context.toMap(context.readVariables()))) {
                 return true;
             }
         }
@@ -142,68 +478,274 @@ public class ProcessInstanceContextImpl implements ProcessInstanceContext {
     @Override
     public int hashCode() {
 
-        int hash = MAGIC_HASH_CONSTANT_ONE;
-        int magicHashSummand = 0;
-
-        Object o;
-        for (String key : getInstanceVariables().keySet()) {
-            o = getInstanceVariables().get(key);
-            if (null == o) {
-                magicHashSummand = 0;
-            } else {
-                magicHashSummand = o.hashCode();
-            }
-            hash = MAGIC_HASH_CONSTANT_TWO * hash + magicHashSummand;
-        }
-
-        return hash;
+        // the map's hash code does not depend on the order of the variables, which differs between layouts; values
+        // outside the heap are compared by their bytes, as reading them creates a new byte array every time
+        return MAGIC_HASH_CONSTANT_TWO * MAGIC_HASH_CONSTANT_ONE + toMap(readVariables()).hashCode();
     }
 
     @Override
     public void setNodeVariable(Node node, String name, Object value) {
 
-        String variableName = generateNodeVariableIdentifier(node, name);
-        getInternalVariables().put(variableName, value);
+        if (value == null) {
+            Map<String, Object> variables = getNodeVariables(node, false);
+            if (variables != null) {
+                variables.remove(name);
+            }
+        } else {
+            getNodeVariables(node, true).put(name, value);
+        }
     }
 
     @Override
     public Object getNodeVariable(Node node, String name) {
 
-        String variableName = generateNodeVariableIdentifier(node, name);
-        return getInternalVariables().get(variableName);
+        Map<String, Object> variables = getNodeVariables(node, false);
+        if (variables == null) {
+            return null;
+        }
+        return variables.get(name);
     }
 
     /**
-     * Lazily initializes the map of internal variables. It is a synchronized map as concurrent access to the variable
-     * map is likely to occur. We use only one map to handle not that much nested data structures.
-     * 
-     * @return the internal variables map
+     * Gets the variables of all nodes, e.g. to encode them.
+     *
+     * @return the variables by node, empty if there are none
      */
-    @JsonIgnore
-    private Map<String, Object> getInternalVariables() {
+    Map<Node, ? extends Map<String, Object>> getAllNodeVariables() {
 
-        if (nodeVariables == null) {
-            nodeVariables = Collections.synchronizedMap(new HashMap<String, Object>());
+        Map<Node, ? extends Map<String, Object>> allVariables = nodeVariables;
+        if (allVariables == null) {
+            return Collections.emptyMap();
         }
-        return nodeVariables;
+        return allVariables;
     }
 
-    private String generateNodeVariableIdentifier(Node node, String variableName) {
+    /**
+     * Gets the variables of a node. They are kept per node, so that looking them up does not require building a key
+     * out of node and variable name.
+     * 
+     * @param node
+     *            the node
+     * @param create
+     *            whether to create the map of the node, if it does not exist
+     * @return the node variables, or null if there are none and create is false
+     */
+    private ConcurrentMap<String, Object> getNodeVariables(Node node, boolean create) {
 
-        return node.getID() + "-" + variableName;
+        ConcurrentMap<Node, ConcurrentMap<String, Object>> allVariables = nodeVariables;
+        if (allVariables == null) {
+            if (!create) {
+                return null;
+            }
+            synchronized (this) {
+                allVariables = nodeVariables;
+                if (allVariables == null) {
+                    allVariables = new ConcurrentHashMap<Node, ConcurrentMap<String, Object>>();
+                    nodeVariables = allVariables;
+                }
+            }
+        }
+
+        ConcurrentMap<String, Object> variables = allVariables.get(node);
+        if (variables == null && create) {
+            ConcurrentMap<String, Object> newVariables = new ConcurrentHashMap<String, Object>();
+            variables = allVariables.putIfAbsent(node, newVariables);
+            if (variables == null) {
+                variables = newVariables;
+            }
+        }
+        return variables;
     }
 
     @Override
     public void removeSignaledControlFlow(ControlFlow controlFlow) {
 
-        List<ControlFlow> signaledControlFlows = waitingControlFlows.get(controlFlow.getDestination());
-        // The map is referencing to every Destination all the incoming Transitions. But we need to check the start
-        // node, in order to delete it.
+        JoinCounter counter = waitingControlFlows.get(controlFlow.getDestination());
+        if (counter != null) {
+            counter.removeAll(controlFlow);
+        }
+    }
+
+    /**
+     * A map view of the variables of this context.
+     */
+    private class VariableMapView extends AbstractMap<String, Object> {
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+
+            return getVariableSnapshot().entrySet();
+        }
+
+        @Override
+        public Object get(Object key) {
+
+            if (!(key instanceof String)) {
+                return null;
+            }
+            return getVariable((String) key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+
+            return get(key) != null;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
 
-        boolean containedControlFlow = true;
-        while (containedControlFlow) {
-            containedControlFlow = signaledControlFlows.remove(controlFlow);
+            Object previousValue = getVariable(key);
+            setVariable(key, value);
+            return previousValue;
         }
 
+        @Override
+        public Object remove(Object key) {
+
+            if (!(key instanceof String)) {
+                return null;
+            }
+            return put((String) key, null);
+        }
+    }
+    /**
+     * The immutable variables of a context. A change creates new variables, which share everything unchanged.
+     */
+    private static final class Variables {
+
+        private final Object[] slots;
+
+        private final PersistentHashMap<String, Object> others;
+
+        /**
+         * Instantiates new variables.
+         *
+         * @param slots
+         *            the values of the declared variables, must not be changed afterwards
+         * @param others
+         *            the variables, which are not declared
+         */
+        private Variables(Object[] slots, PersistentHashMap<String, Object> others) {
+
+            this.slots = slots;
+            this.others = others;
+        }
+
+        /**
+         * Returns the variables with a declared variable changed. The slot array is small, so it is simply copied.
+         *
+         * @param slot
+         *            the slot of the variable
+         * @param value
+         *            the new value
+         * @return the changed variables, or these if the value is the same
+         */
+        private Variables withSlot(int slot, Object value) {
+
+            if (slots[slot] == value) {
+                return this;
+            }
+            Object[] newSlots = slots.clone();
+            newSlots[slot] = value;
+            return new Variables(newSlots, others);
+        }
+
+        /**
+         * Returns the variables with a variable changed, which is not declared.
+         *
+         * @param name
+         *            the variable name
+         * @param value
+         *            the new value
+         * @return the changed variables, or these if the value is the same
+         */
+        private Variables withOther(String name, Object value) {
+
+            PersistentHashMap<String, Object> newOthers = others.plus(name, value);
+            if (newOthers == others) {
+                return this;
+            }
+            return new Variables(slots, newOthers);
+        }
+    }
+
+    /**
+     * An immutable map of the variables at one point in time. It only wraps the immutable {@link Variables}, so it is
+     * created in O(1).
+     */
+    private static final class VariableSnapshot extends AbstractMap<String, Object> {
+
+        private final VariableLayout layout;
+
+        private final Variables variables;
+
+        /**
+         * Instantiates a new variable snapshot.
+         *
+         * @param layout
+         *            the layout of the slots
+         * @param variables
+         *            the variables
+         */
+        private VariableSnapshot(VariableLayout layout, Variables variables) {
+
+            this.layout = layout;
+            this.variables = variables;
+        }
+
+        @Override
+        public Object get(Object key) {
+
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int slot = layout.getSlot((String) key);
+            if (slot >= 0) {
+                return toValue(variables.slots[slot]);
+            }
+            return toValue(variables.others.get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+
+                    List<Map.Entry<String, Object>> entries = new ArrayList<Map.Entry<String, Object>>(size());
+                    for (int i = 0; i < variables.slots.length; i++) {
+                        if (variables.slots[i] != null) {
+                            entries.add(new AbstractMap.SimpleImmutableEntry<String, Object>(layout.getName(i),
+                                toValue(variables.slots[i])));
+                        }
+                    }
+                    for (Map.Entry<String, Object> entry : variables.others.entrySet()) {
+                        entries.add(new AbstractMap.SimpleImmutableEntry<String, Object>(entry.getKey(),
+                            toValue(entry.getValue())));
+                    }
+                    return Collections.unmodifiableList(entries).iterator();
+                }
+
+                @Override
+                public int size() {
+
+                    int size = variables.others.size();
+                    for (Object value : variables.slots) {
+                        if (value != null) {
+                            size++;
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
     }
 }
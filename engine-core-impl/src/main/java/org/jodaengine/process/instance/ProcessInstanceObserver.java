@@ -0,0 +1,48 @@
+package org.jodaengine.process.instance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.token.Token;
+
+/**
+ * Is told about every change of the tokens and variables of a {@link ProcessInstance}, e.g. to write them to a journal.
+ * It is called by the thread that made the change, right after it was made.
+ */
+public interface ProcessInstanceObserver {
+
+    /**
+     * Called when a token was added to the instance or moved to another node.
+     *
+     * @param instance
+     *            the instance
+     * @param token
+     *            the token
+     * @param node
+     *            the node the token is on now
+     */
+    void tokenPlaced(@Nonnull AbstractProcessInstance instance, @Nonnull Token token, @Nonnull Node node);
+
+    /**
+     * Called when a token was removed from the instance, e.g. because it was consumed by a join or ended.
+     *
+     * @param instance
+     *            the instance
+     * @param token
+     *            the token
+     */
+    void tokenRemoved(@Nonnull AbstractProcessInstance instance, @Nonnull Token token);
+
+    /**
+     * Called when a variable of the instance was set.
+     *
+     * @param instance
+     *            the instance
+     * @param name
+     *            the variable name
+     * @param value
+     *            the new value, null if the variable was removed
+     */
+    void variableSet(@Nonnull AbstractProcessInstance instance, @Nonnull String name, @Nullable Object value);
+}
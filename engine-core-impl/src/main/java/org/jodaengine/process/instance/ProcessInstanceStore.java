@@ -0,0 +1,54 @@
+package org.jodaengine.process.instance;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the variables of {@link ProcessInstance}s outside of the heap, while the instances wait, e.g. for a human task
+ * or a timer. The instance itself and its tokens stay in memory, as worklist items and timers refer to the tokens;
+ * only the variables, which make up most of a waiting instance, are {@link ProcessInstance#evict(ProcessInstanceStore)
+ * evicted} to the store and loaded again, when they are needed.
+ *
+ * Implementations must be thread-safe. Errors are thrown as {@link org.jodaengine.exception.JodaEngineRuntimeException}.
+ */
+public interface ProcessInstanceStore {
+
+    /**
+     * Stores the variables of an instance, replacing those stored before.
+     *
+     * @param instanceID
+     *            the id of the instance
+     * @param variables
+     *            the variables
+     */
+    void store(@Nonnull UUID instanceID, @Nonnull Map<String, Object> variables);
+
+    /**
+     * Loads the variables of an instance.
+     *
+     * @param instanceID
+     *            the id of the instance
+     * @return the variables, or null if none are stored
+     */
+    @Nullable Map<String, Object> load(@Nonnull UUID instanceID);
+
+    /**
+     * Removes the variables of an instance, if they are stored.
+     *
+     * @param instanceID
+     *            the id of the instance
+     */
+    void remove(@Nonnull UUID instanceID);
+
+    /**
+     * Gets the ids of all instances, whose variables are stored. Variables stay in the store, when the engine stops
+     * while their instances wait, so the navigator removes those of instances it does not know anymore on start.
+     *
+     * @return the ids of the instances
+     */
+    @Nonnull Set<UUID> getInstanceIDs();
+}
@@ -0,0 +1,170 @@
+package org.jodaengine.process.instance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes the values of process variables, e.g. for the journal of the navigator or the {@link ProcessInstanceCodec}.
+ * Strings, numbers and booleans get a compact encoding of their own, other values are serialized. The bytes of a
+ * {@link ByteBuffer} are written as they are and read into a heap buffer.
+ */
+public final class ValueCodec {
+
+    private static final byte NULL = 0;
+
+    private static final byte STRING = 1;
+
+    private static final byte INTEGER = 2;
+
+    private static final byte LONG = 3;
+
+    private static final byte BOOLEAN = 4;
+
+    private static final byte DOUBLE = 5;
+
+    private static final byte SERIALIZABLE = 6;
+
+    private static final byte BYTE_BUFFER = 7;
+
+    /** The number of bytes of a buffer, which are copied at once. */
+    private static final int CHUNK_SIZE = 8192;
+
+    /** The length of the longest string, whose modified UTF-8 encoding surely fits into 65535 bytes. */
+    private static final int MAX_UTF_LENGTH = 65535 / 3;
+
+    /**
+     * Hidden constructor.
+     */
+    private ValueCodec() {
+
+    }
+
+    /**
+     * Checks if a value can be encoded.
+     *
+     * @param value
+     *            the value
+     * @return true, if it can be encoded
+     */
+    public static boolean canEncode(@Nullable Object value) {
+
+        return value == null || value instanceof Serializable || value instanceof ByteBuffer;
+    }
+
+    /**
+     * Encodes a value.
+     *
+     * @param value
+     *            the value, must be {@link #canEncode(Object) encodable}
+     * @return the bytes
+     * @throws IOException
+     *             thrown if the value cannot be serialized
+     */
+    public static byte[] encode(@Nullable Object value)
+    throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof String && ((String) value).length() <= MAX_UTF_LENGTH) {
+            output.writeByte(STRING);
+            output.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            output.writeByte(BYTE_BUFFER);
+            output.writeInt(buffer.remaining());
+            byte[] chunk = new byte[Math.min(buffer.remaining(), CHUNK_SIZE)];
+            while (buffer.hasRemaining()) {
+                int length = Math.min(buffer.remaining(), chunk.length);
+                buffer.get(chunk, 0, length);
+                output.write(chunk, 0, length);
+            }
+        } else {
+            output.writeByte(SERIALIZABLE);
+            ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+            objectOutput.writeObject(value);
+            objectOutput.flush();
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a value. Serialized values are resolved with the given class loader, e.g. the one of the process
+     * definition they belong to.
+     *
+     * @param bytes
+     *            the bytes written by {@link #encode(Object)}
+     * @param classLoader
+     *            the class loader
+     * @return the value
+     * @throws IOException
+     *             thrown if the bytes are corrupt
+     * @throws ClassNotFoundException
+     *             thrown if the class of a serialized value is not available
+     */
+    public static Object decode(@Nonnull byte[] bytes, @Nonnull final ClassLoader classLoader)
+    throws IOException, ClassNotFoundException {
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte tag = input.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return input.readUTF();
+            case INTEGER:
+                return input.readInt();
+            case LONG:
+                return input.readLong();
+            case BOOLEAN:
+                return input.readBoolean();
+            case DOUBLE:
+                return input.readDouble();
+            case BYTE_BUFFER:
+                byte[] bufferBytes = new byte[input.readInt()];
+                input.readFully(bufferBytes);
+                return ByteBuffer.wrap(bufferBytes);
+            case SERIALIZABLE:
+                ObjectInputStream objectInput = new ObjectInputStream(input) {
+                    @Override
+                    protected Class<?> resolveClass(ObjectStreamClass description)
+                    throws IOException, ClassNotFoundException {
+
+                        try {
+                            return Class.forName(description.getName(), false, classLoader);
+                        } catch (ClassNotFoundException e) {
+                            return super.resolveClass(description);
+                        }
+                    }
+                };
+                return objectInput.readObject();
+            default:
+                throw new IOException("The value has got the unknown tag " + tag + ".");
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.jodaengine.process.instance;
+
+import java.util.Collection;
+
+/**
+ * Implemented by activities and conditions that know the names of the process variables they read or write. The
+ * {@link VariableLayout} of a process definition reserves a slot for each of these variables.
+ */
+public interface VariableDeclaring {
+
+    /**
+     * Gets the names of the process variables used.
+     *
+     * @return the variable names
+     */
+    Collection<String> getDeclaredVariableNames();
+}
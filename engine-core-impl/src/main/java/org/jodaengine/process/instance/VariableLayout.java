@@ -0,0 +1,149 @@
+package org.jodaengine.process.instance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.structure.ControlFlow;
+import org.jodaengine.process.structure.Node;
+
+/**
+ * The Class VariableLayout maps the names of the process variables that a process definition declares to slots, so
+ * that a {@link ProcessInstanceContextImpl} can keep their values in an array instead of a synchronized map. It is
+ * compiled once per definition, when the definition is activated, and shared by all its instances.
+ *
+ * Variables are declared by activities and conditions implementing {@link VariableDeclaring}. Names that are not
+ * declared, e.g. form fields, are still supported, but stored in a map.
+ */
+public final class VariableLayout {
+
+    /** The layout without any slot, which stores all variables in the map. */
+    public static final VariableLayout EMPTY = new VariableLayout(Collections.<String> emptyList());
+
+    private final Map<String, Integer> slots;
+
+    private final String[] names;
+
+    /**
+     * Instantiates a new variable layout.
+     *
+     * @param names
+     *            the distinct variable names, in the order of their slots
+     */
+    private VariableLayout(List<String> names) {
+
+        this.names = names.toArray(new String[names.size()]);
+        this.slots = new HashMap<String, Integer>();
+        for (int i = 0; i < this.names.length; i++) {
+            this.slots.put(this.names[i], i);
+        }
+    }
+
+    /**
+     * Compiles the layout of a process definition by collecting the variables declared by the activities of its nodes
+     * and the conditions of their control flows.
+     *
+     * @param definition
+     *            the definition, may be null
+     * @return the layout
+     */
+    public static @Nonnull VariableLayout compile(@Nullable ProcessDefinition definition) {
+
+        if (definition == null || definition.getStartNodes() == null) {
+            return EMPTY;
+        }
+
+        Set<String> names = new HashSet<String>();
+        List<String> orderedNames = new ArrayList<String>();
+        Set<Node> visitedNodes = new HashSet<Node>();
+        Queue<Node> nodesToVisit = new LinkedList<Node>(definition.getStartNodes());
+        while (!nodesToVisit.isEmpty()) {
+            Node node = nodesToVisit.poll();
+            if (node == null || !visitedNodes.add(node)) {
+                continue;
+            }
+
+            addDeclaredVariables(node.getActivityBehaviour(), names, orderedNames);
+            for (ControlFlow controlFlow : node.getOutgoingControlFlows()) {
+                addDeclaredVariables(controlFlow.getCondition(), names, orderedNames);
+                nodesToVisit.add(controlFlow.getDestination());
+            }
+        }
+
+        if (orderedNames.isEmpty()) {
+            return EMPTY;
+        }
+        return new VariableLayout(orderedNames);
+    }
+
+    /**
+     * Gets the slot of a variable.
+     *
+     * @param name
+     *            the variable name
+     * @return the slot, or -1 if the variable was not declared
+     */
+    public int getSlot(String name) {
+
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            return -1;
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the name of the variable in a slot.
+     *
+     * @param slot
+     *            the slot
+     * @return the variable name
+     */
+    public String getName(int slot) {
+
+        return names[slot];
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return the number of slots
+     */
+    public int size() {
+
+        return names.length;
+    }
+
+    /**
+     * Adds the variables declared by an activity or condition.
+     *
+     * @param declaring
+     *            the activity or condition, may be anything
+     * @param names
+     *            the names collected so far
+     * @param orderedNames
+     *            the names collected so far, in the order they were found
+     */
+    private static void addDeclaredVariables(Object declaring, Set<String> names, List<String> orderedNames) {
+
+        if (!(declaring instanceof VariableDeclaring)) {
+            return;
+        }
+
+        for (String name : ((VariableDeclaring) declaring).getDeclaredVariableNames()) {
+            if (name != null && names.add(name)) {
+                orderedNames.add(name);
+            }
+        }
+    }
+}
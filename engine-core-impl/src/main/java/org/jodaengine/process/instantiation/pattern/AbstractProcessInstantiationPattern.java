@@ -1,9 +1,16 @@
 package org.jodaengine.process.instantiation.pattern;
 
+import javax.annotation.Nullable;
+
 import org.jodaengine.exception.JodaEngineRuntimeException;
+import org.jodaengine.ext.service.ExtensionService;
+import org.jodaengine.navigator.NavigatorInside;
 import org.jodaengine.process.instance.AbstractProcessInstance;
 import org.jodaengine.process.instantiation.ProcessInstantiationPattern;
 import org.jodaengine.process.instantiation.InstantiationPatternContext;
+import org.jodaengine.process.token.TokenExtensionPlan;
+import org.jodaengine.process.token.TokenPool;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
 import org.jodaengine.util.AbstractPatternAppendable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +23,10 @@ public abstract class AbstractProcessInstantiationPattern extends AbstractPatter
 
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private volatile TokenExtensionPlan extensionPlan;
+
+    private final TokenPool tokenPool = new TokenPool();
+
     @Override
     public AbstractProcessInstance createProcessInstance(InstantiationPatternContext patternContext,
                                                          AbstractProcessInstance previosProcessInstance) {
@@ -61,6 +72,54 @@ public abstract class AbstractProcessInstantiationPattern extends AbstractPatter
         return getNextPattern().createProcessInstance(patternContext, currentProcessInstance);
     }
 
+    /**
+     * Gets the {@link TokenExtensionPlan} for the tokens of the instances created by this pattern. As a pattern belongs
+     * to a single process definition, the plan is created once per definition and shared by all of its instances. It is
+     * only created anew, if the {@link ExtensionService} or its {@link ExtensionService#getVersion() version} changes,
+     * e.g. after restarting the engine or rebuilding the extension database.
+     * 
+     * @param extensionService
+     *            the {@link ExtensionService} providing the extensions, may be null
+     * @return the plan
+     */
+    protected TokenExtensionPlan getExtensionPlan(@Nullable ExtensionService extensionService) {
+
+        TokenExtensionPlan plan = this.extensionPlan;
+        if (plan == null || !plan.isCreatedFrom(extensionService)) {
+            plan = TokenExtensionPlan.create(extensionService);
+            this.extensionPlan = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Gets the {@link TokenPool}, which is shared by the instances created by this pattern, i.e. by the instances of a
+     * single process definition.
+     * 
+     * @return the token pool
+     */
+    protected TokenPool getTokenPool() {
+
+        return tokenPool;
+    }
+
+    /**
+     * Creates the builder for the tokens of an instance of the definition, which gets the shared
+     * {@link #getExtensionPlan(ExtensionService) extension plan} and {@link #getTokenPool() token pool}.
+     * 
+     * @param navigator
+     *            the navigator executing the tokens
+     * @param extensionService
+     *            the {@link ExtensionService} providing the extensions, may be null
+     * @return the token builder
+     */
+    public BpmnTokenBuilder createTokenBuilder(NavigatorInside navigator, @Nullable ExtensionService extensionService) {
+
+        BpmnTokenBuilder tokenBuilder = new BpmnTokenBuilder(navigator, extensionService);
+        tokenBuilder.setExtensionPlan(getExtensionPlan(extensionService)).setTokenPool(getTokenPool());
+        return tokenBuilder;
+    }
+
     /**
      * This abstract method is used for the inherited classes.
      * 
@@ -10,7 +10,6 @@ import org.jodaengine.process.instantiation.InstantiationPatternContext;
 import org.jodaengine.process.instantiation.StartProcessInstantiationPattern;
 import org.jodaengine.process.structure.Node;
 import org.jodaengine.process.token.Token;
-import org.jodaengine.process.token.builder.BpmnTokenBuilder;
 
 /**
  * This pattern encapsulates the default instantiation semantic for BPMN models. This
@@ -33,8 +32,8 @@ StartProcessInstantiationPattern {
         NavigatorInside navigator = patternContext.getNavigatorService();
         ExtensionService extensions = patternContext.getExtensionService();
 
-        BpmnTokenBuilder tokenBuilder = new BpmnTokenBuilder(navigator, extensions);
-        AbstractProcessInstance processInstance = new ProcessInstance(processDefinition, tokenBuilder);
+        AbstractProcessInstance processInstance = new ProcessInstance(processDefinition, createTokenBuilder(navigator,
+            extensions));
 
         // Put only a token on the specified node for start.
         Node startNode = patternContext.getSpecifiedStartNode();
@@ -11,7 +11,6 @@ import org.jodaengine.process.instantiation.InstantiationPatternContext;
 import org.jodaengine.process.instantiation.StartProcessInstantiationPattern;
 import org.jodaengine.process.structure.Node;
 import org.jodaengine.process.token.Token;
-import org.jodaengine.process.token.builder.BpmnTokenBuilder;
 
 /**
  * This pattern encapsulates the instantiation semantic for BPMN models that are with an
@@ -40,8 +39,8 @@ StartProcessInstantiationPattern {
             throw new JodaEngineRuntimeException(errorMessage);
         }
 
-        BpmnTokenBuilder tokenBuilder = new BpmnTokenBuilder(navigator, extensions);
-        AbstractProcessInstance processInstance = new ProcessInstance(processDefinition, tokenBuilder);
+        AbstractProcessInstance processInstance = new ProcessInstance(processDefinition, createTokenBuilder(navigator,
+            extensions));
 
         // Extract the startNode
         Node startNode = processDefinition.getStartTriggers().get(startEvent);
@@ -11,6 +11,7 @@ import org.jodaengine.node.activity.Activity;
 import org.jodaengine.node.incomingbehaviour.IncomingBehaviour;
 import org.jodaengine.node.outgoingbehaviour.OutgoingBehaviour;
 import org.jodaengine.process.structure.condition.HashMapCondition;
+import org.jodaengine.util.IdGenerators;
 
 
 /**
@@ -56,7 +57,7 @@ public class NodeImpl implements Node {
         this.outgoingControlFlows = new ArrayList<ControlFlow>();
         this.incomingControlFlows = new ArrayList<ControlFlow>();
 
-        this.id = UUID.randomUUID();
+        this.id = IdGenerators.nextId();
     }
 
     @Override
@@ -81,7 +82,7 @@ public class NodeImpl implements Node {
     @Override
     public ControlFlow controlFlowTo(Node node) {
 
-        String generatedId = UUID.randomUUID().toString();
+        String generatedId = IdGenerators.nextId().toString();
         return controlFlowTo(generatedId, node);
     }
 
@@ -96,7 +97,7 @@ public class NodeImpl implements Node {
     @Override
     public ControlFlow controlFlowToWithCondition(Node node, Condition c) {
 
-        String generatedId = UUID.randomUUID().toString();
+        String generatedId = IdGenerators.nextId().toString();
         return controlFlowToWithCondition(generatedId, node, c);
     }
 
@@ -1,9 +1,14 @@
 package org.jodaengine.process.structure.condition;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import javax.annotation.Nonnull;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.jodaengine.exception.JodaEngineRuntimeException;
 import org.jodaengine.process.instance.ProcessInstanceContext;
+import org.jodaengine.process.instance.VariableDeclaring;
 import org.jodaengine.process.structure.Condition;
 import org.jodaengine.process.token.Token;
 import org.slf4j.Logger;
@@ -16,7 +21,7 @@ import org.slf4j.LoggerFactory;
  * 
  * This is not suppose to be a real Condition but rather a demo condition.
  */
-public class CheckVariableTrueCondition implements Condition {
+public class CheckVariableTrueCondition implements Condition, VariableDeclaring {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private String processVariableID;
@@ -56,4 +61,10 @@ public class CheckVariableTrueCondition implements Condition {
         return returnBooleanValue;
     }
 
+    @JsonIgnore
+    @Override
+    public Collection<String> getDeclaredVariableNames() {
+
+        return Collections.singleton(processVariableID);
+    }
 }
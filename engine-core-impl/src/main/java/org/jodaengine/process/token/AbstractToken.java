@@ -1,5 +1,6 @@
 package org.jodaengine.process.token;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -12,9 +13,8 @@ import javax.annotation.Nullable;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.jodaengine.RepositoryServiceInside;
 import org.jodaengine.eventmanagement.EventService;
+import org.jodaengine.exception.JodaEngineException;
 import org.jodaengine.ext.AbstractListenable;
-import org.jodaengine.ext.exception.InstanceTerminationHandler;
-import org.jodaengine.ext.exception.LoggerExceptionHandler;
 import org.jodaengine.ext.handler.AbstractExceptionHandler;
 import org.jodaengine.ext.listener.AbstractTokenListener;
 import org.jodaengine.ext.listener.JoinListener;
@@ -23,11 +23,14 @@ import org.jodaengine.ext.listener.TokenCreationListener;
 import org.jodaengine.ext.service.ExtensionService;
 import org.jodaengine.navigator.Navigator;
 import org.jodaengine.navigator.NavigatorInside;
+import org.jodaengine.navigator.StepPhase;
+import org.jodaengine.navigator.StepProfiler;
 import org.jodaengine.process.instance.AbstractProcessInstance;
 import org.jodaengine.process.structure.ControlFlow;
 import org.jodaengine.process.structure.Node;
 import org.jodaengine.resource.IdentityService;
 import org.jodaengine.resource.worklist.WorklistServiceIntern;
+import org.jodaengine.util.IdGenerators;
 import org.jodaengine.util.ServiceContext;
 import org.jodaengine.util.ServiceContextImpl;
 import org.slf4j.Logger;
@@ -40,6 +43,9 @@ public abstract class AbstractToken
 extends AbstractListenable<AbstractTokenListener>
 implements Token, ServiceContext {
     
+    /** Tokens only use the stateless service getters of the context, so it is shared by all tokens. */
+    private static final ServiceContext SERVICE_CONTEXT = new ServiceContextImpl();
+
     protected final Logger logger = LoggerFactory.getLogger(getClass());
     
     protected UUID id;
@@ -76,6 +82,8 @@ implements Token, ServiceContext {
 
     /**
      * Instantiates a new process {@link TokenImpl} and register all available extensions.
+     * The extensions are instantiated for this token only, so tokens of the same definition should rather share a
+     * {@link TokenExtensionPlan}.
      * 
      * @param startNode
      *            the start node
@@ -94,30 +102,71 @@ implements Token, ServiceContext {
                          Navigator navigator,
                          @Nullable ExtensionService extensionService) {
         
+        this(startNode, parentToken, instance, navigator, TokenExtensionPlan.create(extensionService));
+    }
+
+    /**
+     * Instantiates a new process {@link TokenImpl} and attaches the extensions of the plan.
+     * 
+     * @param startNode
+     *            the start node
+     * @param parentToken
+     *            the parent token, if any
+     * @param instance
+     *            the instance
+     * @param navigator
+     *            the navigator
+     * @param extensionPlan
+     *            the {@link TokenExtensionPlan} holding the extensions to be attached
+     */
+    public AbstractToken(Node startNode,
+                         @Nullable Token parentToken,
+                         AbstractProcessInstance instance,
+                         Navigator navigator,
+                         @Nonnull TokenExtensionPlan extensionPlan) {
+        
+        this.serviceContext = SERVICE_CONTEXT;
+        initialize(startNode, parentToken, instance, navigator, extensionPlan);
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    protected AbstractToken() {
+
+    }
+
+    /**
+     * Initializes the token, when it is created or reused.
+     * 
+     * @param startNode
+     *            the start node
+     * @param parentToken
+     *            the parent token, if any
+     * @param instance
+     *            the instance
+     * @param navigator
+     *            the navigator
+     * @param extensionPlan
+     *            the {@link TokenExtensionPlan} holding the extensions to be attached
+     */
+    private void initialize(Node startNode,
+                            @Nullable Token parentToken,
+                            AbstractProcessInstance instance,
+                            Navigator navigator,
+                            @Nonnull TokenExtensionPlan extensionPlan) {
+
         this.currentNode = startNode;
         this.parentToken = parentToken;
         this.instance = instance;
         this.navigator = navigator;
-        this.id = UUID.randomUUID();
-        this.attributes = new HashMap<String, Object>();
-        
-        //
-        // register default exception chain;
-        // additional extensions may be registered via the ExtensionService
-        //
-        this.exceptionHandler = new LoggerExceptionHandler();
-        this.exceptionHandler.setNext(new InstanceTerminationHandler());
-        
-        this.serviceContext = new ServiceContextImpl();
-        
-        this.splitListener = new LinkedList<SplitListener>();
-        this.joinListener = new LinkedList<JoinListener>();
-        this.creationListener = new LinkedList<TokenCreationListener>();
+        this.id = IdGenerators.nextId();
         
         //
-        // load available extensions, if an ExtensionService is provided
+        // attach the shared extensions, including the default exception chain;
+        // additional extensions may be registered afterwards
         //
-        loadExtensions(extensionService);
+        attachExtensions(extensionPlan);
         
         //
         // the token is nearly finished, but has not yet been INITialized
@@ -129,10 +178,74 @@ implements Token, ServiceContext {
     }
 
     /**
-     * Hidden constructor.
+     * Prepares a recycled token to be used again, as if it was newly created (see {@link TokenPool}). It gets a new ID
+     * and loses all of its variables, attributes and listeners.
+     * 
+     * @param startNode
+     *            the start node
+     * @param parentToken
+     *            the parent token, if any
+     * @param instance
+     *            the instance
+     * @param navigator
+     *            the navigator
+     * @param extensionPlan
+     *            the {@link TokenExtensionPlan} holding the extensions to be attached
      */
-    protected AbstractToken() {
+    protected void reset(Node startNode,
+                         @Nullable Token parentToken,
+                         AbstractProcessInstance instance,
+                         Navigator navigator,
+                         @Nonnull TokenExtensionPlan extensionPlan) {
+
+        this.lastTakenControlFlow = null;
+        this.joinedTokens = null;
+        this.internalVariables = null;
+        this.attributes = null;
+        // the plan might have changed, so the listeners of the previous life are not kept
+        deregisterAllListeners();
+        initialize(startNode, parentToken, instance, navigator, extensionPlan);
+    }
 
+    /**
+     * Checks if the token may be recycled, once it is not needed anymore. This is only the case, if no extension
+     * attached to it could keep a reference to the token.
+     * 
+     * @return true, if the token may be reused
+     */
+    protected boolean isRecyclable() {
+
+        if (!this.splitListener.isEmpty() || !this.joinListener.isEmpty() || !this.creationListener.isEmpty()) {
+            return false;
+        }
+        for (AbstractTokenListener listener : getListeners()) {
+            if (listener.keepsTokenReferences()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Executes a step like {@link #executeStep()} and records how long it took. Subclasses may record the phases of
+     * the step separately.
+     * 
+     * @param profiler
+     *            the profiler
+     * @throws JodaEngineException
+     *             the step failed
+     */
+    public void executeStep(@Nonnull StepProfiler profiler)
+    throws JodaEngineException {
+
+        Node node = currentNode;
+        AbstractProcessInstance stepInstance = instance;
+        long start = System.nanoTime();
+        try {
+            executeStep();
+        } finally {
+            profiler.record(stepInstance, node, StepPhase.STEP, System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -144,7 +257,11 @@ implements Token, ServiceContext {
     @Override
     public void setCurrentNode(Node node) {
 
+        Node previousNode = currentNode;
         currentNode = node;
+        if (instance != null && previousNode != node) {
+            instance.moveToken(this, previousNode, node);
+        }
     }
 
     @Override
@@ -153,6 +270,17 @@ implements Token, ServiceContext {
         return id;
     }
 
+    /**
+     * Gives a token, that was decoded, its id back. Must be called before the token is added to its instance.
+     * 
+     * @param restoredID
+     *            the id the token had, when it was encoded
+     */
+    public void restoreID(@Nonnull UUID restoredID) {
+
+        this.id = restoredID;
+    }
+
     @Override
     public AbstractProcessInstance getInstance() {
 
@@ -217,7 +345,7 @@ implements Token, ServiceContext {
      */
     public void registerSplitListener(@Nonnull Collection<SplitListener> listener) {
         
-        this.splitListener.addAll(listener);
+        this.splitListener = append(this.splitListener, listener);
     }
     
     /**
@@ -228,7 +356,7 @@ implements Token, ServiceContext {
      */
     public void registerJoinListener(@Nonnull Collection<JoinListener> listener) {
         
-        this.joinListener.addAll(listener);
+        this.joinListener = append(this.joinListener, listener);
     }
     
     /**
@@ -239,45 +367,44 @@ implements Token, ServiceContext {
      */
     public void registerCreationListener(@Nonnull Collection<TokenCreationListener> listener) {
         
-        this.creationListener.addAll(listener);
+        this.creationListener = append(this.creationListener, listener);
     }
 
     /**
-     * Registers any available extension suitable for {@link TokenImpl}.
+     * Attaches the extensions of a {@link TokenExtensionPlan}.
      * 
-     * Those include {@link AbstractExceptionHandler} as well as {@link AbstractTokenListener}.
+     * Those include {@link AbstractExceptionHandler} as well as {@link AbstractTokenListener}. The listener collections
+     * and the exception chain of the plan are shared and not copied, until further extensions are registered.
      * 
-     * @param extensionService
-     *            the {@link ExtensionService}, which provides access to the extensions
+     * @param extensionPlan
+     *            the {@link TokenExtensionPlan}, which holds the extensions
      */
-    protected void loadExtensions(@Nullable ExtensionService extensionService) {
+    protected void attachExtensions(@Nonnull TokenExtensionPlan extensionPlan) {
 
-        //
-        // no ExtensionService = no extensions
-        //
-        if (extensionService == null) {
-            return;
-        }
-        
-        //
-        // get fresh listener and handler instances
-        //
-        Collection<AbstractExceptionHandler> tokenExHandler
-            = extensionService.getExtensions(AbstractExceptionHandler.class);
-        Collection<AbstractTokenListener> tokenListener = extensionService.getExtensions(AbstractTokenListener.class);
-        Collection<SplitListener> tokenSplitListener = extensionService.getExtensions(SplitListener.class);
-        Collection<JoinListener> tokenJoinListener = extensionService.getExtensions(JoinListener.class);
-        Collection<TokenCreationListener> tokenCreationListener
-            = extensionService.getExtensions(TokenCreationListener.class);
-        
-        //
-        // register all of them
-        //
-        registerListeners(tokenListener);
-        registerExceptionHandlers(tokenExHandler);
-        registerSplitListener(tokenSplitListener);
-        registerJoinListener(tokenJoinListener);
-        registerCreationListener(tokenCreationListener);
+        this.exceptionHandler = extensionPlan.getExceptionHandler();
+        this.splitListener = extensionPlan.getSplitListeners();
+        this.joinListener = extensionPlan.getJoinListeners();
+        this.creationListener = extensionPlan.getCreationListeners();
+        registerListeners(extensionPlan.getTokenListeners());
+    }
+
+    /**
+     * Copies the listeners and adds further ones, so that shared collections are never modified.
+     * 
+     * @param <IListener>
+     *            the type of the listeners
+     * @param listeners
+     *            the registered listeners
+     * @param additionalListeners
+     *            the listeners to be added
+     * @return a new collection containing all listeners
+     */
+    private static <IListener> Collection<IListener> append(Collection<IListener> listeners,
+                                                            Collection<IListener> additionalListeners) {
+
+        Collection<IListener> allListeners = new ArrayList<IListener>(listeners);
+        allListeners.addAll(additionalListeners);
+        return allListeners;
     }
 
     /**
@@ -339,19 +466,25 @@ implements Token, ServiceContext {
     @Override
     public Map<String, Object> getAttributes() {
         
+        if (this.attributes == null) {
+            this.attributes = new HashMap<String, Object>();
+        }
         return this.attributes;
     }
 
     @Override
     public Object getAttribute(String attributeKey) {
         
+        if (this.attributes == null) {
+            return null;
+        }
         return this.attributes.get(attributeKey);
     }
 
     @Override
     public void setAttribute(String attributeKey, Object attributeValue) {
         
-        this.attributes.put(attributeKey, attributeValue);
+        getAttributes().put(attributeKey, attributeValue);
     }
 
     //
@@ -15,6 +15,9 @@ import org.jodaengine.ext.listener.TokenCreationListener;
 import org.jodaengine.ext.listener.token.ActivityLifecycleChangeEvent;
 import org.jodaengine.ext.service.ExtensionService;
 import org.jodaengine.navigator.Navigator;
+import org.jodaengine.navigator.NavigatorImpl;
+import org.jodaengine.navigator.StepPhase;
+import org.jodaengine.navigator.StepProfiler;
 import org.jodaengine.node.activity.Activity;
 import org.jodaengine.node.activity.ActivityState;
 import org.jodaengine.process.instance.AbstractProcessInstance;
@@ -53,7 +56,7 @@ public class BpmnToken extends AbstractToken {
                      @Nonnull AbstractProcessInstance instance,
                      @Nonnull Navigator navigator) {
         
-        this(startNode, null, null, instance, navigator, null);
+        this(startNode, null, null, instance, navigator, TokenExtensionPlan.EMPTY);
     }
 
     /**
@@ -104,12 +107,82 @@ public class BpmnToken extends AbstractToken {
         changeActivityState(ActivityState.INIT);
     }
 
+    /**
+     * Instantiates a new process {@link TokenImpl} and attaches the extensions of the plan.
+     * 
+     * @param startNode
+     *            the start node
+     * @param lastTakenControlFlow
+     *            the last taken control flow, e.g. after a split
+     * @param parentToken
+     *            the parent token
+     * @param instance
+     *            the instance
+     * @param navigator
+     *            the navigator
+     * @param extensionPlan
+     *            the extensions shared by the tokens of the definition
+     */
+    public BpmnToken(@Nonnull Node startNode,
+                     @Nullable ControlFlow lastTakenControlFlow,
+                     @Nullable Token parentToken,
+                     @Nonnull AbstractProcessInstance instance,
+                     @Nonnull Navigator navigator,
+                     @Nonnull TokenExtensionPlan extensionPlan) {
+        
+        super(startNode, parentToken, instance, navigator, extensionPlan);
+        this.lastTakenControlFlow = lastTakenControlFlow;
+        changeActivityState(ActivityState.INIT);
+    }
+
+    /**
+     * Prepares a recycled token to be used again, as if it was newly created. Only to be called by a
+     * {@link TokenBuilder}, which took the token from its {@link TokenPool}.
+     * 
+     * @param startNode
+     *            the start node
+     * @param lastTakenControlFlow
+     *            the last taken control flow, e.g. after a split
+     * @param parentToken
+     *            the parent token
+     * @param instance
+     *            the instance
+     * @param navigator
+     *            the navigator
+     * @param extensionPlan
+     *            the extensions shared by the tokens of the definition
+     */
+    public void reset(@Nonnull Node startNode,
+                      @Nullable ControlFlow lastTakenControlFlow,
+                      @Nullable Token parentToken,
+                      @Nonnull AbstractProcessInstance instance,
+                      @Nonnull Navigator navigator,
+                      @Nonnull TokenExtensionPlan extensionPlan) {
+        
+        this.currentActivityState = null;
+        reset(startNode, parentToken, instance, navigator, extensionPlan);
+        this.lastTakenControlFlow = lastTakenControlFlow;
+        changeActivityState(ActivityState.INIT);
+    }
+
     @Override
     public ActivityState getCurrentActivityState() {
 
         return currentActivityState;
     }
 
+    /**
+     * Gives a token, that was decoded, its activity state back. Listeners are not notified, as the state did not
+     * change.
+     * 
+     * @param restoredState
+     *            the state the token had, when it was encoded
+     */
+    public void restoreActivityState(@Nonnull ActivityState restoredState) {
+
+        this.currentActivityState = restoredState;
+    }
+
     @Override
     public void suspend() {
 
@@ -132,15 +205,25 @@ public class BpmnToken extends AbstractToken {
     /**
      * Completes the execution of the activity.
      * 
+     * @param profiler
+     *            the profiler recording the phases, or null
+     * @param node
+     *            the node the token was on, when the step started
+     * @param stepInstance
+     *            the instance of the token, when the step started
      * @throws NoValidPathException
      *             thrown if there is no valid path to be executed
      */
-    private void completeExecution()
+    private void completeExecution(@Nullable StepProfiler profiler,
+                                   @Nullable Node node,
+                                   @Nullable AbstractProcessInstance stepInstance)
     throws NoValidPathException {
         
         changeActivityState(ActivityState.COMPLETED);
         
+        long start = startPhase(profiler);
         Collection<Token> splittedTokens = getCurrentNode().getOutgoingBehaviour().split(getJoinedTokens());
+        start = endPhase(profiler, stepInstance, node, StepPhase.SPLIT, start);
         
         //
         // split performed, so tell it all our listeners
@@ -152,6 +235,9 @@ public class BpmnToken extends AbstractToken {
                 this.logger.warn("Execution of split listener " + listener.toString() + " failed", e);
             }
         }
+        if (!this.splitListener.isEmpty()) {
+            endPhase(profiler, stepInstance, node, StepPhase.LISTENERS, start);
+        }
         
         for (Token token : splittedTokens) {
             navigator.addWorkToken(token);
@@ -159,10 +245,54 @@ public class BpmnToken extends AbstractToken {
         
         internalVariables = null;
         joinedTokens = null;
+        
+        //
+        // a token, that did not lead to any further token and left its instance, was consumed by a join or ended
+        // -> nobody needs it anymore
+        //
+        if (splittedTokens.isEmpty() && !instance.isCancelled() && !instance.getAssignedTokens().contains(this)
+            && isRecyclable() && instance.getBuilder() != null) {
+            instance.getBuilder().recycle(this);
+        }
     }
 
     @Override
     public void executeStep()
+    throws JodaEngineException {
+        
+        executeStep(null, this.currentNode);
+    }
+
+    /**
+     * Executes a step and records the time of its phases.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    public void executeStep(@Nonnull StepProfiler profiler)
+    throws JodaEngineException {
+        
+        Node node = this.currentNode;
+        AbstractProcessInstance stepInstance = this.instance;
+        long start = System.nanoTime();
+        try {
+            executeStep(profiler, node);
+        } finally {
+            profiler.record(stepInstance, node, StepPhase.STEP, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Executes a step.
+     * 
+     * @param profiler
+     *            the profiler recording the phases, or null
+     * @param node
+     *            the node the token is on
+     * @throws JodaEngineException
+     *             the step failed
+     */
+    private void executeStep(@Nullable StepProfiler profiler, Node node)
     throws JodaEngineException {
         
         if (this.instance.isCancelled()) {
@@ -172,11 +302,16 @@ public class BpmnToken extends AbstractToken {
             return;
         }
         
+        // the token might be recycled during the step
+        AbstractProcessInstance stepInstance = this.instance;
+        
         changeActivityState(ActivityState.READY);
         
         try {
             
+            long start = startPhase(profiler);
             this.joinedTokens = getCurrentNode().getIncomingBehaviour().join(this);
+            start = endPhase(profiler, stepInstance, node, StepPhase.JOIN, start);
             
             // only execute any activity behaviour, if the join produced tokens.
             if (!joinedTokens.isEmpty()) {
@@ -193,11 +328,15 @@ public class BpmnToken extends AbstractToken {
                         this.logger.warn("Execution of join listener " + listener.toString() + " failed", e);
                     }
                 }
+                if (!this.joinListener.isEmpty()) {
+                    start = endPhase(profiler, stepInstance, node, StepPhase.LISTENERS, start);
+                }
                 
                 changeActivityState(ActivityState.ACTIVE);
 
                 Activity currentActivityBehavior = currentNode.getActivityBehaviour();
                 currentActivityBehavior.execute(this);
+                endPhase(profiler, stepInstance, node, StepPhase.ACTIVITY, start);
 
                 // Aborting the further execution of the process by the token, because it was suspended
                 if (this.currentActivityState == ActivityState.WAITING) {
@@ -205,12 +344,56 @@ public class BpmnToken extends AbstractToken {
                 }
 
             }
-            completeExecution();
+            completeExecution(profiler, node, stepInstance);
         } catch (JodaEngineRuntimeException exception) {
             exceptionHandler.processException(exception, this);
         }
     }
 
+    /**
+     * Starts timing a phase of the step.
+     * 
+     * @param profiler
+     *            the profiler, or null
+     * @return the start time, or 0 if there is no profiler
+     */
+    private static long startPhase(@Nullable StepProfiler profiler) {
+
+        if (profiler == null) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time a phase of the step took.
+     * 
+     * @param profiler
+     *            the profiler, or null
+     * @param stepInstance
+     *            the instance of the token, when the step started
+     * @param node
+     *            the node the token was on, when the step started
+     * @param phase
+     *            the phase
+     * @param start
+     *            the time the phase started
+     * @return the time the phase ended, i.e. the start of the next phase, or 0 if there is no profiler
+     */
+    private static long endPhase(@Nullable StepProfiler profiler,
+                                 @Nullable AbstractProcessInstance stepInstance,
+                                 @Nullable Node node,
+                                 @Nonnull StepPhase phase,
+                                 long start) {
+
+        if (profiler == null) {
+            return 0;
+        }
+        long end = System.nanoTime();
+        profiler.record(stepInstance, node, phase, end - start);
+        return end;
+    }
+
     @Override
     public void cancelExecution() {
 
@@ -232,9 +415,13 @@ public class BpmnToken extends AbstractToken {
         final ActivityState prevState = currentActivityState;
         
         this.currentActivityState = newState;
-        setChanged();
         
-        notifyObservers(new ActivityLifecycleChangeEvent(currentNode, prevState, newState, this));
+        //
+        // state changes are frequent, so the event is only created, if somebody listens
+        //
+        if (hasListeners()) {
+            notifyListeners(new ActivityLifecycleChangeEvent(currentNode, prevState, newState, this));
+        }
     }
 
     @Override
@@ -285,7 +472,8 @@ public class BpmnToken extends AbstractToken {
     }
 
     /**
-     * Resumes the execution of the activity and completes it.
+     * Resumes the execution of the activity and completes it. The phases are profiled like the ones of a step, if the
+     * navigator has got a profiler.
      * 
      * @param resumeObject
      *            - an object that is passed from class that resumes the Token
@@ -294,9 +482,19 @@ public class BpmnToken extends AbstractToken {
      */
     private void resumeAndCompleteExecution(Object resumeObject)
     throws NoValidPathException {
+
+        StepProfiler profiler = null;
+        if (navigator instanceof NavigatorImpl) {
+            profiler = ((NavigatorImpl) navigator).getStepProfiler();
+        }
+        Node node = this.currentNode;
+        AbstractProcessInstance stepInstance = this.instance;
+
         changeActivityState(ActivityState.ACTIVE);
+        long start = startPhase(profiler);
         currentNode.getActivityBehaviour().resume(this, resumeObject);
+        endPhase(profiler, stepInstance, node, StepPhase.ACTIVITY, start);
 
-        completeExecution();
+        completeExecution(profiler, node, stepInstance);
     }
 }
@@ -0,0 +1,182 @@
+package org.jodaengine.process.token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jodaengine.ext.exception.InstanceTerminationHandler;
+import org.jodaengine.ext.exception.LoggerExceptionHandler;
+import org.jodaengine.ext.handler.AbstractExceptionHandler;
+import org.jodaengine.ext.listener.AbstractTokenListener;
+import org.jodaengine.ext.listener.JoinListener;
+import org.jodaengine.ext.listener.SplitListener;
+import org.jodaengine.ext.listener.TokenCreationListener;
+import org.jodaengine.ext.service.ExtensionService;
+
+/**
+ * The Class TokenExtensionPlan. It holds the extensions, which are attached to every {@link AbstractToken}: the
+ * {@link AbstractTokenListener}s, {@link SplitListener}s, {@link JoinListener}s, {@link TokenCreationListener}s and
+ * the chain of {@link AbstractExceptionHandler}s.
+ *
+ * The extensions are instantiated once, when the plan is created, and shared by all tokens using the plan. So creating a
+ * token neither instantiates extensions reflectively nor locks the {@link ExtensionService}. In turn, token extensions
+ * must not keep state of a single token and have to be thread-safe, as several navigator threads use them concurrently.
+ *
+ * A plan is usually created once per process definition, see
+ * {@link org.jodaengine.process.instantiation.pattern.AbstractProcessInstantiationPattern}.
+ */
+public final class TokenExtensionPlan {
+
+    /** The plan without any extension, which only has the default exception handlers. */
+    public static final TokenExtensionPlan EMPTY = new TokenExtensionPlan(null);
+
+    private final ExtensionService extensionService;
+
+    private final long extensionVersion;
+
+    private final List<AbstractTokenListener> tokenListeners;
+
+    private final List<SplitListener> splitListeners;
+
+    private final List<JoinListener> joinListeners;
+
+    private final List<TokenCreationListener> creationListeners;
+
+    private final AbstractExceptionHandler exceptionHandler;
+
+    /**
+     * Instantiates a new plan with the extensions currently provided by the {@link ExtensionService}.
+     *
+     * @param extensionService
+     *            the {@link ExtensionService} to load the extensions from, may be null
+     */
+    private TokenExtensionPlan(@Nullable ExtensionService extensionService) {
+
+        this.extensionService = extensionService;
+        // the version is taken first, so that extensions changed meanwhile are loaded again by the next plan
+        this.extensionVersion = extensionService == null ? 0 : extensionService.getVersion();
+
+        //
+        // default exception chain;
+        // additional handlers are added at the beginning of the chain
+        //
+        AbstractExceptionHandler handler = new LoggerExceptionHandler();
+        handler.setNext(new InstanceTerminationHandler());
+
+        if (extensionService == null) {
+            this.tokenListeners = Collections.emptyList();
+            this.splitListeners = Collections.emptyList();
+            this.joinListeners = Collections.emptyList();
+            this.creationListeners = Collections.emptyList();
+        } else {
+            this.tokenListeners = unmodifiableCopy(extensionService.getExtensions(AbstractTokenListener.class));
+            this.splitListeners = unmodifiableCopy(extensionService.getExtensions(SplitListener.class));
+            this.joinListeners = unmodifiableCopy(extensionService.getExtensions(JoinListener.class));
+            this.creationListeners = unmodifiableCopy(extensionService.getExtensions(TokenCreationListener.class));
+
+            for (AbstractExceptionHandler extensionHandler
+                : extensionService.getExtensions(AbstractExceptionHandler.class)) {
+                extensionHandler.addLast(handler);
+                handler = extensionHandler;
+            }
+        }
+        this.exceptionHandler = handler;
+    }
+
+    /**
+     * Creates a plan with the extensions currently provided by the {@link ExtensionService}.
+     *
+     * @param extensionService
+     *            the {@link ExtensionService}, may be null
+     * @return the plan, {@link #EMPTY} if there is no {@link ExtensionService}
+     */
+    public static @Nonnull TokenExtensionPlan create(@Nullable ExtensionService extensionService) {
+
+        if (extensionService == null) {
+            return EMPTY;
+        }
+        return new TokenExtensionPlan(extensionService);
+    }
+
+    /**
+     * Checks if this plan was created from the current extensions of the given {@link ExtensionService}.
+     *
+     * @param service
+     *            the {@link ExtensionService}, may be null
+     * @return true, if the plan holds the extensions of this service and they did not change since
+     */
+    public boolean isCreatedFrom(@Nullable ExtensionService service) {
+
+        return this.extensionService == service && (service == null || this.extensionVersion == service.getVersion());
+    }
+
+    /**
+     * Gets the token listeners.
+     *
+     * @return an unmodifiable list of the listeners
+     */
+    public @Nonnull List<AbstractTokenListener> getTokenListeners() {
+
+        return tokenListeners;
+    }
+
+    /**
+     * Gets the split listeners.
+     *
+     * @return an unmodifiable list of the listeners
+     */
+    public @Nonnull List<SplitListener> getSplitListeners() {
+
+        return splitListeners;
+    }
+
+    /**
+     * Gets the join listeners.
+     *
+     * @return an unmodifiable list of the listeners
+     */
+    public @Nonnull List<JoinListener> getJoinListeners() {
+
+        return joinListeners;
+    }
+
+    /**
+     * Gets the token creation listeners.
+     *
+     * @return an unmodifiable list of the listeners
+     */
+    public @Nonnull List<TokenCreationListener> getCreationListeners() {
+
+        return creationListeners;
+    }
+
+    /**
+     * Gets the first handler of the shared exception chain. The chain must not be modified.
+     *
+     * @return the first exception handler
+     */
+    public @Nonnull AbstractExceptionHandler getExceptionHandler() {
+
+        return exceptionHandler;
+    }
+
+    /**
+     * Copies the list, so that later changes to the original do not affect the plan.
+     *
+     * @param <T>
+     *            the type of the elements
+     * @param list
+     *            the list
+     * @return an unmodifiable copy
+     */
+    private static <T> List<T> unmodifiableCopy(List<T> list) {
+
+        if (list.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<T>(list));
+    }
+}
@@ -0,0 +1,85 @@
+package org.jodaengine.process.token;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The Class TokenPool. It keeps tokens that are not needed anymore, so that a {@link TokenBuilder} can reuse them
+ * instead of creating new ones. At wide splits, this saves allocating a token with all its fields per outgoing
+ * control flow.
+ *
+ * Tokens are recycled when they were consumed by a join or ended at an end event, i.e. when they produced no further
+ * token and were removed from their instance (see {@link BpmnToken}). Tokens with attached extensions are never
+ * recycled, as the extensions might keep references to them.
+ *
+ * The pool is bounded, so that a burst of ended tokens does not keep memory occupied forever.
+ */
+public class TokenPool {
+
+    /** The default maximum number of pooled tokens. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+
+    private final Deque<AbstractToken> tokens;
+
+    /**
+     * Instantiates a new token pool with the default capacity.
+     */
+    public TokenPool() {
+
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new token pool.
+     *
+     * @param capacity
+     *            the maximum number of pooled tokens
+     */
+    public TokenPool(@Nonnegative int capacity) {
+
+        this.capacity = capacity;
+        this.tokens = new ArrayDeque<AbstractToken>();
+    }
+
+    /**
+     * Takes a token from the pool.
+     *
+     * @return a recycled token, or null if the pool is empty
+     */
+    public synchronized @Nullable AbstractToken poll() {
+
+        return tokens.pollLast();
+    }
+
+    /**
+     * Puts a token, which is not referenced anymore, into the pool.
+     *
+     * @param token
+     *            the token
+     * @return true, if the token was pooled; false, if the pool is full
+     */
+    public synchronized boolean offer(@Nonnull AbstractToken token) {
+
+        if (tokens.size() >= capacity) {
+            return false;
+        }
+        tokens.addLast(token);
+        return true;
+    }
+
+    /**
+     * Gets the number of pooled tokens.
+     *
+     * @return the number of tokens
+     */
+    public synchronized int size() {
+
+        return tokens.size();
+    }
+}
@@ -20,27 +20,10 @@ public class TokenUtil {
      * @param node the node
      * @param instance the instance
      * @return the tokens which are on the node
+     * @see AbstractProcessInstance#getTokensOnNode(Node)
      */
     public List<Token> getTokensWhichAreOnNode(Node node, AbstractProcessInstance instance) {
-        List<Token> tokensOnNode = new ArrayList<Token>();
-        for (Token token : instance.getAssignedTokens()) {
-            if (checkIfTokenIsOnNode(token, node)) {
-                tokensOnNode.add(token);
-            }
-        }
-        return tokensOnNode;
-
-    }
-    
-    /**
-     * Checks, if the token is on the given node.
-     *
-     * @param token the token
-     * @param nodeBeforeControlFlow the node before {@link ControlFlow}
-     * @return true, if successful
-     */
-    private boolean checkIfTokenIsOnNode(Token token, Node nodeBeforeControlFlow) {
-        return token.getCurrentNode() == nodeBeforeControlFlow;
+        return new ArrayList<Token>(instance.getTokensOnNode(node));
     }
 
 }
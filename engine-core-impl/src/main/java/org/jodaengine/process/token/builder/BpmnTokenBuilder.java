@@ -1,5 +1,6 @@
 package org.jodaengine.process.token.builder;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.jodaengine.ext.service.ExtensionService;
@@ -7,9 +8,12 @@ import org.jodaengine.navigator.Navigator;
 import org.jodaengine.process.instance.AbstractProcessInstance;
 import org.jodaengine.process.structure.ControlFlow;
 import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.token.AbstractToken;
 import org.jodaengine.process.token.BpmnToken;
 import org.jodaengine.process.token.Token;
 import org.jodaengine.process.token.TokenBuilder;
+import org.jodaengine.process.token.TokenExtensionPlan;
+import org.jodaengine.process.token.TokenPool;
 
 /**
  * The Class BpmnTokenBuilder. A specific Token Builder which creates BPMN Tokens.
@@ -18,11 +22,14 @@ public class BpmnTokenBuilder implements TokenBuilder {
     
     private Navigator nav;
     private ExtensionService extensionService;
+    private TokenExtensionPlan extensionPlan;
+    private TokenPool tokenPool;
     private Node node;
     private AbstractProcessInstance instance;
     
     /**
      * Instantiates a new {@link BpmnToken} builder.
+     * The extensions are loaded once, when the first token is created, and shared by all created tokens.
      *
      * @param nav the navigator
      * @param extensionService the {@link ExtensionService}
@@ -35,6 +42,31 @@ public class BpmnTokenBuilder implements TokenBuilder {
         this.node = null;
     }
     
+    /**
+     * Sets the {@link TokenExtensionPlan}, whose extensions are attached to the created tokens, instead of loading
+     * them from the {@link ExtensionService}.
+     *
+     * @param extensionPlan the extension plan
+     * @return the builder
+     */
+    public BpmnTokenBuilder setExtensionPlan(@Nonnull TokenExtensionPlan extensionPlan) {
+        
+        this.extensionPlan = extensionPlan;
+        return this;
+    }
+    
+    /**
+     * Sets the {@link TokenPool}, from which recycled tokens are reused. Without a pool, tokens are not recycled.
+     *
+     * @param tokenPool the token pool, may be shared by several builders
+     * @return the builder
+     */
+    public BpmnTokenBuilder setTokenPool(@Nullable TokenPool tokenPool) {
+        
+        this.tokenPool = tokenPool;
+        return this;
+    }
+    
     // TODO Jannik... die Hälfte aller Methoden hier drin ist sinnlos oder wird nur von Tests verwendet.
     //      Alle Getter wegschmeißen.
     
@@ -81,13 +113,34 @@ public class BpmnTokenBuilder implements TokenBuilder {
     public Token create(Node node,
                         ControlFlow lastTakenControlFlow,
                         Token parentToken) {
+        
+        if (extensionPlan == null) {
+            extensionPlan = TokenExtensionPlan.create(extensionService);
+        }
+        
+        if (tokenPool != null) {
+            AbstractToken recycledToken = tokenPool.poll();
+            if (recycledToken instanceof BpmnToken) {
+                ((BpmnToken) recycledToken).reset(node, lastTakenControlFlow, parentToken, instance, nav, extensionPlan);
+                return recycledToken;
+            }
+        }
+        
         return new BpmnToken(
             node,
             lastTakenControlFlow,
             parentToken,
             instance,
             nav,
-            this.extensionService);
+            this.extensionPlan);
+    }
+    
+    @Override
+    public void recycle(Token token) {
+        
+        if (tokenPool != null && token instanceof BpmnToken) {
+            tokenPool.offer((BpmnToken) token);
+        }
     }
 
 }
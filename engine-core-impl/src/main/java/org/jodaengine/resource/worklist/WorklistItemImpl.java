@@ -12,6 +12,7 @@ import org.jodaengine.exception.JodaEngineRuntimeException;
 import org.jodaengine.forms.Form;
 import org.jodaengine.process.token.Token;
 import org.jodaengine.resource.AbstractResource;
+import org.jodaengine.util.IdGenerators;
 
 /**
  * The implementation of the worklist items. They are the tasks a resource has to work on.
@@ -53,6 +54,32 @@ public class WorklistItemImpl extends AbstractWorklistItem {
                             Set<AbstractResource<?>> assignedResources,
                             @Nonnull Token correspondingToken) {
 
+        this(IdGenerators.nextId(), subject, description, form, assignedResources, correspondingToken);
+    }
+
+    /**
+     * Instantiates an item with a given id, e.g. to restore an item that existed before.
+     * 
+     * @param id
+     *            the id of the item
+     * @param description
+     *            the description
+     * @param subject
+     *            the subject of the item
+     * @param form
+     *            the form
+     * @param assignedResources
+     *            the assigned resources
+     * @param correspondingToken
+     *            the corresponding {@link Token} of the task
+     */
+    public WorklistItemImpl(@Nonnull UUID id,
+                            String subject,
+                            String description,
+                            Form form,
+                            Set<AbstractResource<?>> assignedResources,
+                            @Nonnull Token correspondingToken) {
+
         if (correspondingToken == null) {
             throw new NullPointerException("The corresponding Token parameter cannot be null.");
         }
@@ -62,7 +89,7 @@ public class WorklistItemImpl extends AbstractWorklistItem {
         this.form = form;
         this.assignedResources = assignedResources;
         this.correspondingToken = correspondingToken;
-        this.id = UUID.randomUUID();
+        this.id = id;
         this.setStatus(WorklistItemState.CREATED);
     }
 
@@ -16,9 +16,11 @@ import org.jodaengine.exception.DefinitionNotFoundException;
 import org.jodaengine.exception.UnsupportedDefinitionException;
 import org.jodaengine.navigator.Navigator;
 import org.jodaengine.navigator.NavigatorStatistic;
+import org.jodaengine.navigator.StepProfile;
 import org.jodaengine.navigator.schedule.Scheduler;
 import org.jodaengine.process.definition.ProcessDefinitionID;
 import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstanceSummary;
 import org.jodaengine.process.token.Token;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +57,19 @@ public class NavigatorWebService implements Navigator {
         return this.navigatorService.getStatistics();
     }
 
+    /**
+     * Gets the latencies of the steps of the tokens per node and phase. They are only recorded, if the navigator has
+     * got a step profiler.
+     * 
+     * @return the step profiles, empty if the steps are not profiled
+     */
+    @Path("/status/profile")
+    @GET
+    public List<StepProfile> getStepProfiles() {
+
+        return this.navigatorService.getStatistics().getStepProfiles();
+    }
+
     @Override
     public AbstractProcessInstance startProcessInstance(ProcessDefinitionID definitionId)
     throws DefinitionNotFoundException, DefinitionNotActivatedException, DefinitionNotActivatedException, UnsupportedDefinitionException {
@@ -106,6 +121,54 @@ public class NavigatorWebService implements Navigator {
 
         return this.navigatorService.getEndedInstances();
     }
+
+    @Path("/status/finished-instance-summaries")
+    @GET
+    @Override
+    public List<ProcessInstanceSummary> getEndedInstanceSummaries() {
+
+        return this.navigatorService.getEndedInstanceSummaries();
+    }
+
+    @Override
+    public int getNumberOfRunningInstances(ProcessDefinitionID definitionID) {
+
+        return this.navigatorService.getNumberOfRunningInstances(definitionID);
+    }
+
+    /**
+     * Gets the number of running instances of the given process definition.
+     * 
+     * @param definitionID
+     *            the id of the process definition
+     * @return the number of running instances
+     */
+    @Path("/status/process-definitions/{definitionId}/running-instances")
+    @GET
+    public int getNumberOfRunningInstances(@PathParam("definitionId") String definitionID) {
+
+        return getNumberOfRunningInstances(ProcessDefinitionID.fromString(definitionID));
+    }
+
+    @Override
+    public int getNumberOfEndedInstances(ProcessDefinitionID definitionID) {
+
+        return this.navigatorService.getNumberOfEndedInstances(definitionID);
+    }
+
+    /**
+     * Gets the number of ended instances of the given process definition.
+     * 
+     * @param definitionID
+     *            the id of the process definition
+     * @return the number of ended instances
+     */
+    @Path("/status/process-definitions/{definitionId}/finished-instances")
+    @GET
+    public int getNumberOfEndedInstances(@PathParam("definitionId") String definitionID) {
+
+        return getNumberOfEndedInstances(ProcessDefinitionID.fromString(definitionID));
+    }
     
     @Override
     public boolean isRunning() {
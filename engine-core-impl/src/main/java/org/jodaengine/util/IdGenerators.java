@@ -0,0 +1,54 @@
+package org.jodaengine.util;
+
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The Class IdGenerators. It provides the {@link IdGenerator} used for tokens, process instances, worklist items and
+ * nodes. These are created in many places without access to the engine's services, so the generator is kept
+ * statically. By default, a {@link TimeOrderedIdGenerator} with a random node ID is used.
+ */
+public final class IdGenerators {
+
+    private static volatile IdGenerator generator = new TimeOrderedIdGenerator();
+
+    /**
+     * Hidden constructor.
+     */
+    private IdGenerators() { }
+
+    /**
+     * Generates a new ID with the current generator.
+     *
+     * @return the ID
+     */
+    public static @Nonnull UUID nextId() {
+
+        return generator.nextId();
+    }
+
+    /**
+     * Gets the current generator.
+     *
+     * @return the generator
+     */
+    public static @Nonnull IdGenerator getGenerator() {
+
+        return generator;
+    }
+
+    /**
+     * Replaces the generator, e.g. to set the node ID of an engine in a cluster.
+     *
+     * @param idGenerator
+     *            the new generator
+     */
+    public static void setGenerator(@Nonnull IdGenerator idGenerator) {
+
+        if (idGenerator == null) {
+            throw new NullPointerException("The ID generator cannot be null.");
+        }
+        generator = idGenerator;
+    }
+}
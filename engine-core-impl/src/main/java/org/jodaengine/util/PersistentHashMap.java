@@ -0,0 +1,593 @@
+package org.jodaengine.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The Class PersistentHashMap is an immutable hash map. {@link #plus(Object, Object)} and {@link #minus(Object)} do
+ * not change the map, but return a new one that shares all unchanged parts with it. So keeping an old version, e.g. as
+ * a snapshot for a reader, costs nothing, while a change only copies the O(log n) nodes on the path to the key.
+ *
+ * It is a hash array mapped trie: each level consumes five bits of the key's hash and keeps only the occupied of its
+ * 32 branches in an array. Null keys and values are not supported; putting a null value removes the key.
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS_PER_LEVEL = 5;
+
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+    private static final int HASH_SPREAD_SHIFT = 16;
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY = new PersistentHashMap(null, 0);
+
+    private final TrieNode root;
+
+    private final int size;
+
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Instantiates a new persistent hash map.
+     *
+     * @param root
+     *            the root node, null for the empty map
+     * @param size
+     *            the number of entries
+     */
+    private PersistentHashMap(TrieNode root, int size) {
+
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Gets the empty map.
+     *
+     * @param <K>
+     *            the key type
+     * @param <V>
+     *            the value type
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+
+        return EMPTY;
+    }
+
+    /**
+     * Returns a map, which additionally maps the key to the value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value; null removes the key
+     * @return the new map, or this map if nothing changed
+     */
+    public @Nonnull PersistentHashMap<K, V> plus(@Nonnull K key, @Nullable V value) {
+
+        if (value == null) {
+            return minus(key);
+        }
+
+        boolean[] added = new boolean[1];
+        TrieNode currentRoot = root;
+        if (currentRoot == null) {
+            currentRoot = BitmapNode.EMPTY;
+        }
+        TrieNode newRoot = currentRoot.assoc(0, hash(key), key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        int newSize = size;
+        if (added[0]) {
+            newSize++;
+        }
+        return new PersistentHashMap<K, V>(newRoot, newSize);
+    }
+
+    /**
+     * Returns a map without the key.
+     *
+     * @param key
+     *            the key
+     * @return the new map, or this map if it did not contain the key
+     */
+    public @Nonnull PersistentHashMap<K, V> minus(@Nonnull Object key) {
+
+        if (root == null) {
+            return this;
+        }
+        TrieNode newRoot = root.without(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        return new PersistentHashMap<K, V>(newRoot, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+
+        if (root == null || key == null) {
+            return null;
+        }
+        return (V) root.find(0, hash(key), key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+
+                    List<Map.Entry<Object, Object>> entries = new ArrayList<Map.Entry<Object, Object>>(size);
+                    if (root != null) {
+                        root.collect(entries);
+                    }
+                    return new ReadOnlyIterator<K, V>(entries.iterator());
+                }
+
+                @Override
+                public int size() {
+
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Spreads the higher bits of the hash code, as only the lower ones select the branches of the first levels.
+     *
+     * @param key
+     *            the key
+     * @return the hash
+     */
+    private static int hash(Object key) {
+
+        int hash = key.hashCode();
+        return hash ^ (hash >>> HASH_SPREAD_SHIFT);
+    }
+
+    /**
+     * Gets the bit of the branch, which the hash selects on a level.
+     *
+     * @param hash
+     *            the hash
+     * @param shift
+     *            the number of hash bits consumed by the levels above
+     * @return the bit
+     */
+    private static int bit(int hash, int shift) {
+
+        return 1 << ((hash >>> shift) & LEVEL_MASK);
+    }
+
+    /**
+     * A node of the trie. Nodes are never changed after they were created.
+     */
+    private interface TrieNode {
+
+        /**
+         * Finds the value of a key.
+         *
+         * @param shift
+         *            the number of hash bits consumed by the levels above
+         * @param hash
+         *            the hash of the key
+         * @param key
+         *            the key
+         * @return the value, or null
+         */
+        Object find(int shift, int hash, Object key);
+
+        /**
+         * Returns a node, which additionally maps the key to the value.
+         *
+         * @param shift
+         *            the number of hash bits consumed by the levels above
+         * @param hash
+         *            the hash of the key
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param added
+         *            set to true, if the key was not contained before
+         * @return the new node, or this node if nothing changed
+         */
+        TrieNode assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * Returns a node without the key.
+         *
+         * @param shift
+         *            the number of hash bits consumed by the levels above
+         * @param hash
+         *            the hash of the key
+         * @param key
+         *            the key
+         * @return the new node, this node if it did not contain the key, or null if the node became empty
+         */
+        TrieNode without(int shift, int hash, Object key);
+
+        /**
+         * Adds all entries of this node and its children to the list.
+         *
+         * @param entries
+         *            the list
+         */
+        void collect(List<Map.Entry<Object, Object>> entries);
+    }
+
+    /**
+     * A node with up to 32 branches. Its array holds a key and a value per occupied branch, or null and a child node.
+     */
+    private static final class BitmapNode implements TrieNode {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        private final Object[] array;
+
+        /**
+         * Instantiates a new bitmap node.
+         *
+         * @param bitmap
+         *            the occupied branches
+         * @param array
+         *            the keys and values or child nodes
+         */
+        private BitmapNode(int bitmap, Object[] array) {
+
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        /**
+         * Gets the position of a branch in the array.
+         *
+         * @param bit
+         *            the bit of the branch
+         * @return the index of its key
+         */
+        private int index(int bit) {
+
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int index = index(bit);
+            Object storedKey = array[index];
+            if (storedKey == null) {
+                return ((TrieNode) array[index + 1]).find(shift + BITS_PER_LEVEL, hash, key);
+            }
+            if (key.equals(storedKey)) {
+                return array[index + 1];
+            }
+            return null;
+        }
+
+        @Override
+        public TrieNode assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+
+            int bit = bit(hash, shift);
+            int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = key;
+                newArray[index + 1] = value;
+                System.arraycopy(array, index, newArray, index + 2, array.length - index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object storedKey = array[index];
+            Object storedValue = array[index + 1];
+            if (storedKey == null) {
+                TrieNode child = (TrieNode) storedValue;
+                TrieNode newChild = child.assoc(shift + BITS_PER_LEVEL, hash, key, value, added);
+                if (newChild == child) {
+                    return this;
+                }
+                return copyAndSet(index, null, newChild);
+            }
+            if (key.equals(storedKey)) {
+                if (storedValue == value) {
+                    return this;
+                }
+                return copyAndSet(index, storedKey, value);
+            }
+
+            // two keys share the branch, so it becomes a child node holding both
+            added[0] = true;
+            TrieNode child = createNode(shift + BITS_PER_LEVEL, storedKey, storedValue, hash, key, value);
+            return copyAndSet(index, null, child);
+        }
+
+        @Override
+        public TrieNode without(int shift, int hash, Object key) {
+
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object storedKey = array[index];
+
+            if (storedKey == null) {
+                TrieNode child = (TrieNode) array[index + 1];
+                TrieNode newChild = child.without(shift + BITS_PER_LEVEL, hash, key);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild != null) {
+                    return copyAndSet(index, null, newChild);
+                }
+            } else if (!key.equals(storedKey)) {
+                return this;
+            }
+
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return new BitmapNode(bitmap ^ bit, newArray);
+        }
+
+        @Override
+        public void collect(List<Map.Entry<Object, Object>> entries) {
+
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((TrieNode) array[i + 1]).collect(entries);
+                } else {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<Object, Object>(array[i], array[i + 1]));
+                }
+            }
+        }
+
+        /**
+         * Copies this node with one branch replaced.
+         *
+         * @param index
+         *            the index of the branch's key
+         * @param key
+         *            the new key, or null for a child node
+         * @param value
+         *            the new value or child node
+         * @return the new node
+         */
+        private BitmapNode copyAndSet(int index, Object key, Object value) {
+
+            Object[] newArray = array.clone();
+            newArray[index] = key;
+            newArray[index + 1] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        /**
+         * Creates a node holding two keys.
+         *
+         * @param shift
+         *            the number of hash bits consumed by the levels above
+         * @param key1
+         *            the first key
+         * @param value1
+         *            the first value
+         * @param hash2
+         *            the hash of the second key
+         * @param key2
+         *            the second key
+         * @param value2
+         *            the second value
+         * @return the node
+         */
+        private static TrieNode createNode(int shift, Object key1, Object value1, int hash2, Object key2,
+                                           Object value2) {
+
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            boolean[] added = new boolean[1];
+            return EMPTY.assoc(shift, hash1, key1, value1, added).assoc(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * A node holding keys that have the same hash.
+     */
+    private static final class CollisionNode implements TrieNode {
+
+        private final int hash;
+
+        private final Object[] array;
+
+        /**
+         * Instantiates a new collision node.
+         *
+         * @param hash
+         *            the hash of all keys
+         * @param array
+         *            the keys and values
+         */
+        private CollisionNode(int hash, Object[] array) {
+
+            this.hash = hash;
+            this.array = array;
+        }
+
+        /**
+         * Gets the position of a key.
+         *
+         * @param key
+         *            the key
+         * @return the index of the key, or -1
+         */
+        private int indexOf(Object key) {
+
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+
+            if (hash != this.hash) {
+                return null;
+            }
+            int index = indexOf(key);
+            if (index < 0) {
+                return null;
+            }
+            return array[index + 1];
+        }
+
+        @Override
+        public TrieNode assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+
+            if (hash != this.hash) {
+                // the new key differs in its hash, so this node moves one level down
+                TrieNode parent = new BitmapNode(bit(this.hash, shift), new Object[] {null, this});
+                return parent.assoc(shift, hash, key, value, added);
+            }
+
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (array[index + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public TrieNode without(int shift, int hash, Object key) {
+
+            if (hash != this.hash) {
+                return this;
+            }
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public void collect(List<Map.Entry<Object, Object>> entries) {
+
+            for (int i = 0; i < array.length; i += 2) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<Object, Object>(array[i], array[i + 1]));
+            }
+        }
+    }
+
+    /**
+     * An iterator over the collected entries, which does not support removing.
+     *
+     * @param <K>
+     *            the key type
+     * @param <V>
+     *            the value type
+     */
+    private static final class ReadOnlyIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+        private final Iterator<Map.Entry<Object, Object>> entries;
+
+        /**
+         * Instantiates a new iterator.
+         *
+         * @param entries
+         *            the entries
+         */
+        private ReadOnlyIterator(Iterator<Map.Entry<Object, Object>> entries) {
+
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            return entries.hasNext();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Map.Entry<K, V> next() {
+
+            return (Map.Entry<K, V>) (Map.Entry<?, ?>) entries.next();
+        }
+
+        @Override
+        public void remove() {
+
+            throw new UnsupportedOperationException("The map is immutable.");
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.jodaengine.util;
+
+import java.util.UUID;
+
+/**
+ * The Class RandomIdGenerator. It generates random UUIDs via {@link UUID#randomUUID()}, as the engine did before the
+ * {@link TimeOrderedIdGenerator} was introduced. The IDs are not ordered and generating them may be slow, as the
+ * underlying {@link java.security.SecureRandom} is shared and may wait for entropy.
+ */
+public class RandomIdGenerator implements IdGenerator {
+
+    @Override
+    public UUID nextId() {
+
+        return UUID.randomUUID();
+    }
+}
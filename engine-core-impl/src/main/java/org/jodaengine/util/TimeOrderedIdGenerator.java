@@ -0,0 +1,125 @@
+package org.jodaengine.util;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+
+/**
+ * The Class TimeOrderedIdGenerator. It generates version 7 UUIDs, which start with the time of their creation and
+ * therefore sort in the order they were created.
+ *
+ * The 128 bits are used as follows:
+ * <ul>
+ * <li>48 bits: the milliseconds since the epoch</li>
+ * <li>4 bits: the version (7)</li>
+ * <li>12 bits: a sequence number for IDs generated within the same millisecond</li>
+ * <li>2 bits: the variant (IETF)</li>
+ * <li>16 bits: the node ID, which distinguishes engines sharing their IDs</li>
+ * <li>46 bits: chosen randomly, when the generator is created</li>
+ * </ul>
+ * The time and the sequence number are kept in a single {@link AtomicLong}, so IDs are generated without locking and
+ * without consulting a {@link SecureRandom} each time, unlike {@link UUID#randomUUID()}. If more than 4096 IDs are
+ * generated within a millisecond, the sequence carries over into the time, so the IDs stay unique and ordered.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+    /** The largest node ID. */
+    public static final int MAX_NODE_ID = 0xFFFF;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int VERSION_BITS = 4;
+
+    private static final long VERSION = 0x7L << SEQUENCE_BITS;
+
+    private static final long VARIANT = 0x8000000000000000L;
+
+    private static final int RANDOM_BITS = 46;
+
+    private static final long RANDOM_MASK = (1L << RANDOM_BITS) - 1;
+
+    private final int nodeId;
+
+    private final long leastSignificantBits;
+
+    /** The time in milliseconds followed by the sequence number of the last generated ID. */
+    private final AtomicLong lastTimeAndSequence;
+
+    /**
+     * Instantiates a new generator with a random node ID.
+     */
+    public TimeOrderedIdGenerator() {
+
+        this(new SecureRandom().nextInt(MAX_NODE_ID + 1));
+    }
+
+    /**
+     * Instantiates a new generator.
+     *
+     * @param nodeId
+     *            the node ID between 0 and {@value #MAX_NODE_ID}, which should be different for engines sharing IDs
+     */
+    public TimeOrderedIdGenerator(@Nonnegative int nodeId) {
+
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("The node ID has to be between 0 and " + MAX_NODE_ID + ".");
+        }
+
+        this.nodeId = nodeId;
+        this.leastSignificantBits = VARIANT | ((long) nodeId << RANDOM_BITS)
+            | (new SecureRandom().nextLong() & RANDOM_MASK);
+        this.lastTimeAndSequence = new AtomicLong();
+    }
+
+    @Override
+    public UUID nextId() {
+
+        long now = currentTimeMillis() << SEQUENCE_BITS;
+        long last;
+        long next;
+        do {
+            last = lastTimeAndSequence.get();
+            next = Math.max(now, last + 1);
+        } while (!lastTimeAndSequence.compareAndSet(last, next));
+
+        long mostSignificantBits = ((next >>> SEQUENCE_BITS) << (SEQUENCE_BITS + VERSION_BITS)) | VERSION
+            | (next & SEQUENCE_MASK);
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * Gets the node ID.
+     *
+     * @return the node ID
+     */
+    public int getNodeId() {
+
+        return nodeId;
+    }
+
+    /**
+     * Gets the time of creation encoded in an ID generated by this class.
+     *
+     * @param id
+     *            the ID
+     * @return the milliseconds since the epoch
+     */
+    public static long getTimestamp(UUID id) {
+
+        return id.getMostSignificantBits() >>> (SEQUENCE_BITS + VERSION_BITS);
+    }
+
+    /**
+     * Gets the current time. Tests may override it.
+     *
+     * @return the milliseconds since the epoch
+     */
+    protected long currentTimeMillis() {
+
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,111 @@
+package org.jodaengine.ext.listener.token;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Observable;
+
+import org.jodaengine.exception.JodaEngineException;
+import org.jodaengine.ext.listener.AbstractTokenListener;
+import org.jodaengine.node.activity.custom.AutomatedDummyActivity;
+import org.jodaengine.node.incomingbehaviour.SimpleJoinBehaviour;
+import org.jodaengine.node.outgoingbehaviour.TakeAllSplitBehaviour;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.structure.NodeImpl;
+import org.jodaengine.process.token.AbstractToken;
+import org.jodaengine.process.token.BpmnToken;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.mockito.InOrder;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests registering and notifying listeners of an {@link org.jodaengine.ext.AbstractListenable}.
+ */
+public class ListenerDispatchTest {
+
+    private static final int STATE_CHANGES_PER_STEP = 3;
+
+    private AbstractToken token = null;
+
+    /**
+     * Creates a token without any listener.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        this.token = new BpmnToken(
+            new NodeImpl(
+                new AutomatedDummyActivity("s.out"),
+                new SimpleJoinBehaviour(),
+                new TakeAllSplitBehaviour()),
+            new ProcessInstance(null, mock(BpmnTokenBuilder.class)),
+            null,
+            null);
+    }
+
+    /**
+     * Test that listeners are notified in the order they were registered, and only once each.
+     *
+     * @throws JodaEngineException
+     *             test fails
+     */
+    @Test
+    public void testListenersAreNotifiedOnceInOrder()
+    throws JodaEngineException {
+
+        AbstractTokenListener first = mock(AbstractTokenListener.class);
+        AbstractTokenListener second = mock(AbstractTokenListener.class);
+        this.token.registerListeners(Arrays.asList(first, second));
+        this.token.registerListener(first);
+
+        Assert.assertEquals(this.token.getListeners().size(), 2);
+
+        token.executeStep();
+
+        verify(first, times(STATE_CHANGES_PER_STEP)).update(eq(this.token), any());
+        verify(second, times(STATE_CHANGES_PER_STEP)).update(eq(this.token), any());
+        InOrder order = inOrder(first, second);
+        order.verify(first).update(any(Observable.class), any());
+        order.verify(second).update(any(Observable.class), any());
+    }
+
+    /**
+     * Test that a deregistered listener is not notified anymore.
+     *
+     * @throws JodaEngineException
+     *             test fails
+     */
+    @Test
+    public void testDeregisteredListenerIsNotNotified()
+    throws JodaEngineException {
+
+        AbstractTokenListener removed = mock(AbstractTokenListener.class);
+        AbstractTokenListener kept = mock(AbstractTokenListener.class);
+        this.token.registerListener(removed);
+        this.token.registerListener(kept);
+        this.token.deregisterListener(removed);
+
+        token.executeStep();
+
+        verify(removed, never()).update(any(Observable.class), any());
+        verify(kept, times(STATE_CHANGES_PER_STEP)).update(eq(this.token), any());
+        Assert.assertEquals(this.token.getListeners().size(), 1);
+    }
+
+    /**
+     * Test that the listeners cannot be changed via the returned collection.
+     */
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testListenersCannotBeModifiedDirectly() {
+
+        this.token.getListeners().add(mock(AbstractTokenListener.class));
+    }
+}
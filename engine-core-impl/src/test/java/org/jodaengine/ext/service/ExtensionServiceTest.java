@@ -146,6 +146,20 @@ public class ExtensionServiceTest extends AbstractJodaEngineTest {
         Assert.assertTrue(listenerAvailable);
     }
     
+    /**
+     * This test checks that rebuilding the list of available extensions
+     * changes the version of the extensions.
+     */
+    @Test
+    public void testRebuildChangesVersion() {
+        
+        long version = this.extensionService.getVersion();
+        
+        this.extensionService.rebuildExtensionDatabase(BpmnXmlParseListener.class);
+        
+        Assert.assertTrue(this.extensionService.getVersion() != version);
+    }
+    
     /**
      * This test checks that after rebuilding the list of available extensions
      * any extension, which existed before will still be available.
@@ -0,0 +1,177 @@
+package org.jodaengine.navigator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstanceSummary;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link FinishedInstanceRetention}.
+ */
+public class FinishedInstanceRetentionTest {
+
+    private static final int MAX_AGE = 50;
+
+    private static final int TIMEOUT = 10;
+
+    private FinishedInstanceRetention retention = null;
+
+    private FinishedInstanceArchive archive = null;
+
+    /**
+     * Creates a retention with an archive.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        retention = new FinishedInstanceRetention();
+        archive = Mockito.mock(FinishedInstanceArchive.class);
+        retention.setArchive(archive);
+    }
+
+    /**
+     * Creates a process instance with a random id.
+     *
+     * @return the process instance
+     */
+    private AbstractProcessInstance mockInstance() {
+
+        AbstractProcessInstance instance = Mockito.mock(AbstractProcessInstance.class);
+        Mockito.when(instance.getID()).thenReturn(UUID.randomUUID());
+        return instance;
+    }
+
+    /**
+     * Test that all instances are kept by default.
+     */
+    @Test
+    public void testUnlimitedByDefault() {
+
+        AbstractProcessInstance first = mockInstance();
+        AbstractProcessInstance second = mockInstance();
+        retention.add(first);
+        retention.add(second);
+
+        assertEquals(retention.getInstances(), Arrays.asList(first, second));
+        assertTrue(retention.getSummaries().isEmpty(), "Nothing should have been evicted.");
+        Mockito.verifyZeroInteractions(archive);
+    }
+
+    /**
+     * Test that the oldest instance is evicted, archived and summarized, if there are too many.
+     */
+    @Test
+    public void testOldestInstanceIsEvicted() {
+
+        retention.setMaxNumberOfInstances(1);
+        AbstractProcessInstance first = mockInstance();
+        AbstractProcessInstance second = mockInstance();
+        retention.add(first);
+        retention.add(second);
+
+        assertEquals(retention.getInstances(), Arrays.asList(second));
+        assertEquals(retention.getNumberOfFinishedInstances(), 2, "The evicted instance is still counted.");
+        Mockito.verify(archive).archive(first);
+
+        List<ProcessInstanceSummary> summaries = retention.getSummaries();
+        assertEquals(summaries.size(), 1);
+        assertEquals(summaries.get(0).getID(), first.getID());
+    }
+
+    /**
+     * Test that a thread, whose evicted instance is archived slowly, does not block other threads adding instances.
+     *
+     * @throws InterruptedException
+     *             test fails
+     */
+    @Test
+    public void testSlowArchiveDoesNotBlockOtherThreads()
+    throws InterruptedException {
+
+        retention.setMaxNumberOfInstances(1);
+        AbstractProcessInstance first = mockInstance();
+        final AbstractProcessInstance second = mockInstance();
+        AbstractProcessInstance third = mockInstance();
+        final CountDownLatch archiving = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            throws InterruptedException {
+
+                archiving.countDown();
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(archive).archive(first);
+
+        retention.add(first);
+        Thread archivingThread = new Thread() {
+            @Override
+            public void run() {
+
+                retention.add(second);
+            }
+        };
+        archivingThread.start();
+        assertTrue(archiving.await(TIMEOUT, TimeUnit.SECONDS), "The first instance should be archived.");
+
+        retention.add(third);
+        assertTrue(archivingThread.isAlive(), "The other thread should still archive the first instance.");
+        assertEquals(retention.getInstances(), Arrays.asList(third));
+        Mockito.verify(archive).archive(second);
+
+        release.countDown();
+        archivingThread.join();
+    }
+
+    /**
+     * Test that instances are evicted after the maximum age.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testExpiredInstancesAreEvicted()
+    throws InterruptedException {
+
+        retention.setMaxAge(MAX_AGE);
+        AbstractProcessInstance instance = mockInstance();
+        retention.add(instance);
+        assertEquals(retention.getNumberOfRetainedInstances(), 1);
+
+        Thread.sleep(2 * MAX_AGE);
+        assertTrue(retention.getInstances().isEmpty(), "The instance should have expired.");
+        Mockito.verify(archive).archive(instance);
+    }
+
+    /**
+     * Test that the oldest summaries are dropped, if there are too many.
+     */
+    @Test
+    public void testNumberOfSummariesIsLimited() {
+
+        retention.setMaxNumberOfInstances(1);
+        retention.setMaxNumberOfSummaries(1);
+        retention.add(mockInstance());
+        retention.add(mockInstance());
+        AbstractProcessInstance third = mockInstance();
+        retention.add(third);
+
+        List<ProcessInstanceSummary> summaries = retention.getSummaries();
+        assertEquals(summaries.size(), 1);
+        assertEquals(retention.getInstances(), Arrays.asList(third));
+    }
+}
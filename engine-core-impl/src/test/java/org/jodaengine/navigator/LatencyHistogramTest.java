@@ -0,0 +1,70 @@
+package org.jodaengine.navigator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    private static final int NUMBER_OF_VALUES = 1000;
+
+    private static final double MAX_RELATIVE_ERROR = 1.0 / 16;
+
+    /**
+     * Test that every value falls into a bucket, whose bounds are close to it.
+     */
+    @Test
+    public void testBucketBounds() {
+
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.getBucket(value);
+            long upperBound = LatencyHistogram.getUpperBound(bucket);
+            assertTrue(upperBound >= value, "The bucket of " + value + " ends at " + upperBound);
+            assertTrue(upperBound - value <= value * MAX_RELATIVE_ERROR, "The bucket of " + value + " is too wide");
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.getUpperBound(bucket - 1) < value);
+            }
+        }
+    }
+
+    /**
+     * Test the statistics of uniformly distributed latencies.
+     */
+    @Test
+    public void testPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= NUMBER_OF_VALUES; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(histogram.getCount(), NUMBER_OF_VALUES);
+        assertEquals(histogram.getTotalTime(), NUMBER_OF_VALUES * (NUMBER_OF_VALUES + 1) / 2);
+        assertEquals(histogram.getMinTime(), 1);
+        assertEquals(histogram.getMaxTime(), NUMBER_OF_VALUES);
+        assertEquals(histogram.getTimeAtPercentile(100), NUMBER_OF_VALUES);
+
+        long median = histogram.getTimeAtPercentile(50);
+        assertTrue(median >= 500 && median <= 500 * (1 + MAX_RELATIVE_ERROR), "The median was " + median);
+        long percentile99 = histogram.getTimeAtPercentile(99);
+        assertTrue(percentile99 >= 990 && percentile99 <= NUMBER_OF_VALUES, "The 99th percentile was " + percentile99);
+    }
+
+    /**
+     * Test that an empty histogram reports zeros.
+     */
+    @Test
+    public void testEmpty() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(histogram.getCount(), 0);
+        assertEquals(histogram.getMinTime(), 0);
+        assertEquals(histogram.getTimeAtPercentile(50), 0);
+    }
+}
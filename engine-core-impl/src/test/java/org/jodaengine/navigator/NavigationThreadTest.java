@@ -0,0 +1,105 @@
+package org.jodaengine.navigator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jodaengine.bootstrap.JodaEngine;
+import org.jodaengine.navigator.schedule.FIFOScheduler;
+import org.jodaengine.navigator.schedule.Scheduler;
+import org.jodaengine.process.token.Token;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the run-to-completion mode of the {@link NavigationThread}.
+ */
+public class NavigationThreadTest {
+
+    private static final int NUMBER_OF_STEPS = 10;
+
+    private static final int BUDGET = 3;
+
+    private static final int TIMEOUT = 10000;
+
+    private static final int POLLING_TIME = 10;
+
+    private NavigatorImpl navigator = null;
+
+    private Scheduler scheduler = null;
+
+    /**
+     * Creates a navigator with a single, blocking thread.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        scheduler = Mockito.spy(new FIFOScheduler());
+        navigator = new NavigatorImpl(null, null, scheduler, 1);
+        navigator.setBlockingRetrieval(true);
+        navigator.setRunToCompletionBudget(BUDGET);
+        navigator.start(new JodaEngine());
+    }
+
+    /**
+     * Stops the navigator.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        navigator.stop();
+    }
+
+    /**
+     * Test that a token moving on is executed by the thread itself, until the budget is used up.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testStraightLineSuccessorsAreExecutedLocally()
+    throws Exception {
+
+        final Token token = Mockito.mock(Token.class);
+        final AtomicInteger executedSteps = new AtomicInteger(0);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+
+                if (executedSteps.incrementAndGet() < NUMBER_OF_STEPS) {
+                    navigator.addWorkToken(token);
+                }
+                return null;
+            }
+        }).when(token).executeStep();
+
+        navigator.startArbitraryInstance(token);
+        waitUntilIdle();
+
+        assertEquals(executedSteps.get(), NUMBER_OF_STEPS);
+
+        // the first submission, and one after every fourth step, as the budget is three successors
+        Mockito.verify(scheduler, Mockito.times(NUMBER_OF_STEPS / (BUDGET + 1) + 1)).submit(token);
+    }
+
+    /**
+     * Waits until the navigator has executed all tokens.
+     * 
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    private void waitUntilIdle()
+    throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!navigator.isIdle() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(POLLING_TIME);
+        }
+        assertTrue(navigator.isIdle(), "The navigator should have executed all tokens.");
+    }
+}
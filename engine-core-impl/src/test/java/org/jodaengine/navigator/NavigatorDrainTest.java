@@ -0,0 +1,307 @@
+package org.jodaengine.navigator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jodaengine.bootstrap.JodaEngine;
+import org.jodaengine.exception.ServiceUnavailableException;
+import org.jodaengine.ext.listener.AbstractNavigatorListener;
+import org.jodaengine.navigator.schedule.FIFOScheduler;
+import org.jodaengine.navigator.schedule.PartitionedScheduler;
+import org.jodaengine.navigator.schedule.Scheduler;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.token.Token;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.jodaengine.util.mock.MockUtils;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests draining the {@link NavigatorImpl}.
+ */
+public class NavigatorDrainTest {
+
+    private static final int NUMBER_OF_STEPS = 3;
+
+    private static final int STEP_TIME = 50;
+
+    private static final int TIMEOUT = 10;
+
+    private static final int SHORT_TIMEOUT = 100;
+
+    private NavigatorImpl navigator = null;
+
+    private CountDownLatch release = null;
+
+    /**
+     * Creates a navigator with a single, blocking thread.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        navigator = startNavigator(new FIFOScheduler(), null);
+        release = new CountDownLatch(1);
+    }
+
+    /**
+     * Releases blocked steps and stops the navigator.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        release.countDown();
+        navigator.stop();
+    }
+
+    /**
+     * Test that the tokens of running instances are executed, but new instances are rejected.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testDrainExecutesRemainingTokens()
+    throws Exception {
+
+        final Token token = Mockito.mock(Token.class);
+        final AtomicInteger executedSteps = new AtomicInteger(0);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            throws InterruptedException {
+
+                Thread.sleep(STEP_TIME);
+                if (executedSteps.incrementAndGet() < NUMBER_OF_STEPS) {
+                    navigator.addWorkToken(token);
+                }
+                return null;
+            }
+        }).when(token).executeStep();
+
+        navigator.startArbitraryInstance(token);
+        DrainReport report = navigator.drain(TIMEOUT, TimeUnit.SECONDS);
+
+        assertTrue(report.isComplete(), "Everything should have been executed, but " + report);
+        assertEquals(executedSteps.get(), NUMBER_OF_STEPS);
+        assertEquals(navigator.getNumberOfPendingTokens(), 0);
+    }
+
+    /**
+     * Test that the last instance, which ends while the navigator drains, does not switch it to idle.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testEndingInstanceKeepsNavigatorDraining()
+    throws Exception {
+
+        final AbstractProcessInstance instance = new ProcessInstance(MockUtils.mockProcessDefinition(),
+            Mockito.mock(BpmnTokenBuilder.class));
+        navigator.addRunningInstance(instance);
+        final List<NavigatorState> states = new CopyOnWriteArrayList<NavigatorState>();
+        navigator.registerListener(new AbstractNavigatorListener() {
+            @Override
+            protected void stateChanged(Navigator nav, NavigatorState navState) {
+
+                states.add(navState);
+                if (navState == NavigatorState.DRAINING) {
+                    navigator.signalEndedProcessInstance(instance);
+                }
+            }
+        });
+
+        navigator.drain(TIMEOUT, TimeUnit.SECONDS);
+
+        assertEquals(states, Arrays.asList(NavigatorState.DRAINING, NavigatorState.STOPPED));
+    }
+
+    /**
+     * Test that no instance is started while draining.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test(expectedExceptions = ServiceUnavailableException.class)
+    public void testNoInstanceIsStartedAfterDraining()
+    throws Exception {
+
+        navigator.drain(0, TimeUnit.SECONDS);
+        navigator.startProcessInstance(new ProcessDefinitionID("definition", 1));
+    }
+
+    /**
+     * Test that the tokens that could not be executed in time are reported.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testDrainReportsUnexecutedTokens()
+    throws Exception {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        Token blockingToken = Mockito.mock(Token.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            throws InterruptedException {
+
+                started.countDown();
+                release.await();
+                return null;
+            }
+        }).when(blockingToken).executeStep();
+        Token waitingToken = Mockito.mock(Token.class);
+
+        navigator.startArbitraryInstance(blockingToken);
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS), "The blocking step should have been started.");
+        navigator.startArbitraryInstance(waitingToken);
+
+        DrainReport report = navigator.drain(SHORT_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        assertFalse(report.isComplete());
+        assertEquals(report.getUnexecutedTokens().size(), 1);
+        assertEquals(report.getUnexecutedTokens().get(0), waitingToken);
+        assertEquals(report.getNumberOfExecutingSteps(), 1, "The blocking step is still being executed.");
+        Mockito.verify(waitingToken, Mockito.never()).executeStep();
+    }
+
+    /**
+     * Test that the tokens waiting in the step execution pool are reported.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testDrainReportsTokensWaitingInPool()
+    throws Exception {
+
+        navigator.stop();
+        FIFOScheduler scheduler = new FIFOScheduler();
+        navigator = startNavigator(scheduler, new StepExecutionPool(1));
+        Token waitingToken = Mockito.mock(Token.class);
+
+        startBlockingStep();
+        navigator.startArbitraryInstance(waitingToken);
+        awaitEmptyScheduler(scheduler);
+
+        assertUnexecutedTokenIsReported(waitingToken);
+    }
+
+    /**
+     * Test that the tokens in a lane of a partitioned scheduler are reported, although the lane is owned by a thread,
+     * which is still executing a step.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testDrainReportsTokensOfOwnedLanes()
+    throws Exception {
+
+        navigator.stop();
+        navigator = startNavigator(new PartitionedScheduler(1), null);
+        Token waitingToken = Mockito.mock(Token.class);
+
+        startBlockingStep();
+        navigator.startArbitraryInstance(waitingToken);
+
+        assertUnexecutedTokenIsReported(waitingToken);
+    }
+
+    /**
+     * Starts a navigator with a single, blocking thread.
+     *
+     * @param scheduler
+     *            the scheduler
+     * @param pool
+     *            the step execution pool, may be null
+     * @return the navigator
+     */
+    private static NavigatorImpl startNavigator(Scheduler scheduler, StepExecutionPool pool) {
+
+        NavigatorImpl newNavigator = new NavigatorImpl(null, null, scheduler, 1);
+        newNavigator.setBlockingRetrieval(true);
+        newNavigator.setStepExecutionPool(pool);
+        newNavigator.start(new JodaEngine());
+        return newNavigator;
+    }
+
+    /**
+     * Starts a token, whose step blocks until the test is over, and waits until the step was started.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    private void startBlockingStep()
+    throws Exception {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        Token blockingToken = Mockito.mock(Token.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            throws InterruptedException {
+
+                started.countDown();
+                release.await();
+                return null;
+            }
+        }).when(blockingToken).executeStep();
+
+        navigator.startArbitraryInstance(blockingToken);
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS), "The blocking step should have been started.");
+    }
+
+    /**
+     * Waits until the scheduler is empty.
+     *
+     * @param scheduler
+     *            the scheduler
+     * @throws InterruptedException
+     *             test fails
+     */
+    private static void awaitEmptyScheduler(Scheduler scheduler)
+    throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (!scheduler.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(STEP_TIME);
+        }
+        assertTrue(scheduler.isEmpty(), "The tokens should have been taken from the scheduler.");
+    }
+
+    /**
+     * Drains the navigator, while a step blocks, and checks that the waiting token is reported.
+     *
+     * @param waitingToken
+     *            the token, which is not executed
+     * @throws Exception
+     *             test fails
+     */
+    private void assertUnexecutedTokenIsReported(Token waitingToken)
+    throws Exception {
+
+        DrainReport report = navigator.drain(SHORT_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        assertEquals(report.getUnexecutedTokens().size(), 1, "The waiting token should be reported: " + report);
+        assertEquals(report.getUnexecutedTokens().get(0), waitingToken);
+        assertEquals(report.getNumberOfExecutingSteps(), 1, "The blocking step is still being executed.");
+        Mockito.verify(waitingToken, Mockito.never()).executeStep();
+    }
+}
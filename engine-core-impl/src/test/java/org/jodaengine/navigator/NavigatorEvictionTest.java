@@ -0,0 +1,180 @@
+package org.jodaengine.navigator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.jodaengine.RepositoryServiceInside;
+import org.jodaengine.bootstrap.JodaEngine;
+import org.jodaengine.navigator.schedule.FIFOScheduler;
+import org.jodaengine.node.activity.NullActivity;
+import org.jodaengine.node.incomingbehaviour.SimpleJoinBehaviour;
+import org.jodaengine.node.outgoingbehaviour.TakeAllSplitBehaviour;
+import org.jodaengine.process.instance.FileProcessInstanceStore;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.structure.NodeImpl;
+import org.jodaengine.process.token.Token;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that the {@link NavigatorImpl} evicts the variables of waiting instances to its store and loads them back,
+ * when the instances go on.
+ */
+public class NavigatorEvictionTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private static final long POLLING_TIME = 10;
+
+    private static final long EVICTION_DELAY = 800;
+
+    private File directory = null;
+
+    private NavigatorImpl navigator = null;
+
+    private Node node = null;
+
+    /**
+     * Starts a navigator without threads, so tokens are not executed, with an empty store.
+     *
+     * @throws IOException
+     *             the directory could not be created
+     */
+    @BeforeMethod
+    public void setUp()
+    throws IOException {
+
+        directory = File.createTempFile("instances", "");
+        directory.delete();
+        navigator = new NavigatorImpl(mock(RepositoryServiceInside.class), null, new FIFOScheduler(), 0);
+        navigator.setProcessInstanceStore(new FileProcessInstanceStore(directory));
+        navigator.setEvictionDelay(0);
+        navigator.start(new JodaEngine());
+        node = new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+    }
+
+    /**
+     * Stops the navigator and deletes the directory of the store.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        navigator.stop();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /**
+     * Test that an instance, whose only token is suspended, is evicted after the delay and hydrated, when the token
+     * is resumed.
+     *
+     * @throws InterruptedException
+     *             test fails
+     */
+    @Test
+    public void testWaitingInstanceIsEvictedAndHydratedOnResume()
+    throws InterruptedException {
+
+        ProcessInstance instance = createInstance();
+        Token token = instance.createToken(node);
+        navigator.addSuspendToken(token);
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!instance.isEvicted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(POLLING_TIME);
+        }
+        assertTrue(instance.isEvicted(), "The waiting instance should be evicted.");
+
+        navigator.removeSuspendToken(token);
+        assertFalse(instance.isEvicted(), "The resumed instance should be hydrated.");
+        assertEquals(instance.getContext().getVariable("name"), "value");
+    }
+
+    /**
+     * Test that the eviction delay starts anew, when a token is resumed and suspended again, so that the timer of its
+     * first suspension does not evict the instance.
+     *
+     * @throws InterruptedException
+     *             test fails
+     */
+    @Test
+    public void testResuspendedInstanceWaitsForFullDelay()
+    throws InterruptedException {
+
+        navigator.setEvictionDelay(EVICTION_DELAY);
+        ProcessInstance instance = createInstance();
+        Token token = instance.createToken(node);
+        navigator.addSuspendToken(token);
+        Thread.sleep(EVICTION_DELAY / 2);
+        navigator.removeSuspendToken(token);
+        navigator.addSuspendToken(token);
+
+        Thread.sleep(EVICTION_DELAY * 3 / 4);
+        assertFalse(instance.isEvicted(), "The instance has not waited for the delay since its second suspension.");
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!instance.isEvicted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(POLLING_TIME);
+        }
+        assertTrue(instance.isEvicted(), "The waiting instance should be evicted after the delay.");
+    }
+
+    /**
+     * Test that an instance is only evicted, while all of its tokens are suspended.
+     */
+    @Test
+    public void testInstanceWithActiveTokenIsNotEvicted() {
+
+        ProcessInstance instance = createInstance();
+        Token suspendedToken = instance.createToken(node);
+        Token activeToken = instance.createToken(node);
+        navigator.addSuspendToken(suspendedToken);
+
+        assertFalse(navigator.evict(instance));
+        assertFalse(instance.isEvicted());
+
+        navigator.addSuspendToken(activeToken);
+        assertTrue(navigator.evict(instance) || instance.isEvicted());
+    }
+
+    /**
+     * Test that the variables of instances, which were evicted, when the navigator stopped, are removed from the
+     * store, when a navigator is started on it again.
+     */
+    @Test
+    public void testOrphanedVariablesAreRemovedOnStart() {
+
+        ProcessInstance instance = createInstance();
+        instance.createToken(node);
+        assertTrue(instance.evict(navigator.getProcessInstanceStore()));
+        navigator.stop();
+        assertEquals(navigator.getProcessInstanceStore().getInstanceIDs(), Collections.singleton(instance.getID()));
+
+        navigator = new NavigatorImpl(mock(RepositoryServiceInside.class), null, new FIFOScheduler(), 0);
+        navigator.setProcessInstanceStore(new FileProcessInstanceStore(directory));
+        navigator.start(new JodaEngine());
+        assertTrue(navigator.getProcessInstanceStore().getInstanceIDs().isEmpty(),
+            "The variables of the unknown instance should be removed.");
+    }
+
+    /**
+     * Creates an instance with a variable.
+     *
+     * @return the instance
+     */
+    private ProcessInstance createInstance() {
+
+        ProcessInstance instance = new ProcessInstance(null, new BpmnTokenBuilder(navigator, null));
+        instance.getContext().setVariable("name", "value");
+        return instance;
+    }
+}
@@ -3,6 +3,7 @@ package org.jodaengine.navigator;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.jodaengine.process.instance.AbstractProcessInstance;
 import org.jodaengine.process.token.Token;
 
 
@@ -29,6 +30,18 @@ public class NavigatorImplMock extends NavigatorImpl {
 
     }
 
+    /**
+     * Registers a process instance as running. Usually the startProcessInstance methods do this, but tests create
+     * their instances themselves.
+     *
+     * @param instance the instance
+     */
+    @Override
+    public void addRunningInstance(AbstractProcessInstance instance) {
+
+        super.addRunningInstance(instance);
+    }
+
     /**
      * Flush the work queue. In NavigatorImpl, Tokens are consumed by NavigatorThreads, but in tests we do that
      * manually.
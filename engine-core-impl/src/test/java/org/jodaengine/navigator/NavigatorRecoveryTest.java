@@ -0,0 +1,367 @@
+package org.jodaengine.navigator;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jodaengine.RepositoryServiceInside;
+import org.jodaengine.bootstrap.JodaEngine;
+import org.jodaengine.exception.DefinitionNotFoundException;
+import org.jodaengine.navigator.journal.Journal;
+import org.jodaengine.navigator.schedule.FIFOScheduler;
+import org.jodaengine.node.activity.NullActivity;
+import org.jodaengine.node.incomingbehaviour.SimpleJoinBehaviour;
+import org.jodaengine.node.outgoingbehaviour.TakeAllSplitBehaviour;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.definition.bpmn.BpmnProcessDefinition;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.structure.NodeImpl;
+import org.jodaengine.process.token.Token;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests recovering the instances of the {@link NavigatorImpl} from its {@link Journal}.
+ */
+public class NavigatorRecoveryTest {
+
+    private static final ProcessDefinitionID DEFINITION_ID = new ProcessDefinitionID("recoverable", 1);
+
+    private static final int STEP_TIME = 200;
+
+    private static final int TIMEOUT = 10;
+
+    private static final int SMALL_SEGMENT_SIZE = 4096;
+
+    private File directory = null;
+
+    private List<NavigatorImpl> navigators = null;
+
+    private int segmentSize;
+
+    /**
+     * Creates an empty journal directory.
+     *
+     * @throws IOException
+     *             the directory could not be created
+     */
+    @BeforeMethod
+    public void setUp()
+    throws IOException {
+
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+        navigators = new ArrayList<NavigatorImpl>();
+        segmentSize = Journal.DEFAULT_SEGMENT_SIZE;
+    }
+
+    /**
+     * Stops the navigators and deletes the journal directory.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        for (NavigatorImpl navigator : navigators) {
+            navigator.stop();
+        }
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Test that a running instance is restored with its variables and tokens by a new navigator, whose definition has
+     * got new nodes.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testRunningInstanceIsRecovered()
+    throws Exception {
+
+        BpmnProcessDefinition definition = createDefinition();
+        NavigatorImpl navigator = startNavigator(definition);
+        AbstractProcessInstance instance = startInstance(navigator, definition);
+        instance.getContext().setVariable("changed", 2);
+        navigator.stop();
+
+        BpmnProcessDefinition redeployedDefinition = createDefinition();
+        NavigatorImpl recoveringNavigator = startNavigator(redeployedDefinition);
+
+        assertEquals(recoveringNavigator.getRunningInstances().size(), 1);
+        AbstractProcessInstance recoveredInstance = recoveringNavigator.getRunningInstances().get(0);
+        assertEquals(recoveredInstance.getID(), instance.getID());
+        assertEquals(recoveredInstance.getContext().getVariable("initial"), "value");
+        assertEquals(recoveredInstance.getContext().getVariable("changed"), 2);
+        assertEquals(recoveredInstance.getAssignedTokens().size(), 1);
+        Node secondNode = redeployedDefinition.getStartNodes().get(0).getOutgoingControlFlows().get(0)
+        .getDestination();
+        assertEquals(recoveredInstance.getAssignedTokens().get(0).getCurrentNode(), secondNode);
+        assertEquals(recoveringNavigator.getNumberOfPendingTokens(), 1, "The recovered token should be executed.");
+    }
+
+    /**
+     * Test that the tokens of a recovered instance are built by its definition, like those of the instances the
+     * definition creates, so that they share its extensions and its token pool.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testRecoveredInstanceGetsTokenBuilderOfDefinition()
+    throws Exception {
+
+        BpmnProcessDefinition definition = createDefinition();
+        NavigatorImpl navigator = startNavigator(definition);
+        startInstance(navigator, definition);
+        navigator.stop();
+
+        BpmnProcessDefinition redeployedDefinition = Mockito.spy(createDefinition());
+        NavigatorImpl recoveringNavigator = startNavigator(redeployedDefinition);
+
+        assertEquals(recoveringNavigator.getRunningInstances().size(), 1);
+        Mockito.verify(redeployedDefinition).createTokenBuilder(recoveringNavigator, null);
+    }
+
+    /**
+     * Test that a variable, which is too large for a journal segment, is set nevertheless, but not recovered.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testTooLargeVariableIsNotJournaled()
+    throws Exception {
+
+        segmentSize = SMALL_SEGMENT_SIZE;
+        BpmnProcessDefinition definition = createDefinition();
+        NavigatorImpl navigator = startNavigator(definition);
+        AbstractProcessInstance instance = startInstance(navigator, definition);
+        byte[] document = new byte[SMALL_SEGMENT_SIZE];
+        instance.getContext().setVariable("document", document);
+        assertEquals(instance.getContext().getVariable("document"), document);
+        navigator.stop();
+
+        NavigatorImpl recoveringNavigator = startNavigator(createDefinition());
+        assertEquals(recoveringNavigator.getRunningInstances().size(), 1);
+        AbstractProcessInstance recoveredInstance = recoveringNavigator.getRunningInstances().get(0);
+        assertEquals(recoveredInstance.getContext().getVariable("initial"), "value");
+        assertNull(recoveredInstance.getContext().getVariable("document"));
+    }
+
+    /**
+     * Test that ended instances are not recovered and that instances of unknown definitions are kept until their
+     * definition is deployed.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testOnlyRecoverableInstancesAreRecovered()
+    throws Exception {
+
+        BpmnProcessDefinition definition = createDefinition();
+        NavigatorImpl navigator = startNavigator(definition);
+        AbstractProcessInstance endedInstance = startInstance(navigator, definition);
+        navigator.signalEndedProcessInstance(endedInstance);
+        AbstractProcessInstance runningInstance = startInstance(navigator, definition);
+        navigator.stop();
+
+        NavigatorImpl navigatorWithoutDefinition = startNavigator(null);
+        assertTrue(navigatorWithoutDefinition.getRunningInstances().isEmpty());
+        navigatorWithoutDefinition.stop();
+
+        NavigatorImpl recoveringNavigator = startNavigator(createDefinition());
+        assertEquals(recoveringNavigator.getRunningInstances().size(), 1);
+        assertEquals(recoveringNavigator.getRunningInstances().get(0).getID(), runningInstance.getID());
+        assertEquals(recoveringNavigator.recover(), 0, "The running instance should not be recovered twice.");
+    }
+
+    /**
+     * Test that instances are recovered from a snapshot and the journal written after it, and that the snapshot
+     * replaces the older segments.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testInstanceIsRecoveredFromSnapshot()
+    throws Exception {
+
+        BpmnProcessDefinition definition = createDefinition();
+        NavigatorImpl navigator = startNavigator(definition);
+        AbstractProcessInstance instance = startInstance(navigator, definition);
+        Token token = instance.getAssignedTokens().get(0);
+        navigator.addSuspendToken(token);
+        AbstractProcessInstance endedInstance = startInstance(navigator, definition);
+
+        assertEquals(navigator.snapshot(), 2);
+        assertEquals(navigator.getJournal().getSnapshots().size(), 1);
+        assertEquals(navigator.getJournal().getSegments().size(), 1, "The snapshot replaces the older segments.");
+        instance.getContext().setVariable("changed", 2);
+        navigator.signalEndedProcessInstance(endedInstance);
+        navigator.stop();
+
+        NavigatorImpl recoveringNavigator = startNavigator(createDefinition());
+        assertEquals(recoveringNavigator.getRunningInstances().size(), 1);
+        AbstractProcessInstance recoveredInstance = recoveringNavigator.getRunningInstances().get(0);
+        assertEquals(recoveredInstance.getID(), instance.getID());
+        assertEquals(recoveredInstance.getContext().getVariable("initial"), "value");
+        assertEquals(recoveredInstance.getContext().getVariable("changed"), 2);
+        assertEquals(recoveredInstance.getAssignedTokens().size(), 1);
+        assertTrue(recoveringNavigator.getJournal().getSnapshots().isEmpty(),
+            "The recovered instances are journaled anew.");
+    }
+
+    /**
+     * Test that stopping the navigator waits for the step being executed, so that its changes are journaled, and that
+     * changes made after the navigator stopped are not journaled anymore instead of failing.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testStopWhileStepIsExecuted()
+    throws Exception {
+
+        BpmnProcessDefinition definition = createDefinition();
+        NavigatorImpl navigator = startNavigator(definition, 1);
+        final ProcessInstance instance = new ProcessInstance(definition, new BpmnTokenBuilder(navigator, null));
+        instance.getContext().setVariable("initial", "value");
+        instance.createToken(definition.getStartNodes().get(0));
+        navigator.addRunningInstance(instance);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Token step = Mockito.mock(Token.class);
+        Mockito.when(step.getInstance()).thenReturn(instance);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            throws InterruptedException {
+
+                started.countDown();
+                Thread.sleep(STEP_TIME);
+                try {
+                    instance.getContext().setVariable("changed", 2);
+                } catch (RuntimeException e) {
+                    failure.set(e);
+                }
+                return null;
+            }
+        }).when(step).executeStep();
+        navigator.addWorkToken(step);
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS), "The step should have been started.");
+
+        navigator.stop();
+        assertNull(failure.get(), "The step should have been finished before the journal was closed.");
+        instance.getContext().setVariable("afterStop", 3);
+        assertNull(instance.getObserver(), "The instance should not be observed anymore.");
+
+        NavigatorImpl recoveringNavigator = startNavigator(createDefinition());
+        assertEquals(recoveringNavigator.getRunningInstances().size(), 1);
+        AbstractProcessInstance recoveredInstance = recoveringNavigator.getRunningInstances().get(0);
+        assertEquals(recoveredInstance.getContext().getVariable("changed"), 2);
+        assertNull(recoveredInstance.getContext().getVariable("afterStop"));
+    }
+
+    /**
+     * Starts a navigator without threads, so tokens are not executed, on the journal directory.
+     *
+     * @param definition
+     *            the definition the repository knows, null if it knows none
+     * @return the navigator
+     * @throws DefinitionNotFoundException
+     *             test fails
+     */
+    private NavigatorImpl startNavigator(BpmnProcessDefinition definition)
+    throws DefinitionNotFoundException {
+
+        return startNavigator(definition, 0);
+    }
+
+    /**
+     * Starts a navigator on the journal directory.
+     *
+     * @param definition
+     *            the definition the repository knows, null if it knows none
+     * @param numberOfThreads
+     *            the number of navigator threads
+     * @return the navigator
+     * @throws DefinitionNotFoundException
+     *             test fails
+     */
+    private NavigatorImpl startNavigator(BpmnProcessDefinition definition, int numberOfThreads)
+    throws DefinitionNotFoundException {
+
+        RepositoryServiceInside repository = mock(RepositoryServiceInside.class);
+        if (definition == null) {
+            when(repository.getProcessDefinitionInside(DEFINITION_ID)).thenThrow(
+                new DefinitionNotFoundException(DEFINITION_ID));
+        } else {
+            when(repository.getProcessDefinitionInside(DEFINITION_ID)).thenReturn(definition);
+        }
+
+        NavigatorImpl navigator = new NavigatorImpl(repository, null, new FIFOScheduler(), numberOfThreads);
+        Journal journal = new Journal(directory);
+        journal.setSegmentSize(segmentSize);
+        navigator.setJournal(journal);
+        navigator.start(new JodaEngine());
+        navigators.add(navigator);
+        return navigator;
+    }
+
+    /**
+     * Starts an instance with a variable and a token on the second node of the definition.
+     *
+     * @param navigator
+     *            the navigator
+     * @param definition
+     *            the definition
+     * @return the instance
+     */
+    private AbstractProcessInstance startInstance(NavigatorImpl navigator, BpmnProcessDefinition definition) {
+
+        ProcessInstance instance = new ProcessInstance(definition, new BpmnTokenBuilder(navigator, null));
+        instance.getContext().setVariable("initial", "value");
+        Node secondNode = definition.getStartNodes().get(0).getOutgoingControlFlows().get(0).getDestination();
+        Token token = instance.createToken(secondNode);
+        navigator.addWorkToken(token);
+        navigator.addRunningInstance(instance);
+        return instance;
+    }
+
+    /**
+     * Creates a definition of two nodes. Every definition has got new nodes.
+     *
+     * @return the definition
+     */
+    private static BpmnProcessDefinition createDefinition() {
+
+        Node startNode = new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+        Node secondNode = new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+        startNode.controlFlowTo(secondNode);
+        List<Node> startNodes = new ArrayList<Node>();
+        startNodes.add(startNode);
+        return new BpmnProcessDefinition(DEFINITION_ID, "recoverable", "", startNodes);
+    }
+}
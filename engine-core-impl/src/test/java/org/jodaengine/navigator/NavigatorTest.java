@@ -5,11 +5,13 @@ import java.io.PrintStream;
 
 import org.jodaengine.bootstrap.JodaEngine;
 import org.jodaengine.factory.node.RoutingBehaviourTestFactory;
+import org.jodaengine.process.instance.AbstractProcessInstance;
 import org.jodaengine.process.instance.ProcessInstance;
 import org.jodaengine.process.structure.Node;
 import org.jodaengine.process.token.BpmnToken;
 import org.jodaengine.process.token.Token;
 import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.jodaengine.util.mock.MockUtils;
 import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
@@ -75,6 +77,36 @@ public class NavigatorTest {
         Assert.assertEquals(processToken.getCurrentNode(), node2);
     }
 
+    /**
+     * Test that an instance, which ended before it was registered as running, is finished once it is registered, and
+     * that an instance, which ends twice, is finished only once.
+     */
+    @Test
+    public void testEndedInstanceIsFinishedOnce() {
+
+        AbstractProcessInstance endedEarly = new ProcessInstance(MockUtils.mockProcessDefinition(),
+            Mockito.mock(BpmnTokenBuilder.class));
+        navigator.signalEndedProcessInstance(endedEarly);
+        navigator.addRunningInstance(endedEarly);
+
+        AbstractProcessInstance endedTwice = new ProcessInstance(MockUtils.mockProcessDefinition(),
+            Mockito.mock(BpmnTokenBuilder.class));
+        navigator.addRunningInstance(endedTwice);
+        navigator.signalEndedProcessInstance(endedTwice);
+        navigator.signalEndedProcessInstance(endedTwice);
+
+        Assert.assertFalse(navigator.getRunningInstances().contains(endedEarly));
+        Assert.assertFalse(navigator.getRunningInstances().contains(endedTwice));
+        int numberOfEndedTwice = 0;
+        for (AbstractProcessInstance instance : navigator.getEndedInstances()) {
+            if (instance == endedTwice) {
+                numberOfEndedTwice++;
+            }
+        }
+        Assert.assertTrue(navigator.getEndedInstances().contains(endedEarly));
+        Assert.assertEquals(numberOfEndedTwice, 1);
+    }
+
     /**
      * Tear down.
      */
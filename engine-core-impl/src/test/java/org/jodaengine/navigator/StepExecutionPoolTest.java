@@ -0,0 +1,224 @@
+package org.jodaengine.navigator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.token.Token;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link StepExecutionPool}.
+ */
+public class StepExecutionPoolTest {
+
+    private static final int TIMEOUT = 10;
+
+    private static final int WAITING_TIME = 100;
+
+    private StepExecutionPool pool = null;
+
+    private ProcessDefinitionID limitedDefinition = null;
+
+    private ProcessDefinitionID otherDefinition = null;
+
+    /**
+     * Creates a pool, that executes only one step of the limited definition at a time.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        pool = new StepExecutionPool();
+        limitedDefinition = new ProcessDefinitionID("limited", 1);
+        otherDefinition = new ProcessDefinitionID("other", 1);
+        pool.setConcurrencyLimit(limitedDefinition, 1);
+    }
+
+    /**
+     * Stops the pool.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        pool.shutdown();
+    }
+
+    /**
+     * Test that the second step of a limited definition waits for the first one.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testLimitIsRespected()
+    throws InterruptedException {
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+
+        pool.execute(limitedDefinition, mockToken(), new BlockingStep(firstStarted, release));
+        pool.execute(limitedDefinition, mockToken(), new BlockingStep(secondStarted, new CountDownLatch(0)));
+
+        assertTrue(firstStarted.await(TIMEOUT, TimeUnit.SECONDS), "The first step should have been started.");
+        assertFalse(secondStarted.await(WAITING_TIME, TimeUnit.MILLISECONDS),
+            "The second step should wait, as only one step may be executed at a time.");
+
+        release.countDown();
+        assertTrue(secondStarted.await(TIMEOUT, TimeUnit.SECONDS),
+            "The second step should have been started after the first one finished.");
+    }
+
+    /**
+     * Test that a blocked definition does not block the steps of other definitions.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testOtherDefinitionsAreNotBlocked()
+    throws InterruptedException {
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+
+        pool.execute(limitedDefinition, mockToken(), new BlockingStep(started, release));
+        pool.execute(otherDefinition, mockToken(), new BlockingStep(started, release));
+
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS), "Both steps should run at the same time.");
+        release.countDown();
+    }
+
+    /**
+     * Test that the default limit is used for definitions without an own limit.
+     */
+    @Test
+    public void testDefaultLimit() {
+
+        assertEquals(pool.getConcurrencyLimit(otherDefinition), StepExecutionPool.UNLIMITED);
+        assertEquals(pool.getConcurrencyLimit(limitedDefinition), 1);
+        assertEquals(new StepExecutionPool(2).getConcurrencyLimit(otherDefinition), 2);
+    }
+
+    /**
+     * Test that the tokens of the waiting steps are handed back on shutdown and that no step is accepted afterwards.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testShutdownHandsBackWaitingTokens()
+    throws InterruptedException {
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        Token waitingToken = mockToken();
+
+        pool.execute(limitedDefinition, mockToken(), new BlockingStep(firstStarted, release));
+        pool.execute(limitedDefinition, waitingToken, new BlockingStep(secondStarted, new CountDownLatch(0)));
+        assertTrue(firstStarted.await(TIMEOUT, TimeUnit.SECONDS), "The first step should have been started.");
+
+        assertEquals(pool.shutdown(), Collections.singletonList(waitingToken));
+        assertFalse(pool.execute(otherDefinition, mockToken(), new BlockingStep(secondStarted, release)),
+            "A shut down pool should not accept steps.");
+
+        release.countDown();
+        assertTrue(pool.awaitTermination(TIMEOUT, TimeUnit.SECONDS), "The running step should have finished.");
+        assertFalse(secondStarted.await(WAITING_TIME, TimeUnit.MILLISECONDS),
+            "The waiting step should not be started after the shutdown.");
+    }
+
+    /**
+     * Test that handing over a step waits, while the queue of the definition is full.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testFullQueueBlocks()
+    throws InterruptedException {
+
+        pool = new StepExecutionPool(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pool.execute(limitedDefinition, mockToken(), new BlockingStep(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS), "The first step should have been started.");
+        pool.execute(limitedDefinition, mockToken(), new BlockingStep(new CountDownLatch(1), release));
+
+        final AtomicBoolean accepted = new AtomicBoolean(false);
+        Thread navigatorThread = new Thread() {
+            @Override
+            public void run() {
+
+                try {
+                    accepted.set(pool.execute(limitedDefinition, mockToken(), new BlockingStep(new CountDownLatch(1),
+                        new CountDownLatch(0))));
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        navigatorThread.start();
+        navigatorThread.join(WAITING_TIME);
+        assertTrue(navigatorThread.isAlive(), "The queue is full, so the step should not be accepted yet.");
+
+        release.countDown();
+        navigatorThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertTrue(accepted.get(), "The step should have been accepted, when the queue had a place again.");
+    }
+
+    /**
+     * Creates a token.
+     *
+     * @return the token
+     */
+    private static Token mockToken() {
+
+        return Mockito.mock(Token.class);
+    }
+
+    /**
+     * A step that signals its start and blocks until it is released.
+     */
+    private static class BlockingStep implements Runnable {
+
+        private CountDownLatch started;
+
+        private CountDownLatch release;
+
+        /**
+         * Instantiates a new blocking step.
+         *
+         * @param started
+         *            counted down, when the step starts
+         * @param release
+         *            the step finishes, once this is released
+         */
+        public BlockingStep(CountDownLatch started, CountDownLatch release) {
+
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.jodaengine.navigator;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.jodaengine.RepositoryServiceImpl;
+import org.jodaengine.navigator.schedule.FIFOScheduler;
+import org.jodaengine.node.activity.AbstractActivity;
+import org.jodaengine.node.activity.NullActivity;
+import org.jodaengine.node.incomingbehaviour.SimpleJoinBehaviour;
+import org.jodaengine.node.outgoingbehaviour.TakeAllSplitBehaviour;
+import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.structure.NodeImpl;
+import org.jodaengine.process.token.AbstractToken;
+import org.jodaengine.process.token.BpmnToken;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.jodaengine.util.mock.MockUtils;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link StepProfiler}.
+ */
+public class StepProfilerTest {
+
+    /**
+     * Test that the phases of a step are recorded for the node the step started on.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testPhasesAreRecordedPerNode()
+    throws Exception {
+
+        Node node = new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+        Node nextNode = new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+        node.controlFlowTo(nextNode);
+
+        Navigator navigator = mock(Navigator.class);
+        ProcessInstance instance = new ProcessInstance(null, new BpmnTokenBuilder(navigator, null));
+        BpmnToken token = new BpmnToken(node, instance, navigator);
+
+        StepProfiler profiler = new StepProfiler();
+        token.executeStep(profiler);
+        token.executeStep(profiler);
+
+        Map<StepPhase, StepProfile> phasesOfFirstNode = new EnumMap<StepPhase, StepProfile>(StepPhase.class);
+        int profilesOfNextNode = 0;
+        for (StepProfile profile : profiler.getStepProfiles()) {
+            if (profile.getNodeID().equals(node.getID())) {
+                phasesOfFirstNode.put(profile.getPhase(), profile);
+            } else {
+                assertEquals(profile.getNodeID(), nextNode.getID());
+                profilesOfNextNode++;
+            }
+        }
+
+        assertTrue(phasesOfFirstNode.keySet().containsAll(
+            Arrays.asList(StepPhase.STEP, StepPhase.JOIN, StepPhase.ACTIVITY, StepPhase.SPLIT)));
+        assertTrue(!phasesOfFirstNode.containsKey(StepPhase.LISTENERS), "There are no listeners to be profiled.");
+        StepProfile step = phasesOfFirstNode.get(StepPhase.STEP);
+        assertEquals(step.getCount(), 1);
+        assertTrue(step.getTotalTime() >= phasesOfFirstNode.get(StepPhase.ACTIVITY).getTotalTime());
+        assertTrue(profilesOfNextNode > 0, "The second step should be recorded for the next node.");
+
+        profiler.reset();
+        assertTrue(profiler.getStepProfiles().isEmpty());
+    }
+
+    /**
+     * Test that the activity and the split of a resumed token are recorded with the profiler of its navigator.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testResumedTokenIsProfiled()
+    throws Exception {
+
+        Node node = new NodeImpl(new AbstractActivity() {
+            @Override
+            protected void executeIntern(AbstractToken token) {
+
+                token.suspend();
+            }
+        }, new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+        node.controlFlowTo(new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(), new TakeAllSplitBehaviour()));
+
+        StepProfiler profiler = new StepProfiler();
+        NavigatorImpl navigator = mock(NavigatorImpl.class);
+        when(navigator.getStepProfiler()).thenReturn(profiler);
+        ProcessInstance instance = new ProcessInstance(null, new BpmnTokenBuilder(navigator, null));
+        BpmnToken token = new BpmnToken(node, instance, navigator);
+        token.executeStep();
+        assertTrue(profiler.getStepProfiles().isEmpty());
+
+        token.resume(null);
+
+        Map<StepPhase, StepProfile> phases = new EnumMap<StepPhase, StepProfile>(StepPhase.class);
+        for (StepProfile profile : profiler.getStepProfiles()) {
+            assertEquals(profile.getNodeID(), node.getID());
+            phases.put(profile.getPhase(), profile);
+        }
+        assertTrue(phases.keySet().containsAll(Arrays.asList(StepPhase.ACTIVITY, StepPhase.SPLIT)));
+    }
+
+    /**
+     * Test that the latencies of the nodes of a definition are discarded, when the definition is deleted.
+     */
+    @Test
+    public void testProfilesOfDeletedDefinitionAreDiscarded() {
+
+        RepositoryServiceImpl repository = new RepositoryServiceImpl(null);
+        NavigatorImpl navigator = new NavigatorImpl(repository, null, new FIFOScheduler(), 1);
+        StepProfiler profiler = new StepProfiler();
+        navigator.setStepProfiler(profiler);
+
+        AbstractProcessInstance deletedInstance = MockUtils.mockProcessInstance();
+        ProcessDefinition deletedDefinition = deletedInstance.getDefinition();
+        repository.addProcessDefinition(deletedDefinition);
+        profiler.record(deletedInstance, new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(),
+            new TakeAllSplitBehaviour()), StepPhase.ACTIVITY, 1);
+        AbstractProcessInstance keptInstance = MockUtils.mockProcessInstance();
+        profiler.record(keptInstance, new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(),
+            new TakeAllSplitBehaviour()), StepPhase.ACTIVITY, 1);
+
+        repository.deleteProcessDefinition(deletedDefinition.getID());
+
+        assertEquals(profiler.getStepProfiles().size(), 1);
+        assertEquals(profiler.getStepProfiles().get(0).getDefinitionID(), keptInstance.getDefinition().getID());
+    }
+
+    /**
+     * Test that the navigator only reports step profiles, if it has got a profiler.
+     */
+    @Test
+    public void testStatisticContainsProfiles() {
+
+        NavigatorImpl navigator = new NavigatorImpl(null, null, new FIFOScheduler(), 1);
+        assertTrue(navigator.getStatistics().getStepProfiles().isEmpty());
+
+        StepProfiler profiler = new StepProfiler();
+        profiler.record(null, new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(),
+            new TakeAllSplitBehaviour()), StepPhase.ACTIVITY, 1);
+        navigator.setStepProfiler(profiler);
+        assertEquals(navigator.getStatistics().getStepProfiles().size(), 1);
+    }
+}
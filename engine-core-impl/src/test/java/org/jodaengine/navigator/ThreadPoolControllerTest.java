@@ -0,0 +1,107 @@
+package org.jodaengine.navigator;
+
+import static org.testng.Assert.assertEquals;
+
+import org.jodaengine.bootstrap.JodaEngine;
+import org.jodaengine.navigator.schedule.Scheduler;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link ThreadPoolController}.
+ */
+public class ThreadPoolControllerTest {
+
+    private static final int MIN_THREADS = 1;
+
+    private static final int MAX_THREADS = 4;
+
+    private static final int WAITING_TOKENS = 100;
+
+    private static final long NEVER = 1000000;
+
+    private static final int WAITING_TIME = 20;
+
+    private NavigatorImpl navigator = null;
+
+    private Scheduler scheduler = null;
+
+    private ThreadPoolController controller = null;
+
+    /**
+     * Creates a navigator with two threads and a controller, that does not check on its own.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        scheduler = Mockito.mock(Scheduler.class);
+        navigator = new NavigatorImpl(null, null, scheduler, 2);
+        controller = new ThreadPoolController(MIN_THREADS, MAX_THREADS);
+        controller.setInterval(NEVER);
+        navigator.setThreadPoolController(controller);
+        navigator.start(new JodaEngine());
+    }
+
+    /**
+     * Stops the navigator.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        navigator.stop();
+    }
+
+    /**
+     * Test that the pool grows up to the maximum, while tokens are waiting and not worked off.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testPoolGrowsWhileTokensAreWaiting()
+    throws InterruptedException {
+
+        Mockito.when(scheduler.size()).thenReturn(WAITING_TOKENS);
+
+        for (int i = 0; i < MAX_THREADS; i++) {
+            Thread.sleep(WAITING_TIME);
+            controller.adjust();
+        }
+        assertEquals(navigator.getNumberOfThreads(), MAX_THREADS);
+    }
+
+    /**
+     * Test that the pool shrinks down to the minimum, if there is nothing to do.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testPoolShrinksWhenIdle()
+    throws InterruptedException {
+
+        Mockito.when(scheduler.size()).thenReturn(0);
+
+        for (int i = 0; i < MAX_THREADS; i++) {
+            Thread.sleep(WAITING_TIME);
+            controller.adjust();
+        }
+        assertEquals(navigator.getNumberOfThreads(), MIN_THREADS);
+    }
+
+    /**
+     * Test that the bounds are enforced, even if the navigator was started with more threads.
+     */
+    @Test
+    public void testBoundsAreEnforced() {
+
+        navigator.addThread();
+        navigator.addThread();
+        navigator.addThread();
+
+        controller.adjust();
+        assertEquals(navigator.getNumberOfThreads(), MAX_THREADS);
+    }
+}
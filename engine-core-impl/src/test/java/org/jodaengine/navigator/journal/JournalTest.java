@@ -0,0 +1,196 @@
+package org.jodaengine.navigator.journal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link Journal} and its {@link JournalRecord records}.
+ */
+public class JournalTest {
+
+    private static final int SMALL_SEGMENT_SIZE = 256;
+
+    private File directory = null;
+
+    private Journal journal = null;
+
+    /**
+     * Creates an empty journal directory.
+     *
+     * @throws IOException
+     *             the directory could not be created
+     */
+    @BeforeMethod
+    public void setUp()
+    throws IOException {
+
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+        journal = new Journal(directory);
+    }
+
+    /**
+     * Closes the journal and deletes its directory.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        journal.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Test that appended records are replayed in the order they were appended, also after the journal was closed.
+     */
+    @Test
+    public void testAppendedRecordsAreReplayed() {
+
+        UUID instanceID = UUID.randomUUID();
+        UUID tokenID = UUID.randomUUID();
+        journal.open();
+        journal.append(JournalRecord.instanceStarted(instanceID, new ProcessDefinitionID("definition", 2)).toBytes());
+        journal.append(JournalRecord.tokenPlaced(instanceID, tokenID, 1).toBytes());
+        journal.append(JournalRecord.variableSet(instanceID, "removed", null).toBytes());
+        long sequence = journal.append(JournalRecord.variableSet(instanceID, "set", new byte[] {1, 2}).toBytes());
+        journal.sync(sequence);
+        journal.close();
+
+        List<JournalRecord> records = replay(journal.getSegments());
+        assertEquals(records.size(), 4);
+        assertEquals(records.get(0).getType(), JournalRecord.Type.INSTANCE_STARTED);
+        assertEquals(records.get(0).getDefinitionID(), new ProcessDefinitionID("definition", 2));
+        assertEquals(records.get(1).getTokenID(), tokenID);
+        assertEquals(records.get(1).getNodeIndex(), 1);
+        assertNull(records.get(2).getValue());
+        assertEquals(records.get(3).getValue(), new byte[] {1, 2});
+        for (JournalRecord record : records) {
+            assertEquals(record.getInstanceID(), instanceID);
+        }
+    }
+
+    /**
+     * Test that a new segment is started, when a record does not fit into the current one, and when the journal is
+     * rolled.
+     */
+    @Test
+    public void testSegmentsAreRolled() {
+
+        journal.setSegmentSize(SMALL_SEGMENT_SIZE);
+        journal.open();
+        UUID instanceID = UUID.randomUUID();
+        int numberOfRecords = 20;
+        for (int i = 0; i < numberOfRecords; i++) {
+            journal.append(JournalRecord.instanceEnded(instanceID).toBytes());
+        }
+        assertTrue(journal.getSegments().size() > 1, "The records do not fit into a single segment.");
+
+        long segmentNumber = journal.roll();
+        List<File> olderSegments = journal.getSegmentsBefore(segmentNumber);
+        assertEquals(olderSegments.size(), journal.getSegments().size() - 1);
+        assertEquals(replay(olderSegments).size(), numberOfRecords);
+
+        journal.truncate(segmentNumber);
+        assertEquals(journal.getSegments().size(), 1);
+        assertTrue(replay(journal.getSegments()).isEmpty());
+    }
+
+    /**
+     * Test that a committed snapshot replaces the segments before it, but not those after it.
+     */
+    @Test
+    public void testSnapshotReplacesOlderSegments() {
+
+        UUID instanceID = UUID.randomUUID();
+        journal.open();
+        journal.append(JournalRecord.tokenPlaced(instanceID, UUID.randomUUID(), 0).toBytes());
+        long segmentNumber = journal.roll();
+        journal.append(JournalRecord.instanceEnded(instanceID).toBytes());
+
+        Journal.SnapshotWriter abortedSnapshot = journal.createSnapshot(segmentNumber);
+        abortedSnapshot.write(JournalRecord.instanceEnded(instanceID).toBytes());
+        abortedSnapshot.abort();
+        assertTrue(journal.getSnapshots().isEmpty(), "An aborted snapshot should not be visible.");
+
+        Journal.SnapshotWriter snapshot = journal.createSnapshot(segmentNumber);
+        snapshot.write(JournalRecord.instanceStarted(instanceID, new ProcessDefinitionID("definition", 1)).toBytes());
+        snapshot.commit();
+        journal.truncate(segmentNumber);
+        long nextSegmentNumber = journal.roll();
+
+        List<File> files = journal.getFilesBefore(nextSegmentNumber);
+        assertEquals(files.size(), 2);
+        assertEquals(files.get(0), snapshot.getFile());
+        List<JournalRecord> records = replay(files);
+        assertEquals(records.size(), 2);
+        assertEquals(records.get(0).getType(), JournalRecord.Type.INSTANCE_STARTED);
+        assertEquals(records.get(1).getType(), JournalRecord.Type.INSTANCE_ENDED);
+    }
+
+    /**
+     * Test that replaying stops at a record, that was only partially written.
+     *
+     * @throws IOException
+     *             the segment could not be changed
+     */
+    @Test
+    public void testTornRecordEndsReplay()
+    throws IOException {
+
+        UUID instanceID = UUID.randomUUID();
+        journal.open();
+        journal.append(JournalRecord.instanceEnded(instanceID).toBytes());
+        journal.append(JournalRecord.instanceEnded(instanceID).toBytes());
+        journal.close();
+
+        // damage the last byte of the second record
+        File segment = journal.getSegments().get(0);
+        int recordSize = 8 + JournalRecord.instanceEnded(instanceID).toBytes().length;
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.seek(2 * recordSize - 1);
+            int lastByte = file.read();
+            file.seek(2 * recordSize - 1);
+            file.write(lastByte + 1);
+        } finally {
+            file.close();
+        }
+
+        assertEquals(replay(journal.getSegments()).size(), 1);
+    }
+
+    /**
+     * Replays the given segments.
+     *
+     * @param segments
+     *            the segments
+     * @return the records
+     */
+    private List<JournalRecord> replay(List<File> segments) {
+
+        final List<JournalRecord> records = new ArrayList<JournalRecord>();
+        journal.replay(segments, new Journal.RecordHandler() {
+            @Override
+            public void handle(byte[] payload) {
+
+                records.add(JournalRecord.fromBytes(payload));
+            }
+        });
+        return records;
+    }
+}
@@ -2,10 +2,12 @@ package org.jodaengine.navigator.schedule;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.jodaengine.RepositoryService;
 import org.jodaengine.ServiceFactory;
@@ -33,6 +35,8 @@ import org.testng.annotations.Test;
 @SkipBuildingJodaEngine(skippingMode = JodaEngineTestSkipMode.FOR_EACH_TEST_METHOD)
 public class FIFOSchedulerTest extends AbstractJodaEngineTest {
 
+    private static final int WAITING_TIME = 50;
+
     /** The scheduler. */
     private FIFOScheduler scheduler = null;
     
@@ -142,4 +146,63 @@ public class FIFOSchedulerTest extends AbstractJodaEngineTest {
         assertEquals(scheduler.retrieve(), secondToken, "Fifo not working with submit all");
     }
 
+    /**
+     * Test that a batch contains the tokens in FIFO order and not more than requested.
+     */
+    @Test
+    public void testRetrieveAll() {
+
+        scheduler.submit(firstToken);
+        scheduler.submit(secondToken);
+
+        List<Token> batch = scheduler.retrieveAll(1);
+        assertEquals(batch.size(), 1, "Only one token was requested.");
+        assertEquals(batch.get(0), firstToken, "FIFO not working with batches");
+
+        batch = scheduler.retrieveAll(2);
+        assertEquals(batch.size(), 1, "Only one token was left.");
+        assertEquals(batch.get(0), secondToken, "FIFO not working with batches");
+        assertTrue(scheduler.retrieveAll(2).isEmpty(), "The scheduler should be empty.");
+    }
+
+    /**
+     * Test that a blocking retrieve gives up after the timeout, if nothing was submitted.
+     *
+     * @throws InterruptedException the interrupted exception
+     */
+    @Test
+    public void testBlockingRetrieveTimesOut()
+    throws InterruptedException {
+
+        assertNull(scheduler.retrieve(WAITING_TIME, TimeUnit.MILLISECONDS),
+            "Nothing was submitted, but a token was retrieved.");
+    }
+
+    /**
+     * Test that a waiting thread is woken up, as soon as a token is submitted.
+     *
+     * @throws InterruptedException the interrupted exception
+     */
+    @Test
+    public void testBlockingRetrieveIsWokenUp()
+    throws InterruptedException {
+
+        Thread submitter = new Thread() {
+            @Override
+            public void run() {
+
+                try {
+                    sleep(WAITING_TIME);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                scheduler.submit(firstToken);
+            }
+        };
+        submitter.start();
+
+        assertEquals(scheduler.retrieve(1, TimeUnit.MINUTES), firstToken,
+            "The waiting thread should have retrieved the submitted token.");
+    }
+
 }
@@ -0,0 +1,311 @@
+package org.jodaengine.navigator.schedule;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jodaengine.navigator.NavigationThread;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.token.Token;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link PartitionedScheduler}.
+ */
+public class PartitionedSchedulerTest {
+
+    private static final int NUMBER_OF_LANES = 2;
+
+    private static final int WAITING_TIME = 50;
+
+    private PartitionedScheduler scheduler = null;
+
+    private AbstractProcessInstance instance = null;
+
+    /**
+     * Creates a fresh scheduler and a process instance.
+     */
+    @BeforeMethod
+    public void beforeTest() {
+
+        scheduler = new PartitionedScheduler(NUMBER_OF_LANES);
+        instance = mockInstance();
+    }
+
+    /**
+     * Creates a process instance with a random id.
+     *
+     * @return the process instance
+     */
+    private AbstractProcessInstance mockInstance() {
+
+        AbstractProcessInstance mockedInstance = Mockito.mock(AbstractProcessInstance.class);
+        Mockito.when(mockedInstance.getID()).thenReturn(UUID.randomUUID());
+        return mockedInstance;
+    }
+
+    /**
+     * Creates a token belonging to the given instance.
+     *
+     * @param tokenInstance
+     *            the instance of the token
+     * @return the token
+     */
+    private Token mockToken(AbstractProcessInstance tokenInstance) {
+
+        Token token = Mockito.mock(Token.class);
+        Mockito.when(token.getInstance()).thenReturn(tokenInstance);
+        return token;
+    }
+
+    /**
+     * Test that the tokens of an instance are retrieved in FIFO order.
+     */
+    @Test
+    public void testTokensOfOneInstanceAreFIFO() {
+
+        Token firstToken = mockToken(instance);
+        Token secondToken = mockToken(instance);
+        scheduler.submit(firstToken);
+        scheduler.submit(secondToken);
+
+        assertEquals(scheduler.retrieve(), firstToken);
+        assertEquals(scheduler.retrieve(), secondToken);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    /**
+     * Test that a lane owned by a living navigator thread is not served by another navigator thread.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testTokensOfAnInstanceStayWithTheOwningThread()
+    throws Exception {
+
+        final Token token = mockToken(instance);
+        scheduler.submit(token);
+        final CountDownLatch laneClaimed = new CountDownLatch(1);
+        final CountDownLatch otherThreadDone = new CountDownLatch(1);
+        final List<Token> retrievedTokens = new ArrayList<Token>();
+
+        // the owner claims the lane of the instance and stays alive, until the other thread tried to retrieve
+        Thread owner = new NavigationThread("owner", scheduler) {
+            @Override
+            public void run() {
+
+                retrievedTokens.add(scheduler.retrieve());
+                laneClaimed.countDown();
+                try {
+                    otherThreadDone.await();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        owner.start();
+        laneClaimed.await();
+
+        scheduler.submit(mockToken(instance));
+        Thread otherThread = new NavigationThread("other", scheduler) {
+            @Override
+            public void run() {
+
+                retrievedTokens.add(scheduler.retrieve());
+                otherThreadDone.countDown();
+            }
+        };
+        otherThread.start();
+        otherThread.join();
+        owner.join();
+
+        assertEquals(retrievedTokens.get(0), token);
+        assertNull(retrievedTokens.get(1), "The token belongs to the lane of another thread.");
+        assertEquals(scheduler.size(), 1);
+    }
+
+    /**
+     * Test that threads, which are not navigator threads, do not claim lanes.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testOtherThreadsDoNotClaimLanes()
+    throws Exception {
+
+        scheduler.submit(mockToken(instance));
+        assertEquals(scheduler.retrieve().getInstance(), instance);
+
+        Token token = mockToken(instance);
+        scheduler.submit(token);
+        assertEquals(retrieveInNavigationThread(), token, "The lane should not be owned by the current thread.");
+    }
+
+    /**
+     * Test that the lane of a dead thread is adopted.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testLaneOfDeadThreadIsAdopted()
+    throws Exception {
+
+        final Token token = mockToken(instance);
+        Thread deadThread = new NavigationThread("dead", scheduler) {
+            @Override
+            public void run() {
+
+                // claim all lanes and die without releasing them
+                for (int i = 0; i < NUMBER_OF_LANES; i++) {
+                    scheduler.submit(mockToken(mockInstance()));
+                }
+                while (scheduler.retrieve() != null) {
+                    continue;
+                }
+            }
+        };
+        deadThread.start();
+        deadThread.join();
+
+        scheduler.submit(token);
+        assertEquals(retrieveInNavigationThread(), token, "The lane of the dead thread should have been adopted.");
+    }
+
+    /**
+     * Test that a navigator thread waiting for tokens is woken up, as soon as a token is submitted to a lane, that was
+     * released by its owner.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testReleasedLaneWakesUpWaitingThread()
+    throws Exception {
+
+        // with a single lane, the first navigator thread claims the lane of every token
+        scheduler = new PartitionedScheduler(1);
+        final Token token = mockToken(instance);
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        NavigationThread owner = new NavigationThread("owner", scheduler) {
+            @Override
+            public void run() {
+
+                scheduler.submit(mockToken(instance));
+                scheduler.retrieve();
+                scheduler.releaseLanes();
+                released.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        owner.start();
+        released.await();
+
+        final List<Token> retrievedTokens = new ArrayList<Token>();
+        NavigationThread waitingThread = new NavigationThread("waiting", scheduler) {
+            @Override
+            public void run() {
+
+                try {
+                    retrievedTokens.add(scheduler.retrieve(1, TimeUnit.MINUTES));
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        waitingThread.start();
+        // the owner is still alive, but its lane is free now
+        Thread.sleep(WAITING_TIME);
+        long start = System.nanoTime();
+        scheduler.submit(token);
+        waitingThread.join();
+        done.countDown();
+        owner.join();
+
+        assertEquals(retrievedTokens.get(0), token);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1),
+            "The waiting thread should have been woken up at once.");
+    }
+
+    /**
+     * Retrieves a token in a new navigator thread.
+     *
+     * @return the token or null, if the thread could not retrieve one
+     * @throws InterruptedException
+     *             thrown if the current thread was interrupted while waiting for the navigator thread
+     */
+    private Token retrieveInNavigationThread()
+    throws InterruptedException {
+
+        final List<Token> retrievedTokens = new ArrayList<Token>();
+        Thread thread = new NavigationThread("retrieving", scheduler) {
+            @Override
+            public void run() {
+
+                retrievedTokens.add(scheduler.retrieve());
+            }
+        };
+        thread.start();
+        thread.join();
+        return retrievedTokens.get(0);
+    }
+
+    /**
+     * Test that a blocking retrieve gives up after the timeout, if nothing was submitted.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testBlockingRetrieveTimesOut()
+    throws InterruptedException {
+
+        assertNull(scheduler.retrieve(WAITING_TIME, TimeUnit.MILLISECONDS),
+            "Nothing was submitted, but a token was retrieved.");
+    }
+
+    /**
+     * Test that a waiting thread is woken up, as soon as another thread submits a token to a lane without owner.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testBlockingRetrieveIsWokenUp()
+    throws InterruptedException {
+
+        final Token token = mockToken(instance);
+
+        Thread submitter = new Thread() {
+            @Override
+            public void run() {
+
+                try {
+                    sleep(WAITING_TIME);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                scheduler.submit(token);
+            }
+        };
+        submitter.start();
+
+        assertEquals(scheduler.retrieve(1, TimeUnit.MINUTES), token,
+            "The waiting thread should have retrieved the submitted token.");
+    }
+}
@@ -0,0 +1,139 @@
+package org.jodaengine.navigator.schedule;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.SortedMap;
+
+import org.jodaengine.process.token.Token;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link PriorityScheduler}.
+ */
+public class PrioritySchedulerTest {
+
+    private static final long AGING_INTERVAL = 10000;
+
+    private static final long SHORT_AGING_INTERVAL = 1;
+
+    private static final int WAITING_TIME = 50;
+
+    private PriorityScheduler scheduler = null;
+
+    /**
+     * Creates a fresh scheduler.
+     */
+    @BeforeMethod
+    public void beforeTest() {
+
+        scheduler = new PriorityScheduler(AGING_INTERVAL);
+    }
+
+    /**
+     * Creates a token with the given priority.
+     *
+     * @param priority
+     *            the priority, may be null
+     * @return the token
+     */
+    private Token mockToken(Integer priority) {
+
+        Token token = Mockito.mock(Token.class);
+        Mockito.when(token.getAttribute(PriorityScheduler.PRIORITY_ATTRIBUTE)).thenReturn(priority);
+        return token;
+    }
+
+    /**
+     * Test that tokens of the same priority are retrieved in FIFO order.
+     */
+    @Test
+    public void testSamePriorityIsFIFO() {
+
+        Token firstToken = mockToken(null);
+        Token secondToken = mockToken(null);
+        scheduler.submit(firstToken);
+        scheduler.submit(secondToken);
+
+        assertEquals(scheduler.retrieve(), firstToken);
+        assertEquals(scheduler.retrieve(), secondToken);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    /**
+     * Test that an urgent token overtakes the tokens already queued.
+     */
+    @Test
+    public void testUrgentTokenFirst() {
+
+        Token bulkToken = mockToken(null);
+        Token urgentToken = mockToken(1);
+        scheduler.submit(bulkToken);
+        scheduler.submit(urgentToken);
+
+        assertEquals(scheduler.retrieve(), urgentToken, "The token with the higher priority should come first.");
+        assertEquals(scheduler.retrieve(), bulkToken);
+    }
+
+    /**
+     * Test that a token with a deadline overtakes urgent tokens, that may wait longer.
+     */
+    @Test
+    public void testDeadlineFirst() {
+
+        Token urgentToken = mockToken(1);
+        Token deadlineToken = mockToken(null);
+        Date deadline = new Date(System.currentTimeMillis() - 2 * AGING_INTERVAL);
+        Mockito.when(deadlineToken.getAttribute(PriorityScheduler.DEADLINE_ATTRIBUTE)).thenReturn(deadline);
+        scheduler.submit(urgentToken);
+        scheduler.submit(deadlineToken);
+
+        assertEquals(scheduler.retrieve(), deadlineToken, "The token with the deadline should come first.");
+    }
+
+    /**
+     * Test that a token of low priority does not starve, if it waited long enough.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testNoStarvation()
+    throws InterruptedException {
+
+        scheduler = new PriorityScheduler(SHORT_AGING_INTERVAL);
+        Token bulkToken = mockToken(null);
+        scheduler.submit(bulkToken);
+
+        Thread.sleep(WAITING_TIME);
+        scheduler.submit(mockToken(1));
+
+        assertEquals(scheduler.retrieve(), bulkToken, "The token waited too long to be overtaken.");
+    }
+
+    /**
+     * Test the queue depth per priority.
+     */
+    @Test
+    public void testQueueDepthPerPriority() {
+
+        Token urgentToken = mockToken(1);
+        scheduler.submit(mockToken(null));
+        scheduler.submit(mockToken(null));
+        scheduler.submit(urgentToken);
+
+        SortedMap<Integer, Integer> depths = scheduler.getQueueDepthPerPriority();
+        assertEquals(depths.get(PriorityScheduler.DEFAULT_PRIORITY), Integer.valueOf(2));
+        assertEquals(depths.get(1), Integer.valueOf(1));
+
+        assertTrue(scheduler.remove(urgentToken));
+        scheduler.retrieve();
+
+        depths = scheduler.getQueueDepthPerPriority();
+        assertEquals(depths.get(PriorityScheduler.DEFAULT_PRIORITY), Integer.valueOf(1));
+        assertEquals(depths.get(1), Integer.valueOf(0));
+    }
+}
@@ -0,0 +1,172 @@
+package org.jodaengine.navigator.schedule;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jodaengine.ext.listener.AbstractSchedulerListener;
+import org.jodaengine.process.token.Token;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link WorkStealingScheduler}.
+ */
+public class WorkStealingSchedulerTest {
+
+    private static final int NUMBER_OF_QUEUES = 4;
+
+    private static final int WAITING_TIME = 50;
+
+    private WorkStealingScheduler scheduler = null;
+
+    private Token firstToken = null;
+
+    private Token secondToken = null;
+
+    /**
+     * Creates a fresh scheduler and two tokens.
+     */
+    @BeforeMethod
+    public void beforeTest() {
+
+        scheduler = new WorkStealingScheduler(NUMBER_OF_QUEUES);
+        firstToken = Mockito.mock(Token.class);
+        secondToken = Mockito.mock(Token.class);
+    }
+
+    /**
+     * Test that the scheduler is initially empty.
+     */
+    @Test
+    public void testInitiallyEmpty() {
+
+        assertTrue(scheduler.isEmpty(), "Scheduler isn't initially empty.");
+        assertNull(scheduler.retrieve(), "An empty scheduler should not return a token.");
+    }
+
+    /**
+     * Test two submits and two retrieves from the same thread, which should be FIFO.
+     */
+    @Test
+    public void testTwoSubmitsAndTwoRetrieves() {
+
+        scheduler.submit(firstToken);
+        scheduler.submit(secondToken);
+        assertFalse(scheduler.isEmpty(), "Scheduler is empty after something got submitted.");
+        assertEquals(scheduler.size(), 2);
+
+        assertEquals(scheduler.retrieve(), firstToken, "Tokens of one thread should be retrieved in FIFO order.");
+        assertEquals(scheduler.retrieve(), secondToken, "Tokens of one thread should be retrieved in FIFO order.");
+        assertTrue(scheduler.isEmpty(), "Scheduler should be empty after all tokens were retrieved.");
+    }
+
+    /**
+     * Test that a thread steals the tokens another thread submitted.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testStealingFromAnotherThread()
+    throws Exception {
+
+        List<Token> tokens = new LinkedList<Token>();
+        tokens.add(firstToken);
+        tokens.add(secondToken);
+        scheduler.submitAll(tokens);
+
+        final List<Token> stolenTokens = new LinkedList<Token>();
+        Thread thief = new Thread() {
+            @Override
+            public void run() {
+
+                stolenTokens.add(scheduler.retrieve());
+                stolenTokens.add(scheduler.retrieve());
+            }
+        };
+        thief.start();
+        thief.join();
+
+        assertEquals(stolenTokens, tokens, "The other thread should have stolen both tokens.");
+        assertTrue(scheduler.isEmpty(), "Scheduler should be empty after all tokens were stolen.");
+    }
+
+    /**
+     * Test that a blocking retrieve gives up after the timeout, if nothing was submitted.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testBlockingRetrieveTimesOut()
+    throws InterruptedException {
+
+        assertNull(scheduler.retrieve(WAITING_TIME, TimeUnit.MILLISECONDS),
+            "Nothing was submitted, but a token was retrieved.");
+    }
+
+    /**
+     * Test that a waiting thread is woken up, as soon as another thread submits a token.
+     *
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    @Test
+    public void testBlockingRetrieveIsWokenUp()
+    throws InterruptedException {
+
+        Thread submitter = new Thread() {
+            @Override
+            public void run() {
+
+                try {
+                    sleep(WAITING_TIME);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                scheduler.submit(firstToken);
+            }
+        };
+        submitter.start();
+
+        assertEquals(scheduler.retrieve(1, TimeUnit.MINUTES), firstToken,
+            "The waiting thread should have retrieved the submitted token.");
+    }
+
+    /**
+     * Test removing a token.
+     */
+    @Test
+    public void testRemove() {
+
+        scheduler.submit(firstToken);
+        scheduler.submit(secondToken);
+
+        assertTrue(scheduler.remove(firstToken));
+        assertFalse(scheduler.remove(firstToken), "The token was already removed.");
+        assertEquals(scheduler.size(), 1);
+        assertEquals(scheduler.retrieve(), secondToken);
+    }
+
+    /**
+     * Test that registered scheduler listeners are still notified.
+     */
+    @Test
+    public void testListenerIsNotified() {
+
+        AbstractSchedulerListener listener = Mockito.mock(AbstractSchedulerListener.class);
+        scheduler.registerListener(listener);
+
+        scheduler.submit(firstToken);
+        scheduler.retrieve();
+
+        Mockito.verify(listener, Mockito.times(2)).update(Mockito.eq(scheduler), Mockito.any());
+    }
+}
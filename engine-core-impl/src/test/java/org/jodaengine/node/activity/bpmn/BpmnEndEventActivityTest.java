@@ -45,7 +45,7 @@ public class BpmnEndEventActivityTest {
 
         // this is done for test purposes. Usually the startProcessInstance methods of the navigator would do this, but
         // we do not actually want to start the navigator here.
-        nav.getRunningInstances().add(instance);
+        nav.addRunningInstance(instance);
         Token token = instance.createToken(startNode);
 
         // perform fist step, there should be two tokens on forkNode1 and forkNode2 respectively
@@ -58,7 +58,7 @@ public class ConcurrentBpmnTerminatingEndEventAndHumanTaskTest extends AbstractJ
         Token token = instance.createToken(splitNode);
 
         // set this instance to running by hand
-        nav.getRunningInstances().add(instance);
+        nav.addRunningInstance(instance);
 
         token.executeStep();
         
@@ -84,6 +84,10 @@ public class ConcurrentBpmnTerminatingEndEventAndHumanTaskTest extends AbstractJ
         assertEquals(instance.getAssignedTokens().size(), 0, "There should be no tokens assigned to this instance.");
         assertTrue(nav.getEndedInstances().contains(instance), "The instance should be now marked as finished.");
         assertFalse(nav.getRunningInstances().contains(instance), "The instance should not be marked as running.");
+        assertEquals(nav.getNumberOfRunningInstances(definition.getID()), 0,
+            "The definition should have no running instance.");
+        assertEquals(nav.getNumberOfEndedInstances(definition.getID()), 1,
+            "The definition should have one finished instance.");
     }
 
     /**
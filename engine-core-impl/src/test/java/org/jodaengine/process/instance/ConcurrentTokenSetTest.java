@@ -0,0 +1,145 @@
+package org.jodaengine.process.instance;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jodaengine.process.token.Token;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link ConcurrentTokenSet}.
+ */
+public class ConcurrentTokenSetTest {
+
+    private static final int NUMBER_OF_THREADS = 4;
+
+    private static final int TOKENS_PER_THREAD = 2000;
+
+    /**
+     * Test that tokens are kept once and can be accessed like in a list.
+     */
+    @Test
+    public void testAddRemoveAndGet() {
+
+        ConcurrentTokenSet tokens = new ConcurrentTokenSet();
+        Token token = mock(Token.class);
+
+        assertTrue(tokens.addIfAbsent(token));
+        assertFalse(tokens.addIfAbsent(token), "A token should be contained only once.");
+        assertEquals(tokens.size(), 1);
+        assertSame(tokens.get(0), token);
+        assertTrue(tokens.contains(token));
+
+        assertTrue(tokens.remove(token));
+        assertTrue(tokens.isEmpty());
+    }
+
+    /**
+     * Test that adding a token twice is rejected, as a list would otherwise contain it twice.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAddContainedToken() {
+
+        ConcurrentTokenSet tokens = new ConcurrentTokenSet();
+        Token token = mock(Token.class);
+        tokens.add(token);
+
+        tokens.add(token);
+    }
+
+    /**
+     * Test that the tokens keep the order they were added in, like in any other list.
+     */
+    @Test
+    public void testInsertionOrder() {
+
+        ConcurrentTokenSet tokens = new ConcurrentTokenSet();
+        List<Token> expectedTokens = new ArrayList<Token>();
+        for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+            Token token = mock(Token.class);
+            tokens.add(token);
+            expectedTokens.add(token);
+        }
+        tokens.remove(expectedTokens.remove(1));
+        Token addedLast = mock(Token.class);
+        tokens.add(addedLast);
+        expectedTokens.add(addedLast);
+
+        assertEquals(tokens, expectedTokens);
+        assertEquals(tokens.hashCode(), expectedTokens.hashCode());
+        for (int i = 0; i < expectedTokens.size(); i++) {
+            assertSame(tokens.get(i), expectedTokens.get(i));
+        }
+
+        Iterator<Token> iterator = tokens.iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(tokens, expectedTokens.subList(1, expectedTokens.size()));
+        assertFalse(tokens.contains(expectedTokens.get(0)));
+    }
+
+    /**
+     * Test that out of range positions are rejected.
+     */
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange() {
+
+        ConcurrentTokenSet tokens = new ConcurrentTokenSet();
+        tokens.add(mock(Token.class));
+
+        tokens.get(1);
+    }
+
+    /**
+     * Test that threads can add, remove and iterate concurrently without losing tokens.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testConcurrentModification()
+    throws Exception {
+
+        final ConcurrentTokenSet tokens = new ConcurrentTokenSet();
+        final List<Token> keptTokens = new ArrayList<Token>();
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        List<Future<Token>> results = new ArrayList<Future<Token>>();
+        for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+            results.add(executor.submit(new Callable<Token>() {
+                @Override
+                public Token call() {
+
+                    Token kept = mock(Token.class);
+                    tokens.add(kept);
+                    for (int j = 0; j < TOKENS_PER_THREAD; j++) {
+                        Token token = mock(Token.class);
+                        tokens.add(token);
+                        for (Token other : tokens) {
+                            other.getID();
+                        }
+                        tokens.remove(token);
+                    }
+                    return kept;
+                }
+            }));
+        }
+        for (Future<Token> result : results) {
+            keptTokens.add(result.get());
+        }
+        executor.shutdown();
+
+        assertEquals(tokens.size(), NUMBER_OF_THREADS);
+        assertTrue(tokens.containsAll(keptTokens));
+    }
+}
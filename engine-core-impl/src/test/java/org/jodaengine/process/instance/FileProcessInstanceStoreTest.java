@@ -0,0 +1,157 @@
+package org.jodaengine.process.instance;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.jodaengine.util.IdGenerators;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link FileProcessInstanceStore} and evicting the variables of a {@link ProcessInstance} to it.
+ */
+public class FileProcessInstanceStoreTest {
+
+    private File directory = null;
+
+    private FileProcessInstanceStore store = null;
+
+    /**
+     * Creates an empty store.
+     *
+     * @throws IOException
+     *             the directory could not be created
+     */
+    @BeforeMethod
+    public void setUp()
+    throws IOException {
+
+        directory = File.createTempFile("instances", "");
+        directory.delete();
+        store = new FileProcessInstanceStore(directory);
+    }
+
+    /**
+     * Deletes the directory of the store.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /**
+     * Test that stored variables are loaded and replaced, until they are removed.
+     */
+    @Test
+    public void testVariablesAreStoredAndLoaded() {
+
+        UUID instanceID = UUID.randomUUID();
+        assertNull(store.load(instanceID));
+
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("name", "value");
+        variables.put("number", 2);
+        store.store(instanceID, variables);
+        assertEquals(store.load(instanceID), variables);
+
+        variables.remove("name");
+        store.store(instanceID, variables);
+        assertEquals(store.load(instanceID), variables);
+
+        store.remove(instanceID);
+        assertNull(store.load(instanceID));
+    }
+
+    /**
+     * Test that the ids of the instances with stored variables are listed, but not other files in the directory.
+     *
+     * @throws IOException
+     *             the other file could not be created
+     */
+    @Test
+    public void testInstanceIDsAreListed()
+    throws IOException {
+
+        assertTrue(store.getInstanceIDs().isEmpty(), "The directory does not exist yet.");
+
+        UUID instanceID = UUID.randomUUID();
+        UUID removedInstanceID = UUID.randomUUID();
+        store.store(instanceID, new HashMap<String, Object>());
+        store.store(removedInstanceID, new HashMap<String, Object>());
+        store.remove(removedInstanceID);
+        File subdirectory = directory.listFiles()[0];
+        assertTrue(new File(subdirectory, "other.vars").createNewFile());
+
+        assertEquals(store.getInstanceIDs(), Collections.singleton(instanceID));
+    }
+
+    /**
+     * Test that the variables of instances with time-ordered ids, which are created one after another, are spread
+     * over several subdirectories.
+     */
+    @Test
+    public void testTimeOrderedIDsAreSpread() {
+
+        for (int i = 0; i < 16; i++) {
+            store.store(IdGenerators.nextId(), new HashMap<String, Object>());
+        }
+
+        assertTrue(directory.listFiles().length > 1, "The files should be in more than one subdirectory.");
+    }
+
+    /**
+     * Test that evicted variables can be read without loading them back, and are loaded back, when they are changed.
+     */
+    @Test
+    public void testEvictedVariablesAreLoadedOnChange() {
+
+        ProcessInstance instance = new ProcessInstance(null, Mockito.mock(BpmnTokenBuilder.class));
+        instance.getContext().setVariable("name", "value");
+
+        assertTrue(instance.evict(store));
+        assertTrue(instance.isEvicted());
+        assertFalse(instance.evict(store), "The variables are evicted already.");
+        assertEquals(store.load(instance.getID()).get("name"), "value");
+
+        assertEquals(instance.getContext().getVariable("name"), "value");
+        assertEquals(instance.getContext().getVariableSnapshot().size(), 1);
+        assertTrue(instance.isEvicted(), "Reading the variables should not load them back.");
+
+        instance.getContext().setVariable("other", 1);
+        assertFalse(instance.isEvicted());
+        assertNull(store.load(instance.getID()), "The loaded variables should be removed from the store.");
+        assertEquals(instance.getContext().getVariable("name"), "value");
+        assertEquals(instance.getContext().getVariable("other"), 1);
+    }
+
+    /**
+     * Test that hydrating an instance loads its variables back.
+     */
+    @Test
+    public void testInstanceIsHydrated() {
+
+        ProcessInstance instance = new ProcessInstance(null, Mockito.mock(BpmnTokenBuilder.class));
+        instance.getContext().setVariable("name", "value");
+        assertFalse(instance.hydrate(), "The variables are not evicted.");
+
+        instance.evict(store);
+        assertTrue(instance.hydrate());
+        assertFalse(instance.isEvicted());
+        assertNull(store.load(instance.getID()));
+        assertEquals(instance.getContext().getVariable("name"), "value");
+    }
+}
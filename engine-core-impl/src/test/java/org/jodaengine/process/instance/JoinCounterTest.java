@@ -0,0 +1,120 @@
+package org.jodaengine.process.instance;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jodaengine.process.structure.ControlFlow;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link JoinCounter}.
+ */
+public class JoinCounterTest {
+
+    private static final int NUMBER_OF_INCOMING_CONTROL_FLOWS = 4;
+
+    private static final int SIGNALS_PER_CONTROL_FLOW = 10000;
+
+    private JoinCounter counter = null;
+
+    private ControlFlow controlFlow1 = null, controlFlow2 = null;
+
+    /**
+     * Creates an empty counter.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        counter = new JoinCounter();
+        controlFlow1 = mock(ControlFlow.class);
+        controlFlow2 = mock(ControlFlow.class);
+    }
+
+    /**
+     * Test that the join is activated once all control flows are signaled, and that surplus signals are kept.
+     */
+    @Test
+    public void testJoinConsumesOneSignalPerControlFlow() {
+
+        assertEquals(counter.signalAndJoin(controlFlow1, 2), 0);
+        assertEquals(counter.signalAndJoin(controlFlow1, 2), 0);
+        assertEquals(counter.getNumberOfSignaledControlFlows(), 1);
+
+        assertEquals(counter.signalAndJoin(controlFlow2, 2), 1);
+        assertEquals(counter.getSignaledControlFlows(), Arrays.asList(controlFlow1));
+
+        assertEquals(counter.signalAndJoin(controlFlow2, 2), 1);
+        assertEquals(counter.getSignaledControlFlows().size(), 0);
+    }
+
+    /**
+     * Test that signals are counted as often as they occur and can be removed again.
+     */
+    @Test
+    public void testSignalAndRemove() {
+
+        counter.signal(controlFlow1);
+        counter.signal(controlFlow2);
+        counter.signal(controlFlow1);
+
+        assertEquals(counter.getSignaledControlFlows(), Arrays.asList(controlFlow1, controlFlow1, controlFlow2));
+        assertEquals(counter.getNumberOfSignaledControlFlows(), 2);
+
+        counter.removeOnce(controlFlow1);
+        counter.removeOnce(controlFlow2);
+        assertEquals(counter.getSignaledControlFlows(), Arrays.asList(controlFlow1));
+        assertEquals(counter.getNumberOfSignaledControlFlows(), 1);
+
+        counter.signal(controlFlow1);
+        counter.removeAll(controlFlow1);
+        assertEquals(counter.getNumberOfSignaledControlFlows(), 0);
+        assertEquals(counter.getSignaledControlFlows().size(), 0);
+    }
+
+    /**
+     * Test that concurrently arriving signals activate the join exactly as often as every control flow was signaled.
+     *
+     * @throws Exception
+     *             test fails
+     */
+    @Test
+    public void testConcurrentSignalsActivateExactlyOnce()
+    throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_INCOMING_CONTROL_FLOWS);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < NUMBER_OF_INCOMING_CONTROL_FLOWS; i++) {
+            final ControlFlow controlFlow = mock(ControlFlow.class);
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+
+                    int activations = 0;
+                    for (int j = 0; j < SIGNALS_PER_CONTROL_FLOW; j++) {
+                        activations += counter.signalAndJoin(controlFlow, NUMBER_OF_INCOMING_CONTROL_FLOWS);
+                    }
+                    return activations;
+                }
+            }));
+        }
+
+        int activations = 0;
+        for (Future<Integer> result : results) {
+            activations += result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(activations, SIGNALS_PER_CONTROL_FLOW);
+        assertEquals(counter.getSignaledControlFlows().size(), 0);
+        assertEquals(counter.getNumberOfSignaledControlFlows(), 0);
+    }
+}
@@ -0,0 +1,186 @@
+package org.jodaengine.process.instance;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests keeping large variables of a {@link ProcessInstanceContextImpl} outside the heap with the
+ * {@link OffHeapStorage}.
+ */
+public class OffHeapStorageTest {
+
+    private static final int THRESHOLD = 1024;
+
+    private File directory = null;
+
+    private ProcessInstanceContextImpl context = null;
+
+    /**
+     * Creates an empty context.
+     *
+     * @throws IOException
+     *             the directory could not be created
+     */
+    @BeforeMethod
+    public void setUp()
+    throws IOException {
+
+        directory = File.createTempFile("variables", "");
+        directory.delete();
+        context = new ProcessInstanceContextImpl();
+    }
+
+    /**
+     * Keeps all variables on the heap again and deletes the directory of the mapped files.
+     */
+    @AfterMethod
+    public void tearDown() {
+
+        OffHeapStorage.setDefault(OffHeapStorage.DISABLED);
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /**
+     * Test that small values and values of other types stay on the heap.
+     */
+    @Test
+    public void testSmallVariablesStayOnHeap() {
+
+        OffHeapStorage.setDefault(new OffHeapStorage(THRESHOLD));
+        byte[] bytes = new byte[THRESHOLD - 1];
+        Object largeObject = new int[THRESHOLD];
+        context.setVariable("bytes", bytes);
+        context.setVariable("object", largeObject);
+
+        assertSame(context.getVariable("bytes"), bytes);
+        assertSame(context.getVariable("object"), largeObject);
+        assertNull(context.getVariableBuffer("bytes"));
+    }
+
+    /**
+     * Test that large byte arrays and strings are kept in direct buffers and read back as they were set.
+     */
+    @Test
+    public void testLargeVariablesAreKeptInDirectBuffers() {
+
+        OffHeapStorage.setDefault(new OffHeapStorage(THRESHOLD));
+        byte[] bytes = createBytes(THRESHOLD);
+        char[] characters = new char[THRESHOLD];
+        Arrays.fill(characters, '\u00e4');
+        String string = new String(characters);
+        context.setVariable("bytes", bytes);
+        context.setVariable("string", string);
+
+        assertNotSame(context.getVariable("bytes"), bytes);
+        assertTrue(Arrays.equals((byte[]) context.getVariable("bytes"), bytes));
+        assertEquals(context.getVariable("string"), string);
+        assertEquals(context.getVariableSnapshot().get("string"), string);
+        ByteBuffer buffer = context.getVariableBuffer("bytes");
+        assertTrue(buffer.isDirect());
+        assertTrue(buffer.isReadOnly());
+        assertEquals(buffer, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Test that a context with variables outside the heap equals itself and keeps its hash code, although reading a
+     * byte array gives out a new copy every time, and equals a context with the same bytes.
+     */
+    @Test
+    public void testContextWithOffHeapVariablesIsComparedByContent() {
+
+        OffHeapStorage.setDefault(new OffHeapStorage(THRESHOLD));
+        context.setVariable("bytes", createBytes(THRESHOLD));
+        context.setVariable("string", new String(new char[THRESHOLD]));
+        ProcessInstanceContextImpl sameContext = new ProcessInstanceContextImpl();
+        sameContext.setVariable("string", new String(new char[THRESHOLD]));
+        sameContext.setVariable("bytes", createBytes(THRESHOLD));
+
+        assertEquals(context, context);
+        assertEquals(context.hashCode(), context.hashCode());
+        assertEquals(context, sameContext);
+        assertEquals(context.hashCode(), sameContext.hashCode());
+
+        sameContext.setVariable("bytes", createBytes(THRESHOLD + 1));
+        assertFalse(context.equals(sameContext));
+    }
+
+    /**
+     * Test that a large {@link ByteBuffer} is kept in a memory-mapped file and read as a view of it. The file is
+     * deleted right after it is mapped.
+     */
+    @Test
+    public void testByteBufferIsReadFromMappedFile() {
+
+        OffHeapStorage.setDefault(new OffHeapStorage(THRESHOLD, directory));
+        ByteBuffer buffer = ByteBuffer.wrap(createBytes(2 * THRESHOLD));
+        buffer.position(THRESHOLD);
+        context.setVariable("document", buffer);
+
+        ByteBuffer readBuffer = (ByteBuffer) context.getVariable("document");
+        assertTrue(readBuffer.isDirect());
+        assertTrue(readBuffer.isReadOnly());
+        assertEquals(readBuffer, buffer);
+        assertEquals(buffer.position(), THRESHOLD, "The position of the set buffer should not be changed.");
+        assertEquals(directory.listFiles().length, 0);
+    }
+
+    /**
+     * Test that variables outside the heap are evicted with their bytes and kept outside the heap again, when they
+     * are loaded back, and that the values encoded for the journal contain the bytes.
+     *
+     * @throws Exception
+     *             the value could not be encoded
+     */
+    @Test
+    public void testOffHeapVariablesAreEvictedAndEncoded()
+    throws Exception {
+
+        OffHeapStorage.setDefault(new OffHeapStorage(THRESHOLD));
+        FileProcessInstanceStore store = new FileProcessInstanceStore(directory);
+        ProcessInstance instance = new ProcessInstance(null, Mockito.mock(BpmnTokenBuilder.class));
+        ByteBuffer buffer = ByteBuffer.wrap(createBytes(THRESHOLD));
+        instance.getContext().setVariable("document", buffer);
+
+        instance.evict(store);
+        instance.hydrate();
+        ProcessInstanceContextImpl hydratedContext = (ProcessInstanceContextImpl) instance.getContext();
+        assertTrue(hydratedContext.getVariableBuffer("document").isDirect());
+        assertEquals(hydratedContext.getVariable("document"), buffer);
+
+        Object decoded = ValueCodec.decode(ValueCodec.encode(hydratedContext.getVariable("document")),
+            getClass().getClassLoader());
+        assertEquals(decoded, buffer);
+    }
+
+    /**
+     * Creates bytes with different values.
+     *
+     * @param length
+     *            the number of bytes
+     * @return the bytes
+     */
+    private static byte[] createBytes(int length) {
+
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
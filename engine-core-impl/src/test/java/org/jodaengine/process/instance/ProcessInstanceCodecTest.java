@@ -0,0 +1,289 @@
+package org.jodaengine.process.instance;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.jodaengine.exception.JodaEngineRuntimeException;
+import org.jodaengine.forms.AbstractForm;
+import org.jodaengine.forms.FormImpl;
+import org.jodaengine.navigator.Navigator;
+import org.jodaengine.node.activity.ActivityState;
+import org.jodaengine.node.activity.NullActivity;
+import org.jodaengine.node.incomingbehaviour.SimpleJoinBehaviour;
+import org.jodaengine.node.outgoingbehaviour.TakeAllSplitBehaviour;
+import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.definition.ProcessDefinitionID;
+import org.jodaengine.process.definition.bpmn.BpmnProcessDefinition;
+import org.jodaengine.process.structure.ControlFlow;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.structure.NodeImpl;
+import org.jodaengine.process.token.BpmnToken;
+import org.jodaengine.process.token.Token;
+import org.jodaengine.process.token.TokenBuilder;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.jodaengine.resource.AbstractResource;
+import org.jodaengine.resource.Participant;
+import org.jodaengine.resource.ResourceType;
+import org.jodaengine.resource.worklist.AbstractWorklistItem;
+import org.jodaengine.resource.worklist.WorklistItemImpl;
+import org.jodaengine.resource.worklist.WorklistItemState;
+import org.jodaengine.util.io.StringStreamSource;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests encoding and decoding instances, tokens, contexts and worklist items with the {@link ProcessInstanceCodec}.
+ */
+public class ProcessInstanceCodecTest {
+
+    private static final ProcessDefinitionID DEFINITION_ID = new ProcessDefinitionID("encodable", 1);
+
+    private BpmnProcessDefinition definition = null;
+
+    private BpmnProcessDefinition redeployedDefinition = null;
+
+    private AbstractForm form = null;
+
+    private Participant participant = null;
+
+    private ProcessInstanceCodec codec = null;
+
+    /**
+     * Creates a definition and a new deployment of it, whose nodes are decoded.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        definition = createDefinition();
+        redeployedDefinition = createDefinition();
+        form = new FormImpl("form", new StringStreamSource("<form />"));
+        participant = new Participant("participant");
+        final Navigator navigator = Mockito.mock(Navigator.class);
+        codec = new ProcessInstanceCodec(new ProcessInstanceCodec.Resolver() {
+            @Override
+            public ProcessDefinition getDefinition(ProcessDefinitionID definitionID) {
+
+                return DEFINITION_ID.equals(definitionID) ? redeployedDefinition : null;
+            }
+
+            @Override
+            public TokenBuilder createTokenBuilder() {
+
+                return new BpmnTokenBuilder(navigator, null);
+            }
+
+            @Override
+            public AbstractForm getForm(String formID, ProcessDefinitionID definitionID) {
+
+                return form.getID().equals(formID) ? form : null;
+            }
+
+            @Override
+            public AbstractResource<?> getResource(ResourceType type, UUID resourceID) {
+
+                return participant.getID().equals(resourceID) ? participant : null;
+            }
+        });
+    }
+
+    /**
+     * Test that an instance is decoded with its variables, join state and tokens on the nodes of the new deployment.
+     */
+    @Test
+    public void testInstanceIsEncodedAndDecoded() {
+
+        ProcessInstance instance = new ProcessInstance(definition, new BpmnTokenBuilder(Mockito.mock(Navigator.class),
+            null));
+        instance.getContext().setVariable("name", "value");
+        instance.getContext().setVariable("number", 2);
+        Node split = definition.getStartNodes().get(0);
+        ControlFlow firstBranch = split.getOutgoingControlFlows().get(0);
+        Node join = firstBranch.getDestination().getOutgoingControlFlows().get(0).getDestination();
+        ControlFlow signaledControlFlow = join.getIncomingControlFlows().get(1);
+        instance.getContext().setSignaledControlFlow(signaledControlFlow);
+        instance.getContext().setNodeVariable(join, "count", 1);
+
+        Token parentToken = instance.createToken(split);
+        Token childToken = instance.createToken(firstBranch.getDestination(), firstBranch, parentToken);
+        childToken.setInternalVariable("serializable", "kept");
+        childToken.setInternalVariable("handle", new Object());
+        childToken.setAttribute("attribute", true);
+        ((BpmnToken) childToken).restoreActivityState(ActivityState.WAITING);
+        // the child comes first, but must be decoded after its parent
+        instance.removeToken(parentToken);
+        instance.addToken(parentToken);
+
+        ProcessInstance decodedInstance = codec.decodeInstance(codec.encodeInstance(instance));
+
+        assertEquals(decodedInstance.getID(), instance.getID());
+        assertSame(decodedInstance.getDefinition(), redeployedDefinition);
+        assertEquals(decodedInstance.getContext().getVariableSnapshot(), instance.getContext().getVariableSnapshot());
+
+        Node decodedSplit = redeployedDefinition.getStartNodes().get(0);
+        ControlFlow decodedFirstBranch = decodedSplit.getOutgoingControlFlows().get(0);
+        Node decodedJoin = decodedFirstBranch.getDestination().getOutgoingControlFlows().get(0).getDestination();
+        List<ControlFlow> signaledControlFlows = decodedInstance.getContext().getSignaledControlFlows(decodedJoin);
+        assertEquals(signaledControlFlows.size(), 1);
+        assertSame(signaledControlFlows.get(0), decodedJoin.getIncomingControlFlows().get(1));
+        assertEquals(decodedInstance.getContext().getNodeVariable(decodedJoin, "count"), 1);
+
+        assertEquals(decodedInstance.getAssignedTokens().size(), 2);
+        Token decodedChildToken = findToken(decodedInstance, childToken.getID());
+        Token decodedParentToken = findToken(decodedInstance, parentToken.getID());
+        assertSame(decodedChildToken.getCurrentNode(), decodedFirstBranch.getDestination());
+        assertSame(decodedChildToken.getLastTakenControlFlow(), decodedFirstBranch);
+        assertSame(decodedChildToken.getParentToken(), decodedParentToken);
+        assertSame(decodedChildToken.getInstance(), decodedInstance);
+        assertEquals(decodedChildToken.getCurrentActivityState(), ActivityState.WAITING);
+        assertEquals(decodedChildToken.getInternalVariable("serializable"), "kept");
+        assertNull(decodedChildToken.getInternalVariable("handle"), "Variables, which are not serializable, are left"
+            + " out.");
+        assertEquals(decodedChildToken.getAttribute("attribute"), true);
+        assertSame(decodedParentToken.getCurrentNode(), decodedSplit);
+        assertNull(decodedParentToken.getLastTakenControlFlow());
+        assertEquals(decodedInstance.getTokensOnNode(decodedSplit).size(), 1);
+    }
+
+    /**
+     * Test that a single token and a single context are decoded into an existing instance.
+     */
+    @Test
+    public void testTokenAndContextAreDecodedIntoInstance() {
+
+        ProcessInstance instance = new ProcessInstance(definition, new BpmnTokenBuilder(Mockito.mock(Navigator.class),
+            null));
+        instance.getContext().setVariable("name", "value");
+        Token token = instance.createToken(definition.getStartNodes().get(0));
+
+        ProcessInstance decodedInstance = new ProcessInstance(instance.getID(), redeployedDefinition,
+            new BpmnTokenBuilder(Mockito.mock(Navigator.class), null));
+        codec.decodeContext(codec.encodeContext(instance.getContext(), definition), decodedInstance.getContext(),
+            redeployedDefinition);
+        Token decodedToken = codec.decodeToken(codec.encodeToken(token), decodedInstance);
+
+        assertEquals(decodedInstance.getContext().getVariable("name"), "value");
+        assertEquals(decodedToken.getID(), token.getID());
+        assertSame(decodedToken.getCurrentNode(), redeployedDefinition.getStartNodes().get(0));
+        assertEquals(decodedInstance.getAssignedTokens().size(), 1);
+    }
+
+    /**
+     * Test that a worklist item is decoded with its form, resources and state and refers to the decoded token.
+     */
+    @Test
+    public void testWorklistItemIsEncodedAndDecoded() {
+
+        ProcessInstance instance = new ProcessInstance(definition, new BpmnTokenBuilder(Mockito.mock(Navigator.class),
+            null));
+        Token token = instance.createToken(definition.getStartNodes().get(0));
+        Set<AbstractResource<?>> resources = new HashSet<AbstractResource<?>>();
+        resources.add(participant);
+        WorklistItemImpl item = new WorklistItemImpl("subject", null, form, resources, token);
+        item.setStatus(WorklistItemState.ALLOCATED);
+
+        ProcessInstance decodedInstance = codec.decodeInstance(codec.encodeInstance(instance));
+        AbstractWorklistItem decodedItem = codec.decodeWorklistItem(codec.encodeWorklistItem(item), decodedInstance);
+
+        assertEquals(decodedItem.getID(), item.getID());
+        assertEquals(decodedItem.getSubject(), "subject");
+        assertNull(decodedItem.getDescription());
+        assertSame(decodedItem.getForm(), form);
+        assertEquals(decodedItem.getAssignedResources(), resources);
+        assertEquals(decodedItem.getStatus(), WorklistItemState.ALLOCATED);
+        assertSame(decodedItem.getCorrespondingToken(), decodedInstance.getAssignedTokens().get(0));
+    }
+
+    /**
+     * Test that instances of a definition, that is not deployed, and corrupt bytes are rejected.
+     */
+    @Test
+    public void testUndecodableInstancesAreRejected() {
+
+        ProcessInstance instance = new ProcessInstance(definition, new BpmnTokenBuilder(Mockito.mock(Navigator.class),
+            null));
+        instance.createToken(definition.getStartNodes().get(0));
+        byte[] bytes = codec.encodeInstance(instance);
+
+        redeployedDefinition = null;
+        assertRejected(bytes);
+
+        redeployedDefinition = createDefinition();
+        byte[] truncatedBytes = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncatedBytes, 0, truncatedBytes.length);
+        assertRejected(truncatedBytes);
+    }
+
+    /**
+     * Asserts that the bytes cannot be decoded.
+     *
+     * @param bytes
+     *            the bytes
+     */
+    private void assertRejected(byte[] bytes) {
+
+        try {
+            codec.decodeInstance(bytes);
+        } catch (JodaEngineRuntimeException e) {
+            return;
+        }
+        assertTrue(false, "The instance should not be decoded.");
+    }
+
+    /**
+     * Finds a token of an instance.
+     *
+     * @param instance
+     *            the instance
+     * @param tokenID
+     *            the id of the token
+     * @return the token, or null if there is none
+     */
+    private static Token findToken(AbstractProcessInstance instance, UUID tokenID) {
+
+        for (Token token : instance.getAssignedTokens()) {
+            if (token.getID().equals(tokenID)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a definition, which splits into two branches and joins them again. Every definition has got new nodes.
+     *
+     * @return the definition
+     */
+    private static BpmnProcessDefinition createDefinition() {
+
+        Node split = createNode();
+        Node firstBranch = createNode();
+        Node secondBranch = createNode();
+        Node join = createNode();
+        split.controlFlowTo(firstBranch);
+        split.controlFlowTo(secondBranch);
+        firstBranch.controlFlowTo(join);
+        secondBranch.controlFlowTo(join);
+        List<Node> startNodes = new ArrayList<Node>();
+        startNodes.add(split);
+        return new BpmnProcessDefinition(DEFINITION_ID, "encodable", "", startNodes);
+    }
+
+    /**
+     * Creates a node.
+     *
+     * @return the node
+     */
+    private static Node createNode() {
+
+        return new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+    }
+}
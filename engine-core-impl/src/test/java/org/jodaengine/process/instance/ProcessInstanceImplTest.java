@@ -1,9 +1,12 @@
 package org.jodaengine.process.instance;
 
 import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Collections;
+
 import org.jodaengine.navigator.Navigator;
 import org.jodaengine.process.definition.ProcessDefinition;
 import org.jodaengine.process.structure.Node;
@@ -46,4 +49,31 @@ public class ProcessInstanceImplTest {
         assertNotNull(token.getInstance().getContext(), "The token should have a context to write to.");
     }
 
+    /**
+     * Test that the tokens on a node are tracked, while tokens move and leave the instance.
+     */
+    @Test
+    public void testTokensOnNode() {
+
+        Node node1 = mock(Node.class);
+        Node node2 = mock(Node.class);
+        Token token1 = instance.createToken(node1);
+        Token token2 = instance.createToken(node1);
+
+        assertEquals(instance.getTokensOnNode(node1).size(), 2);
+        assertTrue(instance.getTokensOnNode(node2).isEmpty());
+
+        token1.setCurrentNode(node2);
+        assertEquals(instance.getTokensOnNode(node1), Collections.singleton(token2));
+        assertEquals(instance.getTokensOnNode(node2), Collections.singleton(token1));
+
+        instance.removeToken(token1);
+        assertTrue(instance.getTokensOnNode(node2).isEmpty());
+
+        // a removed token is not indexed again, if it moves
+        token1.setCurrentNode(node1);
+        assertEquals(instance.getTokensOnNode(node1), Collections.singleton(token2));
+        instance.removeToken(token2);
+    }
+
 }
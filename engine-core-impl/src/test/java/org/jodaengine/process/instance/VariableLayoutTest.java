@@ -0,0 +1,147 @@
+package org.jodaengine.process.instance;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jodaengine.node.activity.NullActivity;
+import org.jodaengine.node.activity.custom.AddContextNumbersAndStoreActivity;
+import org.jodaengine.node.activity.custom.PrintingVariableActivity;
+import org.jodaengine.node.incomingbehaviour.SimpleJoinBehaviour;
+import org.jodaengine.node.outgoingbehaviour.TakeAllSplitBehaviour;
+import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.structure.NodeImpl;
+import org.jodaengine.process.structure.condition.CheckVariableTrueCondition;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests compiling a {@link VariableLayout} and using it in a {@link ProcessInstanceContextImpl}.
+ */
+public class VariableLayoutTest {
+
+    private ProcessDefinition definition = null;
+
+    /**
+     * Creates a definition, whose activities and conditions declare variables.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        Node start = new NodeImpl(new AddContextNumbersAndStoreActivity("sum", "a", "b"),
+            new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+        Node print = new NodeImpl(new PrintingVariableActivity("sum"), new SimpleJoinBehaviour(),
+            new TakeAllSplitBehaviour());
+        Node end = new NodeImpl(new NullActivity(), new SimpleJoinBehaviour(), new TakeAllSplitBehaviour());
+        start.controlFlowTo(print);
+        print.controlFlowToWithCondition(end, new CheckVariableTrueCondition("done"));
+        end.controlFlowTo(start);
+
+        definition = mock(ProcessDefinition.class);
+        when(definition.getStartNodes()).thenReturn(Arrays.asList(start));
+    }
+
+    /**
+     * Test that every declared variable gets exactly one slot.
+     */
+    @Test
+    public void testCompile() {
+
+        VariableLayout layout = VariableLayout.compile(definition);
+
+        assertEquals(layout.size(), 4);
+        for (String name : Arrays.asList("a", "b", "sum", "done")) {
+            assertEquals(layout.getName(layout.getSlot(name)), name);
+        }
+        assertEquals(layout.getSlot("undeclared"), -1);
+        assertEquals(VariableLayout.compile(null), VariableLayout.EMPTY);
+    }
+
+    /**
+     * Test that declared and undeclared variables are both accessible, also via the variable map.
+     */
+    @Test
+    public void testContextWithLayout() {
+
+        ProcessInstanceContext context = new ProcessInstanceContextImpl(VariableLayout.compile(definition));
+        context.setVariable("sum", 2);
+        context.setVariable("undeclared", "value");
+
+        assertEquals(context.getVariable("sum"), 2);
+        assertEquals(context.getVariable("undeclared"), "value");
+        assertNull(context.getVariable("a"));
+
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("sum", 2);
+        expected.put("undeclared", "value");
+        assertEquals(context.getVariableMap(), expected);
+
+        context.getVariableMap().put("a", 1);
+        context.setVariable("sum", null);
+        assertEquals(context.getVariable("a"), 1);
+        assertTrue(!context.getVariableMap().containsKey("sum"));
+
+        ProcessInstanceContext contextWithoutLayout = new ProcessInstanceContextImpl();
+        contextWithoutLayout.setVariable("a", 1);
+        contextWithoutLayout.setVariable("undeclared", "value");
+        assertEquals(context, contextWithoutLayout);
+    }
+
+    /**
+     * Test that a snapshot keeps the variables as they were when it was taken.
+     */
+    @Test
+    public void testVariableSnapshot() {
+
+        ProcessInstanceContext context = new ProcessInstanceContextImpl(VariableLayout.compile(definition));
+        context.setVariable("sum", 2);
+        context.setVariable("undeclared", "value");
+
+        Map<String, Object> snapshot = context.getVariableSnapshot();
+        context.setVariable("sum", 3);
+        context.setVariable("undeclared", null);
+        context.setVariable("other", "value");
+
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("sum", 2);
+        expected.put("undeclared", "value");
+        assertEquals(snapshot, expected);
+        assertEquals(context.getVariableSnapshot().get("sum"), 3);
+        assertEquals(context.getVariableSnapshot().size(), 2);
+    }
+
+    /**
+     * Test that snapshots cannot be changed.
+     */
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testVariableSnapshotIsImmutable() {
+
+        ProcessInstanceContext context = new ProcessInstanceContextImpl();
+        context.getVariableSnapshot().put("a", 1);
+    }
+
+    /**
+     * Test that node variables are kept per node.
+     */
+    @Test
+    public void testNodeVariables() {
+
+        ProcessInstanceContext context = new ProcessInstanceContextImpl();
+        Node node1 = mock(Node.class);
+        Node node2 = mock(Node.class);
+
+        context.setNodeVariable(node1, "state", "waiting");
+        assertEquals(context.getNodeVariable(node1, "state"), "waiting");
+        assertNull(context.getNodeVariable(node2, "state"));
+
+        context.setNodeVariable(node1, "state", null);
+        assertNull(context.getNodeVariable(node1, "state"));
+    }
+}
@@ -0,0 +1,146 @@
+package org.jodaengine.process.token;
+
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jodaengine.exception.JodaEngineRuntimeException;
+import org.jodaengine.ext.exception.LoggerExceptionHandler;
+import org.jodaengine.ext.handler.AbstractExceptionHandler;
+import org.jodaengine.ext.listener.AbstractTokenListener;
+import org.jodaengine.ext.listener.SplitListener;
+import org.jodaengine.ext.service.ExtensionService;
+import org.jodaengine.navigator.Navigator;
+import org.jodaengine.node.activity.custom.AutomatedDummyActivity;
+import org.jodaengine.node.incomingbehaviour.SimpleJoinBehaviour;
+import org.jodaengine.node.outgoingbehaviour.TakeAllSplitBehaviour;
+import org.jodaengine.process.instance.AbstractProcessInstance;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.structure.NodeImpl;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that tokens share the extensions of a {@link TokenExtensionPlan}.
+ */
+public class TokenExtensionPlanTest {
+
+    private static final int NUMBER_OF_TOKENS = 10;
+
+    private ExtensionService extensionService = null;
+
+    private AbstractTokenListener listener = null;
+
+    private AbstractExceptionHandler handler = null;
+
+    private Navigator navigator = null;
+
+    private Node node = null;
+
+    /**
+     * Creates an extension service providing a token listener and an exception handler.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        listener = mock(AbstractTokenListener.class);
+        handler = mock(AbstractExceptionHandler.class);
+        extensionService = mock(ExtensionService.class);
+        when(extensionService.getExtensions(AbstractTokenListener.class)).thenReturn(Arrays.asList(listener));
+        when(extensionService.getExtensions(AbstractExceptionHandler.class)).thenReturn(Arrays.asList(handler));
+        when(extensionService.getExtensions(SplitListener.class)).thenReturn(
+            Collections.<SplitListener> emptyList());
+
+        navigator = mock(Navigator.class);
+        node = new NodeImpl(new AutomatedDummyActivity("s.out"), new SimpleJoinBehaviour(),
+            new TakeAllSplitBehaviour());
+    }
+
+    /**
+     * Test that the extensions are loaded only once for all tokens created by a builder.
+     */
+    @Test
+    public void testExtensionsAreLoadedOnce() {
+
+        BpmnTokenBuilder builder = new BpmnTokenBuilder(navigator, extensionService);
+        AbstractProcessInstance instance = new ProcessInstance(null, builder);
+
+        for (int i = 0; i < NUMBER_OF_TOKENS; i++) {
+            AbstractToken token = (AbstractToken) instance.createToken(node);
+            assertTrue(token.getListeners().contains(listener));
+            assertSame(token.exceptionHandler, handler);
+        }
+
+        verify(extensionService, times(1)).getExtensions(AbstractTokenListener.class);
+        verify(extensionService, times(1)).getExtensions(AbstractExceptionHandler.class);
+    }
+
+    /**
+     * Test that the plan's handlers are followed by the default exception chain.
+     */
+    @Test
+    public void testDefaultExceptionChainIsAppended() {
+
+        TokenExtensionPlan plan = TokenExtensionPlan.create(extensionService);
+
+        assertSame(plan.getExceptionHandler(), handler);
+        verify(handler).addLast(isA(LoggerExceptionHandler.class));
+    }
+
+    /**
+     * Test that registering further listeners at a token does not change the shared plan.
+     */
+    @Test
+    public void testRegisteringListenersDoesNotChangeThePlan() {
+
+        TokenExtensionPlan plan = TokenExtensionPlan.create(extensionService);
+        AbstractProcessInstance instance = new ProcessInstance(null, new BpmnTokenBuilder(navigator, null)
+        .setExtensionPlan(plan));
+        AbstractToken token = (AbstractToken) instance.createToken(node);
+
+        token.registerSplitListener(Arrays.asList(mock(SplitListener.class)));
+
+        assertTrue(plan.getSplitListeners().isEmpty());
+        assertTrue(TokenExtensionPlan.EMPTY.getSplitListeners().isEmpty());
+    }
+
+    /**
+     * Test that a plan is outdated, when the extensions of its service might have changed.
+     */
+    @Test
+    public void testPlanIsOutdatedByNewExtensionVersion() {
+
+        when(extensionService.getVersion()).thenReturn(1L);
+        TokenExtensionPlan plan = TokenExtensionPlan.create(extensionService);
+        assertTrue(plan.isCreatedFrom(extensionService));
+        assertFalse(plan.isCreatedFrom(mock(ExtensionService.class)));
+
+        when(extensionService.getVersion()).thenReturn(2L);
+        assertFalse(plan.isCreatedFrom(extensionService));
+    }
+
+    /**
+     * Test that the default exception chain of the empty plan cancels the instance.
+     */
+    @Test
+    public void testEmptyPlanCancelsInstance() {
+
+        BpmnTokenBuilder builder = new BpmnTokenBuilder(navigator, null);
+        AbstractProcessInstance instance = new ProcessInstance(null, builder);
+        AbstractToken token = (AbstractToken) instance.createToken(node);
+
+        token.exceptionHandler.processException(new JodaEngineRuntimeException("test"), token);
+
+        verify(navigator).cancelProcessInstance(instance);
+    }
+}
@@ -0,0 +1,189 @@
+package org.jodaengine.process.token;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.jodaengine.exception.JodaEngineException;
+import org.jodaengine.ext.listener.AbstractTokenListener;
+import org.jodaengine.ext.listener.token.ActivityLifecycleChangeEvent;
+import org.jodaengine.navigator.NavigatorImplMock;
+import org.jodaengine.node.activity.ActivityState;
+import org.jodaengine.node.factory.bpmn.BpmnCustomNodeFactory;
+import org.jodaengine.node.factory.bpmn.BpmnNodeFactory;
+import org.jodaengine.process.definition.bpmn.BpmnProcessDefinitionBuilder;
+import org.jodaengine.process.instance.ProcessInstance;
+import org.jodaengine.process.structure.Node;
+import org.jodaengine.process.token.builder.BpmnTokenBuilder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests recycling tokens with a {@link TokenPool}.
+ */
+public class TokenPoolTest {
+
+    private Node node1 = null, node2 = null, joinNode = null, node3 = null;
+
+    private NavigatorImplMock navigator = null;
+
+    private TokenPool pool = null;
+
+    private ProcessInstance instance = null;
+
+    private Token token1 = null, token2 = null;
+
+    /**
+     * Creates two tokens in front of an and-join, whose instance recycles tokens.
+     */
+    @BeforeMethod
+    public void setUp() {
+
+        navigator = new NavigatorImplMock();
+        pool = new TokenPool();
+
+        BpmnProcessDefinitionBuilder builder = BpmnProcessDefinitionBuilder.newBuilder();
+        node1 = BpmnCustomNodeFactory.createBpmnNullNode(builder);
+        node2 = BpmnCustomNodeFactory.createBpmnNullNode(builder);
+        joinNode = BpmnNodeFactory.createBpmnAndGatewayNode(builder);
+        node3 = BpmnCustomNodeFactory.createBpmnNullNode(builder);
+        BpmnNodeFactory.createControlFlowFromTo(builder, node1, joinNode);
+        BpmnNodeFactory.createControlFlowFromTo(builder, node2, joinNode);
+        BpmnNodeFactory.createControlFlowFromTo(builder, joinNode, node3);
+
+        instance = new ProcessInstance(null, new BpmnTokenBuilder(navigator, null).setTokenPool(pool));
+        token1 = instance.createToken(node1);
+        token2 = instance.createToken(node2);
+    }
+
+    /**
+     * Test that the token consumed by the join is recycled, while the proceeding token is not.
+     *
+     * @throws JodaEngineException
+     *             test fails
+     */
+    @Test
+    public void testTokenConsumedByJoinIsRecycled()
+    throws JodaEngineException {
+
+        executeUntilJoined();
+
+        assertEquals(pool.size(), 1);
+        assertSame(pool.poll(), token2);
+        assertEquals(navigator.getWorkQueue().size(), 1);
+        assertSame(navigator.getWorkQueue().get(0), token1);
+    }
+
+    /**
+     * Test that a recycled token is reused as if it was new.
+     *
+     * @throws JodaEngineException
+     *             test fails
+     */
+    @Test
+    public void testRecycledTokenIsReused()
+    throws JodaEngineException {
+
+        token2.setAttribute("attribute", "value");
+        token2.setInternalVariable("variable", "value");
+        UUID oldId = token2.getID();
+        executeUntilJoined();
+
+        Token reusedToken = instance.createToken(node3);
+
+        assertSame(reusedToken, token2);
+        assertEquals(pool.size(), 0);
+        assertFalse(reusedToken.getID().equals(oldId), "A reused token should get a new ID.");
+        assertSame(reusedToken.getCurrentNode(), node3);
+        assertEquals(reusedToken.getCurrentActivityState(), ActivityState.INIT);
+        assertNull(reusedToken.getLastTakenControlFlow());
+        assertNull(reusedToken.getAttribute("attribute"));
+        assertNull(reusedToken.getInternalVariable("variable"));
+        assertEquals(instance.getAssignedTokens().size(), 2);
+    }
+
+    /**
+     * Test that tokens are not recycled, if one of their listeners might keep a reference to them.
+     *
+     * @throws JodaEngineException
+     *             test fails
+     */
+    @Test
+    public void testTokenWithListenerIsNotRecycled()
+    throws JodaEngineException {
+
+        ((AbstractToken) token2).registerListener(new AbstractTokenListener() {
+            @Override
+            public void stateChanged(ActivityLifecycleChangeEvent event) {
+
+            }
+        });
+        executeUntilJoined();
+
+        assertEquals(pool.size(), 0);
+    }
+
+    /**
+     * Test that a reused token gets the listeners of the current extension plan only, not those of its previous life.
+     *
+     * @throws JodaEngineException
+     *             test fails
+     */
+    @Test
+    public void testRecycledTokenLosesItsListeners()
+    throws JodaEngineException {
+
+        ((AbstractToken) token2).registerListener(new AbstractTokenListener() {
+            @Override
+            public void stateChanged(ActivityLifecycleChangeEvent event) {
+
+            }
+
+            @Override
+            public boolean keepsTokenReferences() {
+
+                return false;
+            }
+        });
+        executeUntilJoined();
+
+        AbstractToken reusedToken = (AbstractToken) instance.createToken(node3);
+
+        assertSame(reusedToken, token2);
+        assertTrue(reusedToken.getListeners().isEmpty(), "The listeners of the previous life should be removed.");
+    }
+
+    /**
+     * Test that the pool does not keep more tokens than its capacity.
+     */
+    @Test
+    public void testCapacityIsRespected() {
+
+        TokenPool smallPool = new TokenPool(1);
+
+        assertEquals(smallPool.offer(mock(AbstractToken.class)), true);
+        assertEquals(smallPool.offer(mock(AbstractToken.class)), false);
+        assertEquals(smallPool.size(), 1);
+    }
+
+    /**
+     * Moves both tokens to the join, the second one arriving first.
+     *
+     * @throws JodaEngineException
+     *             test fails
+     */
+    private void executeUntilJoined()
+    throws JodaEngineException {
+
+        token1.executeStep();
+        token2.executeStep();
+        navigator.flushWorkQueue();
+        token2.executeStep();
+        token1.executeStep();
+    }
+}
@@ -15,6 +15,7 @@ import org.jodaengine.bootstrap.JodaEngine;
 import org.jodaengine.exception.IllegalStarteventException;
 import org.jodaengine.navigator.Navigator;
 import org.jodaengine.navigator.NavigatorStatistic;
+import org.jodaengine.navigator.StepProfile;
 import org.jodaengine.process.definition.ProcessDefinition;
 import org.jodaengine.process.instance.AbstractProcessInstance;
 import org.jodaengine.process.instance.ProcessInstance;
@@ -32,6 +33,7 @@ public class NavigatorWebServiceTest extends AbstractJsonServerTest {
     private Navigator navigator = null;
     private final static String STATISTIC_URL = "/navigator/status/statistic";
     private final static String STATUS_IDLE_URL = "/navigator/status/is-idle";
+    private final static String PROFILE_URL = "/navigator/status/profile";
 
     protected static final int WAIT_FOR_PROCESSES_TO_FINISH = 100;
     protected static final int TRIES_UNTIL_PROCESSES_FINISH = 100;
@@ -80,6 +82,26 @@ public class NavigatorWebServiceTest extends AbstractJsonServerTest {
         Assert.assertEquals(callStats.isNavigatorIdle(), stats.isNavigatorIdle());
     }
 
+    /**
+     * Tests that the step profiles are empty, if the navigator does not profile the steps.
+     * 
+     * @throws URISyntaxException
+     *             test fails
+     * @throws IOException
+     *             test fails
+     */
+    @Test
+    public void testGetStepProfiles()
+    throws URISyntaxException, IOException {
+
+        String json = makeGETRequestReturningJson(PROFILE_URL);
+        Assert.assertNotNull(json);
+
+        JavaType typeRef = TypeFactory.collectionType(List.class, StepProfile.class);
+        List<StepProfile> profiles = this.mapper.readValue(json, typeRef);
+        Assert.assertTrue(profiles.isEmpty());
+    }
+
     /**
      * Tests the get statistic method with json deserialization.
      * 
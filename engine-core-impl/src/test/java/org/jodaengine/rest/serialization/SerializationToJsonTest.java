@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import javax.xml.bind.JAXBException;
@@ -18,11 +19,13 @@ import org.jodaengine.navigator.NavigatorStatistic;
 import org.jodaengine.node.activity.AbstractActivity;
 import org.jodaengine.node.activity.Activity;
 import org.jodaengine.process.definition.ProcessDefinition;
+import org.jodaengine.process.definition.ProcessDefinitionID;
 import org.jodaengine.process.definition.bpmn.BpmnProcessDefinition;
 import org.jodaengine.process.instance.AbstractProcessInstance;
 import org.jodaengine.process.instance.ProcessInstance;
 import org.jodaengine.process.instance.ProcessInstanceContext;
 import org.jodaengine.process.instance.ProcessInstanceContextImpl;
+import org.jodaengine.process.instance.ProcessInstanceSummary;
 import org.jodaengine.process.token.BpmnToken;
 import org.jodaengine.process.token.Token;
 import org.jodaengine.resource.AbstractCapability;
@@ -175,6 +178,55 @@ public class SerializationToJsonTest extends AbstractJsonServerTest {
         Assert.assertEquals(desStats.getNumberOfRunningInstances(), stats.getNumberOfRunningInstances());
         Assert.assertEquals(desStats.isNavigatorIdle(), stats.isNavigatorIdle());
     }
+
+    /**
+     * Tests the serialization of our navigation statistics including the queue depth per priority.
+     * 
+     * @throws IOException test fails
+     */
+    @Test
+    public void testSerializationAndDesirializationOfNavigationStatisticsWithPriorities() throws IOException {
+        File xml = new File(TMP_PATH + "NavigatorStatisticsWithPriorities.js");
+        if (xml.exists()) {
+            Assert.assertTrue(xml.delete());
+        }
+        
+        Map<Integer, Integer> queueDepths = new TreeMap<Integer, Integer>();
+        queueDepths.put(0, 2);
+        queueDepths.put(1, 0);
+        NavigatorStatistic stats = new NavigatorStatistic(1, 1, 1, false, queueDepths);
+        this.mapper.writeValue(xml, stats);
+        
+        NavigatorStatistic desStats = this.mapper.readValue(xml, NavigatorStatistic.class);
+        Assert.assertNotNull(desStats);
+        
+        Assert.assertEquals(desStats.getQueueDepthPerPriority(), queueDepths);
+    }
+
+    /**
+     * Tests the serialization of the summary of an evicted process instance.
+     * 
+     * @throws IOException test fails
+     */
+    @Test
+    public void testSerializationAndDesirializationOfProcessInstanceSummary() throws IOException {
+        File xml = new File(TMP_PATH + "ProcessInstanceSummary.js");
+        if (xml.exists()) {
+            Assert.assertTrue(xml.delete());
+        }
+        
+        ProcessInstanceSummary summary = new ProcessInstanceSummary(UUID.randomUUID(),
+            new ProcessDefinitionID("definition", 2), System.currentTimeMillis(), true);
+        this.mapper.writeValue(xml, summary);
+        
+        ProcessInstanceSummary desSummary = this.mapper.readValue(xml, ProcessInstanceSummary.class);
+        Assert.assertNotNull(desSummary);
+        
+        Assert.assertEquals(desSummary.getID(), summary.getID());
+        Assert.assertEquals(desSummary.getDefinitionID(), summary.getDefinitionID());
+        Assert.assertEquals(desSummary.getFinishingTime(), summary.getFinishingTime());
+        Assert.assertEquals(desSummary.isCancelled(), summary.isCancelled());
+    }
     
     /**
      * Tests the serialization of a {@link ProcessInstanceContext}.
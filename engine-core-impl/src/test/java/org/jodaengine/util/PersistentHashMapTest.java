@@ -0,0 +1,129 @@
+package org.jodaengine.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link PersistentHashMap}.
+ */
+public class PersistentHashMapTest {
+
+    private static final int NUMBER_OF_KEYS = 5000;
+
+    /**
+     * Test that changes create new maps and leave the old ones untouched.
+     */
+    @Test
+    public void testPlusAndMinusKeepOldVersions() {
+
+        PersistentHashMap<String, Object> empty = PersistentHashMap.empty();
+        PersistentHashMap<String, Object> one = empty.plus("a", 1);
+        PersistentHashMap<String, Object> two = one.plus("b", 2);
+        PersistentHashMap<String, Object> changed = two.plus("a", 3);
+
+        assertTrue(empty.isEmpty());
+        assertEquals(one.get("a"), 1);
+        assertNull(one.get("b"));
+        assertEquals(two.size(), 2);
+        assertEquals(two.get("a"), 1);
+        assertEquals(changed.get("a"), 3);
+        assertEquals(changed.size(), 2);
+
+        PersistentHashMap<String, Object> removed = changed.minus("a");
+        assertFalse(removed.containsKey("a"));
+        assertEquals(removed.size(), 1);
+        assertEquals(changed.get("a"), 3);
+        assertSame(removed.plus("b", null).minus("b"), removed.minus("b"));
+        assertTrue(removed.minus("b").isEmpty());
+    }
+
+    /**
+     * Test that unchanged maps are returned as they are.
+     */
+    @Test
+    public void testNoChangeReturnsSameMap() {
+
+        Integer value = 1;
+        PersistentHashMap<String, Object> map = PersistentHashMap.<String, Object> empty().plus("a", value);
+
+        assertSame(map.plus("a", value), map);
+        assertSame(map.minus("b"), map);
+    }
+
+    /**
+     * Test that many keys, also with colliding hashes, are kept like in a {@link HashMap}.
+     */
+    @Test
+    public void testManyKeys() {
+
+        PersistentHashMap<Object, Integer> map = PersistentHashMap.empty();
+        Map<Object, Integer> expected = new HashMap<Object, Integer>();
+        for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+            Object key = new CollidingKey(i);
+            map = map.plus(key, i);
+            expected.put(key, i);
+            map = map.plus("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        assertEquals(map, expected);
+        assertEquals(map.size(), expected.size());
+
+        for (int i = 0; i < NUMBER_OF_KEYS; i += 2) {
+            map = map.minus(new CollidingKey(i));
+            expected.remove(new CollidingKey(i));
+        }
+        assertEquals(map, expected);
+        assertEquals(map.get(new CollidingKey(1)), Integer.valueOf(1));
+        assertNull(map.get(new CollidingKey(2)));
+    }
+
+    /**
+     * Test that the map cannot be changed in place.
+     */
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testPutIsNotSupported() {
+
+        PersistentHashMap.<String, Object> empty().put("a", 1);
+    }
+
+    /**
+     * A key, of which only few different hash codes exist.
+     */
+    private static final class CollidingKey {
+
+        private static final int NUMBER_OF_HASHES = 7;
+
+        private final int id;
+
+        /**
+         * Instantiates a new colliding key.
+         *
+         * @param id
+         *            the id
+         */
+        private CollidingKey(int id) {
+
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return id % NUMBER_OF_HASHES;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+
+            return object instanceof CollidingKey && ((CollidingKey) object).id == id;
+        }
+    }
+}
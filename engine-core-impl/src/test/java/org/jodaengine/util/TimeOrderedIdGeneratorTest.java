@@ -0,0 +1,135 @@
+package org.jodaengine.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link TimeOrderedIdGenerator}.
+ */
+public class TimeOrderedIdGeneratorTest {
+
+    private static final int NODE_ID = 0x1234;
+
+    private static final int NUMBER_OF_THREADS = 4;
+
+    private static final int IDS_PER_THREAD = 10000;
+
+    private static final long NOW = 1300000000000L;
+
+    /**
+     * Test that the IDs are version 7 UUIDs carrying the time and the node ID.
+     */
+    @Test
+    public void testLayout() {
+
+        TimeOrderedIdGenerator generator = new FixedTimeIdGenerator(NODE_ID, NOW);
+        UUID id = generator.nextId();
+
+        assertEquals(id.version(), 7);
+        assertEquals(id.variant(), 2);
+        assertEquals(TimeOrderedIdGenerator.getTimestamp(id), NOW);
+        assertEquals((int) (id.getLeastSignificantBits() >>> 46) & TimeOrderedIdGenerator.MAX_NODE_ID, NODE_ID);
+    }
+
+    /**
+     * Test that the IDs are ordered, even if many are generated within the same millisecond and the clock goes back.
+     */
+    @Test
+    public void testIdsAreOrdered() {
+
+        FixedTimeIdGenerator generator = new FixedTimeIdGenerator(NODE_ID, NOW);
+        UUID previous = generator.nextId();
+        for (int i = 0; i < IDS_PER_THREAD; i++) {
+            if (i == IDS_PER_THREAD / 2) {
+                generator.time = NOW - 1;
+            }
+            UUID id = generator.nextId();
+            assertTrue(id.compareTo(previous) > 0, id + " should be greater than " + previous);
+            previous = id;
+        }
+    }
+
+    /**
+     * Test that concurrently generated IDs are unique.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testConcurrentIdsAreUnique()
+    throws Exception {
+
+        final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(NODE_ID);
+        final Set<UUID> ids = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+
+                    for (int j = 0; j < IDS_PER_THREAD; j++) {
+                        ids.add(generator.nextId());
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(ids.size(), NUMBER_OF_THREADS * IDS_PER_THREAD);
+    }
+
+    /**
+     * Test that node IDs out of range are rejected.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidNodeId() {
+
+        new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE_ID + 1);
+    }
+
+    /**
+     * A generator with a clock set by the test.
+     */
+    private static class FixedTimeIdGenerator extends TimeOrderedIdGenerator {
+
+        private long time;
+
+        /**
+         * Instantiates a new generator.
+         *
+         * @param nodeId
+         *            the node ID
+         * @param time
+         *            the initial time
+         */
+        public FixedTimeIdGenerator(int nodeId, long time) {
+
+            super(nodeId);
+            this.time = time;
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+
+            return time;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.jodaengine.ext.AbstractListenable;
 import org.jodaengine.ext.listener.AbstractSchedulerListener;
@@ -39,7 +40,7 @@ public class RandomPetriNetScheduler extends AbstractListenable<AbstractSchedule
     public synchronized void submit(Token p) {
         releaseLock(p);
         this.processtokens.add(p);
-        
+        notifyAll();
     }
    
     @Override
@@ -60,10 +61,41 @@ public class RandomPetriNetScheduler extends AbstractListenable<AbstractSchedule
         
         lockedInstances.add(theChosenOne.getInstance());
             
-        changed(new SchedulerEvent(SchedulerAction.RETRIEVE, theChosenOne, processtokens.size()));
+        changed(SchedulerAction.RETRIEVE, theChosenOne, processtokens.size());
+        return theChosenOne;
+    }
+
+    @Override
+    public synchronized Token retrieve(long timeout, TimeUnit unit)
+    throws InterruptedException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Token theChosenOne = retrieve();
+
+        // we have to wait for new tokens as well as for locks that are released
+        while (theChosenOne == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            theChosenOne = retrieve();
+        }
         return theChosenOne;
     }
 
+    @Override
+    public synchronized List<Token> retrieveAll(int maxNumberOfTokens) {
+
+        // every retrieved token locks its instance, so the batch contains at most one token per instance
+        List<Token> chosenOnes = new ArrayList<Token>();
+        Token theChosenOne;
+        while (chosenOnes.size() < maxNumberOfTokens && (theChosenOne = retrieve()) != null) {
+            chosenOnes.add(theChosenOne);
+        }
+        return chosenOnes;
+    }
+
     @Override
     public boolean isEmpty() {
 
@@ -82,9 +114,10 @@ public class RandomPetriNetScheduler extends AbstractListenable<AbstractSchedule
     }
 
     @Override
-    public void submitAll(List<Token> listOfTokens) {
+    public synchronized void submitAll(List<Token> listOfTokens) {
 
-        this.processtokens.addAll(listOfTokens);        
+        this.processtokens.addAll(listOfTokens);
+        notifyAll();
     }
     
 
@@ -97,11 +130,18 @@ public class RandomPetriNetScheduler extends AbstractListenable<AbstractSchedule
     /**
      * We changed, tell everybody now!.
      *
-     * @param event the event
+     * @param action
+     *            the action
+     * @param token
+     *            the token
+     * @param size
+     *            the number of tokens
      */
-    private void changed(SchedulerEvent event) {
-        setChanged();
-        notifyObservers(event);
+    private void changed(SchedulerAction action, Token token, int size) {
+
+        if (hasListeners()) {
+            notifyListeners(new SchedulerEvent(action, token, size));
+        }
     }
 
     @Override
@@ -111,10 +151,11 @@ public class RandomPetriNetScheduler extends AbstractListenable<AbstractSchedule
     }
 
     @Override
-    public void releaseLock(Token token) {
+    public synchronized void releaseLock(Token token) {
         AbstractProcessInstance instance = token.getInstance();
         if (lockedInstances.contains(instance)) {
             lockedInstances.remove(instance);
+            notifyAll();
         }
     }
 
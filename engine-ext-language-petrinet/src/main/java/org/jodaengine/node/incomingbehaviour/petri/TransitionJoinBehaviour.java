@@ -1,6 +1,7 @@
 package org.jodaengine.node.incomingbehaviour.petri;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.jodaengine.node.incomingbehaviour.IncomingBehaviour;
@@ -8,7 +9,6 @@ import org.jodaengine.process.instance.AbstractProcessInstance;
 import org.jodaengine.process.structure.Node;
 import org.jodaengine.process.structure.ControlFlow;
 import org.jodaengine.process.token.Token;
-import org.jodaengine.process.token.TokenUtil;
 
 
 /**
@@ -28,14 +28,14 @@ public class TransitionJoinBehaviour implements IncomingBehaviour {
     @Override
     // In the case of petri nets, it is also called isEnabled
     public boolean joinable(Token token, Node node) {
-        TokenUtil util = new TokenUtil();
+        AbstractProcessInstance instance = token.getInstance();
         
         // Attention: the node is not the current node of the token, it is a reachable Transition from the current Place of the token.
         // The behaviour itself does not know the node which it is belonging to.
         
         // Now check each place before the petri transition if there are enough tokens.
         for (ControlFlow t : node.getIncomingControlFlows()) {
-            if (util.getTokensWhichAreOnNode(t.getSource(), token.getInstance()).size() == 0) {
+            if (instance.getTokensOnNode(t.getSource()).isEmpty()) {
                 return false;
             }
         }
@@ -51,19 +51,18 @@ public class TransitionJoinBehaviour implements IncomingBehaviour {
     private void consumeTokens(Token token) {
         List<ControlFlow> controlFlows = token.getCurrentNode().getIncomingControlFlows();
         AbstractProcessInstance instance = token.getInstance();
-        TokenUtil util = new TokenUtil();
-        List<Token> oldTokensOnPlace;
+        Iterator<Token> oldTokensOnPlace;
         
         for (ControlFlow t : controlFlows) {
             Node placeBeforePetriTransition = t.getSource();
             // Get Token, which are still there
-            oldTokensOnPlace = util.getTokensWhichAreOnNode(placeBeforePetriTransition, instance);
+            oldTokensOnPlace = instance.getTokensOnNode(placeBeforePetriTransition).iterator();
             
             // One token of the place should be deleted.
-            // Because these are ordinary petri net's all tokens are equal and therefore we can delete just the first.
-            if (oldTokensOnPlace.size() > 0) {
+            // Because these are ordinary petri net's all tokens are equal and therefore we can delete just any.
+            if (oldTokensOnPlace.hasNext()) {
                 //oldTokens.get(0).setCurrentNode(nextPetriTranisiton);
-                Token oldToken = oldTokensOnPlace.get(0);
+                Token oldToken = oldTokensOnPlace.next();
                 instance.removeToken(oldToken);
                 // Remove the consumed token from the navigator.
                 token.getNavigator().removeTokenFromScheduler(oldToken);
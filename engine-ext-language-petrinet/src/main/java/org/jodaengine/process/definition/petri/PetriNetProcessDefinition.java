@@ -8,6 +8,7 @@ import org.codehaus.jackson.annotate.JsonTypeInfo.As;
 import org.codehaus.jackson.annotate.JsonTypeInfo.Id;
 import org.jodaengine.eventmanagement.processevent.incoming.IncomingStartProcessEvent;
 import org.jodaengine.exception.IllegalStarteventException;
+import org.jodaengine.ext.service.ExtensionService;
 import org.jodaengine.navigator.NavigatorInside;
 import org.jodaengine.process.activation.pattern.NullProcessDefinitionActivationPattern;
 import org.jodaengine.process.definition.AbstractProcessDefinition;
@@ -47,7 +48,7 @@ public class PetriNetProcessDefinition extends AbstractProcessDefinition {
     @Override
     public AbstractProcessInstance createProcessInstance(NavigatorInside navigator) {
 
-        TokenBuilder builder = new PetriNetTokenBuilder(navigator, null);
+        TokenBuilder builder = createTokenBuilder(navigator, null);
         AbstractProcessInstance processInstance = new ProcessInstance(this, builder);
         for(Node startNode : startNodes) {
             Token token = processInstance.createToken(startNode);   
@@ -57,6 +58,12 @@ public class PetriNetProcessDefinition extends AbstractProcessDefinition {
         return processInstance;
     }
 
+    @Override
+    public TokenBuilder createTokenBuilder(NavigatorInside navigator, ExtensionService extensionService) {
+
+        return new PetriNetTokenBuilder(navigator, extensionService);
+    }
+
     // TODO Bleiben erstmal un implementiert werden nach der BA aus dem Interface entfernt
     @Override
     public Map<IncomingStartProcessEvent, Node> getStartTriggers() {
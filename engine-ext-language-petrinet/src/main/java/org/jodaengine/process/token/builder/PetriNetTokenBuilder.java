@@ -84,5 +84,11 @@ public class PetriNetTokenBuilder implements TokenBuilder {
                         Token parentToken) {
         return new PetriNetToken(node, lastTakenControlFlow, parentToken, instance, nav, this.extensionService);
     }
+    
+    @Override
+    public void recycle(Token token) {
+        
+        // petri net tokens are not reused
+    }
 
 }